@@ -0,0 +1,35 @@
+package com.jslabs.gophysicengine.physics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This class represent an implementation of an exception
+ * occuring when a force expression cannot be parsed or compiled.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class ExpressionException
+        extends Exception
+{
+    // default message.
+    private String _msg = new String();
+
+    /**
+     * Return the error message.
+     * @return String
+     */
+    public String getMessage()
+    {
+        return _msg;
+    }
+
+    /**
+     * Default constructor of this class.
+     * @param message String
+     */
+    public ExpressionException(String message)
+    {
+        _msg = message;
+    }
+}
@@ -0,0 +1,115 @@
+package com.jslabs.gophysicengine.physics;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Integrates a batch of rigid bodies having the same class
+ * and the same force and torque classes with the Runge Kutta solver.</p>
+ * <p>The JIT compiler profiles the receivers of each call site of the
+ * bytecode : when all the bodies of a scene are stepped by the same method,
+ * the force and torque call sites see every force class of the scene and
+ * cannot be inlined as soon as there are more than two. newInstance() thus
+ * defines a new hidden copy of this class for each batch, so that each copy
+ * has its own call sites and profile, only sees the force classes of its
+ * batch and inlines them.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GBatchStepper
+        implements IGBatchStepper
+{
+    // bytes of this class, read once (null if not available)
+    private static byte[] _classBytes;
+    private static boolean _classBytesRead;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Create a stepper with its own copy of the code.
+     * @return IGBatchStepper
+     */
+    public static IGBatchStepper newInstance()
+    {
+        byte[] bytes = getClassBytes();
+        if (bytes != null)
+        {
+            try
+            {
+                MethodHandles.Lookup lookup = MethodHandles.lookup().
+                        defineHiddenClass(bytes, true);
+                return (IGBatchStepper) lookup.lookupClass().
+                        getConstructor().newInstance();
+            }
+            catch (Exception e)
+            {
+                // the shared code is used instead.
+            }
+        }
+        return new GBatchStepper();
+    }
+
+    private static synchronized byte[] getClassBytes()
+    {
+        if (!_classBytesRead)
+        {
+            _classBytesRead = true;
+            InputStream input = GBatchStepper.class.getResourceAsStream(
+                    "GBatchStepper.class");
+            if (input != null)
+            {
+                try
+                {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = input.read(buffer)) > 0)
+                    {
+                        bytes.write(buffer, 0, read);
+                    }
+                    input.close();
+                    _classBytes = bytes.toByteArray();
+                }
+                catch (IOException e)
+                {
+                    _classBytes = null;
+                }
+            }
+        }
+        return _classBytes;
+    }
+
+    /**
+     * Integrate the awake dynamic bodies of a range of a batch.
+     * @param bodies GRigidBody[]
+     * @param first int
+     * @param last int
+     * @param t double
+     * @param dt double
+     */
+    public void step(GRigidBody[] bodies, int first, int last, double t,
+                     double dt)
+    {
+        for (int index = first; index < last; index++)
+        {
+            GRigidBody body = bodies[index];
+            if (!body.isDynamic() || !body.isAwake())
+            {
+                continue;
+            }
+            body.beginUpdate();
+            for (int stage = 0; stage < 4; stage++)
+            {
+                double time = GRigidBody.getStageTime(stage, t, dt);
+                GBodyState state = body.beginStage(stage);
+                body._force.accumulate(time, state, body._dp);
+                body._torque.accumulate(time, state, body._dl);
+                body.endStage(stage, dt);
+            }
+            body.endUpdate(dt);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.jslabs.gophysicengine.physics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This class is a view on the state of a rigid body at an
+ * integration stage, given to the forces (IGForce). The arrays are owned by
+ * the body and reused from a stage to another : they must not be kept by
+ * the forces.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GBodyState
+{
+    // body integrated
+    GRigidBody _body;
+    // position, orientation quaternion [w,x,y,z] (or angle of a
+    // planar body), linear and angular momenta.
+    double[] _x;
+    double[] _q;
+    double[] _p;
+    double[] _l;
+    // linear and angular velocities
+    double[] _v;
+    double[] _w;
+    // orientation matrix (row major, null for a planar body)
+    double[] _r;
+    // inverse inertia in the inertial referential R I^-1 R^T
+    // (row major, 3D bodies only)
+    double[] _i;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build a state view of a body.
+     * @param body GRigidBody
+     */
+    GBodyState(GRigidBody body)
+    {
+        _body = body;
+    }
+
+    /**
+     * Return the body.
+     * @return GRigidBody
+     */
+    public GRigidBody getBody()
+    {
+        return _body;
+    }
+
+    /**
+     * Return the number of dimensions of the body (2 or 3).
+     * @return int
+     */
+    public int getDimension()
+    {
+        return _x.length;
+    }
+
+    /**
+     * Return the mass of the body.
+     * @return double
+     */
+    public double getMass()
+    {
+        return _body.getMass();
+    }
+
+    /**
+     * Return the position of the center of mass in the inertial
+     * referential of the object.
+     * @return double[]
+     */
+    public double[] getPosition()
+    {
+        return _x;
+    }
+
+    /**
+     * Return the orientation quaternion [w,x,y,z], or the angle
+     * around the z axis [a] of a planar body.
+     * @return double[]
+     */
+    public double[] getOrientation()
+    {
+        return _q;
+    }
+
+    /**
+     * Return the orientation matrix, row by row (null for a planar
+     * body).
+     * @return double[]
+     */
+    public double[] getOrientationMatrix()
+    {
+        return _r;
+    }
+
+    /**
+     * Return the inverse of the inertia matrix in the inertial
+     * referential, row by row (null for a 2D body).
+     * @return double[]
+     */
+    public double[] getInverseWorldInertia()
+    {
+        return _i;
+    }
+
+    /**
+     * Return the linear momentum.
+     * @return double[]
+     */
+    public double[] getLinearMomentum()
+    {
+        return _p;
+    }
+
+    /**
+     * Return the angular momentum (a single value around the z axis
+     * for a planar body).
+     * @return double[]
+     */
+    public double[] getAngularMomentum()
+    {
+        return _l;
+    }
+
+    /**
+     * Return the linear velocity.
+     * @return double[]
+     */
+    public double[] getLinearVelocity()
+    {
+        return _v;
+    }
+
+    /**
+     * Return the angular velocity (a single value for a planar body).
+     * @return double[]
+     */
+    public double[] getAngularVelocity()
+    {
+        return _w;
+    }
+}
@@ -0,0 +1,284 @@
+package com.jslabs.gophysicengine.physics;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Minimal writer of class files used by the force compiler.
+ * It only supports what the compiled forces need : a constant pool, fields
+ * and methods made of a single Code attribute without branches (so that no
+ * stack map frame is required).</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+class GClassWriter
+{
+    /**
+     * Opcodes used by the compiler.
+     */
+    final static int ALOAD = 0x19;
+    final static int ALOAD_0 = 0x2a;
+    final static int ASTORE = 0x3a;
+    final static int DLOAD = 0x18;
+    final static int DALOAD = 0x31;
+    final static int DASTORE = 0x52;
+    final static int DADD = 0x63;
+    final static int DSUB = 0x67;
+    final static int DMUL = 0x6b;
+    final static int DDIV = 0x6f;
+    final static int DNEG = 0x77;
+    final static int DUP2 = 0x5c;
+    final static int ICONST_0 = 0x03;
+    final static int BIPUSH = 0x10;
+    final static int SIPUSH = 0x11;
+    final static int LDC2_W = 0x14;
+    final static int GETFIELD = 0xb4;
+    final static int PUTFIELD = 0xb5;
+    final static int INVOKEVIRTUAL = 0xb6;
+    final static int INVOKESPECIAL = 0xb7;
+    final static int INVOKESTATIC = 0xb8;
+    final static int RETURN = 0xb1;
+
+    // constant pool : entries and index of each entry
+    private ByteArrayOutputStream _poolBytes = new ByteArrayOutputStream();
+    private DataOutputStream _pool = new DataOutputStream(_poolBytes);
+    private HashMap _poolIndex = new HashMap();
+    private int _poolCount = 1;
+
+    // fields and methods
+    private ByteArrayOutputStream _membersBytes = new ByteArrayOutputStream();
+    private DataOutputStream _members = new DataOutputStream(_membersBytes);
+    private int _fieldCount;
+    private ByteArrayOutputStream _methodsBytes = new ByteArrayOutputStream();
+    private DataOutputStream _methods = new DataOutputStream(_methodsBytes);
+    private int _methodCount;
+
+    // code of the current method
+    private ByteArrayOutputStream _codeBytes;
+    private DataOutputStream _code;
+
+    // class declaration
+    private int _thisClass;
+    private int _superClass;
+    private int[] _interfaces;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Start a public final class.
+     * @param name String Internal name (with '/')
+     * @param superName String Internal name of the super class
+     * @param interfaces String[] Internal names of the interfaces
+     */
+    GClassWriter(String name, String superName, String[] interfaces)
+            throws IOException
+    {
+        _thisClass = classEntry(name);
+        _superClass = classEntry(superName);
+        _interfaces = new int[interfaces.length];
+        for (int index = 0; index < interfaces.length; index++)
+        {
+            _interfaces[index] = classEntry(interfaces[index]);
+        }
+    }
+
+    private int entry(String key, int tag, int a, int b)
+            throws IOException
+    {
+        Integer index = (Integer) _poolIndex.get(key);
+        if (index != null)
+        {
+            return index.intValue();
+        }
+        _pool.writeByte(tag);
+        _pool.writeShort(a);
+        if (b >= 0)
+        {
+            _pool.writeShort(b);
+        }
+        _poolIndex.put(key, Integer.valueOf(_poolCount));
+        return _poolCount++;
+    }
+
+    int utf8Entry(String value)
+            throws IOException
+    {
+        Integer index = (Integer) _poolIndex.get("U" + value);
+        if (index != null)
+        {
+            return index.intValue();
+        }
+        _pool.writeByte(1);
+        _pool.writeUTF(value);
+        _poolIndex.put("U" + value, Integer.valueOf(_poolCount));
+        return _poolCount++;
+    }
+
+    int classEntry(String name)
+            throws IOException
+    {
+        return entry("C" + name, 7, utf8Entry(name), -1);
+    }
+
+    private int nameAndTypeEntry(String name, String descriptor)
+            throws IOException
+    {
+        return entry("N" + name + " " + descriptor, 12, utf8Entry(name),
+                     utf8Entry(descriptor));
+    }
+
+    int fieldEntry(String owner, String name, String descriptor)
+            throws IOException
+    {
+        return entry("F" + owner + "." + name + descriptor, 9,
+                     classEntry(owner), nameAndTypeEntry(name, descriptor));
+    }
+
+    int methodEntry(String owner, String name, String descriptor,
+                    boolean isInterface)
+            throws IOException
+    {
+        return entry("M" + owner + "." + name + descriptor,
+                     isInterface ? 11 : 10, classEntry(owner),
+                     nameAndTypeEntry(name, descriptor));
+    }
+
+    int doubleEntry(double value)
+            throws IOException
+    {
+        String key = "D" + Double.doubleToRawLongBits(value);
+        Integer index = (Integer) _poolIndex.get(key);
+        if (index != null)
+        {
+            return index.intValue();
+        }
+        _pool.writeByte(6);
+        _pool.writeDouble(value);
+        _poolIndex.put(key, Integer.valueOf(_poolCount));
+        // a double takes two entries
+        _poolCount += 2;
+        return _poolCount - 2;
+    }
+
+    /**
+     * Add a field without attribute.
+     */
+    void addField(int access, String name, String descriptor)
+            throws IOException
+    {
+        _members.writeShort(access);
+        _members.writeShort(utf8Entry(name));
+        _members.writeShort(utf8Entry(descriptor));
+        _members.writeShort(0);
+        _fieldCount++;
+    }
+
+    /**
+     * Start the code of a method.
+     */
+    void beginCode()
+    {
+        _codeBytes = new ByteArrayOutputStream();
+        _code = new DataOutputStream(_codeBytes);
+    }
+
+    void op(int opcode)
+            throws IOException
+    {
+        _code.writeByte(opcode);
+    }
+
+    void op(int opcode, int operand)
+            throws IOException
+    {
+        _code.writeByte(opcode);
+        if (opcode == ALOAD || opcode == ASTORE || opcode == DLOAD ||
+            opcode == BIPUSH)
+        {
+            _code.writeByte(operand);
+        }
+        else
+        {
+            _code.writeShort(operand);
+        }
+    }
+
+    /**
+     * Push an int constant.
+     */
+    void pushInt(int value)
+            throws IOException
+    {
+        if (value >= 0 && value <= 5)
+        {
+            op(ICONST_0 + value);
+        }
+        else if (value < 128)
+        {
+            op(BIPUSH, value);
+        }
+        else
+        {
+            op(SIPUSH, value);
+        }
+    }
+
+    /**
+     * End the code of a method and add the method.
+     */
+    void endMethod(int access, String name, String descriptor, int maxStack,
+                   int maxLocals)
+            throws IOException
+    {
+        byte[] code = _codeBytes.toByteArray();
+        _methods.writeShort(access);
+        _methods.writeShort(utf8Entry(name));
+        _methods.writeShort(utf8Entry(descriptor));
+        _methods.writeShort(1);
+        _methods.writeShort(utf8Entry("Code"));
+        _methods.writeInt(12 + code.length);
+        _methods.writeShort(maxStack);
+        _methods.writeShort(maxLocals);
+        _methods.writeInt(code.length);
+        _methods.write(code);
+        // no exception table, no attribute
+        _methods.writeShort(0);
+        _methods.writeShort(0);
+        _methodCount++;
+    }
+
+    /**
+     * Return the class file.
+     * @return byte[]
+     */
+    byte[] toByteArray()
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        // Java 8 class file version
+        out.writeShort(52);
+        out.writeShort(_poolCount);
+        out.write(_poolBytes.toByteArray());
+        // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+        out.writeShort(0x0031);
+        out.writeShort(_thisClass);
+        out.writeShort(_superClass);
+        out.writeShort(_interfaces.length);
+        for (int index = 0; index < _interfaces.length; index++)
+        {
+            out.writeShort(_interfaces[index]);
+        }
+        out.writeShort(_fieldCount);
+        out.write(_membersBytes.toByteArray());
+        out.writeShort(_methodCount);
+        out.write(_methodsBytes.toByteArray());
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,663 @@
+package com.jslabs.gophysicengine.physics;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This class compiles force laws written as formulas into
+ * forces (IGForce). Each component of the force is an expression over the
+ * state of the body and named parameters; the expressions are translated to
+ * bytecode and loaded as a hidden class, so that the force runs as fast as a
+ * hand written one and can be replaced while the application runs.</p>
+ * <p>The variables of the expressions are :</p>
+ * <ul>
+ * <li>t : time,</li>
+ * <li>m : mass of the body,</li>
+ * <li>x0, x1, x2 : position,</li>
+ * <li>p0, p1, p2 : linear momentum,</li>
+ * <li>v0, v1, v2 : linear velocity,</li>
+ * <li>l0, l1, l2 : angular momentum,</li>
+ * <li>w0, w1, w2 : angular velocity,</li>
+ * <li>q0, q1, q2, q3 : orientation quaternion (q0 is the angle of a planar
+ * body, whose angular momentum and velocity are l0 and w0),</li>
+ * <li>pi, e : constants,</li>
+ * <li>the names of the parameters of the compiler.</li>
+ * </ul>
+ * <p>The compiler is built for a dimension : a force of a planar body may
+ * only use x0, x1, p0, p1, v0, v1, q0, l0 and w0.</p>
+ * <p>Operators are + - * / ^ and the functions sin, cos, tan, asin, acos,
+ * atan, sinh, cosh, tanh, exp, log, sqrt, abs, atan2, pow, min and max. For
+ * instance the spring of G2DSpringBuilder, with the parameters k (stiffness),
+ * a (anchor) and r (rest length), is "-k * (x0 - a - r)".</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GForceCompiler
+{
+    /**
+     * Kinds of nodes of the expressions.
+     */
+    private final static int NODE_CONSTANT = 0;
+    private final static int NODE_TIME = 1;
+    private final static int NODE_MASS = 2;
+    private final static int NODE_STATE = 3;
+    private final static int NODE_PARAMETER = 4;
+    private final static int NODE_NEGATE = 5;
+    private final static int NODE_OPERATOR = 6;
+    private final static int NODE_FUNCTION = 7;
+
+    /**
+     * State arrays of GBodyState : variable prefix and getter.
+     */
+    private final static String STATE_PREFIXES = "xpvlwq";
+    private final static String[] STATE_GETTERS = {
+            "getPosition", "getLinearMomentum", "getLinearVelocity",
+            "getAngularMomentum", "getAngularVelocity", "getOrientation"};
+
+    /**
+     * Functions of java.lang.Math.
+     */
+    private final static String[] FUNCTIONS_1 = {
+            "sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh",
+            "tanh", "exp", "log", "sqrt", "abs"};
+    private final static String[] FUNCTIONS_2 = {
+            "atan2", "pow", "min", "max"};
+
+    /**
+     * Internal names of the classes used by the generated code.
+     */
+    private final static String FORCE_CLASS =
+            "com/jslabs/gophysicengine/physics/GCompiledForce";
+    private final static String STATE_CLASS =
+            "com/jslabs/gophysicengine/physics/GBodyState";
+
+    /**
+     * Node of an expression.
+     */
+    static class Node
+    {
+        int _kind;
+        // value of a constant
+        double _value;
+        // index of the state component or of the parameter
+        int _index;
+        // state array, operator or function
+        char _operator;
+        String _function;
+        Node _left, _right;
+
+        Node(int kind)
+        {
+            _kind = kind;
+        }
+    }
+
+    /**
+     * Names of the parameters.
+     */
+    private String[] _parameterNames;
+
+    /**
+     * Dimension of the bodies (2 or 3).
+     */
+    private int _dimension;
+
+    /**
+     * Expression parsed and position of the parser.
+     */
+    private String _text;
+    private int _position;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build a compiler.
+     * @param parameterNames String[] Names of the parameters of the
+     * expressions.
+     * @param dimension int Dimension of the bodies of the forces (2 for
+     * planar bodies or 3).
+     * @throws IllegalArgumentException If the dimension is not 2 or 3.
+     */
+    public GForceCompiler(String[] parameterNames, int dimension)
+    {
+        if (dimension != 2 && dimension != 3)
+        {
+            throw new IllegalArgumentException("The dimension must be 2 or 3.");
+        }
+        _parameterNames = parameterNames;
+        _dimension = dimension;
+    }
+
+    /**
+     * Compile the components of a force or of a torque.
+     * @param components String[] Expression of each component (a
+     * single one for the torque of a planar body)
+     * @param parameters double[] Values of the parameters, in the order
+     * of their names. The array is not copied : changing its values
+     * changes the force.
+     * @return IGForce The compiled force
+     * @throws ExpressionException If an expression is not valid, uses
+     * a component missing in the dimension of the compiler, or if there
+     * are more components than the dimension.
+     */
+    public IGForce compile(String[] components, double[] parameters)
+            throws ExpressionException
+    {
+        if (parameters.length < _parameterNames.length)
+        {
+            throw new ExpressionException("A value is expected for each " +
+                                          "parameter.");
+        }
+        if (components.length > _dimension)
+        {
+            throw new ExpressionException("A force of a body of dimension " +
+                                          _dimension + " has at most " +
+                                          _dimension + " components.");
+        }
+        Node[] trees = new Node[components.length];
+        for (int index = 0; index < components.length; index++)
+        {
+            trees[index] = parse(components[index]);
+        }
+        try
+        {
+            byte[] bytes = generate(trees);
+            MethodHandles.Lookup lookup = MethodHandles.lookup().
+                    defineHiddenClass(bytes, true);
+            MethodHandle constructor = lookup.findConstructor(
+                    lookup.lookupClass(),
+                    MethodType.methodType(void.class, double[].class));
+            return (IGForce) constructor.invoke(parameters);
+        }
+        catch (Throwable e)
+        {
+            throw new ExpressionException("Force could not be compiled : " +
+                                          e.getMessage());
+        }
+    }
+
+    /**
+     * Parse an expression.
+     * @param text String
+     * @return Node Root of the expression
+     * @throws ExpressionException If the expression is not valid.
+     */
+    private Node parse(String text)
+            throws ExpressionException
+    {
+        _text = text;
+        _position = 0;
+        Node node = parseSum();
+        skipSpaces();
+        if (_position < _text.length())
+        {
+            throw error("Unexpected character");
+        }
+        return node;
+    }
+
+    private ExpressionException error(String message)
+    {
+        return new ExpressionException(message + " at position " + _position +
+                                       " of \"" + _text + "\".");
+    }
+
+    private void skipSpaces()
+    {
+        while (_position < _text.length() &&
+               Character.isWhitespace(_text.charAt(_position)))
+        {
+            _position++;
+        }
+    }
+
+    // return true and skip the character if it is the next one
+    private boolean accept(char c)
+    {
+        skipSpaces();
+        if (_position < _text.length() && _text.charAt(_position) == c)
+        {
+            _position++;
+            return true;
+        }
+        return false;
+    }
+
+    private Node operator(char operator, Node left, Node right)
+    {
+        Node node = new Node(NODE_OPERATOR);
+        node._operator = operator;
+        node._left = left;
+        node._right = right;
+        return node;
+    }
+
+    // sum := product (('+' | '-') product)*
+    private Node parseSum()
+            throws ExpressionException
+    {
+        Node node = parseProduct();
+        while (true)
+        {
+            if (accept('+'))
+            {
+                node = operator('+', node, parseProduct());
+            }
+            else if (accept('-'))
+            {
+                node = operator('-', node, parseProduct());
+            }
+            else
+            {
+                return node;
+            }
+        }
+    }
+
+    // product := unary (('*' | '/') unary)*
+    private Node parseProduct()
+            throws ExpressionException
+    {
+        Node node = parseUnary();
+        while (true)
+        {
+            if (accept('*'))
+            {
+                node = operator('*', node, parseUnary());
+            }
+            else if (accept('/'))
+            {
+                node = operator('/', node, parseUnary());
+            }
+            else
+            {
+                return node;
+            }
+        }
+    }
+
+    // unary := ('-' | '+') unary | power
+    private Node parseUnary()
+            throws ExpressionException
+    {
+        if (accept('-'))
+        {
+            Node node = new Node(NODE_NEGATE);
+            node._left = parseUnary();
+            return node;
+        }
+        if (accept('+'))
+        {
+            return parseUnary();
+        }
+        return parsePower();
+    }
+
+    // power := primary ('^' unary)?
+    private Node parsePower()
+            throws ExpressionException
+    {
+        Node node = parsePrimary();
+        if (accept('^'))
+        {
+            Node power = new Node(NODE_FUNCTION);
+            power._function = "pow";
+            power._left = node;
+            power._right = parseUnary();
+            return power;
+        }
+        return node;
+    }
+
+    // primary := number | name | name '(' sum (',' sum)? ')' | '(' sum ')'
+    private Node parsePrimary()
+            throws ExpressionException
+    {
+        skipSpaces();
+        if (accept('('))
+        {
+            Node node = parseSum();
+            if (!accept(')'))
+            {
+                throw error("')' expected");
+            }
+            return node;
+        }
+        int start = _position;
+        if (_position < _text.length() &&
+            (Character.isDigit(_text.charAt(_position)) ||
+             _text.charAt(_position) == '.'))
+        {
+            while (_position < _text.length() &&
+                   (Character.isDigit(_text.charAt(_position)) ||
+                    _text.charAt(_position) == '.'))
+            {
+                _position++;
+            }
+            // exponent
+            if (_position < _text.length() &&
+                (_text.charAt(_position) == 'e' ||
+                 _text.charAt(_position) == 'E'))
+            {
+                _position++;
+                if (_position < _text.length() &&
+                    (_text.charAt(_position) == '-' ||
+                     _text.charAt(_position) == '+'))
+                {
+                    _position++;
+                }
+                while (_position < _text.length() &&
+                       Character.isDigit(_text.charAt(_position)))
+                {
+                    _position++;
+                }
+            }
+            Node node = new Node(NODE_CONSTANT);
+            try
+            {
+                node._value = Double.parseDouble(_text.substring(start,
+                        _position));
+            }
+            catch (NumberFormatException e)
+            {
+                _position = start;
+                throw error("Invalid number");
+            }
+            return node;
+        }
+        while (_position < _text.length() &&
+               (Character.isLetterOrDigit(_text.charAt(_position)) ||
+                _text.charAt(_position) == '_'))
+        {
+            _position++;
+        }
+        if (start == _position)
+        {
+            throw error("Value expected");
+        }
+        String name = _text.substring(start, _position);
+        if (accept('('))
+        {
+            return parseFunction(name, start);
+        }
+        return variable(name, start);
+    }
+
+    private Node parseFunction(String name, int start)
+            throws ExpressionException
+    {
+        Node node = new Node(NODE_FUNCTION);
+        node._function = name;
+        node._left = parseSum();
+        boolean binary = accept(',');
+        if (binary)
+        {
+            node._right = parseSum();
+        }
+        if (!accept(')'))
+        {
+            throw error("')' expected");
+        }
+        String[] functions = binary ? FUNCTIONS_2 : FUNCTIONS_1;
+        for (int index = 0; index < functions.length; index++)
+        {
+            if (functions[index].equals(name))
+            {
+                return node;
+            }
+        }
+        _position = start;
+        throw error("Unknown function " + name + " with " +
+                    (binary ? 2 : 1) + " argument(s)");
+    }
+
+    private Node variable(String name, int start)
+            throws ExpressionException
+    {
+        // parameters hide the variables of the state
+        for (int index = 0; index < _parameterNames.length; index++)
+        {
+            if (_parameterNames[index].equals(name))
+            {
+                Node node = new Node(NODE_PARAMETER);
+                node._index = index;
+                return node;
+            }
+        }
+        if (name.equals("t"))
+        {
+            return new Node(NODE_TIME);
+        }
+        if (name.equals("m"))
+        {
+            return new Node(NODE_MASS);
+        }
+        if (name.equals("pi") || name.equals("e"))
+        {
+            Node node = new Node(NODE_CONSTANT);
+            node._value = name.equals("pi") ? Math.PI : Math.E;
+            return node;
+        }
+        if (name.length() == 2 &&
+            STATE_PREFIXES.indexOf(name.charAt(0)) >= 0 &&
+            name.charAt(1) >= '0' &&
+            name.charAt(1) <= (name.charAt(0) == 'q' ? '3' : '2'))
+        {
+            if (name.charAt(1) - '0' >= getStateSize(name.charAt(0)))
+            {
+                _position = start;
+                throw error("Variable " + name + " is not defined for a " +
+                            "body of dimension " + _dimension);
+            }
+            Node node = new Node(NODE_STATE);
+            node._operator = name.charAt(0);
+            node._index = name.charAt(1) - '0';
+            return node;
+        }
+        _position = start;
+        throw error("Unknown variable " + name);
+    }
+
+    /**
+     * Return the number of components of a state array for the
+     * dimension of the compiler : a planar body has a single
+     * angle, angular momentum and angular velocity.
+     * @param prefix char Prefix of the variables of the array
+     * @return int
+     */
+    private int getStateSize(char prefix)
+    {
+        if (prefix == 'q')
+        {
+            return _dimension == 2 ? 1 : 4;
+        }
+        if (prefix == 'l' || prefix == 'w')
+        {
+            return _dimension == 2 ? 1 : 3;
+        }
+        return _dimension;
+    }
+
+    /**
+     * Return the number of stack slots needed to evaluate a node.
+     */
+    private static int stackSize(Node node)
+    {
+        switch (node._kind)
+        {
+            case NODE_NEGATE:
+                return stackSize(node._left);
+            case NODE_OPERATOR:
+                return Math.max(stackSize(node._left),
+                                2 + stackSize(node._right));
+            case NODE_FUNCTION:
+                return node._right == null ? stackSize(node._left) :
+                        Math.max(stackSize(node._left),
+                                 2 + stackSize(node._right));
+            default:
+                // array and index, or a double
+                return 2;
+        }
+    }
+
+    /**
+     * Mark the state arrays and parameters used by a node.
+     * @param node Node
+     * @param used boolean[] One flag per state array, then one flag
+     * for the parameters.
+     */
+    private static void markUsed(Node node, boolean[] used)
+    {
+        if (node == null)
+        {
+            return;
+        }
+        if (node._kind == NODE_STATE)
+        {
+            used[STATE_PREFIXES.indexOf(node._operator)] = true;
+        }
+        else if (node._kind == NODE_PARAMETER)
+        {
+            used[STATE_PREFIXES.length()] = true;
+        }
+        markUsed(node._left, used);
+        markUsed(node._right, used);
+    }
+
+    /**
+     * Generate the class of a force.
+     * @param trees Node[] Expressions of the components
+     * @return byte[] Class file
+     */
+    private byte[] generate(Node[] trees)
+            throws IOException
+    {
+        GClassWriter writer = new GClassWriter(FORCE_CLASS,
+                "java/lang/Object",
+                new String[] {"com/jslabs/gophysicengine/physics/IGForce"});
+        // private final double[] _parameters
+        writer.addField(0x0012, "_parameters", "[D");
+
+        // public <init>(double[] parameters)
+        writer.beginCode();
+        writer.op(GClassWriter.ALOAD_0);
+        writer.op(GClassWriter.INVOKESPECIAL, writer.methodEntry(
+                "java/lang/Object", "<init>", "()V", false));
+        writer.op(GClassWriter.ALOAD_0);
+        writer.op(GClassWriter.ALOAD, 1);
+        writer.op(GClassWriter.PUTFIELD, writer.fieldEntry(FORCE_CLASS,
+                "_parameters", "[D"));
+        writer.op(GClassWriter.RETURN);
+        writer.endMethod(0x0001, "<init>", "([D)V", 2, 2);
+
+        // public void accumulate(double t, GBodyState state, double[] out)
+        // locals : 0 this, 1-2 t, 3 state, 4 out, then the arrays used.
+        writer.beginCode();
+        boolean[] used = new boolean[STATE_PREFIXES.length() + 1];
+        for (int index = 0; index < trees.length; index++)
+        {
+            markUsed(trees[index], used);
+        }
+        int[] locals = new int[used.length];
+        int localCount = 5;
+        for (int index = 0; index < used.length; index++)
+        {
+            if (!used[index])
+            {
+                continue;
+            }
+            locals[index] = localCount++;
+            if (index < STATE_PREFIXES.length())
+            {
+                writer.op(GClassWriter.ALOAD, 3);
+                writer.op(GClassWriter.INVOKEVIRTUAL, writer.methodEntry(
+                        STATE_CLASS, STATE_GETTERS[index], "()[D", false));
+            }
+            else
+            {
+                writer.op(GClassWriter.ALOAD_0);
+                writer.op(GClassWriter.GETFIELD, writer.fieldEntry(
+                        FORCE_CLASS, "_parameters", "[D"));
+            }
+            writer.op(GClassWriter.ASTORE, locals[index]);
+        }
+        int maxStack = 2;
+        for (int index = 0; index < trees.length; index++)
+        {
+            // out[index] += expression
+            writer.op(GClassWriter.ALOAD, 4);
+            writer.pushInt(index);
+            writer.op(GClassWriter.DUP2);
+            writer.op(GClassWriter.DALOAD);
+            emit(writer, trees[index], locals);
+            writer.op(GClassWriter.DADD);
+            writer.op(GClassWriter.DASTORE);
+            maxStack = Math.max(maxStack, 4 + stackSize(trees[index]));
+        }
+        writer.op(GClassWriter.RETURN);
+        writer.endMethod(0x0001, "accumulate", "(DL" + STATE_CLASS + ";[D)V",
+                         maxStack, localCount);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Generate the code evaluating a node : the value of the
+     * node is pushed on the stack.
+     */
+    private void emit(GClassWriter writer, Node node, int[] locals)
+            throws IOException
+    {
+        switch (node._kind)
+        {
+            case NODE_CONSTANT:
+                writer.op(GClassWriter.LDC2_W, writer.doubleEntry(
+                        node._value));
+                break;
+            case NODE_TIME:
+                writer.op(GClassWriter.DLOAD, 1);
+                break;
+            case NODE_MASS:
+                writer.op(GClassWriter.ALOAD, 3);
+                writer.op(GClassWriter.INVOKEVIRTUAL, writer.methodEntry(
+                        STATE_CLASS, "getMass", "()D", false));
+                break;
+            case NODE_STATE:
+                writer.op(GClassWriter.ALOAD,
+                          locals[STATE_PREFIXES.indexOf(node._operator)]);
+                writer.pushInt(node._index);
+                writer.op(GClassWriter.DALOAD);
+                break;
+            case NODE_PARAMETER:
+                writer.op(GClassWriter.ALOAD, locals[STATE_PREFIXES.length()]);
+                writer.pushInt(node._index);
+                writer.op(GClassWriter.DALOAD);
+                break;
+            case NODE_NEGATE:
+                emit(writer, node._left, locals);
+                writer.op(GClassWriter.DNEG);
+                break;
+            case NODE_OPERATOR:
+                emit(writer, node._left, locals);
+                emit(writer, node._right, locals);
+                writer.op(node._operator == '+' ? GClassWriter.DADD :
+                          node._operator == '-' ? GClassWriter.DSUB :
+                          node._operator == '*' ? GClassWriter.DMUL :
+                          GClassWriter.DDIV);
+                break;
+            default:
+                emit(writer, node._left, locals);
+                if (node._right != null)
+                {
+                    emit(writer, node._right, locals);
+                }
+                writer.op(GClassWriter.INVOKESTATIC, writer.methodEntry(
+                        "java/lang/Math", node._function,
+                        node._right != null ? "(DD)D" : "(D)D", false));
+        }
+    }
+}
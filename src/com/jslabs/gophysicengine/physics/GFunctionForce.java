@@ -0,0 +1,192 @@
+package com.jslabs.gophysicengine.physics;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+
+import com.jslabs.gophysicengine.maths.linear.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Adapter evaluating a legacy force or torque function
+ * (IGFunction) as an IGForce. The state of the body is copied into vectors
+ * allocated once; the vector returned by the function is added to the
+ * buffer. Functions changing the position they receive (to constrain the
+ * body) still move the body. The quaternion and the matrix of a planar body
+ * are computed from its angle.</p>
+ * <p>The copies make the adapter usable by a single thread at a time : each
+ * body has its own (see GRigidBody.setForceFunction()).</p>
+ * <p>When all the bodies are adapted by this class, the call to the
+ * function sees every function class of the scene and cannot be inlined.
+ * newCopy() thus defines a new hidden copy of this class, so that each batch
+ * of bodies of the scene adapts its functions with its own call site (see
+ * GBatchStepper).</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GFunctionForce
+        implements IGFunctionAdapter
+{
+    // bytes of this class, read once (null if not available)
+    private static byte[] _classBytes;
+    private static boolean _classBytesRead;
+
+    // function adapted
+    private IGFunction _function;
+    // copies of the state given to the function
+    private GVector _x;
+    private GQuaternion _q = new GQuaternion();
+    private GVector _p;
+    private GVector _l;
+    private GMatrix _r;
+    private GVector _v;
+    private GVector _w;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adapt a function.
+     * @param function IGFunction
+     */
+    public GFunctionForce(IGFunction function)
+    {
+        _function = function;
+    }
+
+    /**
+     * Create an adapter with its own copy of the code, which
+     * adapts other functions with this copy (see adapt()).
+     * @return IGFunctionAdapter Adapter of no function
+     */
+    public static IGFunctionAdapter newCopy()
+    {
+        byte[] bytes = getClassBytes();
+        if (bytes != null)
+        {
+            try
+            {
+                MethodHandles.Lookup lookup = MethodHandles.lookup().
+                        defineHiddenClass(bytes, true);
+                return (IGFunctionAdapter) lookup.lookupClass().
+                        getConstructor(new Class[] {IGFunction.class}).
+                        newInstance(new Object[] {null});
+            }
+            catch (Exception e)
+            {
+                // the shared code is used instead.
+            }
+        }
+        return new GFunctionForce(null);
+    }
+
+    private static synchronized byte[] getClassBytes()
+    {
+        if (!_classBytesRead)
+        {
+            _classBytesRead = true;
+            InputStream input = GFunctionForce.class.getResourceAsStream(
+                    "GFunctionForce.class");
+            if (input != null)
+            {
+                try
+                {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = input.read(buffer)) > 0)
+                    {
+                        bytes.write(buffer, 0, read);
+                    }
+                    input.close();
+                    _classBytes = bytes.toByteArray();
+                }
+                catch (IOException e)
+                {
+                    _classBytes = null;
+                }
+            }
+        }
+        return _classBytes;
+    }
+
+    /**
+     * Return the function adapted.
+     * @return IGFunction
+     */
+    public IGFunction getFunction()
+    {
+        return _function;
+    }
+
+    /**
+     * Adapt a function with the code of this adapter.
+     * @param function IGFunction
+     * @return IGFunctionAdapter A new adapter of the class of this
+     * one.
+     */
+    public IGFunctionAdapter adapt(IGFunction function)
+    {
+        return new GFunctionForce(function);
+    }
+
+    /**
+     * Evaluate the function and add its result to a buffer.
+     * @param t double Time
+     * @param state GBodyState
+     * @param out double[]
+     */
+    public void accumulate(double t, GBodyState state, double[] out)
+    {
+        int dimension = state.getDimension();
+        if (_x == null || _x.getSize() != dimension ||
+            _l.getSize() != state._l.length)
+        {
+            _x = new GVector(dimension);
+            _p = new GVector(state._p.length);
+            _l = new GVector(state._l.length);
+            _v = new GVector(state._v.length);
+            _w = new GVector(state._w.length);
+            _r = new GMatrix(dimension, dimension);
+        }
+        _x.setValues(state._x);
+        _p.setValues(state._p);
+        _l.setValues(state._l);
+        _v.setValues(state._v);
+        _w.setValues(state._w);
+        if (state._r == null)
+        {
+            // planar body : rotation of its angle around the z axis
+            double angle = state._q[0];
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            _q.setValue(0, Math.cos(0.5 * angle));
+            _q.setValue(1, 0.0);
+            _q.setValue(2, 0.0);
+            _q.setValue(3, Math.sin(0.5 * angle));
+            _r.setValue(0, 0, cos);
+            _r.setValue(0, 1, -sin);
+            _r.setValue(1, 0, sin);
+            _r.setValue(1, 1, cos);
+        }
+        else
+        {
+            _q.setValues(state._q);
+            for (int i = 0; i < dimension; i++)
+            {
+                for (int j = 0; j < dimension; j++)
+                {
+                    _r.setValue(i, j, state._r[i * dimension + j]);
+                }
+            }
+        }
+        GVector result = _function.apply(t, _x, _q, _p, _l, _r, _v, _w);
+        // the function may have constrained the position
+        System.arraycopy(_x.getValues(), 0, state._x, 0, dimension);
+        for (int index = 0; index < out.length &&
+                         index < result.getSize(); index++)
+        {
+            out[index] += result.getValue(index);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.jslabs.gophysicengine.physics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Force or torque which is always null, for bodies only moved
+ * by the forces of the scene or without any rotation.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GNullForce
+        implements IGForce
+{
+    /**
+     * Add nothing to the buffer.
+     * @param t double
+     * @param state GBodyState
+     * @param out double[]
+     */
+    public void accumulate(double t, GBodyState state, double[] out)
+    {
+    }
+}
@@ -1,350 +1,1641 @@
-package com.jslabs.gophysicengine.physics;
-
-/**
- * <p>Title: Go! PhysicEngine</p>
- *
- * <p>Description: This class encapsulates all required values and parameters
- * to describe a rigid body. It contains information about the current position,
- * velocity and orientation of the body. Also the update() function is used to
- * approximate the differential equation that dictates the bahaviour of the
- * body. The update() function uses the Runge Kutta (fourth order) to
- * approximate the differential equation at a specific time for a specific time
- * delta. Efforts have been made to ensure a compatibility between the second (2)
- * and third (3) dimensions.</p>
- *
- * @author Jerome Schmaltz
- * @version 1.0
- */
-
-import com.jslabs.gophysicengine.maths.linear.*;
-
-public class GRigidBody
-{
-    // constant quantities
-    // the mass is excepted to be in kg.
-    protected double _mass;
-    // 1 / _mass
-    // the inverse mass is used often in some calculations.
-    protected double _inverseMass;
-    // matrix of inertia
-    protected GMatrix _inertia;
-    // inverse matrix
-    protected GMatrix _inverseInertia;
-    // position
-    // define the position of the center of the mass of the
-    // rigid body to the origin of the inertial axes.
-    protected GVector _x;
-    // orientation
-    // represent the orientation of the rigid body with
-    // a quaternion,
-    protected GQuaternion _q;
-    // linear momentum
-    // linear momentum is simply the (p = m*v) mass times the linear
-    // speed of the rigid body.
-    protected GVector _p;
-    // angular momentum
-    protected GVector _l;
-    // orientation matrix
-    protected GMatrix _r;
-    // linear velocity
-    protected GVector _v;
-    // angular velocity
-    protected GVector _w;
-    // torque function describing the behaviour of the
-    // rigid body.
-    protected IGFunction _torqueFct;
-    // force function describing the bahaviour of the
-    // rigid body.
-    protected IGFunction _forceFct;
-
-////////////////////////////////////////////////////////////////////////////////
-
-    /**
-     * Convert the orientation quaternion q, the linear momentum p and the
-     * angular momentum to a rotation matrix, a linear velocity and an angular
-     * velocity contained in an array of objects returned by the function.
-     * @param Q GQuaternion Orientation The orientation quaternion q
-     * @param P GVector Linear momentum The linear momentum p
-     * @param L GVector Angular momentum
-     * @return Object[] First element is a Matrix, the others are
-     * vectors.
-     */
-    protected Object[] ConvertQPLToRVW(GQuaternion Q, GVector P, GVector L)
-    {
-        Object[] ret = { new GMatrix(), new GVector(P.getSize()),
-                         new GVector(L.getSize())};
-        // convert only in third dimension
-        if( P.getSize() == 3 )
-        {
-            // R =
-            ret[0] = Q.convertToRotationMatrix((GMatrix) ret[0]);
-        }
-        // V =
-        ((GVector) ret[1]).setValues(P.multiply(_inverseMass).getValues());
-        // W =
-        ((GVector) ret[2]).setValues(((GMatrix) ret[0]).multiply(
-                _inverseInertia).multiply((GMatrix) ret[0]).multiply(_l).
-                                     getValues());
-        return ret;
-    }
-
-    /**
-     * Define the current state of the rigid body.
-     * @param x GVector Represent the current position
-     * @param q GQuaternion Represent its orientation
-     * @param p GVector Represent its linear momentum
-     * @param l GVector Represent its angular momentum
-     */
-    public void setState(GVector x, GQuaternion q, GVector p, GVector l)
-    {
-        // position
-        _x.setValues(x.getValues());
-        // orientation
-        _q.setValues(q.getValues());
-        // linear momentum
-        _p.setValues(p.getValues());
-        // set linear velocity
-        for( int index = 0; index < _p.getValues().length; index++ )
-        {
-            _v.setValue(index, _p.getValue(0)/_mass );
-        }
-        // angular momentum
-        _l.setValues(l.getValues());
-    }
-
-	/**
-	 * Return the mass of the rigid body.
-	 * @return double The mass of the rigid body.
-	 */
-	public double getMass()
-	{
-		return _mass;
-	}
-
-
-    /**
-     * Return the position of the current
-     * rigid body.
-     * @return GVector Vector representing
-     * the current position from the center of mass to
-     * the origin of the inertial repere.
-     */
-    public GVector getPosition()
-    {
-        return _x;
-    }
-
-    /**
-     * Return the orientation of the body
-     * by using a quaternion.
-     * @return GQuaternion Quaternion of
-     * orientation.
-     */
-    public GQuaternion getOrientation()
-    {
-        return _q;
-    }
-
-    /**
-     * Return the (current) linear momentum
-     * associated with this rigid body.
-     * @return GVector Vector representing
-     * the linear momentum.
-     */
-    public GVector getLinearMomentum()
-    {
-        return _p;
-    }
-
-    /**
-     * Return the angular momentum associated
-     * with this rigid body.
-     * @return GVector Vector of angular momentum.
-     */
-    public GVector getAngularMomentum()
-    {
-        return _l;
-    }
-
-    /**
-     * Define the force function which dictates
-     * the rigid body's behaviour through time.
-     * @param f IFunction Force function.
-     */
-    public void setForceFunction(IGFunction f)
-    {
-        _forceFct = f;
-    }
-
-    public IGFunction getForceFunction()
-    {
-        return _forceFct;
-    }
-
-    public IGFunction getTorqueFunction()
-    {
-        return _torqueFct;
-    }
-
-    /**
-     * Define the torque function to be associated
-     * with the current rigid body.
-     * @param f IFunction Interface implemented by
-     * the torque function.
-     */
-    public void setTorqueFunction(IGFunction f)
-    {
-        _torqueFct = f;
-    }
-
-    /**
-     * Resolving differential equation numerically
-     * for a specific time t and a specific interval
-     * of time dt using Runge Kutta solver of the fourth
-     * order. This function is actually using the position
-     * and velocity for both linear and angular modes. It
-     * also include the force and torque portions.
-     * @param t double Time
-     * @param dt double
-     */
-    public void update(double t, double dt)
-    {
-        double half_dt = 0.5 * dt;
-        double sixth_dt = dt / 6.0;
-        double tp_half_dt = t + half_dt;
-        double tp_dt = t + dt;
-
-        GVector XN = new GVector(_x.getSize());
-        GVector PN = new GVector(_p.getSize());
-        GVector LN = new GVector(_l.getSize());
-        GVector VN = new GVector(_v.getSize());
-        GVector WN = new GVector(_w.getSize());
-        GQuaternion QN = new GQuaternion();
-        GMatrix RN = new GMatrix(_r.getRowCount(), _r.getColCount());
-
-        // A1 = G(t,S0), B1 = S0 + (dt/2)*A1
-        GVector A1DXDT = new GVector(_v.getSize());
-        A1DXDT.setValues(_v.getValues());
-        GQuaternion A1DQDT = new GQuaternion(_q.multiply(_w).multiply(0.5));
-        GVector A1DPDT = _forceFct.apply(t, _x, _q, _p, _l, _r, _v, _w);
-        GVector A1DLDT = _torqueFct.apply(t, _x, _q, _p, _l, _r, _v, _w);
-        XN.setValues(A1DXDT.multiply(half_dt).add(_x).getValues());
-        QN.setValues(A1DQDT.multiply(half_dt).add(_q).getValues());
-        PN.setValues(A1DPDT.multiply(half_dt).add(_p).getValues());
-        LN.setValues(A1DLDT.multiply(half_dt).add(_l).getValues());
-        Object[] conv = ConvertQPLToRVW(QN, PN, LN);
-        RN = (GMatrix) conv[0];
-        VN = (GVector) conv[1];
-        WN = (GVector) conv[2];
-
-        // A2 = G(t+dt/2,B1), B2 = S0 + (dt/2)*A2
-        GVector A2DXDT = new GVector(VN.getSize());
-        A2DXDT.setValues(VN.getValues());
-        GQuaternion A2DQDT = new GQuaternion(QN.multiply(WN).multiply(0.5));
-        GVector A2DPDT = _forceFct.apply(tp_half_dt, XN, QN, PN, LN, RN, VN, WN);
-        GVector A2DLDT = _torqueFct.apply(tp_half_dt, XN, QN, PN, LN, RN, VN,
-                                          WN);
-        XN.setValues(A2DXDT.multiply(half_dt).add(_x).getValues());
-        QN.setValues(A2DQDT.multiply(half_dt).add(_q).getValues());
-        PN.setValues(A2DPDT.multiply(half_dt).add(_p).getValues());
-        LN.setValues(A2DLDT.multiply(half_dt).add(_l).getValues());
-        conv = ConvertQPLToRVW(QN, PN, LN);
-        RN = (GMatrix) conv[0];
-        VN = (GVector) conv[1];
-        WN = (GVector) conv[2];
-
-        // A3 = G(t+dt/2,B2), B3 = S0 + (dt/2)*A3
-        GVector A3DXDT = new GVector(VN.getSize());
-        A3DXDT.setValues(VN.getValues());
-        GQuaternion A3DQDT = new GQuaternion(QN.multiply(WN).multiply(0.5));
-        GVector A3DPDT = _forceFct.apply(tp_half_dt, XN, QN, PN, LN, RN, VN, WN);
-        GVector A3DLDT = _torqueFct.apply(tp_half_dt, XN, QN, PN, LN, RN, VN,
-                                          WN);
-        XN.setValues(A3DXDT.multiply(half_dt).add(_x).getValues());
-        QN.setValues(A3DQDT.multiply(half_dt).add(_q).getValues());
-        PN.setValues(A3DPDT.multiply(half_dt).add(_p).getValues());
-        LN.setValues(A3DLDT.multiply(half_dt).add(_l).getValues());
-        conv = ConvertQPLToRVW(QN, PN, LN);
-        RN = (GMatrix) conv[0];
-        VN = (GVector) conv[1];
-        WN = (GVector) conv[2];
-
-        // A4 = G(t+dt/2,B3), S1 = S0 + (dt/6)*(A1+2*A2*A3+A4)
-        GVector A4DXDT = new GVector(VN.getSize());
-        A4DXDT.setValues(VN.getValues());
-        GQuaternion A4DQDT = new GQuaternion(QN.multiply(WN).multiply(0.5));
-        GVector A4DPDT = _forceFct.apply(tp_dt, XN, QN, PN, LN, RN, VN, WN);
-        GVector A4DLDT = _torqueFct.apply(tp_dt, XN, QN, PN, LN, RN, VN, WN);
-        _x.setValues(A2DXDT.add(A3DXDT).multiply(2.0).add(A1DXDT).add(A4DXDT).
-                     multiply(sixth_dt).add(_x).getValues());
-        _q.setValues(A2DQDT.add(A3DQDT).multiply(2.0).add(A1DQDT).add(A4DQDT).
-                     multiply(sixth_dt).add(_q).getValues());
-        _p.setValues(A2DPDT.add(A3DPDT).multiply(2.0).add(A1DPDT).add(A4DPDT).
-                     multiply(sixth_dt).add(_p).getValues());
-        _l.setValues(A2DLDT.add(A3DLDT).multiply(2.0).add(A1DLDT).add(A4DLDT).
-                     multiply(sixth_dt).add(_p).getValues());
-
-        conv = ConvertQPLToRVW(_q, _p, _l);
-        _r = (GMatrix) conv[0];
-        _v = (GVector) conv[1];
-        _w = (GVector) conv[2];
-
-    }
-
-    /**
-     * Initialization procedure of this class. It computes
-     * all default values.
-     * @throws InitializationException If a value as not been
-     * set correctly.
-     */
-    public void initializeRigidBody()
-            throws InitializationException
-    {
-        if (_mass == 0)
-        {
-            throw new InitializationException("Rigid body must have a mass.");
-        }
-
-        _inverseMass = 1.0 / _mass;
-
-        if (_inertia != null)
-        {
-            // initialize the inverse inertia matrix.
-            for (int i = 0; i < _inertia.getRowCount(); i++)
-            {
-                for (int j = 0; j < _inertia.getColCount(); j++)
-                {
-                    _inverseInertia.setValue(i, j, 1.0 / _inertia.getValue(i, j));
-                }
-            }
-        }
-    }
-
-    /**
-     * Define the mass of the current rigid
-     * body.
-     * @param mass double
-     */
-    public void setMass(double mass)
-    {
-        _mass = mass;
-    }
-
-    /**
-     * Define the inertia matrix of the current
-     * rigid body.
-     * @param inertia GMatrix
-     */
-    public void setInertiaMatrix(GMatrix inertia)
-    {
-        _inertia = inertia;
-    }
-
-    /**
-     * Initialize a rigid body by specifying its mass
-     * and its matrix of inertia.
-     */
-    public GRigidBody()
-    {
-    }
-}
+package com.jslabs.gophysicengine.physics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This class encapsulates all required values and parameters
+ * to describe a rigid body. It contains information about the current position,
+ * velocity and orientation of the body. Also the update() function is used to
+ * approximate the differential equation that dictates the bahaviour of the
+ * body. The update() function uses the Runge Kutta (fourth order) to
+ * approximate the differential equation at a specific time for a specific time
+ * delta. Efforts have been made to ensure a compatibility between the second (2)
+ * and third (3) dimensions.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+
+import com.jslabs.gophysicengine.maths.linear.*;
+
+public class GRigidBody
+{
+    /**
+     * Body types
+     */
+    // body moved by the forces and torques.
+    public final static int BODY_DYNAMIC = 0;
+    // body that never moves.
+    public final static int BODY_STATIC = 1;
+    // body moved at constant velocity, not affected by forces.
+    public final static int BODY_KINEMATIC = 2;
+
+    // constant quantities
+    // the mass is excepted to be in kg.
+    protected double _mass;
+    // 1 / _mass
+    // the inverse mass is used often in some calculations.
+    protected double _inverseMass;
+    // matrix of inertia
+    protected GMatrix _inertia;
+    // inverse matrix
+    protected GMatrix _inverseInertia;
+    // position
+    // define the position of the center of the mass of the
+    // rigid body to the origin of the inertial axes.
+    protected GVector _x;
+    // orientation
+    // represent the orientation of the rigid body with
+    // a quaternion,
+    protected GQuaternion _q;
+    // linear momentum
+    // linear momentum is simply the (p = m*v) mass times the linear
+    // speed of the rigid body.
+    protected GVector _p;
+    // angular momentum
+    protected GVector _l;
+    // orientation matrix
+    protected GMatrix _r;
+    // orientation of a planar (2D) body : a single angle around
+    // the z axis, used instead of the quaternion and the matrix.
+    // The angular momentum and velocity of a planar body have a
+    // single value.
+    protected GVector _angle;
+    // quaternion and matrix of orientation of a planar body,
+    // rebuilt from its angle when they are read.
+    private GQuaternion _planarQ;
+    private GMatrix _planarR;
+    private double _planarAngle;
+    // moment of inertia of a planar body around the z axis, used
+    // instead of the inertia matrix, and its inverse.
+    protected double _momentOfInertia;
+    protected double _inverseMomentOfInertia;
+    // linear velocity
+    protected GVector _v;
+    // angular velocity
+    protected GVector _w;
+    // torque function describing the behaviour of the
+    // rigid body.
+    protected IGFunction _torqueFct;
+    // force function describing the bahaviour of the
+    // rigid body.
+    protected IGFunction _forceFct;
+    // force and torque evaluated by the solver (legacy functions
+    // are adapted by GFunctionForce).
+    protected IGForce _force;
+    protected IGForce _torque;
+    // type of the body (dynamic, static or kinematic).
+    protected int _bodyType = BODY_DYNAMIC;
+    // a sleeping body is not integrated until it is woken up.
+    protected boolean _awake = true;
+    // false if the body must never fall asleep.
+    protected boolean _sleepingAllowed = true;
+    // time elapsed since the body is at rest.
+    protected double _sleepTime;
+    // forces applied by the scene (springs, fields...) during
+    // the current step, added to the force function.
+    protected double[] _externalForce;
+    // linear damping applied by the scene (drag, wind...) : the
+    // force -c v is evaluated with the velocity of each stage.
+    protected double _externalDamping;
+    // views on the state of the body and on the state of the
+    // current integration stage, and buffers of the solver
+    // (allocated on the first update).
+    private GBodyState _state;
+    private GBodyState _stage;
+    private double[] _dq;
+    // force and torque of the current stage (filled by the
+    // batch steppers of the package).
+    double[] _dp, _dl;
+    private double[] _sumX, _sumQ, _sumP, _sumL;
+    private double[] _inverseInertiaValues;
+    // true if the inertia matrix of a 3D body is diagonal (principal
+    // axes) : the world inverse inertia is then cheaper to compute.
+    private boolean _diagonalInertia;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Define the current state of the rigid body. A planar
+     * body keeps the rotation of q around the z axis and the z
+     * component of l (or its first value if l has less than
+     * three values).
+     * @param x GVector Represent the current position
+     * @param q GQuaternion Represent its orientation
+     * @param p GVector Represent its linear momentum
+     * @param l GVector Represent its angular momentum
+     */
+    public void setState(GVector x, GQuaternion q, GVector p, GVector l)
+    {
+        // position
+        _x.setValues(x.getValues());
+        if (isPlanar())
+        {
+            _angle.setValue(0, 2.0 * Math.atan2(q.getValue(3), q.getValue(0)));
+            _l.setValue(0, l.getValue(l.getSize() == 3 ? 2 : 0));
+            _p.setValues(p.getValues());
+            for (int index = 0; index < _p.getSize(); index++)
+            {
+                _v.setValue(index, _mass == 0 ? 0 : _p.getValue(index) / _mass);
+            }
+            return;
+        }
+        // orientation
+        _q.setValues(q.getValues());
+        // linear momentum
+        _p.setValues(p.getValues());
+        // set linear velocity
+        for( int index = 0; index < _p.getValues().length; index++ )
+        {
+            _v.setValue(index, _mass == 0 ? 0 : _p.getValue(index) / _mass);
+        }
+        // angular momentum
+        _l.setValues(l.getValues());
+    }
+
+	/**
+	 * Return the mass of the rigid body.
+	 * @return double The mass of the rigid body.
+	 */
+	public double getMass()
+	{
+		return _mass;
+	}
+
+
+    /**
+     * Return the position of the current
+     * rigid body.
+     * @return GVector Vector representing
+     * the current position from the center of mass to
+     * the origin of the inertial repere.
+     */
+    public GVector getPosition()
+    {
+        return _x;
+    }
+
+    /**
+     * Return the orientation of the body
+     * by using a quaternion.
+     * @return GQuaternion Quaternion of
+     * orientation. For a planar body, the rotation
+     * of its angle around the z axis, rebuilt when the
+     * angle changes : changing it does not turn the body
+     * (see setAngle()).
+     */
+    public GQuaternion getOrientation()
+    {
+        if (_angle == null)
+        {
+            return _q;
+        }
+        updatePlanarOrientation();
+        return _planarQ;
+    }
+
+    /**
+     * Return true if the body is a planar (2D) body whose
+     * orientation is a single angle.
+     * @return boolean
+     */
+    public boolean isPlanar()
+    {
+        return _angle != null;
+    }
+
+    /**
+     * Return the angle of a planar body around the z axis.
+     * @return double Angle in radians (0 for other bodies).
+     */
+    public double getAngle()
+    {
+        return _angle == null ? 0.0 : _angle.getValue(0);
+    }
+
+    /**
+     * Define the angle of a planar body around the z axis.
+     * @param angle double Angle in radians
+     */
+    public void setAngle(double angle)
+    {
+        if (_angle != null)
+        {
+            _angle.setValue(0, angle);
+        }
+    }
+
+    /**
+     * Return the (current) linear momentum
+     * associated with this rigid body.
+     * @return GVector Vector representing
+     * the linear momentum.
+     */
+    public GVector getLinearMomentum()
+    {
+        return _p;
+    }
+
+    /**
+     * Return the angular momentum associated
+     * with this rigid body.
+     * @return GVector Vector of angular momentum.
+     */
+    public GVector getAngularMomentum()
+    {
+        return _l;
+    }
+
+    /**
+     * Return the (current) linear velocity
+     * of this rigid body.
+     * @return GVector Vector of linear velocity.
+     */
+    public GVector getLinearVelocity()
+    {
+        return _v;
+    }
+
+    /**
+     * Return the (current) angular velocity
+     * of this rigid body.
+     * @return GVector Vector of angular velocity.
+     */
+    public GVector getAngularVelocity()
+    {
+        return _w;
+    }
+
+    /**
+     * Return the orientation of the body
+     * as a rotation matrix.
+     * @return GMatrix Matrix of orientation. For a planar
+     * body, the 2x2 rotation of its angle, rebuilt when the
+     * angle changes : changing it does not turn the body
+     * (see setAngle()).
+     */
+    public GMatrix getOrientationMatrix()
+    {
+        if (_angle == null)
+        {
+            return _r;
+        }
+        updatePlanarOrientation();
+        return _planarR;
+    }
+
+    /**
+     * Rebuild the quaternion and the matrix of orientation of a
+     * planar body if its angle changed since they were built.
+     */
+    private void updatePlanarOrientation()
+    {
+        double angle = _angle.getValue(0);
+        if (_planarQ != null && angle == _planarAngle)
+        {
+            return;
+        }
+        if (_planarQ == null)
+        {
+            _planarQ = new GQuaternion();
+            _planarR = new GMatrix(2, 2);
+        }
+        _planarAngle = angle;
+        _planarQ.setValue(0, Math.cos(0.5 * angle));
+        _planarQ.setValue(1, 0.0);
+        _planarQ.setValue(2, 0.0);
+        _planarQ.setValue(3, Math.sin(0.5 * angle));
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        _planarR.setValue(0, 0, cos);
+        _planarR.setValue(0, 1, -sin);
+        _planarR.setValue(1, 0, sin);
+        _planarR.setValue(1, 1, cos);
+    }
+
+    /**
+     * Define the force function which dictates
+     * the rigid body's behaviour through time.
+     * @param f IFunction Force function.
+     */
+    public void setForceFunction(IGFunction f)
+    {
+        _forceFct = f;
+        _force = f == null ? null : new GFunctionForce(f);
+    }
+
+    public IGFunction getForceFunction()
+    {
+        return _forceFct;
+    }
+
+    public IGFunction getTorqueFunction()
+    {
+        return _torqueFct;
+    }
+
+    /**
+     * Define the torque function to be associated
+     * with the current rigid body.
+     * @param f IFunction Interface implemented by
+     * the torque function.
+     */
+    public void setTorqueFunction(IGFunction f)
+    {
+        _torqueFct = f;
+        _torque = f == null ? null : new GFunctionForce(f);
+    }
+
+    /**
+     * Adapt the force and torque functions of the body with the
+     * code of other adapters (see GFunctionForce.newCopy()). The
+     * functions are kept; a force or torque defined by setForce()
+     * or setTorque() is not changed.
+     * @param force IGFunctionAdapter Adapter whose code adapts the
+     * force function
+     * @param torque IGFunctionAdapter Adapter whose code adapts the
+     * torque function
+     */
+    public void setFunctionAdapters(IGFunctionAdapter force,
+                                    IGFunctionAdapter torque)
+    {
+        if (_forceFct != null)
+        {
+            _force = force.adapt(_forceFct);
+        }
+        if (_torqueFct != null)
+        {
+            _torque = torque.adapt(_torqueFct);
+        }
+    }
+
+    /**
+     * Define the force applied to the body. Replaces the
+     * force function.
+     * @param force IGForce
+     */
+    public void setForce(IGForce force)
+    {
+        _force = force;
+        _forceFct = null;
+    }
+
+    /**
+     * Return the force applied to the body.
+     * @return IGForce
+     */
+    public IGForce getForce()
+    {
+        return _force;
+    }
+
+    /**
+     * Define the torque applied to the body. Replaces the
+     * torque function.
+     * @param torque IGForce
+     */
+    public void setTorque(IGForce torque)
+    {
+        _torque = torque;
+        _torqueFct = null;
+    }
+
+    /**
+     * Return the torque applied to the body.
+     * @return IGForce
+     */
+    public IGForce getTorque()
+    {
+        return _torque;
+    }
+
+    /**
+     * Define the type of the body.
+     * @param type int BODY_DYNAMIC, BODY_STATIC or BODY_KINEMATIC.
+     * @throws IllegalArgumentException If the type is unknown.
+     */
+    public void setBodyType(int type)
+            throws IllegalArgumentException
+    {
+        if (type != BODY_DYNAMIC && type != BODY_STATIC &&
+            type != BODY_KINEMATIC)
+        {
+            throw new IllegalArgumentException("Unknown body type.");
+        }
+        _bodyType = type;
+    }
+
+    /**
+     * Return the type of the body.
+     * @return int BODY_DYNAMIC, BODY_STATIC or BODY_KINEMATIC.
+     */
+    public int getBodyType()
+    {
+        return _bodyType;
+    }
+
+    /**
+     * Return true if the body is moved by its
+     * force and torque functions.
+     * @return boolean
+     */
+    public boolean isDynamic()
+    {
+        return _bodyType == BODY_DYNAMIC;
+    }
+
+    /**
+     * Return true if the body is awake. Static bodies
+     * are never awake.
+     * @return boolean
+     */
+    public boolean isAwake()
+    {
+        return _awake && _bodyType != BODY_STATIC;
+    }
+
+    /**
+     * Wake the body up or put it to sleep. A sleeping
+     * body loses its momenta. Waking up an awake body
+     * does not reset the time it has spent at rest.
+     * @param awake boolean
+     */
+    public void setAwake(boolean awake)
+    {
+        if (awake)
+        {
+            if (!_awake)
+            {
+                _awake = true;
+                _sleepTime = 0;
+            }
+        }
+        else if (_sleepingAllowed)
+        {
+            _awake = false;
+            _sleepTime = 0;
+            for (int index = 0; index < _p.getSize(); index++)
+            {
+                _p.setValue(index, 0);
+                _v.setValue(index, 0);
+            }
+            for (int index = 0; index < _l.getSize(); index++)
+            {
+                _l.setValue(index, 0);
+                _w.setValue(index, 0);
+            }
+        }
+    }
+
+    /**
+     * Define whether the body may fall asleep.
+     * @param allowed boolean
+     */
+    public void setSleepingAllowed(boolean allowed)
+    {
+        _sleepingAllowed = allowed;
+        if (!allowed)
+        {
+            setAwake(true);
+        }
+    }
+
+    /**
+     * Return true if the body may fall asleep.
+     * @return boolean
+     */
+    public boolean isSleepingAllowed()
+    {
+        return _sleepingAllowed;
+    }
+
+    /**
+     * Return the kinetic energy of the body,
+     * (p.v + l.w) / 2.
+     * @return double Kinetic energy in J.
+     */
+    public double getKineticEnergy()
+    {
+        double energy = 0.0;
+        for (int index = 0; index < _p.getSize(); index++)
+        {
+            energy += _p.getValue(index) * _v.getValue(index);
+        }
+        for (int index = 0; index < _l.getSize(); index++)
+        {
+            energy += _l.getValue(index) * _w.getValue(index);
+        }
+        return 0.5 * energy;
+    }
+
+    /**
+     * Accumulate the time spent at rest. The timer is
+     * reset as soon as the kinetic energy goes above the
+     * threshold.
+     * @param dt double Time step
+     * @param threshold double Kinetic energy under which the
+     * body is considered at rest.
+     * @return double Time elapsed since the body is at rest.
+     */
+    public double updateSleepTime(double dt, double threshold)
+    {
+        if (!_sleepingAllowed || getKineticEnergy() > threshold)
+        {
+            _sleepTime = 0;
+        }
+        else
+        {
+            _sleepTime += dt;
+        }
+        return _sleepTime;
+    }
+
+    /**
+     * Apply an impulse to the body at its center of mass
+     * and wake it up. Static and kinematic bodies ignore
+     * the impulse.
+     * @param impulse GVector Linear impulse (N.s)
+     */
+    public void applyImpulse(GVector impulse)
+    {
+        if (_bodyType != BODY_DYNAMIC)
+        {
+            return;
+        }
+        for (int index = 0; index < _p.getSize(); index++)
+        {
+            _p.setValue(index, _p.getValue(index) + impulse.getValue(index));
+            _v.setValue(index, _p.getValue(index) * _inverseMass);
+        }
+        setAwake(true);
+    }
+
+    /**
+     * Apply an impulse along a direction at the center of mass.
+     * This method does not allocate and is meant to be used by
+     * solvers iterating over awake bodies.
+     * @param direction double[] Direction of the impulse (at least
+     * as many values as the dimension of the body)
+     * @param magnitude double Magnitude of the impulse (N.s)
+     */
+    public void applyImpulse(double[] direction, double magnitude)
+    {
+        if (_bodyType != BODY_DYNAMIC)
+        {
+            return;
+        }
+        double[] p = _p.getValues();
+        double[] v = _v.getValues();
+        for (int index = 0; index < p.length; index++)
+        {
+            p[index] += magnitude * direction[index];
+            v[index] = p[index] * _inverseMass;
+        }
+        _awake = true;
+    }
+
+    /**
+     * Apply an angular impulse to the body and wake it up.
+     * Static and kinematic bodies ignore the impulse.
+     * @param impulse GVector Angular impulse (N.m.s)
+     */
+    public void applyAngularImpulse(GVector impulse)
+    {
+        if (_bodyType != BODY_DYNAMIC)
+        {
+            return;
+        }
+        for (int index = 0; index < _l.getSize(); index++)
+        {
+            _l.setValue(index, _l.getValue(index) + impulse.getValue(index));
+        }
+        // w = I^-1 l with the inverse inertia of the last update.
+        if (_state != null && _state._l == _l.getValues())
+        {
+            if (_state._i != null)
+            {
+                multiply(_state._i, _state._l, _state._w);
+            }
+            else if (isPlanar())
+            {
+                _state._w[0] = _state._l[0] * _inverseInertiaValues[0];
+            }
+        }
+        setAwake(true);
+    }
+
+    /**
+     * Return the inverse of the inertia matrix of a 3D body in the
+     * inertial referential, R I^-1 R^T, row by row, as computed by
+     * the last update.
+     * @return double[] 9 values, or null for other bodies or before
+     * the first update.
+     */
+    public double[] getInverseWorldInertia()
+    {
+        return _state == null ? null : _state._i;
+    }
+
+    /**
+     * Express a vector of the body referential in the inertial
+     * referential : the vector is rotated by the angle of a planar
+     * body, or by the orientation matrix of a 3D body.
+     * @param x double Vector of the body referential
+     * @param y double
+     * @param z double
+     * @param out double[] Receives the vector (3 values)
+     */
+    public void toInertialReferential(double x, double y, double z,
+                                      double[] out)
+    {
+        if (_angle != null)
+        {
+            double angle = _angle.getValue(0);
+            double cos = Math.cos(angle), sin = Math.sin(angle);
+            out[0] = cos * x - sin * y;
+            out[1] = sin * x + cos * y;
+            out[2] = z;
+            return;
+        }
+        if (_r == null || _r.getRowCount() != 3)
+        {
+            out[0] = x;
+            out[1] = y;
+            out[2] = z;
+            return;
+        }
+        for (int i = 0; i < 3; i++)
+        {
+            out[i] = _r.getValue(i, 0) * x + _r.getValue(i, 1) * y +
+                     _r.getValue(i, 2) * z;
+        }
+    }
+
+    /**
+     * Return the part of the inverse mass seen along a direction
+     * by an impulse applied at a point, due to the rotation of the
+     * body : (r x n) . I^-1 (r x n), I^-1 being the inverse world
+     * inertia. Zero for static and kinematic bodies.
+     * @param arm double[] Point relative to the center of mass, in
+     * the inertial referential (3 values)
+     * @param direction double[] Direction n (3 values)
+     * @return double
+     */
+    public double getAngularInverseMass(double[] arm, double[] direction)
+    {
+        if (_bodyType != BODY_DYNAMIC)
+        {
+            return 0.0;
+        }
+        if (_angle != null)
+        {
+            double c = arm[0] * direction[1] - arm[1] * direction[0];
+            return c * c * _inverseMomentOfInertia;
+        }
+        double[] inverse = getBoundWorldInertia();
+        if (inverse == null)
+        {
+            return 0.0;
+        }
+        double c0 = arm[1] * direction[2] - arm[2] * direction[1];
+        double c1 = arm[2] * direction[0] - arm[0] * direction[2];
+        double c2 = arm[0] * direction[1] - arm[1] * direction[0];
+        return c0 * (inverse[0] * c0 + inverse[1] * c1 + inverse[2] * c2) +
+               c1 * (inverse[3] * c0 + inverse[4] * c1 + inverse[5] * c2) +
+               c2 * (inverse[6] * c0 + inverse[7] * c1 + inverse[8] * c2);
+    }
+
+    /**
+     * Apply an impulse along a direction at a point of the body :
+     * the linear momentum changes as with applyImpulse(), and the
+     * angular momentum by r x J. This method does not allocate.
+     * @param direction double[] Direction of the impulse (3 values)
+     * @param magnitude double Magnitude of the impulse (N.s)
+     * @param arm double[] Point relative to the center of mass, in
+     * the inertial referential (3 values)
+     */
+    public void applyImpulse(double[] direction, double magnitude,
+                             double[] arm)
+    {
+        applyImpulse(direction, magnitude);
+        if (_bodyType != BODY_DYNAMIC)
+        {
+            return;
+        }
+        double[] l = _l.getValues();
+        double[] w = _w.getValues();
+        if (_angle != null)
+        {
+            l[0] += magnitude * (arm[0] * direction[1] -
+                                 arm[1] * direction[0]);
+            w[0] = l[0] * _inverseMomentOfInertia;
+            return;
+        }
+        double[] inverse = getBoundWorldInertia();
+        if (inverse == null)
+        {
+            return;
+        }
+        l[0] += magnitude * (arm[1] * direction[2] - arm[2] * direction[1]);
+        l[1] += magnitude * (arm[2] * direction[0] - arm[0] * direction[2]);
+        l[2] += magnitude * (arm[0] * direction[1] - arm[1] * direction[0]);
+        multiply(inverse, l, w);
+    }
+
+    /**
+     * Move and turn the body as an impulse applied at a point
+     * would during a unit of time (position correction of the
+     * solvers) : the position moves by J / m and the orientation
+     * turns by I^-1 (r x J). The momenta are not changed.
+     * @param direction double[] Direction of the impulse (3 values)
+     * @param magnitude double Magnitude of the impulse
+     * @param arm double[] Point relative to the center of mass, in
+     * the inertial referential (3 values)
+     */
+    public void applyCorrection(double[] direction, double magnitude,
+                                double[] arm)
+    {
+        if (_bodyType != BODY_DYNAMIC)
+        {
+            return;
+        }
+        double[] x = _x.getValues();
+        double scale = magnitude * _inverseMass;
+        for (int axis = 0; axis < x.length; axis++)
+        {
+            x[axis] += scale * direction[axis];
+        }
+        if (_angle != null)
+        {
+            _angle.setValue(0, _angle.getValue(0) + magnitude *
+                            _inverseMomentOfInertia *
+                            (arm[0] * direction[1] - arm[1] * direction[0]));
+            return;
+        }
+        double[] inverse = getBoundWorldInertia();
+        if (inverse == null)
+        {
+            return;
+        }
+        double c0 = magnitude * (arm[1] * direction[2] - arm[2] * direction[1]);
+        double c1 = magnitude * (arm[2] * direction[0] - arm[0] * direction[2]);
+        double c2 = magnitude * (arm[0] * direction[1] - arm[1] * direction[0]);
+        // rotation vector a = I^-1 (r x J) : q += 1/2 (0,a) q
+        double a0 = inverse[0] * c0 + inverse[1] * c1 + inverse[2] * c2;
+        double a1 = inverse[3] * c0 + inverse[4] * c1 + inverse[5] * c2;
+        double a2 = inverse[6] * c0 + inverse[7] * c1 + inverse[8] * c2;
+        double[] q = _state._q;
+        double q0 = q[0], q1 = q[1], q2 = q[2], q3 = q[3];
+        q[0] += 0.5 * (-a0 * q1 - a1 * q2 - a2 * q3);
+        q[1] += 0.5 * (a0 * q0 + a1 * q3 - a2 * q2);
+        q[2] += 0.5 * (a1 * q0 + a2 * q1 - a0 * q3);
+        q[3] += 0.5 * (a2 * q0 + a0 * q2 - a1 * q1);
+        normalizeOrientation(q);
+        computeVelocities(_state);
+        copyOrientationMatrix();
+    }
+
+    /**
+     * Return the inverse world inertia of a 3D body if the state
+     * of the solver is bound to the vectors of the body.
+     * @return double[] 9 values, or null
+     */
+    private double[] getBoundWorldInertia()
+    {
+        if (_state == null || _state._l != _l.getValues() ||
+            _state._q != _q.getValues())
+        {
+            return null;
+        }
+        return _state._i;
+    }
+
+    /**
+     * Add a force applied by the scene to the body during the
+     * current step. The force is held constant over the step and
+     * added to the force function, unless the scene applies it
+     * with applyExternalForce().
+     * @param axis int Index of the axis
+     * @param force double Force (N)
+     */
+    public void addExternalForce(int axis, double force)
+    {
+        if (_externalForce == null)
+        {
+            _externalForce = new double[_p.getSize()];
+        }
+        _externalForce[axis] += force;
+    }
+
+    /**
+     * Add a linear damping applied by the scene to the body during
+     * the current step : the force -c v is added to the force
+     * function with the velocity of each integration stage.
+     * @param c double Damping coefficient (kg/s)
+     */
+    public void addExternalDamping(double c)
+    {
+        _externalDamping += c;
+    }
+
+    /**
+     * Return the linear damping applied by the scene.
+     * @return double
+     */
+    public double getExternalDamping()
+    {
+        return _externalDamping;
+    }
+
+    /**
+     * Clear the forces applied by the scene.
+     */
+    public void clearExternalForce()
+    {
+        if (_externalForce != null)
+        {
+            for (int index = 0; index < _externalForce.length; index++)
+            {
+                _externalForce[index] = 0;
+            }
+        }
+        _externalDamping = 0;
+    }
+
+    /**
+     * Return the forces applied by the scene during the
+     * current step, or null if none has been applied yet.
+     * @return double[]
+     */
+    public double[] getExternalForce()
+    {
+        return _externalForce;
+    }
+
+    /**
+     * Add the impulse of the external force during a time to the
+     * linear momentum of a dynamic body. The scene integrates the
+     * forces of its generators this way (velocity Verlet) : half of
+     * their impulse before update(), half after it with the forces
+     * of the new positions.
+     * @param dt double Time (s)
+     * @param clear boolean True to clear the external force once
+     * applied, so that update() does not integrate it again.
+     */
+    public void applyExternalForce(double dt, boolean clear)
+    {
+        if (_externalForce == null)
+        {
+            return;
+        }
+        if (_bodyType == BODY_DYNAMIC)
+        {
+            double[] p = _p.getValues();
+            double[] v = _v.getValues();
+            for (int index = 0; index < p.length &&
+                             index < _externalForce.length; index++)
+            {
+                p[index] += _externalForce[index] * dt;
+                v[index] = p[index] * _inverseMass;
+            }
+        }
+        if (clear)
+        {
+            for (int index = 0; index < _externalForce.length; index++)
+            {
+                _externalForce[index] = 0;
+            }
+        }
+    }
+
+    /**
+     * Return the number of values needed to store the
+     * state of the body with saveState().
+     * @return int Size of the state.
+     */
+    public int getStateSize()
+    {
+        return _x.getSize() + getOrientationValues().length +
+                2 * _p.getSize() + 2 * _l.getSize();
+    }
+
+    /**
+     * Copy the position, orientation, momenta and velocities
+     * of the body in a buffer.
+     * @param state double[] Buffer of at least getStateSize() values.
+     */
+    public void saveState(double[] state)
+    {
+        int offset = 0;
+        offset = copy(_x.getValues(), state, offset, true);
+        offset = copy(getOrientationValues(), state, offset, true);
+        offset = copy(_p.getValues(), state, offset, true);
+        offset = copy(_l.getValues(), state, offset, true);
+        offset = copy(_v.getValues(), state, offset, true);
+        copy(_w.getValues(), state, offset, true);
+    }
+
+    /**
+     * Restore a state previously saved with saveState(). The
+     * orientation matrix follows the restored orientation.
+     * @param state double[] Saved state.
+     */
+    public void restoreState(double[] state)
+    {
+        int offset = 0;
+        offset = copy(_x.getValues(), state, offset, false);
+        offset = copy(getOrientationValues(), state, offset, false);
+        offset = copy(_p.getValues(), state, offset, false);
+        offset = copy(_l.getValues(), state, offset, false);
+        offset = copy(_v.getValues(), state, offset, false);
+        copy(_w.getValues(), state, offset, false);
+        if (_r != null && _bodyType == BODY_DYNAMIC && _state != null &&
+            _state._x == _x.getValues())
+        {
+            computeVelocities(_state);
+            copyOrientationMatrix();
+        }
+    }
+
+    /**
+     * Return the values of the orientation : the angle of a
+     * planar body or the quaternion.
+     * @return double[]
+     */
+    private double[] getOrientationValues()
+    {
+        return _angle != null ? _angle.getValues() : _q.getValues();
+    }
+
+    /**
+     * Copy values between a state vector and a state buffer.
+     * @param values double[] Values of the vector
+     * @param state double[] State buffer
+     * @param offset int Offset in the state buffer
+     * @param save boolean True to copy from values to state.
+     * @return int Offset following the copied values.
+     */
+    private static int copy(double[] values, double[] state, int offset,
+                            boolean save)
+    {
+        if (save)
+        {
+            System.arraycopy(values, 0, state, offset, values.length);
+        }
+        else
+        {
+            System.arraycopy(state, offset, values, 0, values.length);
+        }
+        return offset + values.length;
+    }
+
+    /**
+     * Return the inverse of the mass; zero for static
+     * and kinematic bodies.
+     * @return double 1 / mass
+     */
+    public double getInverseMass()
+    {
+        return _inverseMass;
+    }
+
+    /**
+     * Move a kinematic body at its current linear velocity.
+     * Forces and torques are not evaluated.
+     * @param dt double Time step
+     */
+    public void advanceKinematic(double dt)
+    {
+        for (int index = 0; index < _x.getSize(); index++)
+        {
+            _x.setValue(index, _x.getValue(index) + _v.getValue(index) * dt);
+        }
+    }
+
+    /**
+     * Resolving differential equation numerically
+     * for a specific time t and a specific interval
+     * of time dt using Runge Kutta solver of the fourth
+     * order. This function is actually using the position
+     * and velocity for both linear and angular modes. It
+     * also include the force and torque portions. The
+     * stages are computed in buffers allocated once.
+     * @param t double Time
+     * @param dt double
+     */
+    public void update(double t, double dt)
+    {
+        beginUpdate();
+        for (int stage = 0; stage < 4; stage++)
+        {
+            double time = getStageTime(stage, t, dt);
+            GBodyState state = beginStage(stage);
+            _force.accumulate(time, state, _dp);
+            _torque.accumulate(time, state, _dl);
+            endStage(stage, dt);
+        }
+        endUpdate(dt);
+    }
+
+    /**
+     * Return the time of a stage of the Runge Kutta solver.
+     * @param stage int Stage (0 to 3)
+     * @param t double Time of the step
+     * @param dt double Time step
+     * @return double
+     */
+    static double getStageTime(int stage, double t, double dt)
+    {
+        return stage == 0 ? t : (stage == 3 ? t + dt : t + 0.5 * dt);
+    }
+
+    /**
+     * Start an update : the stages are then computed with
+     * beginStage() and endStage(), and the update is finished by
+     * endUpdate(). The force and torque of each stage are added
+     * to _dp and _dl between beginStage() and endStage().
+     */
+    void beginUpdate()
+    {
+        prepareSolver();
+        clear(_sumX);
+        clear(_sumQ);
+        clear(_sumP);
+        clear(_sumL);
+    }
+
+    /**
+     * Start a stage : compute the derivative of the orientation
+     * and clear the force and torque.
+     * @param stage int Stage (0 to 3)
+     * @return GBodyState State of the stage given to the forces
+     */
+    GBodyState beginStage(int stage)
+    {
+        GBodyState state = stage == 0 ? _state : _stage;
+        if (_dq.length == 1)
+        {
+            // planar body : d(angle)/dt = w
+            _dq[0] = state._w[0];
+            _dp[0] = 0.0;
+            _dp[1] = 0.0;
+            _dl[0] = 0.0;
+            return state;
+        }
+        // dq/dt = 1/2 (0,w) q, w being expressed in the inertial
+        // referential; the orientation only turns in 3D.
+        clear(_dq);
+        if (state._w.length == 3)
+        {
+            double[] q = state._q;
+            double[] w = state._w;
+            _dq[0] = 0.5 * (-w[0] * q[1] - w[1] * q[2] - w[2] * q[3]);
+            _dq[1] = 0.5 * (w[0] * q[0] + w[1] * q[3] - w[2] * q[2]);
+            _dq[2] = 0.5 * (w[1] * q[0] + w[2] * q[1] - w[0] * q[3]);
+            _dq[3] = 0.5 * (w[2] * q[0] + w[0] * q[2] - w[1] * q[1]);
+        }
+        clear(_dp);
+        clear(_dl);
+        return state;
+    }
+
+    /**
+     * Finish a stage : add the forces of the scene and compute
+     * the state of the next stage.
+     * A1 = G(t,S0), B1 = S0 + (dt/2)*A1
+     * A2 = G(t+dt/2,B1), B2 = S0 + (dt/2)*A2
+     * A3 = G(t+dt/2,B2), B3 = S0 + dt*A3
+     * A4 = G(t+dt,B3), S1 = S0 + (dt/6)*(A1+2*A2+2*A3+A4)
+     * @param stage int Stage (0 to 3)
+     * @param dt double Time step
+     */
+    void endStage(int stage, double dt)
+    {
+        GBodyState state = stage == 0 ? _state : _stage;
+        // dp/dt = F + forces of the scene
+        if (_externalForce != null)
+        {
+            for (int index = 0; index < _dp.length &&
+                             index < _externalForce.length; index++)
+            {
+                _dp[index] += _externalForce[index];
+            }
+        }
+        if (_externalDamping != 0)
+        {
+            for (int index = 0; index < _dp.length; index++)
+            {
+                _dp[index] -= _externalDamping * state._v[index];
+            }
+        }
+        double weight = stage == 0 || stage == 3 ? 1.0 : 2.0;
+        // the position derivative is the velocity of the stage
+        add(_sumX, state._v, weight);
+        add(_sumQ, _dq, weight);
+        add(_sumP, _dp, weight);
+        add(_sumL, _dl, weight);
+        if (stage < 3)
+        {
+            double h = stage == 2 ? dt : 0.5 * dt;
+            combine(_stage._x, _state._x, state._v, h);
+            combine(_stage._q, _state._q, _dq, h);
+            combine(_stage._p, _state._p, _dp, h);
+            combine(_stage._l, _state._l, _dl, h);
+            computeVelocities(_stage);
+        }
+    }
+
+    /**
+     * Finish an update : move the body to its new state.
+     * @param dt double Time step
+     */
+    void endUpdate(double dt)
+    {
+        double sixth_dt = dt / 6.0;
+        combine(_state._x, _state._x, _sumX, sixth_dt);
+        combine(_state._q, _state._q, _sumQ, sixth_dt);
+        combine(_state._p, _state._p, _sumP, sixth_dt);
+        combine(_state._l, _state._l, _sumL, sixth_dt);
+        if (_r == null)
+        {
+            computeVelocities(_state);
+            return;
+        }
+        normalizeOrientation(_state._q);
+        computeVelocities(_state);
+        copyOrientationMatrix();
+    }
+
+    /**
+     * Copy the orientation matrix of the state in the matrix of
+     * the body.
+     */
+    private void copyOrientationMatrix()
+    {
+        for (int i = 0; i < _r.getRowCount(); i++)
+        {
+            for (int j = 0; j < _r.getColCount(); j++)
+            {
+                _r.setValue(i, j, _state._r[i * _r.getColCount() + j]);
+            }
+        }
+    }
+
+    /**
+     * Add the force of the body at its current state to a
+     * buffer (used by the solvers which do not integrate the
+     * body with update()).
+     * @param t double Time
+     * @param out double[] Buffer of at least the size of the linear
+     * momentum
+     */
+    public void accumulateForce(double t, double[] out)
+    {
+        prepareSolver();
+        _force.accumulate(t, _state, out);
+    }
+
+    /**
+     * Turn the body during a time step (semi-implicit Euler, used
+     * by the solvers which do not integrate the body with
+     * update()) : the torque at the current state changes the
+     * angular momentum, then the orientation turns at the new
+     * angular velocity. Static and kinematic bodies do not turn.
+     * @param t double Time
+     * @param h double Time step
+     */
+    public void advanceRotation(double t, double h)
+    {
+        if (_bodyType != BODY_DYNAMIC)
+        {
+            return;
+        }
+        prepareSolver();
+        clear(_dl);
+        if (_torque != null)
+        {
+            _torque.accumulate(t, _state, _dl);
+        }
+        add(_state._l, _dl, h);
+        computeVelocities(_state);
+        if (_angle != null)
+        {
+            // planar body : d(angle)/dt = w
+            _state._q[0] += h * _state._w[0];
+            return;
+        }
+        if (_state._i == null)
+        {
+            return;
+        }
+        // q += h/2 (0,w) q
+        double[] q = _state._q;
+        double[] w = _state._w;
+        double q0 = q[0], q1 = q[1], q2 = q[2], q3 = q[3];
+        q[0] += 0.5 * h * (-w[0] * q1 - w[1] * q2 - w[2] * q3);
+        q[1] += 0.5 * h * (w[0] * q0 + w[1] * q3 - w[2] * q2);
+        q[2] += 0.5 * h * (w[1] * q0 + w[2] * q1 - w[0] * q3);
+        q[3] += 0.5 * h * (w[2] * q0 + w[0] * q2 - w[1] * q1);
+        normalizeOrientation(q);
+        computeVelocities(_state);
+        copyOrientationMatrix();
+    }
+
+    /**
+     * Bind the state view on the body and allocate the buffers
+     * of the solver.
+     */
+    private void prepareSolver()
+    {
+        int dimension = _x.getSize();
+        if (_state == null || _state._x != _x.getValues() ||
+            _state._p != _p.getValues() || _state._l != _l.getValues())
+        {
+            // a planar body has no orientation matrix
+            double[] orientation = getOrientationValues();
+            int matrixSize = _r == null ? 0 : dimension * dimension;
+            _state = new GBodyState(this);
+            _state._x = _x.getValues();
+            _state._q = orientation;
+            _state._p = _p.getValues();
+            _state._l = _l.getValues();
+            _state._v = _v.getValues();
+            _state._w = _w.getValues();
+            _state._r = _r == null ? null : new double[matrixSize];
+            // world inverse inertia, cached at each stage in 3D
+            _state._i = matrixSize == 9 && _l.getSize() == 3 ?
+                        new double[9] : null;
+            _stage = new GBodyState(this);
+            _stage._x = new double[dimension];
+            _stage._q = new double[orientation.length];
+            _stage._p = new double[_p.getSize()];
+            _stage._l = new double[_l.getSize()];
+            _stage._v = new double[_v.getSize()];
+            _stage._w = new double[_w.getSize()];
+            _stage._r = _r == null ? null : new double[matrixSize];
+            _stage._i = _state._i == null ? null : new double[9];
+            _dq = new double[orientation.length];
+            _dp = new double[_p.getSize()];
+            _dl = new double[_l.getSize()];
+            _sumX = new double[dimension];
+            _sumQ = new double[orientation.length];
+            _sumP = new double[_p.getSize()];
+            _sumL = new double[_l.getSize()];
+            _inverseInertiaValues = new double[_l.getSize() * _l.getSize()];
+        }
+        if (_r == null)
+        {
+            _inverseInertiaValues[0] = _inverseMomentOfInertia;
+            return;
+        }
+        int n = _l.getSize();
+        _diagonalInertia = true;
+        for (int i = 0; i < n; i++)
+        {
+            for (int j = 0; j < n; j++)
+            {
+                _inverseInertiaValues[i * n + j] =
+                        _inverseInertia == null ? 0.0 :
+                        _inverseInertia.getValue(i, j);
+                if (i != j && _inverseInertiaValues[i * n + j] != 0)
+                {
+                    _diagonalInertia = false;
+                }
+            }
+        }
+        for (int i = 0; i < dimension; i++)
+        {
+            for (int j = 0; j < dimension; j++)
+            {
+                _state._r[i * dimension + j] = _r.getValue(i, j);
+            }
+        }
+    }
+
+    /**
+     * Compute the orientation matrix and the velocities of a
+     * state from its orientation and momenta :
+     * v = p / m and w = R I^-1 R^T l. In 3D the world inverse
+     * inertia R I^-1 R^T is kept in the state.
+     * @param state GBodyState
+     */
+    private void computeVelocities(GBodyState state)
+    {
+        if (state._r == null)
+        {
+            // planar body : v = p / m and w = l / I
+            state._v[0] = state._p[0] * _inverseMass;
+            state._v[1] = state._p[1] * _inverseMass;
+            state._w[0] = state._l[0] * _inverseInertiaValues[0];
+            return;
+        }
+        for (int index = 0; index < state._v.length; index++)
+        {
+            state._v[index] = state._p[index] * _inverseMass;
+        }
+        int n = state._l.length;
+        double[] r = state._r;
+        double[] l = state._l;
+        double[] w = state._w;
+        if (n == 3 && state._i != null)
+        {
+            double[] q = state._q;
+            double norm = q[0] * q[0] + q[1] * q[1] + q[2] * q[2] +
+                          q[3] * q[3];
+            if (norm == 0)
+            {
+                // undefined orientation : identity
+                for (int index = 0; index < 9; index++)
+                {
+                    r[index] = index % 4 == 0 ? 1.0 : 0.0;
+                }
+            }
+            else
+            {
+                double s = 2.0 / norm;
+                double xx = s * q[1] * q[1], yy = s * q[2] * q[2],
+                        zz = s * q[3] * q[3];
+                double xy = s * q[1] * q[2], xz = s * q[1] * q[3],
+                        yz = s * q[2] * q[3];
+                double wx = s * q[0] * q[1], wy = s * q[0] * q[2],
+                        wz = s * q[0] * q[3];
+                r[0] = 1 - yy - zz;
+                r[1] = xy - wz;
+                r[2] = xz + wy;
+                r[3] = xy + wz;
+                r[4] = 1 - xx - zz;
+                r[5] = yz - wx;
+                r[6] = xz - wy;
+                r[7] = yz + wx;
+                r[8] = 1 - xx - yy;
+            }
+            double[] inv = _inverseInertiaValues;
+            double[] world = state._i;
+            if (_diagonalInertia)
+            {
+                // principal axes : R diag(d) R^T is symmetric,
+                // world[i][j] = sum(k) d[k] r[i][k] r[j][k]
+                double d0 = inv[0], d1 = inv[4], d2 = inv[8];
+                for (int i = 0; i < 3; i++)
+                {
+                    double a0 = d0 * r[i * 3];
+                    double a1 = d1 * r[i * 3 + 1];
+                    double a2 = d2 * r[i * 3 + 2];
+                    for (int j = i; j < 3; j++)
+                    {
+                        world[i * 3 + j] = a0 * r[j * 3] +
+                                           a1 * r[j * 3 + 1] +
+                                           a2 * r[j * 3 + 2];
+                        world[j * 3 + i] = world[i * 3 + j];
+                    }
+                }
+            }
+            else
+            {
+                // (R I^-1) R^T, row by row
+                for (int i = 0; i < 3; i++)
+                {
+                    double a0 = r[i * 3] * inv[0] + r[i * 3 + 1] * inv[3] +
+                                r[i * 3 + 2] * inv[6];
+                    double a1 = r[i * 3] * inv[1] + r[i * 3 + 1] * inv[4] +
+                                r[i * 3 + 2] * inv[7];
+                    double a2 = r[i * 3] * inv[2] + r[i * 3 + 1] * inv[5] +
+                                r[i * 3 + 2] * inv[8];
+                    for (int j = 0; j < 3; j++)
+                    {
+                        world[i * 3 + j] = a0 * r[j * 3] +
+                                           a1 * r[j * 3 + 1] +
+                                           a2 * r[j * 3 + 2];
+                    }
+                }
+            }
+            multiply(world, l, w);
+        }
+        else
+        {
+            // 2D : the orientation matrix is not used, w = I^-1 l
+            for (int i = 0; i < w.length; i++)
+            {
+                double sum = 0.0;
+                for (int j = 0; j < n; j++)
+                {
+                    sum += _inverseInertiaValues[i * n + j] * l[j];
+                }
+                w[i] = sum;
+            }
+        }
+    }
+
+    /**
+     * Normalize an orientation quaternion (the integration
+     * slowly changes its length). The length only drifts a little
+     * during a step : one Newton iteration of 1 / sqrt(n) from 1,
+     * (3 - n) / 2, is then enough and avoids the square root.
+     * @param q double[]
+     */
+    private static void normalizeOrientation(double[] q)
+    {
+        double norm2 = q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3];
+        double scale;
+        if (Math.abs(norm2 - 1.0) < 1e-4)
+        {
+            // error of the order of (norm2 - 1)^2
+            scale = 0.5 * (3.0 - norm2);
+        }
+        else if (norm2 > 0)
+        {
+            scale = 1.0 / Math.sqrt(norm2);
+        }
+        else
+        {
+            return;
+        }
+        for (int index = 0; index < 4; index++)
+        {
+            q[index] *= scale;
+        }
+    }
+
+    // out = m v, m being a 3x3 matrix (row major)
+    private static void multiply(double[] m, double[] v, double[] out)
+    {
+        double v0 = v[0], v1 = v[1], v2 = v[2];
+        out[0] = m[0] * v0 + m[1] * v1 + m[2] * v2;
+        out[1] = m[3] * v0 + m[4] * v1 + m[5] * v2;
+        out[2] = m[6] * v0 + m[7] * v1 + m[8] * v2;
+    }
+
+    private static void clear(double[] values)
+    {
+        for (int index = 0; index < values.length; index++)
+        {
+            values[index] = 0.0;
+        }
+    }
+
+    // sum += weight * values
+    private static void add(double[] sum, double[] values, double weight)
+    {
+        for (int index = 0; index < sum.length; index++)
+        {
+            sum[index] += weight * values[index];
+        }
+    }
+
+    // result = start + h * derivative
+    private static void combine(double[] result, double[] start,
+                                double[] derivative, double h)
+    {
+        for (int index = 0; index < result.length; index++)
+        {
+            result[index] = start[index] + h * derivative[index];
+        }
+    }
+
+    /**
+     * Initialization procedure of this class. It computes
+     * all default values.
+     * @throws InitializationException If a value as not been
+     * set correctly.
+     */
+    public void initializeRigidBody()
+            throws InitializationException
+    {
+        if (_mass == 0 && _bodyType == BODY_DYNAMIC)
+        {
+            throw new InitializationException("Rigid body must have a mass.");
+        }
+
+        // static and kinematic bodies have an infinite mass.
+        _inverseMass = _bodyType == BODY_DYNAMIC ? 1.0 / _mass : 0.0;
+
+        // no moment of inertia means no rotation.
+        _inverseMomentOfInertia = _momentOfInertia == 0 ? 0.0 :
+                1.0 / _momentOfInertia;
+
+        if (_inertia != null)
+        {
+            invertInertia();
+        }
+
+        // the state may have been defined before the mass and
+        // the inertia.
+        if (_bodyType == BODY_DYNAMIC)
+        {
+            prepareSolver();
+            computeVelocities(_state);
+            if (_r != null)
+            {
+                copyOrientationMatrix();
+            }
+        }
+        _awake = true;
+        _sleepTime = 0;
+    }
+
+    /**
+     * Initialize the inverse inertia matrix. A diagonal matrix
+     * (principal axes) is inverted term by term; a full 3x3 matrix
+     * is inverted with its cofactors.
+     */
+    private void invertInertia()
+    {
+        int n = _inertia.getRowCount();
+        boolean diagonal = true;
+        for (int i = 0; i < n; i++)
+        {
+            for (int j = 0; j < _inertia.getColCount(); j++)
+            {
+                if (i != j && _inertia.getValue(i, j) != 0)
+                {
+                    diagonal = false;
+                }
+            }
+        }
+        if (!diagonal && n == 3 && _inertia.getColCount() == 3)
+        {
+            double[] m = new double[9];
+            for (int index = 0; index < 9; index++)
+            {
+                m[index] = _inertia.getValue(index / 3, index % 3);
+            }
+            double c00 = m[4] * m[8] - m[5] * m[7];
+            double c01 = m[5] * m[6] - m[3] * m[8];
+            double c02 = m[3] * m[7] - m[4] * m[6];
+            double determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+            if (determinant != 0)
+            {
+                double inv = 1.0 / determinant;
+                double[] result = {
+                        c00, m[2] * m[7] - m[1] * m[8],
+                        m[1] * m[5] - m[2] * m[4],
+                        c01, m[0] * m[8] - m[2] * m[6],
+                        m[2] * m[3] - m[0] * m[5],
+                        c02, m[1] * m[6] - m[0] * m[7],
+                        m[0] * m[4] - m[1] * m[3]};
+                for (int index = 0; index < 9; index++)
+                {
+                    _inverseInertia.setValue(index / 3, index % 3,
+                                             result[index] * inv);
+                }
+                return;
+            }
+        }
+        for (int i = 0; i < n; i++)
+        {
+            for (int j = 0; j < _inertia.getColCount(); j++)
+            {
+                // no inertia on an axis means no rotation around it.
+                _inverseInertia.setValue(i, j,
+                        i != j || _inertia.getValue(i, j) == 0 ? 0.0 :
+                        1.0 / _inertia.getValue(i, j));
+            }
+        }
+    }
+
+    /**
+     * Define the mass of the current rigid
+     * body.
+     * @param mass double
+     */
+    public void setMass(double mass)
+    {
+        _mass = mass;
+    }
+
+    /**
+     * Define the inertia matrix of the current
+     * rigid body.
+     * @param inertia GMatrix
+     */
+    public void setInertiaMatrix(GMatrix inertia)
+    {
+        _inertia = inertia;
+    }
+
+    /**
+     * Define the moment of inertia of a planar body around
+     * the z axis.
+     * @param inertia double Moment of inertia (kg.m2)
+     */
+    public void setMomentOfInertia(double inertia)
+    {
+        _momentOfInertia = inertia;
+    }
+
+    /**
+     * Return the moment of inertia of a planar body.
+     * @return double
+     */
+    public double getMomentOfInertia()
+    {
+        return _momentOfInertia;
+    }
+
+    /**
+     * Initialize a rigid body by specifying its mass
+     * and its matrix of inertia.
+     */
+    public GRigidBody()
+    {
+    }
+}
@@ -0,0 +1,465 @@
+package com.jslabs.gophysicengine.physics;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Force defined by a field sampled on a regular 2D or 3D
+ * grid. The field is evaluated once at each node of the grid (in parallel)
+ * and stored in a flat array; the force applied to a body is then
+ * interpolated (bilinear or trilinear) at its position, which is much cheaper
+ * than an expensive field evaluated four times per step. Grids can be saved
+ * and loaded back as memory-mapped files.</p>
+ * <p>The interpolation error is bounded by h^2/8 times the second derivative
+ * of the field along each axis; getErrorBound() estimates this bound from the
+ * second differences of the samples and estimateError() measures the error
+ * against the exact field.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GSampledField
+        implements IGForce
+{
+    // identifier of the saved grids
+    private final static int FILE_MAGIC = 0x47534631;
+    // size of the header of a saved grid
+    private final static int HEADER_SIZE = 72;
+
+    // number of dimensions (2 or 3) and of components of the field
+    private int _dimension;
+    private int _components;
+    // number of nodes along each axis (1 along z in 2D)
+    private int[] _resolution = new int[3];
+    // bounds of the grid and size of a cell
+    private double[] _min = new double[3];
+    private double[] _max = new double[3];
+    private double[] _cell = new double[3];
+    // samples : components of node (i,j,k) at
+    // ((k * ny + j) * nx + i) * components
+    private DoubleBuffer _values;
+    // true if the field is an acceleration (multiplied by the mass)
+    private boolean _massProportional;
+
+    // minimum number of nodes sampled by a task
+    private int _parallelGrain = 4096;
+
+    /**
+     * Task sampling a range of nodes.
+     */
+    class SamplingTask
+            extends RecursiveAction
+    {
+        private IGField _field;
+        private int _first, _last;
+
+        SamplingTask(IGField field, int first, int last)
+        {
+            _field = field;
+            _first = first;
+            _last = last;
+        }
+
+        protected void compute()
+        {
+            if (_last - _first <= _parallelGrain)
+            {
+                sample(_field, _first, _last);
+            }
+            else
+            {
+                int middle = (_first + _last) >>> 1;
+                invokeAll(new SamplingTask(_field, _first, middle),
+                          new SamplingTask(_field, middle, _last));
+            }
+        }
+    }
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Sample a field on a grid.
+     * @param field IGField Field sampled
+     * @param components int Number of components of the field
+     * @param min double[] Lower corner of the grid (2 or 3 values)
+     * @param max double[] Upper corner of the grid
+     * @param resolution int[] Number of nodes along each axis (at least 2)
+     * @param pool ForkJoinPool Threads sampling the field, or null
+     * @throws IllegalArgumentException If the grid is not valid.
+     */
+    public GSampledField(IGField field, int components, double[] min,
+                         double[] max, int[] resolution, ForkJoinPool pool)
+            throws IllegalArgumentException
+    {
+        if ((min.length != 2 && min.length != 3) ||
+            max.length != min.length || resolution.length != min.length)
+        {
+            throw new IllegalArgumentException(
+                    "Grid must have 2 or 3 dimensions.");
+        }
+        _dimension = min.length;
+        _components = components;
+        for (int axis = 0; axis < 3; axis++)
+        {
+            if (axis < _dimension)
+            {
+                if (resolution[axis] < 2 || max[axis] <= min[axis])
+                {
+                    throw new IllegalArgumentException(
+                            "Grid must have at least 2 nodes per axis.");
+                }
+                _resolution[axis] = resolution[axis];
+                _min[axis] = min[axis];
+                _max[axis] = max[axis];
+            }
+            else
+            {
+                _resolution[axis] = 1;
+            }
+        }
+        initializeCells();
+        int nodes = getNodeCount();
+        _values = DoubleBuffer.wrap(new double[nodes * components]);
+        if (pool == null || nodes <= _parallelGrain)
+        {
+            sample(field, 0, nodes);
+        }
+        else
+        {
+            pool.invoke(new SamplingTask(field, 0, nodes));
+        }
+    }
+
+    /**
+     * Build a field on samples loaded from a file.
+     */
+    private GSampledField()
+    {
+    }
+
+    private void initializeCells()
+    {
+        for (int axis = 0; axis < 3; axis++)
+        {
+            _cell[axis] = _resolution[axis] > 1 ?
+                          (_max[axis] - _min[axis]) / (_resolution[axis] - 1) :
+                          1.0;
+        }
+    }
+
+    /**
+     * Return the number of nodes of the grid.
+     * @return int
+     */
+    public int getNodeCount()
+    {
+        return _resolution[0] * _resolution[1] * _resolution[2];
+    }
+
+    /**
+     * Define if the field is an acceleration, multiplied by the
+     * mass of the body, or a force.
+     * @param massProportional boolean
+     */
+    public void setMassProportional(boolean massProportional)
+    {
+        _massProportional = massProportional;
+    }
+
+    /**
+     * Evaluate the field at a range of nodes.
+     * @param field IGField
+     * @param first int First node
+     * @param last int Last node (excluded)
+     */
+    private void sample(IGField field, int first, int last)
+    {
+        double[] position = new double[_dimension];
+        double[] value = new double[_components];
+        for (int node = first; node < last; node++)
+        {
+            int i = node % _resolution[0];
+            int j = (node / _resolution[0]) % _resolution[1];
+            int k = node / (_resolution[0] * _resolution[1]);
+            position[0] = _min[0] + i * _cell[0];
+            position[1] = _min[1] + j * _cell[1];
+            if (_dimension == 3)
+            {
+                position[2] = _min[2] + k * _cell[2];
+            }
+            for (int c = 0; c < _components; c++)
+            {
+                value[c] = 0.0;
+            }
+            field.evaluate(position, value);
+            for (int c = 0; c < _components; c++)
+            {
+                _values.put(node * _components + c, value[c]);
+            }
+        }
+    }
+
+    /**
+     * Add the interpolated field at the position of the body.
+     * @param t double
+     * @param state GBodyState
+     * @param out double[]
+     */
+    public void accumulate(double t, GBodyState state, double[] out)
+    {
+        double scale = _massProportional ? state.getMass() : 1.0;
+        double[] x = state.getPosition();
+        if (_dimension == 2)
+        {
+            interpolate(x[0], x[1], 0.0, out, scale);
+        }
+        else
+        {
+            interpolate(x[0], x[1], x.length > 2 ? x[2] : 0.0, out, scale);
+        }
+    }
+
+    /**
+     * Interpolate the field at a position. Positions outside of
+     * the grid take the value of the closest border.
+     * @param x double
+     * @param y double
+     * @param z double Ignored in 2D
+     * @param out double[] Receives the field (added)
+     * @param scale double Factor applied to the field
+     */
+    public void interpolate(double x, double y, double z, double[] out,
+                            double scale)
+    {
+        // cell and position in the cell along each axis
+        double fx = (x - _min[0]) / _cell[0];
+        double fy = (y - _min[1]) / _cell[1];
+        double fz = _dimension == 3 ? (z - _min[2]) / _cell[2] : 0.0;
+        int i = cellIndex(fx, 0);
+        int j = cellIndex(fy, 1);
+        int k = _dimension == 3 ? cellIndex(fz, 2) : 0;
+        double u = clamp(fx - i);
+        double v = clamp(fy - j);
+        double w = _dimension == 3 ? clamp(fz - k) : 0.0;
+
+        int nx = _resolution[0];
+        int ny = _resolution[1];
+        int stride = _components;
+        int n000 = ((k * ny + j) * nx + i) * stride;
+        int n100 = n000 + stride;
+        int n010 = n000 + nx * stride;
+        int n110 = n010 + stride;
+        int count = Math.min(out.length, _components);
+        for (int c = 0; c < count; c++)
+        {
+            double c00 = lerp(_values.get(n000 + c), _values.get(n100 + c), u);
+            double c10 = lerp(_values.get(n010 + c), _values.get(n110 + c), u);
+            double value = lerp(c00, c10, v);
+            if (_dimension == 3)
+            {
+                int layer = nx * ny * stride;
+                double c01 = lerp(_values.get(n000 + layer + c),
+                                  _values.get(n100 + layer + c), u);
+                double c11 = lerp(_values.get(n010 + layer + c),
+                                  _values.get(n110 + layer + c), u);
+                value = lerp(value, lerp(c01, c11, v), w);
+            }
+            out[c] += scale * value;
+        }
+    }
+
+    // index of the lower node of the cell along an axis
+    private int cellIndex(double f, int axis)
+    {
+        int index = (int) Math.floor(f);
+        return Math.max(0, Math.min(_resolution[axis] - 2, index));
+    }
+
+    private static double clamp(double f)
+    {
+        return f < 0.0 ? 0.0 : (f > 1.0 ? 1.0 : f);
+    }
+
+    private static double lerp(double a, double b, double f)
+    {
+        return a + f * (b - a);
+    }
+
+    /**
+     * Return an estimate of the maximum interpolation error : the
+     * sum over the axes of h^2/8 times the largest second
+     * derivative of the samples along the axis.
+     * @return double
+     */
+    public double getErrorBound()
+    {
+        double bound = 0.0;
+        int[] stride = {_components, _resolution[0] * _components,
+                       _resolution[0] * _resolution[1] * _components};
+        for (int axis = 0; axis < _dimension; axis++)
+        {
+            if (_resolution[axis] < 3)
+            {
+                continue;
+            }
+            // largest second difference (h^2 f'') along the axis
+            double largest = 0.0;
+            for (int node = 0; node < getNodeCount(); node++)
+            {
+                int index = axis == 0 ? node % _resolution[0] :
+                            axis == 1 ? (node / _resolution[0]) %
+                            _resolution[1] :
+                            node / (_resolution[0] * _resolution[1]);
+                if (index == 0 || index == _resolution[axis] - 1)
+                {
+                    continue;
+                }
+                for (int c = 0; c < _components; c++)
+                {
+                    int n = node * _components + c;
+                    double d2 = _values.get(n - stride[axis]) -
+                                2 * _values.get(n) +
+                                _values.get(n + stride[axis]);
+                    largest = Math.max(largest, Math.abs(d2));
+                }
+            }
+            bound += largest / 8.0;
+        }
+        return bound;
+    }
+
+    /**
+     * Measure the interpolation error against the exact field at
+     * random positions inside the grid.
+     * @param field IGField Exact field
+     * @param samples int Number of positions
+     * @return double[] Largest and root mean square errors
+     */
+    public double[] estimateError(IGField field, int samples)
+    {
+        Random random = new Random(samples);
+        double[] position = new double[_dimension];
+        double[] exact = new double[_components];
+        double[] interpolated = new double[_components];
+        double largest = 0.0;
+        double sum = 0.0;
+        for (int sample = 0; sample < samples; sample++)
+        {
+            for (int axis = 0; axis < _dimension; axis++)
+            {
+                position[axis] = _min[axis] +
+                                 random.nextDouble() * (_max[axis] - _min[axis]);
+            }
+            for (int c = 0; c < _components; c++)
+            {
+                exact[c] = 0.0;
+                interpolated[c] = 0.0;
+            }
+            field.evaluate(position, exact);
+            interpolate(position[0], position[1],
+                        _dimension == 3 ? position[2] : 0.0, interpolated, 1.0);
+            for (int c = 0; c < _components; c++)
+            {
+                double error = Math.abs(exact[c] - interpolated[c]);
+                largest = Math.max(largest, error);
+                sum += error * error;
+            }
+        }
+        return new double[] {largest,
+                Math.sqrt(sum / Math.max(1, samples * _components))};
+    }
+
+    /**
+     * Save the grid in a file.
+     * @param file File
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(File file)
+            throws IOException
+    {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try
+        {
+            int size = HEADER_SIZE + getNodeCount() * _components * 8;
+            output.setLength(size);
+            ByteBuffer buffer = output.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(FILE_MAGIC);
+            buffer.putInt(_dimension);
+            buffer.putInt(_components);
+            for (int axis = 0; axis < 3; axis++)
+            {
+                buffer.putInt(_resolution[axis]);
+            }
+            for (int axis = 0; axis < 3; axis++)
+            {
+                buffer.putDouble(_min[axis]);
+                buffer.putDouble(_max[axis]);
+            }
+            DoubleBuffer values = buffer.asDoubleBuffer();
+            for (int index = 0; index < getNodeCount() * _components; index++)
+            {
+                values.put(index, _values.get(index));
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+     * Load a grid saved with save(). The samples are mapped in
+     * memory and read from the file when they are used.
+     * @param file File
+     * @return GSampledField
+     * @throws IOException If the file cannot be read or is not a
+     * saved grid.
+     */
+    public static GSampledField load(File file)
+            throws IOException
+    {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try
+        {
+            ByteBuffer buffer = input.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, input.length());
+            if (input.length() < HEADER_SIZE || buffer.getInt() != FILE_MAGIC)
+            {
+                throw new IOException(file + " is not a sampled field.");
+            }
+            GSampledField field = new GSampledField();
+            field._dimension = buffer.getInt();
+            field._components = buffer.getInt();
+            for (int axis = 0; axis < 3; axis++)
+            {
+                field._resolution[axis] = buffer.getInt();
+            }
+            for (int axis = 0; axis < 3; axis++)
+            {
+                field._min[axis] = buffer.getDouble();
+                field._max[axis] = buffer.getDouble();
+            }
+            field.initializeCells();
+            if (input.length() < HEADER_SIZE +
+                (long) field.getNodeCount() * field._components * 8)
+            {
+                throw new IOException(file + " is truncated.");
+            }
+            // the mapping stays valid after the file is closed
+            field._values = buffer.asDoubleBuffer();
+            return field;
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+}
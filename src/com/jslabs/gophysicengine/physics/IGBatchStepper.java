@@ -0,0 +1,25 @@
+package com.jslabs.gophysicengine.physics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This interface is implemented by the classes integrating
+ * a batch of rigid bodies of the same kind. See GBatchStepper.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGBatchStepper
+{
+    /**
+     * Integrate the awake dynamic bodies of a range of a batch
+     * over a time step.
+     * @param bodies GRigidBody[] Bodies of the batch
+     * @param first int First body
+     * @param last int Last body (excluded)
+     * @param t double Time
+     * @param dt double Time step
+     */
+    public void step(GRigidBody[] bodies, int first, int last, double t,
+                     double dt);
+}
@@ -0,0 +1,23 @@
+package com.jslabs.gophysicengine.physics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This interface must be implemented by a class defining a
+ * vector field which only depends on the position (measured data,
+ * expensive analytical fields...). Fields are sampled on a grid by
+ * GSampledField.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGField
+{
+    /**
+     * Evaluate the field at a position. The method may be called
+     * by several threads at once.
+     * @param position double[] Position (2 or 3 values)
+     * @param out double[] Receives the value of the field
+     */
+    public void evaluate(double[] position, double[] out);
+}
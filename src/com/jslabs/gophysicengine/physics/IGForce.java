@@ -0,0 +1,31 @@
+package com.jslabs.gophysicengine.physics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This interface must be implemented by a class to
+ * define a force or a torque applied to a rigid body. Unlike IGFunction,
+ * the force is added to a buffer provided by the caller, so that several
+ * forces can be summed and evaluated at each stage of the integration
+ * without allocating any vector. Legacy functions are adapted by
+ * GFunctionForce.</p>
+ * <p>When the scene is stepped by several threads (see
+ * GScene.setParallelism()), a force shared by several bodies is evaluated
+ * by several threads at once : it must only write to the buffer it is given
+ * and keep no state between two calls.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGForce
+{
+    /**
+     * Add the force or torque at time t to a buffer.
+     * @param t double Time
+     * @param state GBodyState State of the body at the current
+     * integration stage.
+     * @param out double[] Buffer receiving the force, of the size of
+     * the linear momentum (force) or of the angular momentum (torque).
+     */
+    public void accumulate(double t, GBodyState state, double[] out);
+}
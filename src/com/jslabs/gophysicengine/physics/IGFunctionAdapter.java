@@ -0,0 +1,32 @@
+package com.jslabs.gophysicengine.physics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This interface is implemented by the adapters evaluating a legacy force
+ * or torque function (IGFunction) as an IGForce : GFunctionForce and the
+ * copies of its code (see GFunctionForce.newCopy()), which are not of its
+ * class.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGFunctionAdapter
+        extends IGForce
+{
+    /**
+     * Return the function adapted.
+     * @return IGFunction
+     */
+    public IGFunction getFunction();
+
+    /**
+     * Adapt a function with the code of this adapter.
+     * @param function IGFunction
+     * @return IGFunctionAdapter A new adapter of the class of this
+     * one.
+     */
+    public IGFunctionAdapter adapt(IGFunction function);
+}
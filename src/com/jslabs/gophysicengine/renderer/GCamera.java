@@ -0,0 +1,141 @@
+package com.jslabs.gophysicengine.renderer;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Camera of a viewport : the point of the inertial referential shown at
+ * the top left corner of the view and the zoom (pixels of the view per unit
+ * of the referential). The default camera shows the referential as it was
+ * drawn without camera. The camera may be moved by a thread (events of the
+ * mouse) while another one draws.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GCamera
+{
+    private double _left;
+    private double _top;
+    private double _zoom = 1.0;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Define the point shown at the top left corner of the view.
+     * @param left double
+     * @param top double
+     */
+    public synchronized void setPosition(double left, double top)
+    {
+        _left = left;
+        _top = top;
+    }
+
+    /**
+     * Define the zoom.
+     * @param zoom double Pixels per unit of the referential
+     * @throws IllegalArgumentException If the zoom is not positive.
+     */
+    public synchronized void setZoom(double zoom)
+            throws IllegalArgumentException
+    {
+        if (zoom <= 0)
+        {
+            throw new IllegalArgumentException("Zoom must be positive.");
+        }
+        _zoom = zoom;
+    }
+
+    /**
+     * Return the zoom.
+     * @return double Pixels per unit of the referential
+     */
+    public synchronized double getZoom()
+    {
+        return _zoom;
+    }
+
+    /**
+     * Move the camera.
+     * @param dx double Move of the view (pixels)
+     * @param dy double
+     */
+    public synchronized void pan(double dx, double dy)
+    {
+        _left -= dx / _zoom;
+        _top -= dy / _zoom;
+    }
+
+    /**
+     * Multiply the zoom, keeping a point of the view in place.
+     * @param factor double
+     * @param x double Point of the view (pixels)
+     * @param y double
+     */
+    public synchronized void zoom(double factor, double x, double y)
+    {
+        if (factor <= 0)
+        {
+            return;
+        }
+        double worldX = _left + x / _zoom;
+        double worldY = _top + y / _zoom;
+        _zoom *= factor;
+        _left = worldX - x / _zoom;
+        _top = worldY - y / _zoom;
+    }
+
+    /**
+     * Copy the camera, to draw a frame with a camera which does
+     * not change.
+     * @param view double[] Receives left, top and zoom
+     */
+    public synchronized void getView(double[] view)
+    {
+        view[0] = _left;
+        view[1] = _top;
+        view[2] = _zoom;
+    }
+
+    /**
+     * Return the abscissa in the view of a point of the referential.
+     * @param x double
+     * @return double Pixels
+     */
+    public synchronized double toViewX(double x)
+    {
+        return (x - _left) * _zoom;
+    }
+
+    /**
+     * Return the ordinate in the view of a point of the referential.
+     * @param y double
+     * @return double Pixels
+     */
+    public synchronized double toViewY(double y)
+    {
+        return (y - _top) * _zoom;
+    }
+
+    /**
+     * Return the abscissa in the referential of a point of the view.
+     * @param x double Pixels
+     * @return double
+     */
+    public synchronized double toWorldX(double x)
+    {
+        return _left + x / _zoom;
+    }
+
+    /**
+     * Return the ordinate in the referential of a point of the view.
+     * @param y double Pixels
+     * @return double
+     */
+    public synchronized double toWorldY(double y)
+    {
+        return _top + y / _zoom;
+    }
+}
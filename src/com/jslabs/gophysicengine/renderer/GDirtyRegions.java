@@ -0,0 +1,452 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.*;
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Redraws only the regions of a persistent buffer which changed since the
+ * last frame : the rectangle in which each node is drawn (see
+ * GObject.getDrawBounds()) is kept from a frame to another, and the nodes
+ * which moved, appeared or disappeared make their previous and current
+ * rectangles dirty. The dirty rectangles which overlap are merged, then each
+ * one is cleared and the nodes crossing it are drawn again, clipped. When the
+ * dirty rectangles cover more than a part of the buffer (or when the camera
+ * moved, the buffer was lost...), the whole buffer is drawn again.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GDirtyRegions
+{
+    /**
+     * Maximum number of dirty rectangles : beyond, a new one is
+     * merged with the rectangle which grows the least.
+     */
+    public final static int MAX_RECTANGLES = 32;
+
+    // pixels around the rectangle of a node (rounding of the
+    // coordinates by the drawing)
+    private final static int MARGIN = 2;
+
+    // difference of orientation drawn the same (the interpolated
+    // quaternions are normalized again)
+    private final static double EPSILON = 1e-9;
+
+    // part of the buffer beyond which it is drawn again
+    private double _threshold = 0.5;
+    private boolean _valid;
+
+    /**
+     * State of the last frame : size, view (left, top, zoom),
+     * background, nodes drawn and their rectangles in pixels
+     * (x0, y0, x1, y1 with x1 and y1 excluded), by index in the
+     * snapshot.
+     */
+    private int _width, _height;
+    private double[] _view = {0, 0, 1};
+    private int _background;
+    private GObject[] _nodes = new GObject[0];
+    private int[] _bounds = new int[0];
+    private int[] _drawn = new int[0];
+    private int _drawnCount;
+
+    /**
+     * Rectangles of the nodes in the current frame, and frame in
+     * which each node was drawn.
+     */
+    private int[] _newBounds = new int[0];
+    // position and orientation drawn, 7 values per node
+    private double[] _states = new double[0];
+    private long[] _frames = new long[0];
+    private long _frame;
+
+    /**
+     * Dirty rectangles (x0, y0, x1, y1).
+     */
+    private int[] _rectangles = new int[4 * MAX_RECTANGLES];
+    private int _rectangleCount;
+
+    /**
+     * Frames drawn entirely and part of the last frame drawn.
+     */
+    private long _fullFrames;
+    private long _partialFrames;
+    private double _lastDirtyRatio;
+
+    private double[] _worldBounds = new double[4];
+
+    // state of the nodes drawn without a viewport
+    private GInterpolatedSnapshot _interpolated = new GInterpolatedSnapshot();
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Define the part of the buffer beyond which it is drawn
+     * entirely.
+     * @param ratio double Between 0 and 1
+     */
+    public void setThreshold(double ratio)
+    {
+        _threshold = ratio;
+    }
+
+    /**
+     * Draw the whole buffer at the next frame (its contents have
+     * been lost, or changed by someone else).
+     */
+    public void invalidate()
+    {
+        _valid = false;
+    }
+
+    /**
+     * Draw the nodes of a snapshot in a persistent buffer, which
+     * holds the last frame drawn by this object.
+     * @param g Graphics Graphics of the buffer
+     * @param snapshot GSceneSnapshot
+     * @param alpha double Interpolation between the previous step
+     * (0) and the step of the snapshot (1)
+     * @param viewport GViewport Part of the scene drawn, or null
+     * @param width int Size of the buffer
+     * @param height int
+     * @param background Color Color of the empty buffer
+     */
+    public void draw(Graphics g, GSceneSnapshot snapshot, double alpha,
+                     GViewport viewport, int width, int height,
+                     Color background)
+    {
+        // nodes to draw and their state
+        int[] nodes = null;
+        GInterpolatedSnapshot interpolated = _interpolated;
+        int count = snapshot.getCount();
+        double[] view = {0, 0, 1};
+        boolean full = !_valid || width != _width || height != _height ||
+                       background.getRGB() != _background;
+        if (viewport != null)
+        {
+            viewport.select(snapshot, alpha, width, height);
+            interpolated = viewport.getInterpolated();
+            nodes = viewport.getVisibleNodes();
+            count = viewport.getVisibleCount();
+            System.arraycopy(viewport.getView(), 0, view, 0, 3);
+            // the points of the small nodes are drawn over the
+            // whole frame
+            full |= viewport.getDensityPixelCount() > 0;
+        }
+        else
+        {
+            interpolated.interpolate(snapshot, alpha);
+        }
+        for (int axis = 0; axis < 3; axis++)
+        {
+            full |= view[axis] != _view[axis];
+        }
+        _frame++;
+        _rectangleCount = 0;
+        computeBounds(interpolated, nodes, count, view, width, height, full);
+        if (!full)
+        {
+            double area = 0;
+            for (int index = 0; index < _rectangleCount; index++)
+            {
+                int r = 4 * index;
+                area += (double) (_rectangles[r + 2] - _rectangles[r]) *
+                        (_rectangles[r + 3] - _rectangles[r + 1]);
+            }
+            _lastDirtyRatio = area / ((double) width * height);
+            full = _lastDirtyRatio > _threshold;
+        }
+        if (full)
+        {
+            _lastDirtyRatio = 1.0;
+            _rectangleCount = 1;
+            _rectangles[0] = 0;
+            _rectangles[1] = 0;
+            _rectangles[2] = width;
+            _rectangles[3] = height;
+            _fullFrames++;
+        }
+        else
+        {
+            _partialFrames++;
+        }
+        for (int index = 0; index < _rectangleCount; index++)
+        {
+            drawRectangle(g, interpolated, nodes, count, view, 4 * index,
+                          background, full);
+        }
+        if (viewport != null)
+        {
+            viewport.drawDensity(g);
+        }
+        // the buffer holds this frame
+        _valid = true;
+        _width = width;
+        _height = height;
+        _background = background.getRGB();
+        System.arraycopy(view, 0, _view, 0, 3);
+    }
+
+    /**
+     * Compute the rectangles of the nodes drawn, and the dirty
+     * rectangles unless the whole buffer is drawn.
+     */
+    private void computeBounds(GInterpolatedSnapshot snapshot, int[] nodes,
+                               int count, double[] view, int width,
+                               int height, boolean full)
+    {
+        int total = snapshot.getCount();
+        if (_nodes.length < total)
+        {
+            int capacity = Math.max(total, 2 * _nodes.length);
+            GObject[] previousNodes = new GObject[capacity];
+            System.arraycopy(_nodes, 0, previousNodes, 0, _nodes.length);
+            _nodes = previousNodes;
+            int[] bounds = new int[4 * capacity];
+            System.arraycopy(_bounds, 0, bounds, 0, _bounds.length);
+            _bounds = bounds;
+            long[] frames = new long[capacity];
+            System.arraycopy(_frames, 0, frames, 0, _frames.length);
+            _frames = frames;
+            double[] states = new double[7 * capacity];
+            System.arraycopy(_states, 0, states, 0, _states.length);
+            _states = states;
+            _newBounds = new int[4 * capacity];
+        }
+        if (_drawn.length < count)
+        {
+            // the nodes drawn at the last frame are still needed
+            int[] drawn = new int[Math.max(count, 2 * _drawn.length)];
+            System.arraycopy(_drawn, 0, drawn, 0, _drawnCount);
+            _drawn = drawn;
+        }
+        double[] positions = snapshot.getPositions();
+        double[] orientations = snapshot.getOrientations();
+        for (int index = 0; index < count; index++)
+        {
+            int node = nodes == null ? index : nodes[index];
+            GObject object = snapshot.getNode(node);
+            int b = 4 * node;
+            object.getDrawBounds(snapshot, node, _worldBounds);
+            _newBounds[b] = (int) Math.floor(
+                    (_worldBounds[0] - view[0]) * view[2]) - MARGIN;
+            _newBounds[b + 1] = (int) Math.floor(
+                    (_worldBounds[1] - view[1]) * view[2]) - MARGIN;
+            _newBounds[b + 2] = (int) Math.ceil(
+                    (_worldBounds[2] - view[0]) * view[2]) + MARGIN;
+            _newBounds[b + 3] = (int) Math.ceil(
+                    (_worldBounds[3] - view[1]) * view[2]) + MARGIN;
+            // drawn at the last frame with the same state
+            boolean drawn = _frames[node] == _frame - 1 &&
+                            _nodes[node] == object;
+            boolean moved = !drawn;
+            int s = 7 * node;
+            for (int value = 0; value < 3; value++)
+            {
+                moved |= _states[s + value] != positions[3 * node + value];
+                _states[s + value] = positions[3 * node + value];
+            }
+            for (int value = 0; value < 4; value++)
+            {
+                moved |= Math.abs(_states[s + 3 + value] -
+                                  orientations[4 * node + value]) > EPSILON;
+                _states[s + 3 + value] = orientations[4 * node + value];
+            }
+            for (int value = 0; value < 4; value++)
+            {
+                moved |= _bounds[b + value] != _newBounds[b + value];
+            }
+            if (!full && moved)
+            {
+                if (drawn)
+                {
+                    addRectangle(_bounds, b, width, height);
+                }
+                addRectangle(_newBounds, b, width, height);
+            }
+        }
+        // the nodes drawn at the last frame which are not drawn
+        // anymore
+        if (!full)
+        {
+            for (int index = 0; index < _drawnCount; index++)
+            {
+                int node = _drawn[index];
+                if (node >= total || snapshot.getNode(node) != _nodes[node] ||
+                    !isDrawn(nodes, count, node))
+                {
+                    addRectangle(_bounds, 4 * node, width, height);
+                }
+            }
+        }
+        // keep the rectangles for the next frame
+        for (int index = 0; index < count; index++)
+        {
+            int node = nodes == null ? index : nodes[index];
+            int b = 4 * node;
+            System.arraycopy(_newBounds, b, _bounds, b, 4);
+            _nodes[node] = snapshot.getNode(node);
+            _frames[node] = _frame;
+            _drawn[index] = node;
+        }
+        _drawnCount = count;
+    }
+
+    /**
+     * Return true if a node is in the nodes drawn.
+     * @param nodes int[] Nodes drawn in the order of the snapshot
+     * (null : all)
+     * @param count int
+     * @param node int
+     * @return boolean
+     */
+    private static boolean isDrawn(int[] nodes, int count, int node)
+    {
+        if (nodes == null)
+        {
+            return node < count;
+        }
+        return java.util.Arrays.binarySearch(nodes, 0, count, node) >= 0;
+    }
+
+    /**
+     * Add a dirty rectangle, merged with the dirty rectangles it
+     * overlaps.
+     * @param bounds int[] Rectangles
+     * @param offset int Offset of the rectangle in bounds
+     */
+    private void addRectangle(int[] bounds, int offset, int width, int height)
+    {
+        int x0 = Math.max(0, bounds[offset]);
+        int y0 = Math.max(0, bounds[offset + 1]);
+        int x1 = Math.min(width, bounds[offset + 2]);
+        int y1 = Math.min(height, bounds[offset + 3]);
+        if (x0 >= x1 || y0 >= y1)
+        {
+            return;
+        }
+        int merged = 0;
+        while (merged >= 0)
+        {
+            merged = -1;
+            for (int index = 0; index < _rectangleCount; index++)
+            {
+                int r = 4 * index;
+                if (x0 <= _rectangles[r + 2] && _rectangles[r] <= x1 &&
+                    y0 <= _rectangles[r + 3] && _rectangles[r + 1] <= y1)
+                {
+                    merged = index;
+                    break;
+                }
+            }
+            if (merged < 0 && _rectangleCount == MAX_RECTANGLES)
+            {
+                // too many rectangles : merged with the rectangle
+                // which grows the least
+                double least = Double.MAX_VALUE;
+                for (int index = 0; index < _rectangleCount; index++)
+                {
+                    int r = 4 * index;
+                    double growth = (double) (Math.max(x1,
+                            _rectangles[r + 2]) - Math.min(x0, _rectangles[r])) *
+                            (Math.max(y1, _rectangles[r + 3]) -
+                             Math.min(y0, _rectangles[r + 1])) -
+                            (double) (_rectangles[r + 2] - _rectangles[r]) *
+                            (_rectangles[r + 3] - _rectangles[r + 1]);
+                    if (growth < least)
+                    {
+                        least = growth;
+                        merged = index;
+                    }
+                }
+            }
+            if (merged >= 0)
+            {
+                // take the rectangle out and grow the new one
+                int r = 4 * merged;
+                x0 = Math.min(x0, _rectangles[r]);
+                y0 = Math.min(y0, _rectangles[r + 1]);
+                x1 = Math.max(x1, _rectangles[r + 2]);
+                y1 = Math.max(y1, _rectangles[r + 3]);
+                _rectangleCount--;
+                System.arraycopy(_rectangles, 4 * _rectangleCount,
+                                 _rectangles, r, 4);
+            }
+        }
+        int r = 4 * _rectangleCount++;
+        _rectangles[r] = x0;
+        _rectangles[r + 1] = y0;
+        _rectangles[r + 2] = x1;
+        _rectangles[r + 3] = y1;
+    }
+
+    /**
+     * Clear a rectangle of the buffer and draw the nodes crossing
+     * it.
+     */
+    private void drawRectangle(Graphics g, GInterpolatedSnapshot snapshot,
+                               int[] nodes, int count, double[] view, int r,
+                               Color background, boolean full)
+    {
+        int x0 = _rectangles[r], y0 = _rectangles[r + 1];
+        int x1 = _rectangles[r + 2], y1 = _rectangles[r + 3];
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setClip(x0, y0, x1 - x0, y1 - y0);
+        g2d.setColor(background);
+        g2d.fillRect(x0, y0, x1 - x0, y1 - y0);
+        g2d.scale(view[2], view[2]);
+        g2d.translate(-view[0], -view[1]);
+        for (int index = 0; index < count; index++)
+        {
+            int node = nodes == null ? index : nodes[index];
+            int b = 4 * node;
+            if (full || (_bounds[b] < x1 && x0 < _bounds[b + 2] &&
+                         _bounds[b + 1] < y1 && y0 < _bounds[b + 3]))
+            {
+                snapshot.getNode(node).draw(g2d, snapshot, node);
+            }
+        }
+        g2d.dispose();
+    }
+
+    /**
+     * Return the number of frames drawn entirely.
+     * @return long
+     */
+    public long getFullFrameCount()
+    {
+        return _fullFrames;
+    }
+
+    /**
+     * Return the number of frames of which only the dirty
+     * rectangles were drawn.
+     * @return long
+     */
+    public long getPartialFrameCount()
+    {
+        return _partialFrames;
+    }
+
+    /**
+     * Return the part of the buffer drawn at the last frame.
+     * @return double Between 0 and 1
+     */
+    public double getLastDirtyRatio()
+    {
+        return _lastDirtyRatio;
+    }
+
+    /**
+     * Return the number of rectangles drawn at the last frame.
+     * @return int
+     */
+    public int getLastRectangleCount()
+    {
+        return _rectangleCount;
+    }
+}
@@ -0,0 +1,171 @@
+package com.jslabs.gophysicengine.renderer;
+
+import com.jslabs.gophysicengine.simulation.GLatencyHistogram;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Statistics on the frames drawn by a renderer : time spent drawing each
+ * frame and time between two frames, averaged over the last frames and
+ * counted in histograms since the last reset (percentiles). The
+ * statistics are written by the rendering thread and may be read from any
+ * thread.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GFrameStatistics
+{
+    /**
+     * Number of frames averaged.
+     */
+    public final static int WINDOW = 120;
+
+    // times of the last frames (ns), in a ring
+    private long[] _renderTimes = new long[WINDOW];
+    private long[] _frameTimes = new long[WINDOW];
+    private int _next;
+    private int _count;
+    // total number of frames
+    private long _frameCount;
+    // start of the last frame (ns)
+    private long _lastStart;
+    // longest time spent drawing a frame (ns)
+    private long _maxRenderTime;
+    // all the times since the last reset
+    private GLatencyHistogram _renderHistogram = new GLatencyHistogram();
+    private GLatencyHistogram _frameHistogram = new GLatencyHistogram();
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Record a frame.
+     * @param start long Time the frame started to be drawn (System.nanoTime)
+     * @param end long Time the frame was shown
+     */
+    public synchronized void addFrame(long start, long end)
+    {
+        long renderTime = end - start;
+        _renderTimes[_next] = renderTime;
+        _frameTimes[_next] = _lastStart == 0 ? renderTime : start - _lastStart;
+        _next = (_next + 1) % WINDOW;
+        _count = Math.min(_count + 1, WINDOW);
+        _renderHistogram.record(renderTime);
+        if (_lastStart != 0)
+        {
+            _frameHistogram.record(start - _lastStart);
+        }
+        _lastStart = start;
+        _maxRenderTime = Math.max(_maxRenderTime, renderTime);
+        _frameCount++;
+    }
+
+    /**
+     * Return the number of frames drawn.
+     * @return long
+     */
+    public synchronized long getFrameCount()
+    {
+        return _frameCount;
+    }
+
+    /**
+     * Return the average time spent drawing a frame.
+     * @return double Time in ms
+     */
+    public synchronized double getAverageRenderTime()
+    {
+        return average(_renderTimes);
+    }
+
+    /**
+     * Return the longest time spent drawing a frame since the last
+     * reset.
+     * @return double Time in ms
+     */
+    public synchronized double getMaxRenderTime()
+    {
+        return _maxRenderTime / 1e6;
+    }
+
+    /**
+     * Return the average time between two frames.
+     * @return double Time in ms
+     */
+    public synchronized double getAverageFrameTime()
+    {
+        return average(_frameTimes);
+    }
+
+    /**
+     * Return the histogram of the time spent drawing a frame.
+     * @return GLatencyHistogram
+     */
+    public GLatencyHistogram getRenderTimeHistogram()
+    {
+        return _renderHistogram;
+    }
+
+    /**
+     * Return the histogram of the time between two frames.
+     * @return GLatencyHistogram
+     */
+    public GLatencyHistogram getFrameTimeHistogram()
+    {
+        return _frameHistogram;
+    }
+
+    /**
+     * Return the number of frames drawn per second.
+     * @return double
+     */
+    public synchronized double getFramesPerSecond()
+    {
+        double frameTime = average(_frameTimes);
+        return frameTime == 0 ? 0.0 : 1000.0 / frameTime;
+    }
+
+    /**
+     * Forget the frames recorded.
+     */
+    public synchronized void reset()
+    {
+        _next = 0;
+        _count = 0;
+        _frameCount = 0;
+        _lastStart = 0;
+        _maxRenderTime = 0;
+        _renderHistogram.reset();
+        _frameHistogram.reset();
+    }
+
+    // average of the recorded times in ms
+    private double average(long[] times)
+    {
+        if (_count == 0)
+        {
+            return 0.0;
+        }
+        long sum = 0;
+        for (int index = 0; index < _count; index++)
+        {
+            sum += times[index];
+        }
+        return sum / 1e6 / _count;
+    }
+
+    /**
+     * Return the statistics as a text.
+     * @return String
+     */
+    public synchronized String toString()
+    {
+        return "frames=" + _frameCount + " fps=" +
+                Math.round(getFramesPerSecond()) + " render=" +
+                getAverageRenderTime() + " ms (p99 " +
+                _renderHistogram.getPercentile(99) + " ms, max " +
+                getMaxRenderTime() + " ms)";
+    }
+}
@@ -0,0 +1,383 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.*;
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Renderer without display : the objects are drawn in images, at a rate
+ * given in time of the scene, and the images are handed to a sink (PNG
+ * files, raw video stream...) by a pool of encoding threads. Added as a step
+ * listener of a scene, it draws on the thread of the scene, which only pays
+ * for the drawing : the encoding is done by the other threads.</p>
+ * <p>The images are taken from a fixed pool : when the encoders are late and
+ * no image is free, the scene waits for them, so that no frame is lost and
+ * the memory is bounded.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GOffscreenRenderer
+        implements IGStepListener
+{
+    private int _width;
+    private int _height;
+    private Color _background = Color.white;
+    private IGFrameSink _sink;
+
+    /**
+     * Software rasterizer drawing the frames, or null to draw
+     * them with the Graphics of the images.
+     */
+    private GTileRasterizer _rasterizer;
+
+    /**
+     * Batches drawing the frames, or null to draw each node on
+     * its own.
+     */
+    private GShapeBatch _shapeBatch;
+
+    /**
+     * Part of the scene drawn, or null to draw the whole scene.
+     */
+    private GViewport _viewport;
+
+    /**
+     * State of the nodes drawn without a viewport nor batches.
+     */
+    private GInterpolatedSnapshot _interpolated = new GInterpolatedSnapshot();
+
+    /**
+     * Time of the scene between two frames (0 to draw a frame
+     * at each step) and time of the next frame.
+     */
+    private double _framePeriod;
+    private double _nextFrameTime;
+
+    /**
+     * Images not used by an encoder, and encoding threads.
+     */
+    private ArrayBlockingQueue _freeImages;
+    private ExecutorService _encoders;
+    private long _frameCount;
+
+    /**
+     * First error of the encoders, thrown by close().
+     */
+    private volatile IOException _error;
+
+    /**
+     * Time given to the encoders to write the frames left when the
+     * renderer is closed (ms).
+     */
+    private long _closeTimeout = 60000;
+
+    /**
+     * Statistics on the frames drawn (time spent by the thread
+     * of the scene, waiting for a free image included).
+     */
+    private GFrameStatistics _statistics = new GFrameStatistics();
+
+///////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Encoding of a frame.
+     */
+    class EncodeTask
+            implements Runnable
+    {
+        private long _index;
+        private double _time;
+        private BufferedImage _image;
+
+        EncodeTask(long index, double time, BufferedImage image)
+        {
+            _index = index;
+            _time = time;
+            _image = image;
+        }
+
+        public void run()
+        {
+            try
+            {
+                _sink.writeFrame(_index, _time, _image);
+            }
+            catch (IOException e)
+            {
+                if (_error == null)
+                {
+                    _error = e;
+                }
+            }
+            finally
+            {
+                _freeImages.offer(_image);
+            }
+        }
+    }
+
+    /**
+     * Daemon threads of the encoders.
+     */
+    class EncoderFactory
+            implements ThreadFactory
+    {
+        private int _count;
+
+        public synchronized Thread newThread(Runnable task)
+        {
+            Thread thread = new Thread(task, "GOffscreenRenderer-" + _count++);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+	/**
+	 * Build an offscreen renderer.
+	 * @param width int Width of the images
+	 * @param height int Height of the images
+	 * @param sink IGFrameSink Writer of the frames
+	 * @param encoders int Number of encoding threads
+	 * @throws IllegalArgumentException If a dimension or the number
+	 * of encoders is not positive.
+	 */
+    public GOffscreenRenderer(int width, int height, IGFrameSink sink,
+                              int encoders)
+            throws IllegalArgumentException
+    {
+        if (width <= 0 || height <= 0 || encoders <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "Dimensions and encoders must be positive.");
+        }
+        _width = width;
+        _height = height;
+        _sink = sink;
+        // an image drawn while each encoder encodes one
+        _freeImages = new ArrayBlockingQueue(encoders + 1);
+        for (int index = 0; index <= encoders; index++)
+        {
+            _freeImages.offer(new BufferedImage(width, height,
+                                                BufferedImage.TYPE_INT_RGB));
+        }
+        _encoders = Executors.newFixedThreadPool(encoders,
+                                                 new EncoderFactory());
+    }
+
+	/**
+	 * Define the number of frames drawn per second of time of
+	 * the scene.
+	 * @param framesPerSecond double Rate (0 to draw a frame at
+	 * each step)
+	 */
+    public void setFrameRate(double framesPerSecond)
+    {
+        _framePeriod = framesPerSecond <= 0 ? 0 : 1.0 / framesPerSecond;
+    }
+
+	/**
+	 * Define the rasterizer drawing the frames : scenes of many
+	 * bodies are drawn faster by a GTileRasterizer than with the
+	 * Graphics of the images.
+	 * @param rasterizer GTileRasterizer Null to draw with the
+	 * Graphics of the images
+	 */
+    public void setRasterizer(GTileRasterizer rasterizer)
+    {
+        _rasterizer = rasterizer;
+    }
+
+	/**
+	 * Define the batches drawing the frames : the nodes add their
+	 * primitives to paths filled or drawn once per color. Not
+	 * used with a rasterizer.
+	 * @param shapeBatch GShapeBatch Null to draw each node on its
+	 * own
+	 */
+    public void setShapeBatch(GShapeBatch shapeBatch)
+    {
+        _shapeBatch = shapeBatch;
+    }
+
+	/**
+	 * Define the part of the scene drawn : the nodes outside of
+	 * the view of its camera are not drawn and the small ones
+	 * are drawn as points.
+	 * @param viewport GViewport Null to draw the whole scene
+	 */
+    public void setViewport(GViewport viewport)
+    {
+        _viewport = viewport;
+    }
+
+	/**
+	 * Define the time given to the encoders to write the frames
+	 * left when the renderer is closed (default 60 s).
+	 * @param milliseconds long
+	 */
+    public void setCloseTimeout(long milliseconds)
+    {
+        _closeTimeout = milliseconds;
+    }
+
+	/**
+	 * Define the color of the background.
+	 * @param background Color
+	 */
+    public void setBackground(Color background)
+    {
+        _background = background;
+    }
+
+	/**
+	 * Draw a frame if it is time to.
+	 * @param scene GScene
+	 * @param snapshot GSceneSnapshot
+	 */
+    public void stepCompleted(GScene scene, GSceneSnapshot snapshot)
+    {
+        double time = snapshot.getTime();
+        if (_framePeriod > 0)
+        {
+            // tolerance for the rounding of the time of the steps
+            if (time < _nextFrameTime - 1e-9 * _framePeriod)
+            {
+                return;
+            }
+            // the frames between two steps are not drawn
+            _nextFrameTime += _framePeriod *
+                    (Math.floor((time - _nextFrameTime) / _framePeriod +
+                                1e-9) + 1);
+        }
+        render(snapshot);
+    }
+
+	/**
+	 * Draw a frame of a snapshot and hand it to the encoders.
+	 * @param snapshot GSceneSnapshot
+	 * @throws IllegalStateException If the renderer has been closed.
+	 */
+    public void render(GSceneSnapshot snapshot)
+            throws IllegalStateException
+    {
+        if (_encoders.isShutdown())
+        {
+            throw new IllegalStateException("Renderer closed.");
+        }
+        long start = System.nanoTime();
+        BufferedImage image;
+        try
+        {
+            // wait for the encoders if they are late
+            image = (BufferedImage) _freeImages.take();
+        }
+        catch (InterruptedException e)
+        {
+            // the frame is not drawn
+            Thread.currentThread().interrupt();
+            return;
+        }
+        Graphics2D g = image.createGraphics();
+        if (_rasterizer != null)
+        {
+            _rasterizer.setSize(_width, _height);
+            _rasterizer.setBackground(_background);
+            _rasterizer.render(snapshot, 1.0, _viewport);
+            _rasterizer.drawTo(g);
+            if (_viewport != null)
+            {
+                _viewport.drawDensity(g);
+            }
+        }
+        else
+        {
+            g.setColor(_background);
+            g.fillRect(0, 0, _width, _height);
+            if (_shapeBatch != null)
+            {
+                _shapeBatch.draw(g, snapshot, 1.0, _viewport, _width,
+                                 _height);
+            }
+            else if (_viewport != null)
+            {
+                _viewport.draw(g, snapshot, 1.0, _width, _height);
+            }
+            else
+            {
+                _interpolated.interpolate(snapshot, 1.0);
+                _interpolated.draw(g);
+            }
+        }
+        g.dispose();
+        _encoders.execute(new EncodeTask(_frameCount++, snapshot.getTime(),
+                                         image));
+        _statistics.addFrame(start, System.nanoTime());
+    }
+
+	/**
+	 * Wait for the frames to be encoded and close the sink. The
+	 * frames not written after the close timeout (see
+	 * setCloseTimeout()), or when the calling thread is
+	 * interrupted, are abandoned : the encoders are interrupted
+	 * and the sink is closed.
+	 * @throws IOException If a frame could not be written.
+	 */
+    public void close()
+            throws IOException
+    {
+        _encoders.shutdown();
+        try
+        {
+            if (!_encoders.awaitTermination(_closeTimeout,
+                                            TimeUnit.MILLISECONDS))
+            {
+                _encoders.shutdownNow();
+                if (_error == null)
+                {
+                    _error = new IOException("Frames not written after " +
+                                             _closeTimeout + " ms.");
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            _encoders.shutdownNow();
+            Thread.currentThread().interrupt();
+            if (_error == null)
+            {
+                _error = new InterruptedIOException();
+            }
+        }
+        _sink.close();
+        if (_error != null)
+        {
+            throw _error;
+        }
+    }
+
+	/**
+	 * Return the number of frames drawn.
+	 * @return long
+	 */
+    public long getFrameCount()
+    {
+        return _frameCount;
+    }
+
+	/**
+	 * Return the statistics on the frames drawn.
+	 * @return GFrameStatistics
+	 */
+    public GFrameStatistics getFrameStatistics()
+    {
+        return _statistics;
+    }
+}
@@ -0,0 +1,68 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Writes each frame in its own PNG file, named by the number of the frame
+ * (prefix000000.png, prefix000001.png...). The files are independent, so the
+ * frames are encoded in parallel.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GPngFrameSink
+        implements IGFrameSink
+{
+    private File _directory;
+    private String _prefix;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build a sink writing in a directory, created if needed.
+     * @param directory File
+     * @param prefix String Beginning of the names of the files
+     * @throws IOException If the directory cannot be created.
+     */
+    public GPngFrameSink(File directory, String prefix)
+            throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create " + directory);
+        }
+        _directory = directory;
+        _prefix = prefix;
+    }
+
+    /**
+     * Return the file of a frame.
+     * @param index long Number of the frame
+     * @return File
+     */
+    public File getFile(long index)
+    {
+        return new File(_directory, _prefix + String.format("%06d", index) +
+                        ".png");
+    }
+
+    public void writeFrame(long index, double time, BufferedImage image)
+            throws IOException
+    {
+        if (!ImageIO.write(image, "png", getFile(index)))
+        {
+            throw new IOException("No PNG encoder.");
+        }
+    }
+
+    public void close()
+    {
+    }
+}
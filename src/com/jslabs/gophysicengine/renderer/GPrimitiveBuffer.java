@@ -0,0 +1,256 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.Color;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Primitives of a frame drawn by a GTileRasterizer : filled boxes and
+ * ellipses (possibly rotated) and lines, in pixels. The objects add their
+ * primitives as they would draw them on a Graphics, with a current color and
+ * a current transformation (translation and rotation around a point),
+ * followed by the transformation of the view (zoom and translation). The
+ * primitives are kept in arrays reused from a frame to another (no object
+ * per primitive), with their bounds in pixels.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GPrimitiveBuffer
+{
+    /**
+     * Types of primitives.
+     */
+    final static int BOX = 0;
+    final static int ELLIPSE = 1;
+    final static int LINE = 2;
+
+    /**
+     * Values per primitive : center, half sizes, cosine and sine
+     * of the angle for a box or an ellipse; both ends for a line.
+     */
+    final static int VALUES = 6;
+
+    int _count;
+    int[] _types = new int[256];
+    int[] _colors = new int[256];
+    double[] _values = new double[VALUES * 256];
+    // bounds in pixels (minimum x, minimum y, maximum x, maximum y)
+    int[] _bounds = new int[4 * 256];
+
+    // current color and transformation
+    private int _color = 0xff000000;
+    private double _tx, _ty;
+    private double _cos = 1.0, _sin;
+    private double _pivotX, _pivotY;
+    // transformation of the view
+    private double _viewScale = 1.0;
+    private double _viewX, _viewY;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Remove all the primitives.
+     */
+    public void clear()
+    {
+        _count = 0;
+    }
+
+    /**
+     * Return the number of primitives.
+     * @return int
+     */
+    public int getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Define the color of the next primitives.
+     * @param color Color
+     */
+    public void setColor(Color color)
+    {
+        _color = color.getRGB();
+    }
+
+    /**
+     * Define the transformation of the view, applied after the
+     * transformation of the primitives : a point (x, y) is drawn
+     * at (x * scale + dx, y * scale + dy).
+     * @param scale double Zoom
+     * @param dx double Translation (pixels)
+     * @param dy double
+     */
+    public void setView(double scale, double dx, double dy)
+    {
+        _viewScale = scale;
+        _viewX = dx;
+        _viewY = dy;
+    }
+
+    /**
+     * Define the transformation of the next primitives : a
+     * rotation around a point, then a translation (as the
+     * transformations of G2DObject.draw()).
+     * @param tx double Translation
+     * @param ty double
+     * @param angle double Angle of the rotation
+     * @param pivotX double Center of the rotation
+     * @param pivotY double
+     */
+    public void setTransform(double tx, double ty, double angle,
+                             double pivotX, double pivotY)
+    {
+        _tx = tx;
+        _ty = ty;
+        _cos = angle == 0 ? 1.0 : Math.cos(angle);
+        _sin = angle == 0 ? 0.0 : Math.sin(angle);
+        _pivotX = pivotX;
+        _pivotY = pivotY;
+    }
+
+    /**
+     * Fill a rectangle (as Graphics.fillRect()).
+     * @param x double Corner
+     * @param y double
+     * @param width double
+     * @param height double
+     */
+    public void fillRect(double x, double y, double width, double height)
+    {
+        if (width > 0 && height > 0)
+        {
+            add(BOX, x + 0.5 * width, y + 0.5 * height, 0.5 * width,
+                0.5 * height);
+        }
+    }
+
+    /**
+     * Fill an ellipse in a rectangle (as Graphics.fillOval()).
+     * @param x double Corner of the rectangle
+     * @param y double
+     * @param width double
+     * @param height double
+     */
+    public void fillOval(double x, double y, double width, double height)
+    {
+        if (width > 0 && height > 0)
+        {
+            add(ELLIPSE, x + 0.5 * width, y + 0.5 * height, 0.5 * width,
+                0.5 * height);
+        }
+    }
+
+    /**
+     * Draw a line one pixel wide (as Graphics.drawLine()).
+     * @param x0 double First end
+     * @param y0 double
+     * @param x1 double Second end
+     * @param y1 double
+     */
+    public void drawLine(double x0, double y0, double x1, double y1)
+    {
+        int index = reserve(LINE);
+        int offset = VALUES * index;
+        _values[offset] = transformX(x0, y0);
+        _values[offset + 1] = transformY(x0, y0);
+        _values[offset + 2] = transformX(x1, y1);
+        _values[offset + 3] = transformY(x1, y1);
+        int bounds = 4 * index;
+        _bounds[bounds] = (int) Math.floor(
+                Math.min(_values[offset], _values[offset + 2]));
+        _bounds[bounds + 1] = (int) Math.floor(
+                Math.min(_values[offset + 1], _values[offset + 3]));
+        _bounds[bounds + 2] = (int) Math.ceil(
+                Math.max(_values[offset], _values[offset + 2]));
+        _bounds[bounds + 3] = (int) Math.ceil(
+                Math.max(_values[offset + 1], _values[offset + 3]));
+    }
+
+    /**
+     * Add a box or an ellipse.
+     * @param type int BOX or ELLIPSE
+     * @param x double Center before the transformation
+     * @param y double
+     * @param halfWidth double
+     * @param halfHeight double
+     */
+    private void add(int type, double x, double y, double halfWidth,
+                     double halfHeight)
+    {
+        int index = reserve(type);
+        int offset = VALUES * index;
+        double cx = transformX(x, y);
+        double cy = transformY(x, y);
+        _values[offset] = cx;
+        _values[offset + 1] = cy;
+        halfWidth *= _viewScale;
+        halfHeight *= _viewScale;
+        _values[offset + 2] = halfWidth;
+        _values[offset + 3] = halfHeight;
+        _values[offset + 4] = _cos;
+        _values[offset + 5] = _sin;
+        // half extents of the rotated primitive
+        double ex, ey;
+        if (type == BOX)
+        {
+            ex = Math.abs(_cos) * halfWidth + Math.abs(_sin) * halfHeight;
+            ey = Math.abs(_sin) * halfWidth + Math.abs(_cos) * halfHeight;
+        }
+        else
+        {
+            ex = Math.hypot(_cos * halfWidth, _sin * halfHeight);
+            ey = Math.hypot(_sin * halfWidth, _cos * halfHeight);
+        }
+        int bounds = 4 * index;
+        _bounds[bounds] = (int) Math.floor(cx - ex);
+        _bounds[bounds + 1] = (int) Math.floor(cy - ey);
+        _bounds[bounds + 2] = (int) Math.ceil(cx + ex);
+        _bounds[bounds + 3] = (int) Math.ceil(cy + ey);
+    }
+
+    /**
+     * Add a primitive of the current color.
+     * @param type int
+     * @return int Index of the primitive
+     */
+    private int reserve(int type)
+    {
+        if (_count == _types.length)
+        {
+            int capacity = 2 * _count;
+            _types = copy(_types, capacity);
+            _colors = copy(_colors, capacity);
+            _bounds = copy(_bounds, 4 * capacity);
+            double[] values = new double[VALUES * capacity];
+            System.arraycopy(_values, 0, values, 0, _values.length);
+            _values = values;
+        }
+        _types[_count] = type;
+        _colors[_count] = _color;
+        return _count++;
+    }
+
+    private static int[] copy(int[] array, int length)
+    {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private double transformX(double x, double y)
+    {
+        return _viewX + _viewScale *
+                (_tx + _pivotX + _cos * (x - _pivotX) - _sin * (y - _pivotY));
+    }
+
+    private double transformY(double x, double y)
+    {
+        return _viewY + _viewScale *
+                (_ty + _pivotY + _sin * (x - _pivotX) + _cos * (y - _pivotY));
+    }
+}
@@ -0,0 +1,118 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Writes the frames in a stream of raw pixels, 3 bytes (red, green, blue)
+ * per pixel, row by row, without header : the format read by video encoders
+ * as "rgb24" (ffmpeg -f rawvideo -pix_fmt rgb24 -s WxH -i -). The pixels are
+ * converted by the encoding threads in parallel, the frames are written in
+ * their order.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GRawFrameSink
+        implements IGFrameSink
+{
+    private OutputStream _out;
+    // number of the next frame to write
+    private long _next;
+    // first frame which could not be written (-1 if none) : the
+    // frames after it are not written, the stream would be shifted
+    private long _failedFrame = -1;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build a sink writing in a stream.
+     * @param out OutputStream
+     */
+    public GRawFrameSink(OutputStream out)
+    {
+        _out = out;
+    }
+
+    /**
+     * Write a frame once the previous ones have been written. If
+     * a frame is not written (error, encoder interrupted while
+     * waiting), the frames after it fail instead of waiting for it
+     * forever.
+     * @param index long Number of the frame
+     * @param time double Time of the scene
+     * @param image BufferedImage
+     * @throws IOException If the frame or a previous one could not
+     * be written.
+     */
+    public void writeFrame(long index, double time, BufferedImage image)
+            throws IOException
+    {
+        boolean written = false;
+        try
+        {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int[] row = new int[width];
+            byte[] bytes = new byte[3 * width * height];
+            for (int y = 0; y < height; y++)
+            {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                int offset = 3 * width * y;
+                for (int x = 0; x < width; x++)
+                {
+                    int rgb = row[x];
+                    bytes[offset++] = (byte) (rgb >> 16);
+                    bytes[offset++] = (byte) (rgb >> 8);
+                    bytes[offset++] = (byte) rgb;
+                }
+            }
+            synchronized (this)
+            {
+                // the previous frames are written first
+                while (_next != index)
+                {
+                    if (_failedFrame >= 0 && _failedFrame < index)
+                    {
+                        throw new IOException("Frame " + _failedFrame +
+                                              " could not be written.");
+                    }
+                    wait();
+                }
+                _out.write(bytes);
+                written = true;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            throw new InterruptedIOException();
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                if (written)
+                {
+                    _next++;
+                }
+                else if (_failedFrame < 0 || index < _failedFrame)
+                {
+                    _failedFrame = index;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    public void close()
+            throws IOException
+    {
+        _out.close();
+    }
+}
@@ -1,103 +1,612 @@
-package com.jslabs.gophysicengine.renderer;
-
-import java.util.*;
-import java.awt.*;
-import java.awt.image.*;
-import com.jslabs.gophysicengine.simulation.*;
-
-/**
- * <p>Title: Go! PhysicEngine</p>
- *
- * <p>Description: Moteur physique permettant la simulation de la dynamique des
- * corps rigides.</p>
- * <p>This class displays GObjects on a double buffered canvas. Optimisation have
- * been made in order to increase display performance through the use of VolatileImage
- * class.</p>
- *
- * <p>Copyright: Copyright (c) 2006</p>
- *
- * <p>Company: </p>
- *
- * @author Jerome Schmaltz
- * @version 1.0
- */
-public class GRenderer
-        extends Canvas
-{
-	/**
-	 * Virtual image.
-	 */
-    private VolatileImage _vImg;
-
-    /**
-     * Collection of objects to render.
-     */
-    private Vector _nodes;
-
-///////////////////////////////////////////////////////////////////////////////
-
-	/**
-	 * Defaut overloaded method for painting the objects
-	 * on the canvas.
-	 */
-    public synchronized void paint(Graphics g)
-    {
-		// only if the collection is not empty
-        if( _nodes != null && !_nodes.isEmpty() )
-        {
-			// create a back buffer (replace the virtal image)
-            createBackBuffer();
-            do
-            {
-				// make sure the virtual image is still available
-                if (_vImg.validate(getGraphicsConfiguration()) ==
-                    VolatileImage.IMAGE_INCOMPATIBLE)
-                {
-                    createBackBuffer();
-                }
-				// create an offscreen image to paint on
-                Graphics offScreenG = _vImg.getGraphics();
-                for (int index = 0; index < (_nodes.isEmpty() ? 0 : _nodes.size());
-                                 index++)
-                {
-					// all GObject has its own method for painting...
-                    ((GObject) _nodes.get(index)).draw(offScreenG);
-                }
-                // draw the offscreen image to the onscreen image
-                // (swap buffers)
-                g.drawImage(_vImg, 0, 0, this);
-            }
-            while (_vImg.contentsLost());
-        }
-    }
-
-	/**
-	 * Create a new compatible volatile image with
-	 * the dimension of the current canvas.
-	 */
-    private void createBackBuffer()
-    {
-        _vImg = getGraphicsConfiguration().createCompatibleVolatileImage(
-                getWidth(), getHeight());
-    }
-
-	/**
-	 * Update method calls automatically
-	 * the paint function.
-	 */
-    public void update(Graphics g)
-    {
-        paint(g);
-    }
-
-	/**
-	 * This method is called by a GScene object to
-	 * update the new objet's coordinates on the
-	 * canvas.
-	 */
-    public void setObjects(Vector nodes)
-    {
-        _nodes = nodes;
-        repaint();
-    }
-}
+package com.jslabs.gophysicengine.renderer;
+
+import java.util.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.*;
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class displays GObjects on a double buffered canvas. Optimisation have
+ * been made in order to increase display performance through the use of VolatileImage
+ * class.</p>
+ * <p>The canvas is either painted by AWT (passive rendering : each call to
+ * setObjects() asks for a repaint, the back buffer is kept from a paint to
+ * another and only recreated when the canvas is resized or its contents are
+ * lost) or by its own thread (active rendering : startActiveRendering() draws
+ * the frames at a fixed rate in a BufferStrategy, without going through the
+ * event queue). The time spent on the frames is recorded in both modes.</p>
+ *
+ * <p>Copyright: Copyright (c) 2006</p>
+ *
+ * <p>Company: </p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GRenderer
+        extends Canvas
+{
+	/**
+	 * Virtual image.
+	 */
+    private VolatileImage _vImg;
+
+    /**
+     * Collection of objects to render.
+     */
+    private volatile Vector _nodes;
+
+    /**
+     * Snapshots of the objects to render, used instead of the
+     * collection when they are defined.
+     */
+    private volatile GSnapshotBuffer _snapshots;
+
+    /**
+     * State of the objects drawn from a snapshot without a
+     * viewport nor batches.
+     */
+    private GInterpolatedSnapshot _interpolated = new GInterpolatedSnapshot();
+
+    /**
+     * Software rasterizer drawing the snapshots, or null to draw
+     * them with the Graphics of the canvas.
+     */
+    private volatile GTileRasterizer _rasterizer;
+
+    /**
+     * Batches drawing the snapshots with a call per color, or null
+     * to draw each object with its own transformation and colors.
+     */
+    private volatile GShapeBatch _shapeBatch;
+
+    /**
+     * Part of the scene drawn, or null to draw the whole scene,
+     * and listener of the mouse moving its camera.
+     */
+    private volatile GViewport _viewport;
+    private Navigation _navigation;
+
+    /**
+     * Regions of the back buffer drawn again, or null to draw
+     * the whole back buffer at each frame.
+     */
+    private volatile GDirtyRegions _dirtyRegions;
+
+    /**
+     * Active rendering : buffers of the canvas, rendering
+     * thread and scheduler of the frames (null to draw the
+     * frames as fast as possible).
+     */
+    private BufferStrategy _strategy;
+    private Thread _renderThread;
+    private volatile boolean _rendering;
+    private GFrameScheduler _frameScheduler;
+
+    /**
+     * Statistics on the frames drawn.
+     */
+    private GFrameStatistics _statistics = new GFrameStatistics();
+
+///////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Loop of the rendering thread.
+     */
+    class RenderLoop
+            implements Runnable
+    {
+        public void run()
+        {
+            try
+            {
+                GFrameScheduler scheduler = _frameScheduler;
+                if (scheduler != null)
+                {
+                    scheduler.start();
+                }
+                while (_rendering)
+                {
+                    long start = System.nanoTime();
+                    renderFrame();
+                    _statistics.addFrame(start, System.nanoTime());
+                    if (scheduler == null)
+                    {
+                        Thread.yield();
+                    }
+                    else if (scheduler.waitForNextTick() == 0)
+                    {
+                        // interrupted (the missed frames are not drawn)
+                        return;
+                    }
+                }
+            }
+            finally
+            {
+                // stopped, interrupted or failed : the canvas is
+                // painted by AWT again and the active rendering can
+                // be started again
+                endActiveRendering();
+            }
+        }
+    }
+
+    /**
+     * Move the camera of the viewport with the mouse : a drag
+     * pans the view, the wheel zooms around the pointer.
+     */
+    class Navigation
+            extends MouseAdapter
+    {
+        private int _x, _y;
+
+        public void mousePressed(MouseEvent e)
+        {
+            _x = e.getX();
+            _y = e.getY();
+        }
+
+        public void mouseDragged(MouseEvent e)
+        {
+            GViewport viewport = _viewport;
+            if (viewport != null)
+            {
+                viewport.getCamera().pan(e.getX() - _x, e.getY() - _y);
+                changed();
+            }
+            _x = e.getX();
+            _y = e.getY();
+        }
+
+        public void mouseWheelMoved(MouseWheelEvent e)
+        {
+            GViewport viewport = _viewport;
+            if (viewport != null)
+            {
+                double factor = Math.pow(1.1, -e.getPreciseWheelRotation());
+                viewport.getCamera().zoom(factor, e.getX(), e.getY());
+                changed();
+            }
+        }
+
+        // the active rendering draws the next frame anyway
+        private void changed()
+        {
+            if (!_rendering)
+            {
+                repaint();
+            }
+        }
+    }
+
+	/**
+	 * Defaut overloaded method for painting the objects
+	 * on the canvas. Nothing is painted by AWT during an
+	 * active rendering.
+	 */
+    public synchronized void paint(Graphics g)
+    {
+		// only if the collection is not empty
+        if( _renderThread == null && (_snapshots != null ||
+            (_nodes != null && !_nodes.isEmpty())) )
+        {
+            long start = System.nanoTime();
+            do
+            {
+                drawBackBuffer();
+                // draw the offscreen image to the onscreen image
+                // (swap buffers)
+                g.drawImage(_vImg, 0, 0, this);
+            }
+            while (_vImg.contentsLost());
+            _statistics.addFrame(start, System.nanoTime());
+        }
+    }
+
+	/**
+	 * Draw the objects on the back buffer, which is kept from
+	 * a frame to another : it is only replaced when it has been
+	 * lost or when the canvas has been resized.
+	 */
+    private void drawBackBuffer()
+    {
+        // make sure the virtual image is still available
+        int status = VolatileImage.IMAGE_INCOMPATIBLE;
+        if (_vImg != null && _vImg.getWidth() == getWidth() &&
+            _vImg.getHeight() == getHeight())
+        {
+            status = _vImg.validate(getGraphicsConfiguration());
+        }
+        GDirtyRegions dirtyRegions = _dirtyRegions;
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE)
+        {
+            createBackBuffer();
+        }
+        if (status != VolatileImage.IMAGE_OK && dirtyRegions != null)
+        {
+            // the previous frame is not in the buffer anymore
+            dirtyRegions.invalidate();
+        }
+        // create an offscreen image to paint on
+        Graphics offScreenG = _vImg.getGraphics();
+        drawNodes(offScreenG);
+        offScreenG.dispose();
+    }
+
+	/**
+	 * Draw the objects on a buffer.
+	 * @param g Graphics Graphics of the buffer
+	 */
+    private void drawNodes(Graphics g)
+    {
+        Color background = getBackground();
+        if (background == null)
+        {
+            background = Color.white;
+        }
+        GSnapshotBuffer snapshots = _snapshots;
+        GDirtyRegions dirtyRegions = _dirtyRegions;
+        if (snapshots != null && dirtyRegions != null &&
+            _rasterizer == null && _shapeBatch == null)
+        {
+            // only the regions where the objects moved are drawn
+            // again over the previous frame
+            GSceneSnapshot snapshot = snapshots.acquire();
+            dirtyRegions.draw(g, snapshot, snapshot.getInterpolationFactor(
+                    System.nanoTime()), _viewport, getWidth(), getHeight(),
+                              background);
+            return;
+        }
+        if (dirtyRegions != null)
+        {
+            dirtyRegions.invalidate();
+        }
+        g.setColor(background);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (snapshots != null)
+        {
+            // the snapshot is not changed by the scene while it is
+            // drawn; the objects are drawn between the last two steps
+            // when the frames are drawn faster than the steps.
+            GSceneSnapshot snapshot = snapshots.acquire();
+            double alpha = snapshot.getInterpolationFactor(System.nanoTime());
+            GTileRasterizer rasterizer = _rasterizer;
+            if (rasterizer != null)
+            {
+                // the pixels are computed by the rasterizer and
+                // drawn at once
+                rasterizer.setSize(getWidth(), getHeight());
+                rasterizer.setBackground(background);
+                GViewport viewport = _viewport;
+                rasterizer.render(snapshot, alpha, viewport);
+                rasterizer.drawTo(g);
+                if (viewport != null)
+                {
+                    viewport.drawDensity(g);
+                }
+                return;
+            }
+            GViewport viewport = _viewport;
+            GShapeBatch shapeBatch = _shapeBatch;
+            if (shapeBatch != null)
+            {
+                // the objects of a color are drawn at once
+                shapeBatch.draw(g, snapshot, alpha, viewport, getWidth(),
+                                getHeight());
+                return;
+            }
+            if (viewport != null)
+            {
+                // only the visible nodes are drawn
+                viewport.draw(g, snapshot, alpha, getWidth(), getHeight());
+                return;
+            }
+            _interpolated.interpolate(snapshot, alpha);
+            _interpolated.draw(g);
+            return;
+        }
+        Vector nodes = _nodes;
+        if (nodes == null)
+        {
+            return;
+        }
+        for (int index = 0; index < nodes.size(); index++)
+        {
+			// all GObject has its own method for painting...
+            ((GObject) nodes.get(index)).draw(g);
+        }
+    }
+
+	/**
+	 * Draw a frame in the buffers of the active rendering
+	 * and show it, again if the buffers have been lost.
+	 */
+    private synchronized void renderFrame()
+    {
+        BufferStrategy strategy = _strategy;
+        do
+        {
+            do
+            {
+                Graphics g = strategy.getDrawGraphics();
+                if (_dirtyRegions == null)
+                {
+                    drawNodes(g);
+                }
+                else
+                {
+                    // the buffers of the strategy are not kept from
+                    // a frame to another : the frame is drawn over
+                    // the previous one in the back buffer
+                    do
+                    {
+                        drawBackBuffer();
+                    }
+                    while (_vImg.contentsLost());
+                    g.drawImage(_vImg, 0, 0, null);
+                }
+                g.dispose();
+            }
+            while (strategy.contentsRestored());
+            strategy.show();
+        }
+        while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+	/**
+	 * Create a new compatible volatile image with
+	 * the dimension of the current canvas.
+	 */
+    private void createBackBuffer()
+    {
+        if (_vImg != null)
+        {
+            _vImg.flush();
+        }
+        _vImg = getGraphicsConfiguration().createCompatibleVolatileImage(
+                getWidth(), getHeight());
+    }
+
+	/**
+	 * Start the active rendering : a thread draws the objects
+	 * in two buffers of the canvas, which must be displayable
+	 * (added to a visible frame).
+	 * @param framesPerSecond int Number of frames drawn per second
+	 * (0 to draw the frames as fast as possible)
+	 * @throws IllegalStateException If the canvas is not displayable.
+	 */
+    public synchronized void startActiveRendering(int framesPerSecond)
+            throws IllegalStateException
+    {
+        if (_renderThread != null)
+        {
+            return;
+        }
+        setIgnoreRepaint(true);
+        createBufferStrategy(2);
+        _strategy = getBufferStrategy();
+        _frameScheduler = framesPerSecond <= 0 ? null :
+                new GFrameScheduler(framesPerSecond,
+                                    GFrameScheduler.POLICY_SKIP);
+        if (_vImg != null && _dirtyRegions == null)
+        {
+            // the back buffer of the passive rendering is not used
+            _vImg.flush();
+            _vImg = null;
+        }
+        _statistics.reset();
+        _rendering = true;
+        _renderThread = new Thread(new RenderLoop(), "GRenderer");
+        _renderThread.setDaemon(true);
+        _renderThread.start();
+    }
+
+	/**
+	 * Stop the active rendering and wait for the rendering
+	 * thread : the canvas is painted by AWT again.
+	 */
+    public void stopActiveRendering()
+    {
+        Thread thread;
+        synchronized (this)
+        {
+            thread = _renderThread;
+            _rendering = false;
+        }
+        if (thread == null)
+        {
+            return;
+        }
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+	/**
+	 * Release the buffers of the active rendering once its thread
+	 * ends, whatever the reason.
+	 */
+    private void endActiveRendering()
+    {
+        synchronized (this)
+        {
+            _rendering = false;
+            _renderThread = null;
+            if (_strategy != null)
+            {
+                _strategy.dispose();
+                _strategy = null;
+            }
+            _statistics.reset();
+            setIgnoreRepaint(false);
+        }
+        repaint();
+    }
+
+	/**
+	 * Return true if the canvas is drawn by its own thread.
+	 * @return boolean
+	 */
+    public boolean isActiveRendering()
+    {
+        return _rendering;
+    }
+
+	/**
+	 * Define the rasterizer drawing the snapshots (see
+	 * setSnapshots()) : scenes of many bodies are drawn faster
+	 * by a GTileRasterizer than with the Graphics of the canvas.
+	 * @param rasterizer GTileRasterizer Null to draw with the
+	 * Graphics of the canvas
+	 */
+    public void setRasterizer(GTileRasterizer rasterizer)
+    {
+        _rasterizer = rasterizer;
+    }
+
+	/**
+	 * Define the batches drawing the snapshots (see setSnapshots())
+	 * : the objects add their primitives to paths filled or drawn
+	 * once per color, instead of being drawn one by one. Not used
+	 * with a rasterizer.
+	 * @param shapeBatch GShapeBatch Null to draw each object on
+	 * its own
+	 */
+    public void setShapeBatch(GShapeBatch shapeBatch)
+    {
+        _shapeBatch = shapeBatch;
+    }
+
+	/**
+	 * Define the part of the scene drawn (see setSnapshots()) :
+	 * the nodes outside of the view of its camera are not drawn
+	 * and the small ones are drawn as points. The camera is
+	 * moved with the mouse.
+	 * @param viewport GViewport Null to draw the whole scene
+	 */
+    public synchronized void setViewport(GViewport viewport)
+    {
+        _viewport = viewport;
+        if (viewport != null && _navigation == null)
+        {
+            _navigation = new Navigation();
+            addMouseListener(_navigation);
+            addMouseMotionListener(_navigation);
+            addMouseWheelListener(_navigation);
+        }
+        else if (viewport == null && _navigation != null)
+        {
+            removeMouseListener(_navigation);
+            removeMouseMotionListener(_navigation);
+            removeMouseWheelListener(_navigation);
+            _navigation = null;
+        }
+    }
+
+	/**
+	 * Return the part of the scene drawn.
+	 * @return GViewport Null if the whole scene is drawn
+	 */
+    public GViewport getViewport()
+    {
+        return _viewport;
+    }
+
+	/**
+	 * Define the regions drawn at each frame : when only a few
+	 * objects of the snapshots (see setSnapshots()) move, only
+	 * the regions where they moved are drawn again over the
+	 * previous frame. Not used with a rasterizer nor with
+	 * batches.
+	 * @param dirtyRegions GDirtyRegions Null to draw the whole
+	 * frame
+	 */
+    public synchronized void setDirtyRegions(GDirtyRegions dirtyRegions)
+    {
+        if (dirtyRegions != null)
+        {
+            dirtyRegions.invalidate();
+        }
+        _dirtyRegions = dirtyRegions;
+    }
+
+	/**
+	 * Return the regions drawn at each frame.
+	 * @return GDirtyRegions Null if the whole frame is drawn
+	 */
+    public GDirtyRegions getDirtyRegions()
+    {
+        return _dirtyRegions;
+    }
+
+	/**
+	 * Return the statistics on the frames drawn.
+	 * @return GFrameStatistics
+	 */
+    public GFrameStatistics getFrameStatistics()
+    {
+        return _statistics;
+    }
+
+	/**
+	 * Return the scheduler of the frames of the active rendering,
+	 * whose histogram gives the lateness of the frames (jitter).
+	 * @return GFrameScheduler Null if the frames are drawn as
+	 * fast as possible, or if the rendering is not active
+	 */
+    public GFrameScheduler getFrameScheduler()
+    {
+        return _frameScheduler;
+    }
+
+	/**
+	 * Update method calls automatically
+	 * the paint function.
+	 */
+    public void update(Graphics g)
+    {
+        paint(g);
+    }
+
+	/**
+	 * This method is called by a GScene object to
+	 * update the new objet's coordinates on the
+	 * canvas. During an active rendering, the objects
+	 * are drawn with the next frame.
+	 */
+    public void setObjects(Vector nodes)
+    {
+        _nodes = nodes;
+        if (!_rendering)
+        {
+            repaint();
+        }
+    }
+
+	/**
+	 * Draw the snapshots published by a scene instead of
+	 * the live objects : the objects are drawn as they
+	 * were at the end of a step, while the scene computes
+	 * the next ones.
+	 * @param snapshots GSnapshotBuffer
+	 */
+    public void setSnapshots(GSnapshotBuffer snapshots)
+    {
+        _snapshots = snapshots;
+        if (!_rendering)
+        {
+            repaint();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.*;
+import java.awt.geom.GeneralPath;
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Draws the nodes of a snapshot in batches : the nodes add their primitives
+ * to a GPrimitiveBuffer (see GObject.rasterize()), then the primitives of a
+ * same color and style (filled or lines) are drawn together, with the color
+ * set once per batch. The primitives on whole pixels are drawn with the
+ * integer methods of Graphics; the rotated or zoomed ones are gathered in the
+ * GeneralPath of their batch, filled or drawn with one call. The Graphics is
+ * not transformed for each node and no object is created per node. The
+ * batches are drawn in the order in which their color and style first appear
+ * in the frame : a node may be drawn under a node of another batch which was
+ * drawn before it.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GShapeBatch
+{
+    /**
+     * Control points of the quarters of ellipses (as
+     * java.awt.geom.Ellipse2D).
+     */
+    private final static double KAPPA = 0.5522847498307933;
+
+    /**
+     * Primitives of a path filled or drawn at once : the software
+     * pipelines of Java2D fill a path slower when it covers the
+     * whole frame.
+     */
+    public final static int PATH_SIZE = 64;
+
+    private GPrimitiveBuffer _primitives = new GPrimitiveBuffer();
+    // state of the nodes drawn without a viewport
+    private GInterpolatedSnapshot _interpolated = new GInterpolatedSnapshot();
+
+    /**
+     * Batches : color, style (true for lines) and path, in the
+     * order in which they are drawn.
+     */
+    private int _batchCount;
+    private int[] _rgb = new int[16];
+    private boolean[] _lines = new boolean[16];
+    private Color[] _colors = new Color[16];
+    private GeneralPath[] _paths = new GeneralPath[16];
+    private int[] _batchStart = new int[16];
+
+    /**
+     * Batch of each primitive, and primitives sorted by batch.
+     */
+    private int[] _batches = new int[256];
+    private int[] _order = new int[256];
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return the primitives of the last frame.
+     * @return GPrimitiveBuffer
+     */
+    public GPrimitiveBuffer getPrimitives()
+    {
+        return _primitives;
+    }
+
+    /**
+     * Return the number of batches drawn in the last frame.
+     * @return int
+     */
+    public int getBatchCount()
+    {
+        return _batchCount;
+    }
+
+    /**
+     * Draw the nodes of a snapshot.
+     * @param g Graphics
+     * @param snapshot GSceneSnapshot
+     * @param alpha double Interpolation between the previous step
+     * (0) and the step of the snapshot (1)
+     */
+    public void draw(Graphics g, GSceneSnapshot snapshot, double alpha)
+    {
+        draw(g, snapshot, alpha, null, 0, 0);
+    }
+
+    /**
+     * Draw the nodes of a snapshot seen through a viewport, and
+     * the nodes drawn as points by the viewport.
+     * @param g Graphics
+     * @param snapshot GSceneSnapshot
+     * @param alpha double Interpolation between the previous step
+     * (0) and the step of the snapshot (1)
+     * @param viewport GViewport Null to draw all the nodes
+     * @param width int Size of the frame
+     * @param height int
+     */
+    public void draw(Graphics g, GSceneSnapshot snapshot, double alpha,
+                     GViewport viewport, int width, int height)
+    {
+        _primitives.clear();
+        if (viewport == null)
+        {
+            _interpolated.interpolate(snapshot, alpha);
+            _primitives.setView(1.0, 0.0, 0.0);
+            for (int index = 0; index < snapshot.getCount(); index++)
+            {
+                snapshot.getNode(index).rasterize(_primitives, _interpolated,
+                                                  index);
+            }
+        }
+        else
+        {
+            viewport.select(snapshot, alpha, width, height);
+            double[] view = viewport.getView();
+            _primitives.setView(view[2], -view[0] * view[2],
+                                -view[1] * view[2]);
+            int[] visible = viewport.getVisibleNodes();
+            GInterpolatedSnapshot interpolated = viewport.getInterpolated();
+            for (int index = 0; index < viewport.getVisibleCount(); index++)
+            {
+                snapshot.getNode(visible[index]).rasterize(
+                        _primitives, interpolated, visible[index]);
+            }
+        }
+        sortByBatch();
+        Graphics2D g2d = (Graphics2D) g;
+        Color oldColor = g.getColor();
+        int start = 0;
+        for (int batch = 0; batch < _batchCount; batch++)
+        {
+            g2d.setColor(_colors[batch]);
+            drawBatch(g2d, batch, start, _batchStart[batch]);
+            start = _batchStart[batch];
+        }
+        g.setColor(oldColor);
+        if (viewport != null)
+        {
+            viewport.drawDensity(g);
+        }
+    }
+
+    /**
+     * Find the batch of each primitive and sort the primitives by
+     * batch (counting sort, in the order of the frame in a batch).
+     */
+    private void sortByBatch()
+    {
+        int count = _primitives._count;
+        if (_batches.length < count)
+        {
+            _batches = new int[Math.max(count, 2 * _batches.length)];
+            _order = new int[_batches.length];
+        }
+        _batchCount = 0;
+        int last = -1;
+        for (int index = 0; index < count; index++)
+        {
+            int rgb = _primitives._colors[index];
+            boolean lines = _primitives._types[index] ==
+                            GPrimitiveBuffer.LINE;
+            // the primitives of a node are often of the same batch
+            if (last < 0 || _rgb[last] != rgb || _lines[last] != lines)
+            {
+                last = getBatch(rgb, lines);
+            }
+            _batches[index] = last;
+        }
+        for (int batch = 0; batch < _batchCount; batch++)
+        {
+            _batchStart[batch] = 0;
+        }
+        for (int index = 0; index < count; index++)
+        {
+            _batchStart[_batches[index]]++;
+        }
+        int sum = 0;
+        for (int batch = 0; batch < _batchCount; batch++)
+        {
+            int size = _batchStart[batch];
+            _batchStart[batch] = sum;
+            sum += size;
+        }
+        for (int index = 0; index < count; index++)
+        {
+            _order[_batchStart[_batches[index]]++] = index;
+        }
+        // _batchStart[batch] is now the end of the batch
+    }
+
+    /**
+     * Draw the primitives of a batch, with the color of the batch.
+     * The primitives on whole pixels (without rotation nor zoom)
+     * are drawn as the objects would draw them; the others are
+     * added to the path of the batch, filled or drawn every
+     * PATH_SIZE primitives.
+     * @param g Graphics2D
+     * @param batch int
+     * @param start int First primitive of the batch in _order
+     * @param end int End of the batch in _order
+     */
+    private void drawBatch(Graphics2D g, int batch, int start, int end)
+    {
+        double[] values = _primitives._values;
+        GeneralPath path = _paths[batch];
+        path.reset();
+        int size = 0;
+        for (int position = start; position < end; position++)
+        {
+            int index = _order[position];
+            int type = _primitives._types[index];
+            int offset = GPrimitiveBuffer.VALUES * index;
+            if (type == GPrimitiveBuffer.LINE)
+            {
+                double x0 = values[offset], y0 = values[offset + 1];
+                double x1 = values[offset + 2], y1 = values[offset + 3];
+                if (isPixel(x0) && isPixel(y0) && isPixel(x1) && isPixel(y1))
+                {
+                    g.drawLine((int) x0, (int) y0, (int) x1, (int) y1);
+                    continue;
+                }
+                path.moveTo((float) x0, (float) y0);
+                path.lineTo((float) x1, (float) y1);
+            }
+            else
+            {
+                double cx = values[offset], cy = values[offset + 1];
+                double halfWidth = values[offset + 2];
+                double halfHeight = values[offset + 3];
+                double cos = values[offset + 4], sin = values[offset + 5];
+                double x = cx - halfWidth, y = cy - halfHeight;
+                if (sin == 0 && cos == 1.0 && isPixel(x) && isPixel(y) &&
+                    isPixel(2 * halfWidth) && isPixel(2 * halfHeight))
+                {
+                    if (type == GPrimitiveBuffer.BOX)
+                    {
+                        g.fillRect((int) x, (int) y, (int) (2 * halfWidth),
+                                   (int) (2 * halfHeight));
+                    }
+                    else
+                    {
+                        g.fillOval((int) x, (int) y, (int) (2 * halfWidth),
+                                   (int) (2 * halfHeight));
+                    }
+                    continue;
+                }
+                appendShape(path, type, cx, cy, halfWidth * cos,
+                            halfWidth * sin, -halfHeight * sin,
+                            halfHeight * cos);
+            }
+            if (++size == PATH_SIZE)
+            {
+                drawPath(g, batch);
+                size = 0;
+            }
+        }
+        if (size > 0)
+        {
+            drawPath(g, batch);
+        }
+    }
+
+    /**
+     * Fill or draw the path of a batch and empty it.
+     * @param g Graphics2D
+     * @param batch int
+     */
+    private void drawPath(Graphics2D g, int batch)
+    {
+        if (_lines[batch])
+        {
+            g.draw(_paths[batch]);
+        }
+        else
+        {
+            g.fill(_paths[batch]);
+        }
+        _paths[batch].reset();
+    }
+
+    /**
+     * Add a box or an ellipse to a path.
+     * @param path GeneralPath
+     * @param type int BOX or ELLIPSE
+     * @param cx double Center
+     * @param cy double
+     * @param ux double First half axis
+     * @param uy double
+     * @param vx double Second half axis
+     * @param vy double
+     */
+    private static void appendShape(GeneralPath path, int type, double cx,
+                                    double cy, double ux, double uy,
+                                    double vx, double vy)
+    {
+        if (type == GPrimitiveBuffer.BOX)
+        {
+            path.moveTo((float) (cx - ux - vx), (float) (cy - uy - vy));
+            path.lineTo((float) (cx + ux - vx), (float) (cy + uy - vy));
+            path.lineTo((float) (cx + ux + vx), (float) (cy + uy + vy));
+            path.lineTo((float) (cx - ux + vx), (float) (cy - uy + vy));
+            path.closePath();
+            return;
+        }
+        // four quarters, from the end of an axis to the next
+        path.moveTo((float) (cx + ux), (float) (cy + uy));
+        for (int quarter = 0; quarter < 4; quarter++)
+        {
+            path.curveTo((float) (cx + ux + KAPPA * vx),
+                         (float) (cy + uy + KAPPA * vy),
+                         (float) (cx + KAPPA * ux + vx),
+                         (float) (cy + KAPPA * uy + vy),
+                         (float) (cx + vx), (float) (cy + vy));
+            // the axes turn by a quarter
+            double x = ux, y = uy;
+            ux = vx;
+            uy = vy;
+            vx = -x;
+            vy = -y;
+        }
+        path.closePath();
+    }
+
+    /**
+     * Return true if a coordinate is on a whole pixel.
+     * @param value double
+     * @return boolean
+     */
+    private static boolean isPixel(double value)
+    {
+        return value == (int) value;
+    }
+
+    /**
+     * Return the batch of a color and a style, added after the
+     * other batches if it does not exist.
+     * @param rgb int Color
+     * @param lines boolean True for lines, false for filled
+     * primitives
+     * @return int Index of the batch
+     */
+    private int getBatch(int rgb, boolean lines)
+    {
+        for (int batch = 0; batch < _batchCount; batch++)
+        {
+            if (_rgb[batch] == rgb && _lines[batch] == lines)
+            {
+                return batch;
+            }
+        }
+        if (_batchCount == _paths.length)
+        {
+            int capacity = 2 * _batchCount;
+            int[] rgbs = new int[capacity];
+            System.arraycopy(_rgb, 0, rgbs, 0, _batchCount);
+            _rgb = rgbs;
+            boolean[] styles = new boolean[capacity];
+            System.arraycopy(_lines, 0, styles, 0, _batchCount);
+            _lines = styles;
+            Color[] colors = new Color[capacity];
+            System.arraycopy(_colors, 0, colors, 0, _batchCount);
+            _colors = colors;
+            GeneralPath[] paths = new GeneralPath[capacity];
+            System.arraycopy(_paths, 0, paths, 0, _batchCount);
+            _paths = paths;
+            _batchStart = new int[capacity];
+        }
+        int batch = _batchCount++;
+        // the color and the path of the slot are kept
+        if (_colors[batch] == null || _colors[batch].getRGB() != rgb)
+        {
+            _colors[batch] = new Color(rgb, true);
+        }
+        if (_paths[batch] == null)
+        {
+            _paths[batch] = new GeneralPath(GeneralPath.WIND_NON_ZERO);
+        }
+        _rgb[batch] = rgb;
+        _lines[batch] = lines;
+        return batch;
+    }
+}
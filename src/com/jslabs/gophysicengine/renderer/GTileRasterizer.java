@@ -0,0 +1,493 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Software rasterizer drawing scenes of many bodies without Graphics2D :
+ * the objects of a snapshot add their primitives to a GPrimitiveBuffer, the
+ * primitives are sorted by the tiles of the screen they cover, then the
+ * tiles are filled in parallel directly in the pixels of an image, which is
+ * drawn once per frame on the canvas or on an offscreen image. Each tile is
+ * written by a single thread and draws its primitives in the order of the
+ * objects, so the result does not depend on the number of threads.</p>
+ * <p>A pixel is covered by a primitive when its center is inside it, as with
+ * Graphics2D without antialiasing.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GTileRasterizer
+{
+    /**
+     * Width and height of a tile (pixels).
+     */
+    public final static int TILE_SIZE = 64;
+
+    private int _width;
+    private int _height;
+    private int _tilesX;
+    private int _tilesY;
+    private BufferedImage _image;
+    private int[] _pixels;
+    private int _background = 0xffffffff;
+
+    /**
+     * Threads filling the tiles (null : the tiles are filled by
+     * the calling thread), and number of tiles filled by a task.
+     */
+    private ForkJoinPool _pool;
+    private int _tileGrain = 4;
+
+    /**
+     * State of the nodes drawn without a viewport.
+     */
+    private GInterpolatedSnapshot _interpolated = new GInterpolatedSnapshot();
+
+    /**
+     * Primitives of the frame and their indices sorted by tile :
+     * the primitives of tile t are _bins[_binStarts[t]] to
+     * _bins[_binStarts[t + 1] - 1].
+     */
+    private GPrimitiveBuffer _primitives = new GPrimitiveBuffer();
+    private int[] _binStarts = new int[1];
+    private int[] _binEnds = new int[0];
+    private int[] _bins = new int[256];
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Task filling a range of tiles.
+     */
+    class TileTask
+            extends RecursiveAction
+    {
+        private int _first, _last;
+
+        TileTask(int first, int last)
+        {
+            _first = first;
+            _last = last;
+        }
+
+        protected void compute()
+        {
+            if (_last - _first <= _tileGrain)
+            {
+                for (int tile = _first; tile < _last; tile++)
+                {
+                    fillTile(tile);
+                }
+            }
+            else
+            {
+                int middle = (_first + _last) >>> 1;
+                invokeAll(new TileTask(_first, middle),
+                          new TileTask(middle, _last));
+            }
+        }
+    }
+
+    /**
+     * Build a rasterizer.
+     * @param pool ForkJoinPool Threads filling the tiles, or null
+     */
+    public GTileRasterizer(ForkJoinPool pool)
+    {
+        _pool = pool;
+        setSize(1, 1);
+    }
+
+    /**
+     * Define the size of the image, which is kept if it does not
+     * change.
+     * @param width int
+     * @param height int
+     */
+    public void setSize(int width, int height)
+    {
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        if (width == _width && height == _height)
+        {
+            return;
+        }
+        _width = width;
+        _height = height;
+        _tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        _tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        _image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        _pixels = ((DataBufferInt) _image.getRaster().getDataBuffer()).getData();
+        _binStarts = new int[_tilesX * _tilesY + 1];
+        _binEnds = new int[_tilesX * _tilesY];
+    }
+
+    /**
+     * Define the color of the background.
+     * @param background Color
+     */
+    public void setBackground(Color background)
+    {
+        _background = background.getRGB();
+    }
+
+    /**
+     * Define the number of tiles filled by a task.
+     * @param tiles int
+     */
+    public void setTileGrain(int tiles)
+    {
+        _tileGrain = Math.max(1, tiles);
+    }
+
+    /**
+     * Return the image drawn.
+     * @return BufferedImage
+     */
+    public BufferedImage getImage()
+    {
+        return _image;
+    }
+
+    /**
+     * Return the primitives of the last frame.
+     * @return GPrimitiveBuffer
+     */
+    public GPrimitiveBuffer getPrimitives()
+    {
+        return _primitives;
+    }
+
+    /**
+     * Draw the nodes of a snapshot in the image.
+     * @param snapshot GSceneSnapshot
+     * @param alpha double Interpolation between the previous step
+     * (0) and the step of the snapshot (1)
+     */
+    public void render(GSceneSnapshot snapshot, double alpha)
+    {
+        render(snapshot, alpha, null);
+    }
+
+    /**
+     * Draw the nodes of a snapshot seen through a viewport in the
+     * image. The nodes drawn as points by the viewport are not
+     * drawn (see GViewport.drawDensity()).
+     * @param snapshot GSceneSnapshot
+     * @param alpha double Interpolation between the previous step
+     * (0) and the step of the snapshot (1)
+     * @param viewport GViewport Null to draw all the nodes
+     */
+    public void render(GSceneSnapshot snapshot, double alpha,
+                       GViewport viewport)
+    {
+        _primitives.clear();
+        if (viewport == null)
+        {
+            _interpolated.interpolate(snapshot, alpha);
+            _primitives.setView(1.0, 0.0, 0.0);
+            for (int index = 0; index < snapshot.getCount(); index++)
+            {
+                snapshot.getNode(index).rasterize(_primitives, _interpolated,
+                                                  index);
+            }
+        }
+        else
+        {
+            viewport.select(snapshot, alpha, _width, _height);
+            double[] view = viewport.getView();
+            _primitives.setView(view[2], -view[0] * view[2],
+                                -view[1] * view[2]);
+            int[] visible = viewport.getVisibleNodes();
+            GInterpolatedSnapshot interpolated = viewport.getInterpolated();
+            for (int index = 0; index < viewport.getVisibleCount(); index++)
+            {
+                snapshot.getNode(visible[index]).rasterize(
+                        _primitives, interpolated, visible[index]);
+            }
+        }
+        sortByTile();
+        int tiles = _tilesX * _tilesY;
+        if (_pool == null || tiles <= _tileGrain)
+        {
+            for (int tile = 0; tile < tiles; tile++)
+            {
+                fillTile(tile);
+            }
+        }
+        else
+        {
+            _pool.invoke(new TileTask(0, tiles));
+        }
+    }
+
+    /**
+     * Draw the image on a graphics.
+     * @param g Graphics
+     */
+    public void drawTo(Graphics g)
+    {
+        g.drawImage(_image, 0, 0, null);
+    }
+
+    /**
+     * Sort the indices of the primitives by the tiles they
+     * cover (counting sort, keeping the order of the primitives
+     * in each tile). The primitives outside the image are
+     * dropped.
+     */
+    private void sortByTile()
+    {
+        int tiles = _tilesX * _tilesY;
+        int[] bounds = _primitives._bounds;
+        for (int tile = 0; tile <= tiles; tile++)
+        {
+            _binStarts[tile] = 0;
+        }
+        // number of primitives of each tile
+        for (int index = 0; index < _primitives._count; index++)
+        {
+            int b = 4 * index;
+            if (bounds[b] >= _width || bounds[b + 1] >= _height ||
+                bounds[b + 2] < 0 || bounds[b + 3] < 0)
+            {
+                continue;
+            }
+            int x0 = Math.max(0, bounds[b]) / TILE_SIZE;
+            int y0 = Math.max(0, bounds[b + 1]) / TILE_SIZE;
+            int x1 = Math.min(_width - 1, bounds[b + 2]) / TILE_SIZE;
+            int y1 = Math.min(_height - 1, bounds[b + 3]) / TILE_SIZE;
+            for (int ty = y0; ty <= y1; ty++)
+            {
+                for (int tx = x0; tx <= x1; tx++)
+                {
+                    _binStarts[ty * _tilesX + tx + 1]++;
+                }
+            }
+        }
+        for (int tile = 0; tile < tiles; tile++)
+        {
+            _binStarts[tile + 1] += _binStarts[tile];
+            _binEnds[tile] = _binStarts[tile];
+        }
+        if (_bins.length < _binStarts[tiles])
+        {
+            _bins = new int[Math.max(_binStarts[tiles], 2 * _bins.length)];
+        }
+        for (int index = 0; index < _primitives._count; index++)
+        {
+            int b = 4 * index;
+            if (bounds[b] >= _width || bounds[b + 1] >= _height ||
+                bounds[b + 2] < 0 || bounds[b + 3] < 0)
+            {
+                continue;
+            }
+            int x0 = Math.max(0, bounds[b]) / TILE_SIZE;
+            int y0 = Math.max(0, bounds[b + 1]) / TILE_SIZE;
+            int x1 = Math.min(_width - 1, bounds[b + 2]) / TILE_SIZE;
+            int y1 = Math.min(_height - 1, bounds[b + 3]) / TILE_SIZE;
+            for (int ty = y0; ty <= y1; ty++)
+            {
+                for (int tx = x0; tx <= x1; tx++)
+                {
+                    _bins[_binEnds[ty * _tilesX + tx]++] = index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clear a tile and draw its primitives.
+     * @param tile int
+     */
+    private void fillTile(int tile)
+    {
+        int x0 = (tile % _tilesX) * TILE_SIZE;
+        int y0 = (tile / _tilesX) * TILE_SIZE;
+        int x1 = Math.min(_width, x0 + TILE_SIZE);
+        int y1 = Math.min(_height, y0 + TILE_SIZE);
+        for (int y = y0; y < y1; y++)
+        {
+            int row = y * _width;
+            for (int x = x0; x < x1; x++)
+            {
+                _pixels[row + x] = _background;
+            }
+        }
+        int[] types = _primitives._types;
+        for (int bin = _binStarts[tile]; bin < _binStarts[tile + 1]; bin++)
+        {
+            int index = _bins[bin];
+            switch (types[index])
+            {
+                case GPrimitiveBuffer.BOX:
+                    fillBox(index, x0, y0, x1, y1);
+                    break;
+                case GPrimitiveBuffer.ELLIPSE:
+                    fillEllipse(index, x0, y0, x1, y1);
+                    break;
+                default:
+                    drawLine(index, x0, y0, x1, y1);
+            }
+        }
+    }
+
+    /**
+     * Fill the part of a box inside a tile. On a row, each pair
+     * of sides of the box bounds the pixels covered to an interval.
+     * @param index int Primitive
+     * @param x0 int Tile (x0 and y0 included, x1 and y1 excluded)
+     */
+    private void fillBox(int index, int x0, int y0, int x1, int y1)
+    {
+        double[] v = _primitives._values;
+        int offset = GPrimitiveBuffer.VALUES * index;
+        double cx = v[offset], cy = v[offset + 1];
+        double hw = v[offset + 2], hh = v[offset + 3];
+        double cos = v[offset + 4], sin = v[offset + 5];
+        int color = _primitives._colors[index];
+        int[] bounds = _primitives._bounds;
+        int top = Math.max(y0, bounds[4 * index + 1]);
+        int bottom = Math.min(y1 - 1, bounds[4 * index + 3]);
+        for (int y = top; y <= bottom; y++)
+        {
+            double dy = y + 0.5 - cy;
+            // |dx cos + dy sin| <= hw and |-dx sin + dy cos| <= hh
+            double lo = Double.NEGATIVE_INFINITY, hi = Double.POSITIVE_INFINITY;
+            if (Math.abs(cos) > 1e-12)
+            {
+                double a = (-hw - dy * sin) / cos, b = (hw - dy * sin) / cos;
+                lo = Math.max(lo, Math.min(a, b));
+                hi = Math.min(hi, Math.max(a, b));
+            }
+            else if (Math.abs(dy * sin) > hw)
+            {
+                continue;
+            }
+            if (Math.abs(sin) > 1e-12)
+            {
+                double a = (dy * cos - hh) / sin, b = (dy * cos + hh) / sin;
+                lo = Math.max(lo, Math.min(a, b));
+                hi = Math.min(hi, Math.max(a, b));
+            }
+            else if (Math.abs(dy * cos) > hh)
+            {
+                continue;
+            }
+            fillSpan(y, cx + lo, cx + hi, x0, x1, color);
+        }
+    }
+
+    /**
+     * Fill the part of an ellipse inside a tile. On a row, the
+     * pixels covered are between the roots of a polynomial of
+     * degree 2.
+     * @param index int Primitive
+     * @param x0 int Tile (x0 and y0 included, x1 and y1 excluded)
+     */
+    private void fillEllipse(int index, int x0, int y0, int x1, int y1)
+    {
+        double[] v = _primitives._values;
+        int offset = GPrimitiveBuffer.VALUES * index;
+        double cx = v[offset], cy = v[offset + 1];
+        double irx = 1.0 / (v[offset + 2] * v[offset + 2]);
+        double iry = 1.0 / (v[offset + 3] * v[offset + 3]);
+        double cos = v[offset + 4], sin = v[offset + 5];
+        // (dx cos + dy sin)^2 / rx^2 + (-dx sin + dy cos)^2 / ry^2 <= 1
+        double a = cos * cos * irx + sin * sin * iry;
+        double b = 2 * cos * sin * (irx - iry);
+        double c = sin * sin * irx + cos * cos * iry;
+        int color = _primitives._colors[index];
+        int[] bounds = _primitives._bounds;
+        int top = Math.max(y0, bounds[4 * index + 1]);
+        int bottom = Math.min(y1 - 1, bounds[4 * index + 3]);
+        for (int y = top; y <= bottom; y++)
+        {
+            double dy = y + 0.5 - cy;
+            double p = b * dy;
+            double delta = p * p - 4 * a * (c * dy * dy - 1);
+            if (delta < 0)
+            {
+                continue;
+            }
+            double root = Math.sqrt(delta);
+            fillSpan(y, cx + (-p - root) / (2 * a), cx + (-p + root) / (2 * a),
+                     x0, x1, color);
+        }
+    }
+
+    /**
+     * Fill the pixels of a row whose centers are between two
+     * abscissas, inside a tile.
+     */
+    private void fillSpan(int y, double left, double right, int x0, int x1,
+                          int color)
+    {
+        int start = Math.max(x0, (int) Math.ceil(left - 0.5));
+        int end = Math.min(x1 - 1, (int) Math.floor(right - 0.5));
+        int row = y * _width;
+        for (int x = start; x <= end; x++)
+        {
+            _pixels[row + x] = color;
+        }
+    }
+
+    /**
+     * Draw the part of a line inside a tile : a pixel per
+     * column (or per row for a steep line) between its ends.
+     * @param index int Primitive
+     * @param x0 int Tile (x0 and y0 included, x1 and y1 excluded)
+     */
+    private void drawLine(int index, int x0, int y0, int x1, int y1)
+    {
+        double[] v = _primitives._values;
+        int offset = GPrimitiveBuffer.VALUES * index;
+        double ax = v[offset], ay = v[offset + 1];
+        double bx = v[offset + 2], by = v[offset + 3];
+        int color = _primitives._colors[index];
+        boolean steep = Math.abs(by - ay) > Math.abs(bx - ax);
+        if (steep)
+        {
+            // step along y : swap the axes
+            double t = ax; ax = ay; ay = t;
+            t = bx; bx = by; by = t;
+        }
+        if (ax > bx)
+        {
+            double t = ax; ax = bx; bx = t;
+            t = ay; ay = by; by = t;
+        }
+        int first = (int) Math.floor(ax + 0.5);
+        int last = (int) Math.floor(bx + 0.5);
+        double slope = last == first ? 0.0 : (by - ay) / (bx - ax);
+        // range of the major axis inside the tile
+        int min = steep ? y0 : x0, max = steep ? y1 - 1 : x1 - 1;
+        int minorMin = steep ? x0 : y0, minorMax = steep ? x1 - 1 : y1 - 1;
+        for (int major = Math.max(first, min); major <= Math.min(last, max);
+             major++)
+        {
+            int minor = (int) Math.floor(ay + (major - ax) * slope + 0.5);
+            if (minor < minorMin || minor > minorMax)
+            {
+                continue;
+            }
+            if (steep)
+            {
+                _pixels[major * _width + minor] = color;
+            }
+            else
+            {
+                _pixels[minor * _width + major] = color;
+            }
+        }
+    }
+}
@@ -0,0 +1,644 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>View of a part of a scene through a camera, drawing only what can be
+ * seen : the nodes of each snapshot are sorted once in a grid of cells, and
+ * a frame only visits the cells in the view. The nodes smaller than a pixel
+ * or two on the screen are not drawn but counted in the pixel of their
+ * center, and the pixels are then drawn as points whose opacity grows with
+ * the number of nodes (density). When the cells themselves are that small,
+ * their nodes are counted without being visited, with the cells of the
+ * coarsest level (groups of 2x2 cells of the level below) which are still
+ * that small, so that the cost of a frame depends on what is visible rather
+ * than on the number of nodes.</p>
+ * <p>A node is assumed to be drawn inside the sphere around its dimensions;
+ * a node drawing outside of it may disappear before leaving the view. A
+ * viewport keeps the state of its last frame : it is used by one renderer at
+ * a time.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GViewport
+{
+    private GCamera _camera = new GCamera();
+
+    /**
+     * Size (pixels) under which the nodes are drawn as points,
+     * and color of the points.
+     */
+    private double _detailSize = 2.0;
+    private int _densityColor = 0x000000;
+
+    /**
+     * Snapshot sorted in the grid.
+     */
+    private GSceneSnapshot _indexed;
+    private long _indexedSequence;
+
+    /**
+     * Nodes of the snapshot : origin of their referential (the
+     * positions of the snapshot are relative to it) and radius.
+     */
+    private double[] _originX = new double[0];
+    private double[] _originY = new double[0];
+    private double[] _radius = new double[0];
+
+    /**
+     * Grid of cells : the nodes of cell c are
+     * _cellNodes[_cellStart[c]] to _cellNodes[_cellStart[c+1]-1],
+     * their center is around (_cellX[c], _cellY[c]). The nodes
+     * larger than a cell are not in the grid but in _large.
+     */
+    private double _gridX, _gridY;
+    private double _cellSize = 1.0;
+    private int _sizeX, _sizeY;
+    private int[] _cellStart = new int[1];
+    private int[] _cellNodes = new int[0];
+    private double[] _cellX = new double[0];
+    private double[] _cellY = new double[0];
+    private int[] _cell = new int[0];
+    private int[] _large = new int[0];
+    private int _largeCount;
+    // radius of the largest node of the grid, and distance
+    // between a node of the grid and its cell
+    private double _largest;
+    private double _margin;
+
+    /**
+     * Levels of coarser cells : number of nodes and center of the
+     * nodes of each cell (level 0 is the grid).
+     */
+    private int _levels;
+    private int[] _levelSizeX = new int[0];
+    private int[] _levelSizeY = new int[0];
+    private int[][] _levelCount = new int[0][];
+    private double[][] _levelX = new double[0][];
+    private double[][] _levelY = new double[0][];
+
+    /**
+     * View of the last frame (left, top, zoom) and nodes to draw,
+     * in the order of the snapshot.
+     */
+    private double[] _view = new double[3];
+    private int _width, _height;
+    private int[] _visible = new int[0];
+    private int _visibleCount;
+
+    /**
+     * State of the nodes in the last frame.
+     */
+    private GInterpolatedSnapshot _interpolated = new GInterpolatedSnapshot();
+
+    /**
+     * Number of nodes counted in each pixel, pixels counted,
+     * and image of the points.
+     */
+    private int[] _density = new int[0];
+    private int[] _touched = new int[0];
+    private int _touchedCount;
+    private BufferedImage _densityImage;
+    private int[] _densityPixels;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return the camera of the viewport.
+     * @return GCamera
+     */
+    public GCamera getCamera()
+    {
+        return _camera;
+    }
+
+    /**
+     * Define the size on the screen under which the nodes are
+     * drawn as points.
+     * @param pixels double
+     */
+    public void setDetailSize(double pixels)
+    {
+        _detailSize = Math.max(0, pixels);
+    }
+
+    /**
+     * Define the color of the points.
+     * @param color Color
+     */
+    public void setDensityColor(Color color)
+    {
+        _densityColor = color.getRGB() & 0xffffff;
+    }
+
+    /**
+     * Select the nodes of a snapshot to draw in a frame, with
+     * the camera as it is now, and count the small ones.
+     * @param snapshot GSceneSnapshot
+     * @param alpha double Interpolation between the previous step
+     * (0) and the step of the snapshot (1)
+     * @param width int Size of the frame
+     * @param height int
+     */
+    public void select(GSceneSnapshot snapshot, double alpha, int width,
+                       int height)
+    {
+        _interpolated.interpolate(snapshot, alpha);
+        if (snapshot != _indexed ||
+            snapshot.getSequence() != _indexedSequence)
+        {
+            buildGrid(snapshot);
+        }
+        _camera.getView(_view);
+        clearDensity(width, height);
+        _visibleCount = 0;
+        double left = _view[0], top = _view[1], zoom = _view[2];
+        double right = left + width / zoom, bottom = top + height / zoom;
+
+        if (2 * _largest * zoom <= _detailSize &&
+            _cellSize * zoom <= _detailSize)
+        {
+            // the nodes of the grid are points, and so are the cells
+            // of the coarsest level that small.
+            int level = 0;
+            while (level + 1 < _levels &&
+                   _cellSize * (2 << level) * zoom <= _detailSize)
+            {
+                level++;
+            }
+            aggregate(level, right, bottom);
+        }
+        else
+        {
+            // cells which may hold a visible node
+            int x0 = Math.max(0, (int) Math.floor((left - _margin - _gridX) /
+                                                  _cellSize));
+            int y0 = Math.max(0, (int) Math.floor((top - _margin - _gridY) /
+                                                  _cellSize));
+            int x1 = Math.min(_sizeX - 1, (int) Math.floor(
+                    (right + _margin - _gridX) / _cellSize));
+            int y1 = Math.min(_sizeY - 1, (int) Math.floor(
+                    (bottom + _margin - _gridY) / _cellSize));
+            for (int cy = y0; cy <= y1; cy++)
+            {
+                for (int cx = x0; cx <= x1; cx++)
+                {
+                    int c = cy * _sizeX + cx;
+                    for (int index = _cellStart[c]; index < _cellStart[c + 1];
+                         index++)
+                    {
+                        selectNode(snapshot, _cellNodes[index]);
+                    }
+                }
+            }
+        }
+        for (int index = 0; index < _largeCount; index++)
+        {
+            selectNode(snapshot, _large[index]);
+        }
+        // the nodes are drawn in the order of the scene
+        Arrays.sort(_visible, 0, _visibleCount);
+    }
+
+    /**
+     * Count the nodes of the cells of a level in the view as
+     * points at their centers.
+     * @param level int
+     * @param right double Bottom right corner of the view
+     * @param bottom double
+     */
+    private void aggregate(int level, double right, double bottom)
+    {
+        double left = _view[0], top = _view[1], zoom = _view[2];
+        double size = _cellSize * (1 << level);
+        int sizeX = _levelSizeX[level];
+        int x0 = Math.max(0, (int) Math.floor((left - _margin - _gridX) / size));
+        int y0 = Math.max(0, (int) Math.floor((top - _margin - _gridY) / size));
+        int x1 = Math.min(sizeX - 1, (int) Math.floor(
+                (right + _margin - _gridX) / size));
+        int y1 = Math.min(_levelSizeY[level] - 1, (int) Math.floor(
+                (bottom + _margin - _gridY) / size));
+        int[] counts = _levelCount[level];
+        double[] x = _levelX[level];
+        double[] y = _levelY[level];
+        for (int cy = y0; cy <= y1; cy++)
+        {
+            for (int cx = x0; cx <= x1; cx++)
+            {
+                int c = cy * sizeX + cx;
+                if (counts[c] > 0)
+                {
+                    addDensity((x[c] - left) * zoom, (y[c] - top) * zoom,
+                               counts[c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cull a node or count it as a point.
+     * @param snapshot GSceneSnapshot
+     * @param node int Index of the node
+     */
+    private void selectNode(GSceneSnapshot snapshot, int node)
+    {
+        double[] positions = _interpolated.getPositions();
+        int[] dimensions = snapshot.getDimensions();
+        double zoom = _view[2];
+        double x = (_originX[node] + positions[3 * node] +
+                    0.5 * dimensions[3 * node] - _view[0]) * zoom;
+        double y = (_originY[node] + positions[3 * node + 1] +
+                    0.5 * dimensions[3 * node + 1] - _view[1]) * zoom;
+        double radius = _radius[node] * zoom;
+        if (x + radius < 0 || y + radius < 0 || x - radius >= _width ||
+            y - radius >= _height)
+        {
+            return;
+        }
+        if (2 * radius <= _detailSize)
+        {
+            addDensity(x, y, 1);
+            return;
+        }
+        _visible[_visibleCount++] = node;
+    }
+
+    /**
+     * Sort the nodes of a snapshot in the grid. The grid is built
+     * with the positions of the step; the nodes drawn between the
+     * previous step and this one are at most at the distance
+     * traveled during the step.
+     * @param snapshot GSceneSnapshot
+     */
+    private void buildGrid(GSceneSnapshot snapshot)
+    {
+        _indexed = snapshot;
+        _indexedSequence = snapshot.getSequence();
+        int count = snapshot.getCount();
+        if (_radius.length < count)
+        {
+            int capacity = Math.max(count, 2 * _radius.length);
+            _originX = new double[capacity];
+            _originY = new double[capacity];
+            _radius = new double[capacity];
+            _cell = new int[capacity];
+            _cellNodes = new int[capacity];
+            _large = new int[capacity];
+            _visible = new int[capacity];
+        }
+        double[] positions = snapshot.getPositions();
+        double[] previous = snapshot.getPreviousPositions();
+        int[] dimensions = snapshot.getDimensions();
+
+        // centers, radius and bounds of the nodes
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double move = 0.0;
+        double radiusSum = 0.0;
+        for (int node = 0; node < count; node++)
+        {
+            GObject object = snapshot.getNode(node);
+            _originX[node] = object.getInertialReferentialPosition(0);
+            _originY[node] = object.getInertialReferentialPosition(1);
+            double w = dimensions[3 * node], h = dimensions[3 * node + 1],
+                    d = dimensions[3 * node + 2];
+            _radius[node] = Math.max(0.5, 0.5 * Math.sqrt(w * w + h * h + d * d));
+            radiusSum += _radius[node];
+            double x = centerX(positions, dimensions, node);
+            double y = centerY(positions, dimensions, node);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            move = Math.max(move, Math.max(
+                    Math.abs(positions[3 * node] - previous[3 * node]),
+                    Math.abs(positions[3 * node + 1] - previous[3 * node + 1])));
+        }
+
+        // about one node per cell, cells at least as large as the
+        // average node
+        double extent = count == 0 ? 1.0 : Math.max(maxX - minX, maxY - minY);
+        _cellSize = Math.max(count == 0 ? 1.0 : 2 * radiusSum / count,
+                             extent / Math.max(1.0, Math.sqrt(count)));
+        _gridX = count == 0 ? 0.0 : minX;
+        _gridY = count == 0 ? 0.0 : minY;
+        _sizeX = count == 0 ? 1 : (int) ((maxX - minX) / _cellSize) + 1;
+        _sizeY = count == 0 ? 1 : (int) ((maxY - minY) / _cellSize) + 1;
+        int cells = _sizeX * _sizeY;
+
+        // counting sort of the nodes by cell
+        if (_cellStart.length < cells + 1)
+        {
+            _cellStart = new int[cells + 1];
+            _cellX = new double[cells];
+            _cellY = new double[cells];
+        }
+        for (int c = 0; c <= cells; c++)
+        {
+            _cellStart[c] = 0;
+        }
+        for (int c = 0; c < cells; c++)
+        {
+            _cellX[c] = 0.0;
+            _cellY[c] = 0.0;
+        }
+        _largeCount = 0;
+        double largest = 0.0;
+        for (int node = 0; node < count; node++)
+        {
+            if (_radius[node] > _cellSize)
+            {
+                _large[_largeCount++] = node;
+                _cell[node] = -1;
+                continue;
+            }
+            largest = Math.max(largest, _radius[node]);
+            double x = centerX(positions, dimensions, node);
+            double y = centerY(positions, dimensions, node);
+            int c = Math.min(_sizeY - 1, (int) ((y - _gridY) / _cellSize)) *
+                    _sizeX +
+                    Math.min(_sizeX - 1, (int) ((x - _gridX) / _cellSize));
+            _cell[node] = c;
+            _cellStart[c + 1]++;
+            _cellX[c] += x;
+            _cellY[c] += y;
+        }
+        buildLevels(cells);
+        for (int c = 0; c < cells; c++)
+        {
+            int nodes = _cellStart[c + 1];
+            if (nodes > 0)
+            {
+                _cellX[c] /= nodes;
+                _cellY[c] /= nodes;
+            }
+            _cellStart[c + 1] += _cellStart[c];
+        }
+        int[] cursor = new int[cells];
+        System.arraycopy(_cellStart, 0, cursor, 0, cells);
+        for (int node = 0; node < count; node++)
+        {
+            if (_cell[node] >= 0)
+            {
+                _cellNodes[cursor[_cell[node]]++] = node;
+            }
+        }
+        _largest = largest;
+        _margin = largest + move;
+    }
+
+    /**
+     * Build the levels of coarser cells from the number of nodes
+     * of each cell and the sums of their centers.
+     * @param cells int Number of cells of the grid
+     */
+    private void buildLevels(int cells)
+    {
+        int levels = 1;
+        for (int size = Math.max(_sizeX, _sizeY); size > 1; size = (size + 1) / 2)
+        {
+            levels++;
+        }
+        if (_levelCount.length < levels)
+        {
+            _levelSizeX = new int[levels];
+            _levelSizeY = new int[levels];
+            _levelCount = new int[levels][];
+            _levelX = new double[levels][];
+            _levelY = new double[levels][];
+        }
+        _levels = levels;
+        int sizeX = _sizeX, sizeY = _sizeY;
+        for (int level = 0; level < levels; level++)
+        {
+            _levelSizeX[level] = sizeX;
+            _levelSizeY[level] = sizeY;
+            int count = sizeX * sizeY;
+            if (_levelCount[level] == null || _levelCount[level].length < count)
+            {
+                _levelCount[level] = new int[count];
+                _levelX[level] = new double[count];
+                _levelY[level] = new double[count];
+            }
+            int[] counts = _levelCount[level];
+            double[] x = _levelX[level];
+            double[] y = _levelY[level];
+            for (int c = 0; c < count; c++)
+            {
+                if (level == 0)
+                {
+                    counts[c] = _cellStart[c + 1];
+                    x[c] = _cellX[c];
+                    y[c] = _cellY[c];
+                    continue;
+                }
+                counts[c] = 0;
+                x[c] = 0.0;
+                y[c] = 0.0;
+            }
+            if (level > 0)
+            {
+                // sums of the 2x2 cells of the level below
+                int belowX = _levelSizeX[level - 1];
+                int belowY = _levelSizeY[level - 1];
+                int[] belowCounts = _levelCount[level - 1];
+                double[] belowXs = _levelX[level - 1];
+                double[] belowYs = _levelY[level - 1];
+                for (int cy = 0; cy < belowY; cy++)
+                {
+                    for (int cx = 0; cx < belowX; cx++)
+                    {
+                        int below = cy * belowX + cx;
+                        int c = (cy / 2) * sizeX + cx / 2;
+                        counts[c] += belowCounts[below];
+                        x[c] += belowXs[below];
+                        y[c] += belowYs[below];
+                    }
+                }
+            }
+            sizeX = (sizeX + 1) / 2;
+            sizeY = (sizeY + 1) / 2;
+        }
+        // centers of the nodes of each cell
+        for (int level = 0; level < levels; level++)
+        {
+            int[] counts = _levelCount[level];
+            for (int c = 0; c < _levelSizeX[level] * _levelSizeY[level]; c++)
+            {
+                if (counts[c] > 0)
+                {
+                    _levelX[level][c] /= counts[c];
+                    _levelY[level][c] /= counts[c];
+                }
+            }
+        }
+    }
+
+    private double centerX(double[] positions, int[] dimensions, int node)
+    {
+        return _originX[node] + positions[3 * node] +
+                0.5 * dimensions[3 * node];
+    }
+
+    private double centerY(double[] positions, int[] dimensions, int node)
+    {
+        return _originY[node] + positions[3 * node + 1] +
+                0.5 * dimensions[3 * node + 1];
+    }
+
+    /**
+     * Forget the points of the last frame.
+     * @param width int Size of the frame
+     * @param height int
+     */
+    private void clearDensity(int width, int height)
+    {
+        if (width != _width || height != _height || _densityImage == null)
+        {
+            _width = Math.max(1, width);
+            _height = Math.max(1, height);
+            _density = new int[_width * _height];
+            _touched = new int[64];
+            _densityImage = new BufferedImage(_width, _height,
+                                              BufferedImage.TYPE_INT_ARGB);
+            _densityPixels = ((DataBufferInt) _densityImage.getRaster().
+                              getDataBuffer()).getData();
+            _touchedCount = 0;
+            return;
+        }
+        for (int index = 0; index < _touchedCount; index++)
+        {
+            _density[_touched[index]] = 0;
+            _densityPixels[_touched[index]] = 0;
+        }
+        _touchedCount = 0;
+    }
+
+    /**
+     * Count nodes in a pixel.
+     * @param x double Pixel
+     * @param y double
+     * @param nodes int
+     */
+    private void addDensity(double x, double y, int nodes)
+    {
+        if (x < 0 || y < 0 || x >= _width || y >= _height)
+        {
+            return;
+        }
+        int pixel = (int) y * _width + (int) x;
+        if (_density[pixel] == 0)
+        {
+            if (_touchedCount == _touched.length)
+            {
+                int[] touched = new int[2 * _touchedCount];
+                System.arraycopy(_touched, 0, touched, 0, _touchedCount);
+                _touched = touched;
+            }
+            _touched[_touchedCount++] = pixel;
+        }
+        _density[pixel] += nodes;
+    }
+
+    /**
+     * Return the nodes to draw in the frame, in the order of the
+     * snapshot.
+     * @return int[] Indices of the nodes in the snapshot
+     */
+    public int[] getVisibleNodes()
+    {
+        return _visible;
+    }
+
+    /**
+     * Return the number of nodes to draw in the frame.
+     * @return int
+     */
+    public int getVisibleCount()
+    {
+        return _visibleCount;
+    }
+
+    /**
+     * Return the state of the nodes in the frame, interpolated
+     * between the previous step and the step of the snapshot.
+     * @return GInterpolatedSnapshot
+     */
+    public GInterpolatedSnapshot getInterpolated()
+    {
+        return _interpolated;
+    }
+
+    /**
+     * Return the number of pixels drawn as points in the frame.
+     * @return int
+     */
+    public int getDensityPixelCount()
+    {
+        return _touchedCount;
+    }
+
+    /**
+     * Return the view of the frame : left, top and zoom.
+     * @return double[]
+     */
+    public double[] getView()
+    {
+        return _view;
+    }
+
+    /**
+     * Draw the nodes of a snapshot seen by the camera.
+     * @param g Graphics
+     * @param snapshot GSceneSnapshot
+     * @param alpha double Interpolation between the previous step
+     * (0) and the step of the snapshot (1)
+     * @param width int Size of the frame
+     * @param height int
+     */
+    public void draw(Graphics g, GSceneSnapshot snapshot, double alpha,
+                     int width, int height)
+    {
+        select(snapshot, alpha, width, height);
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.scale(_view[2], _view[2]);
+        g2d.translate(-_view[0], -_view[1]);
+        for (int index = 0; index < _visibleCount; index++)
+        {
+            int node = _visible[index];
+            snapshot.getNode(node).draw(g2d, _interpolated, node);
+        }
+        g2d.dispose();
+        drawDensity(g);
+    }
+
+    /**
+     * Draw the points counted by the last call to select().
+     * @param g Graphics
+     */
+    public void drawDensity(Graphics g)
+    {
+        if (_touchedCount == 0)
+        {
+            return;
+        }
+        for (int index = 0; index < _touchedCount; index++)
+        {
+            int pixel = _touched[index];
+            // opacity grows with the logarithm of the count
+            int alpha = Math.min(255, 96 + 32 * (31 - Integer.
+                    numberOfLeadingZeros(_density[pixel])));
+            _densityPixels[pixel] = (alpha << 24) | _densityColor;
+        }
+        g.drawImage(_densityImage, 0, 0, null);
+    }
+}
@@ -0,0 +1,36 @@
+package com.jslabs.gophysicengine.renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This interface must be implemented by a class writing the
+ * frames drawn by a GOffscreenRenderer (image files, video stream...).
+ * Frames are written by the encoding threads of the renderer : several
+ * frames may be written at the same time and finish in any order.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGFrameSink
+{
+    /**
+     * Write a frame. The image is reused for another frame once
+     * the method has returned.
+     * @param index long Number of the frame (0, 1, 2...)
+     * @param time double Time of the scene
+     * @param image BufferedImage
+     * @throws IOException
+     */
+    public void writeFrame(long index, double time, BufferedImage image)
+            throws IOException;
+
+    /**
+     * Called once all the frames have been written.
+     * @throws IOException
+     */
+    public void close()
+            throws IOException;
+}
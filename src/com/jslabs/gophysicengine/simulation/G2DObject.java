@@ -1,73 +1,151 @@
-package com.jslabs.gophysicengine.simulation;
-
-import com.jslabs.gophysicengine.maths.linear.*;
-import java.awt.*;
-import java.awt.geom.AffineTransform;
-import com.jslabs.gophysicengine.renderer.GGeometricConverter;
-import java.awt.geom.GeneralPath;
-
-/**
- * <p>Title: Go! PhysicEngine</p>
- *
- * <p>Description: Moteur physique permettant la simulation de la dynamique des
- * corps rigides.</p>
- *
- * <p>Copyright: Copyright (c) 2006</p>
- *
- * <p>Company: </p>
- *
- * @author Jerome Schmaltz
- * @version 1.0
- */
-public abstract class G2DObject
-        extends GObject
-{
-	/**
-	 * This is the default constructor for a
-	 * 2D object. It initializes all vectors
-	 * and matrix objects contained in a
-	 * 2D rigid body.
-	 */
-    public G2DObject()
-    {
-        _inertia = new GMatrix(2, 2);
-        _inverseInertia = new GMatrix(2, 2);
-        _l = new GVector(2);
-        _q = new GQuaternion();
-        _r = new GMatrix(2, 2);
-        _p = new GVector(2);
-        _v = new GVector(2);
-        _x = new GVector(2);
-        _w = new GVector(2);
-    }
-
-	/**
-	 * This method has to be overloaded to specify
-	 * how the object must be draw on the screen.
-	 * @param g Graphics graphic object
-	 */
-    public abstract void drawObject(Graphics g);
-
-	/**
-	 * This method can't be overloaded. It implements
-	 * the pattern/hook pattern. This method process all
-	 * affine (2D) transformations and then calls the
-	 * drawObject method in order to draw the 2D object.
-	 * @param g Graphics The graphic object.
-	 */
-    public final void draw(Graphics g)
-    {
-        Graphics2D g2d = (Graphics2D)g;
-        Color oldColor = g.getColor();
-        // translate the object from its body referential
-        // to a inertial referential.
-        AffineTransform transform = new AffineTransform();
-        transform.setToTranslation((int)_iX.getValue(0), (int)_iX.getValue(1));
-        // process transformation
-        g2d.setTransform(transform);
-        // draw object on the offscreen graphics
-        drawObject(g2d);
-        g.setColor(oldColor);
-    }
-
-}
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.maths.linear.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import com.jslabs.gophysicengine.renderer.GGeometricConverter;
+import com.jslabs.gophysicengine.renderer.GPrimitiveBuffer;
+import java.awt.geom.GeneralPath;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ *
+ * <p>Copyright: Copyright (c) 2006</p>
+ *
+ * <p>Company: </p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public abstract class G2DObject
+        extends GObject
+{
+	/**
+	 * This is the default constructor for a
+	 * 2D object. It initializes all vectors
+	 * contained in a 2D rigid body : the body
+	 * is planar, its orientation is a single
+	 * angle and its angular momentum, angular
+	 * velocity and moment of inertia are
+	 * scalars (no quaternion nor matrix).
+	 */
+    public G2DObject()
+    {
+        _angle = new GVector(1);
+        _l = new GVector(1);
+        _p = new GVector(2);
+        _v = new GVector(2);
+        _x = new GVector(2);
+        _w = new GVector(1);
+    }
+
+	/**
+	 * This method has to be overloaded to specify
+	 * how the object must be draw on the screen, at
+	 * the position of the state drawn.
+	 * @param g Graphics graphic object
+	 * @param state GDrawState State drawn
+	 */
+    public abstract void drawObject(Graphics g, GDrawState state);
+
+	/**
+	 * This method can be overloaded to specify the
+	 * primitives drawing the object at the position of
+	 * the state drawn, as drawObject() draws it. By
+	 * default, the object is a black rectangle.
+	 * @param out GPrimitiveBuffer Primitives of the frame
+	 * @param state GDrawState State drawn
+	 */
+    public void rasterizeObject(GPrimitiveBuffer out, GDrawState state)
+    {
+        out.setColor(Color.black);
+        out.fillRect(state.getX(), state.getY(), Math.max(1, _width),
+                     Math.max(1, _height));
+    }
+
+	/**
+	 * This method can't be overloaded. It implements
+	 * the pattern/hook pattern. This method process all
+	 * affine (2D) transformations and then calls the
+	 * drawObject method in order to draw the 2D object.
+	 * @param g Graphics The graphic object.
+	 */
+    public final void draw(Graphics g)
+    {
+        GDrawState state = new GDrawState();
+        state.setPosition(_x.getValue(0), _x.getValue(1));
+        draw(g, state, getAngle());
+    }
+
+	/**
+	 * Draw the object at the position and angle it had
+	 * in a snapshot (interpolated between two steps).
+	 * @param g Graphics The graphic object.
+	 * @param snapshot GInterpolatedSnapshot
+	 * @param index int Index of the object in the snapshot
+	 */
+    public final void draw(Graphics g, GInterpolatedSnapshot snapshot,
+                           int index)
+    {
+        double[] positions = snapshot.getPositions();
+        GDrawState state = snapshot.getDrawState();
+        state.setPosition(positions[3 * index], positions[3 * index + 1]);
+        draw(g, state, snapshot.getOrientations()[4 * index]);
+    }
+
+	/**
+	 * Add the primitives of the object at the position and
+	 * angle it had in a snapshot, with the transformations
+	 * of draw().
+	 * @param out GPrimitiveBuffer Primitives of the frame
+	 * @param snapshot GInterpolatedSnapshot
+	 * @param index int Index of the object in the snapshot
+	 */
+    public final void rasterize(GPrimitiveBuffer out,
+                                GInterpolatedSnapshot snapshot, int index)
+    {
+        double[] positions = snapshot.getPositions();
+        GDrawState state = snapshot.getDrawState();
+        state.setPosition(positions[3 * index], positions[3 * index + 1]);
+        out.setTransform((int)_iX.getValue(0), (int)_iX.getValue(1),
+                         snapshot.getOrientations()[4 * index],
+                         state.getX() + 0.5 * _width,
+                         state.getY() + 0.5 * _height);
+        rasterizeObject(out, state);
+    }
+
+	/**
+	 * Draw the object at the position of a state and an
+	 * angle.
+	 * @param g Graphics The graphic object.
+	 * @param state GDrawState State drawn
+	 * @param angle double
+	 */
+    private void draw(Graphics g, GDrawState state, double angle)
+    {
+        Graphics2D g2d = (Graphics2D)g;
+        Color oldColor = g.getColor();
+        // transformation of the view (camera...)
+        AffineTransform view = g2d.getTransform();
+        // translate the object from its body referential
+        // to a inertial referential.
+        AffineTransform transform = new AffineTransform(view);
+        transform.translate((int)_iX.getValue(0), (int)_iX.getValue(1));
+        // rotate the object around its center.
+        if (angle != 0)
+        {
+            transform.rotate(angle, state.getX() + 0.5 * _width,
+                             state.getY() + 0.5 * _height);
+        }
+        // process transformation
+        g2d.setTransform(transform);
+        // draw object on the offscreen graphics
+        drawObject(g2d, state);
+        g2d.setTransform(view);
+        g.setColor(oldColor);
+    }
+
+}
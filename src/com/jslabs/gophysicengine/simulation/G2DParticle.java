@@ -0,0 +1,69 @@
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.physics.*;
+import java.awt.*;
+import com.jslabs.gophysicengine.renderer.GPrimitiveBuffer;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class represents a free point mass. A particle has no force of
+ * its own : it is moved by the forces applied by the scene (gravity, force
+ * fields, interactions...).</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class G2DParticle
+        extends G2DObject
+{
+    public G2DParticle()
+    {
+        super();
+    }
+
+    /**
+     * Draw the current object on the
+     * offscreen graphics for double buffering
+     * features.
+     * @param g Graphics The offscreen graphic object.
+     * @param state GDrawState State drawn
+     */
+    public void drawObject(Graphics g, GDrawState state)
+    {
+        g.setColor(Color.black);
+        g.fillOval((int) state.getX(), (int) state.getY(),
+                   Math.max(1, _width), Math.max(1, _height));
+    }
+
+    /**
+     * Add the primitives of the current object
+     * (see drawObject()).
+     * @param out GPrimitiveBuffer Primitives of the frame
+     * @param state GDrawState State drawn
+     */
+    public void rasterizeObject(GPrimitiveBuffer out, GDrawState state)
+    {
+        out.setColor(Color.black);
+        out.fillOval((int) state.getX(), (int) state.getY(),
+                     Math.max(1, _width), Math.max(1, _height));
+    }
+
+    /**
+     * This overloaded function checks that the
+     * particle has a mass.
+     * @throws InitializationException If the mass
+     * is equal to zero.
+     */
+    public void initializeParameters()
+            throws InitializationException
+    {
+        if (_mass == 0 && _bodyType == BODY_DYNAMIC)
+        {
+            throw new InitializationException(
+                    "G2DParticle : Mass must be defined.");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.maths.linear.*;
+import com.jslabs.gophysicengine.physics.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Builder of free particles : the force and torque are null so
+ * that the particle only follows the forces applied by the scene.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class G2DParticleBuilder
+        implements IG2DObjectBuilder
+{
+    /**
+     * Create a new 2D particle and initialize its state.
+     * @param x0 double
+     * @param y0 double
+     * @param px0 double
+     * @param py0 double
+     * @param lx0 double
+     * @param ly0 double
+     * @return GObject
+     */
+    public GObject build(double x0, double y0, double px0, double py0,
+                         double lx0, double ly0)
+    {
+        G2DParticle particle = new G2DParticle();
+
+        GVector x = new GVector(2);
+        GVector p = new GVector(2);
+        GVector l = new GVector(2);
+        x.setValue(0, x0);
+        x.setValue(1, y0);
+        p.setValue(0, px0);
+        p.setValue(1, py0);
+        l.setValue(0, lx0);
+        l.setValue(1, ly0);
+
+        particle.setState(x, new GQuaternion(), p, l);
+        particle.setDimensions(2, 2, 0);
+        GNullForce force = new GNullForce();
+        particle.setForce(force);
+        particle.setTorque(force);
+        return particle;
+    }
+}
@@ -1,112 +1,149 @@
-package com.jslabs.gophysicengine.simulation;
-
-import com.jslabs.gophysicengine.physics.*;
-import java.awt.*;
-import com.jslabs.gophysicengine.renderer.GGeometricConverter;
-
-
-/**
- * <p>Title: Go! PhysicEngine</p>
- *
- * <p>Description: Moteur physique permettant la simulation de la dynamique des
- * corps rigides.</p>
- *
- * <p>Copyright: Copyright (c) 2006</p>
- *
- * <p>Company: </p>
- *
- * @author Jerome Schmaltz
- * @version 1.0
- */
-public class G2DSpring
-        extends G2DObject
-{
-    private double _rest;
-
-    private double _k;
-
-    public G2DSpring()
-    {
-        super();
-    }
-
-    /**
-     * Draw the current object on the
-     * offscreen graphics for double buffering
-     * features.
-     * @param g Graphics The offscreen graphic object.
-     */
-    public void drawObject(Graphics g)
-    {
-        g.setColor(Color.blue);
-        // draw the spring
-        g.fillRect(0, (int) ((0.5 * _height) - 5), (int) _x.getValue(0), 10);
-        // draw the mass
-        g.setColor(Color.red);
-        g.fillRect((int) _x.getValue(0), (int) _x.getValue(1), _width, _height);
-    }
-
-	/**
-	 * Define the length of the spring at rest.
-	 * @param r double The length of the spring
-	 */
-    public void setSpringRestLength(double r)
-    {
-        _rest = r;
-    }
-
-	/**
-	 * Return the length of the spring at rest.
-	 */
-    public double getSpringRestLength()
-    {
-        return _rest;
-    }
-
-	/**
-	 * Define the force of the spring.
-	 * @param k double The force in N/m
-	 */
-    public void setSpringForce(double k)
-    {
-        _k = k;
-    }
-
-	/**
-	 * Return the spring force.
-	 * @return double The spring force
-	 */
-    public double getSpringForce()
-    {
-        return _k;
-    }
-
-
-	/**
-	 * This overloaded function initialize all
-	 * values for the spring object. It checks
-	 * if the mass, length and force are not
-	 * equal to zero.
-	 * @throws InitializationException If a value
-	 * is equal to zero.
-	 */
-    public void initializeParameters()
-            throws InitializationException
-    {
-        if (_mass == 0)
-        {
-            throw new InitializationException(
-                    "G2DSpring : Mass must be defined.");
-        }
-        if (getSpringRestLength() == 0)
-        {
-            throw new InitializationException(
-                    "G2DSpring : Spring length at rest must be more than zero.");
-        }
-        if (getSpringForce() <= 0)
-        {
-            throw new InitializationException(
-                    "G2DSpring : Spring force must be more than zero.");
-        }
-    }
-}
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.physics.*;
+import java.awt.*;
+import com.jslabs.gophysicengine.renderer.GGeometricConverter;
+import com.jslabs.gophysicengine.renderer.GPrimitiveBuffer;
+
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ *
+ * <p>Copyright: Copyright (c) 2006</p>
+ *
+ * <p>Company: </p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class G2DSpring
+        extends G2DObject
+{
+    private double _rest;
+
+    private double _k;
+
+    public G2DSpring()
+    {
+        super();
+    }
+
+    /**
+     * Draw the current object on the
+     * offscreen graphics for double buffering
+     * features.
+     * @param g Graphics The offscreen graphic object.
+     * @param state GDrawState State drawn
+     */
+    public void drawObject(Graphics g, GDrawState state)
+    {
+        g.setColor(Color.blue);
+        // draw the spring
+        g.fillRect(0, (int) ((0.5 * _height) - 5), (int) state.getX(), 10);
+        // draw the mass
+        g.setColor(Color.red);
+        g.fillRect((int) state.getX(), (int) state.getY(), _width, _height);
+    }
+
+    /**
+     * Add the primitives of the current object
+     * (see drawObject()).
+     * @param out GPrimitiveBuffer Primitives of the frame
+     * @param state GDrawState State drawn
+     */
+    public void rasterizeObject(GPrimitiveBuffer out, GDrawState state)
+    {
+        out.setColor(Color.blue);
+        out.fillRect(0, (int) ((0.5 * _height) - 5), (int) state.getX(), 10);
+        out.setColor(Color.red);
+        out.fillRect((int) state.getX(), (int) state.getY(), _width, _height);
+    }
+
+	/**
+	 * Compute the rectangle in which the spring and its
+	 * mass are drawn : the spring starts at the origin of
+	 * the object.
+	 * @param snapshot GInterpolatedSnapshot
+	 * @param index int Index of the object in the snapshot
+	 * @param bounds double[] Receives the minimum x and y and
+	 * the maximum x and y
+	 */
+    public void getDrawBounds(GInterpolatedSnapshot snapshot, int index,
+                              double[] bounds)
+    {
+        super.getDrawBounds(snapshot, index, bounds);
+        double x = (int) _iX.getValue(0);
+        double y = (int) _iX.getValue(1) + (int) ((0.5 * _height) - 5);
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.max(bounds[2], x);
+        bounds[3] = Math.max(bounds[3], y + 10);
+    }
+
+	/**
+	 * Define the length of the spring at rest.
+	 * @param r double The length of the spring
+	 */
+    public void setSpringRestLength(double r)
+    {
+        _rest = r;
+    }
+
+	/**
+	 * Return the length of the spring at rest.
+	 */
+    public double getSpringRestLength()
+    {
+        return _rest;
+    }
+
+	/**
+	 * Define the force of the spring.
+	 * @param k double The force in N/m
+	 */
+    public void setSpringForce(double k)
+    {
+        _k = k;
+    }
+
+	/**
+	 * Return the spring force.
+	 * @return double The spring force
+	 */
+    public double getSpringForce()
+    {
+        return _k;
+    }
+
+
+	/**
+	 * This overloaded function initialize all
+	 * values for the spring object. It checks
+	 * if the mass, length and force are not
+	 * equal to zero.
+	 * @throws InitializationException If a value
+	 * is equal to zero.
+	 */
+    public void initializeParameters()
+            throws InitializationException
+    {
+        if (_mass == 0)
+        {
+            throw new InitializationException(
+                    "G2DSpring : Mass must be defined.");
+        }
+        if (getSpringRestLength() == 0)
+        {
+            throw new InitializationException(
+                    "G2DSpring : Spring length at rest must be more than zero.");
+        }
+        if (getSpringForce() <= 0)
+        {
+            throw new InitializationException(
+                    "G2DSpring : Spring force must be more than zero.");
+        }
+    }
+}
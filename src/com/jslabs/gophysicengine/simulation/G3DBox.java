@@ -0,0 +1,106 @@
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.physics.*;
+import java.awt.*;
+import com.jslabs.gophysicengine.renderer.GPrimitiveBuffer;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class represents a solid box. Unless it is defined, the inertia
+ * is the one of a uniform box along its edges : m (h^2 + d^2) / 12,
+ * m (w^2 + d^2) / 12 and m (w^2 + h^2) / 12.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class G3DBox
+        extends G3DObject
+{
+    // edges of the box (indices of their corners), projected in the
+    // points of the state drawn
+    private final static int[][] EDGES = {
+            {0, 1}, {2, 3}, {4, 5}, {6, 7}, {0, 2}, {1, 3},
+            {4, 6}, {5, 7}, {0, 4}, {1, 5}, {2, 6}, {3, 7}};
+
+    public G3DBox()
+    {
+        super();
+    }
+
+    /**
+     * Draw the edges of the box projected on the
+     * offscreen graphics.
+     * @param g Graphics The offscreen graphic object.
+     * @param state GDrawState State drawn
+     */
+    public void drawObject(Graphics g, GDrawState state)
+    {
+        for (int index = 0; index < 8; index++)
+        {
+            project(state, (index & 1) == 0 ? -0.5 * _width : 0.5 * _width,
+                    (index & 2) == 0 ? -0.5 * _height : 0.5 * _height,
+                    (index & 4) == 0 ? -0.5 * _depth : 0.5 * _depth,
+                    state.getPoint(index));
+        }
+        g.setColor(Color.darkGray);
+        for (int index = 0; index < EDGES.length; index++)
+        {
+            double[] a = state.getPoint(EDGES[index][0]);
+            double[] b = state.getPoint(EDGES[index][1]);
+            g.drawLine((int) a[0], (int) a[1], (int) b[0], (int) b[1]);
+        }
+    }
+
+    /**
+     * Add the edges of the box projected (see
+     * drawObject()).
+     * @param out GPrimitiveBuffer Primitives of the frame
+     * @param state GDrawState State drawn
+     */
+    public void rasterizeObject(GPrimitiveBuffer out, GDrawState state)
+    {
+        for (int index = 0; index < 8; index++)
+        {
+            project(state, (index & 1) == 0 ? -0.5 * _width : 0.5 * _width,
+                    (index & 2) == 0 ? -0.5 * _height : 0.5 * _height,
+                    (index & 4) == 0 ? -0.5 * _depth : 0.5 * _depth,
+                    state.getPoint(index));
+        }
+        out.setColor(Color.darkGray);
+        for (int index = 0; index < EDGES.length; index++)
+        {
+            double[] a = state.getPoint(EDGES[index][0]);
+            double[] b = state.getPoint(EDGES[index][1]);
+            out.drawLine((int) a[0], (int) a[1], (int) b[0], (int) b[1]);
+        }
+    }
+
+    /**
+     * This overloaded function checks that the box
+     * has a mass and computes its inertia if it has
+     * not been defined.
+     * @throws InitializationException If the mass
+     * is equal to zero.
+     */
+    public void initializeParameters()
+            throws InitializationException
+    {
+        if (_mass == 0 && _bodyType == BODY_DYNAMIC)
+        {
+            throw new InitializationException(
+                    "G3DBox : Mass must be defined.");
+        }
+        if (!hasInertia())
+        {
+            double w2 = (double) _width * _width;
+            double h2 = (double) _height * _height;
+            double d2 = (double) _depth * _depth;
+            setPrincipalMomentsOfInertia(_mass * (h2 + d2) / 12.0,
+                                         _mass * (w2 + d2) / 12.0,
+                                         _mass * (w2 + h2) / 12.0);
+        }
+    }
+}
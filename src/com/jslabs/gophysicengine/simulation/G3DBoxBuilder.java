@@ -0,0 +1,60 @@
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.maths.linear.*;
+import com.jslabs.gophysicengine.physics.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Builder of free boxes : the force and torque are null so
+ * that the box only follows the forces applied by the scene.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class G3DBoxBuilder
+        implements IG3DObjectBuilder
+{
+    /**
+     * Create a new box and initialize its state, with the
+     * identity orientation.
+     * @param x0 double
+     * @param y0 double
+     * @param z0 double
+     * @param px0 double
+     * @param py0 double
+     * @param pz0 double
+     * @param lx0 double
+     * @param ly0 double
+     * @param lz0 double
+     * @return GObject
+     */
+    public GObject build(double x0, double y0, double z0, double px0,
+                         double py0, double pz0, double lx0, double ly0,
+                         double lz0)
+    {
+        G3DBox box = new G3DBox();
+
+        GVector x = new GVector(3);
+        GVector p = new GVector(3);
+        GVector l = new GVector(3);
+        x.setValue(0, x0);
+        x.setValue(1, y0);
+        x.setValue(2, z0);
+        p.setValue(0, px0);
+        p.setValue(1, py0);
+        p.setValue(2, pz0);
+        l.setValue(0, lx0);
+        l.setValue(1, ly0);
+        l.setValue(2, lz0);
+
+        box.setState(x, new GQuaternion(new double[] {1, 0, 0, 0}), p, l);
+        box.setDimensions(10, 10, 10);
+        GNullForce force = new GNullForce();
+        box.setForce(force);
+        box.setTorque(force);
+        return box;
+    }
+}
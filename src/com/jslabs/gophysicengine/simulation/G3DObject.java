@@ -0,0 +1,208 @@
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.maths.linear.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import com.jslabs.gophysicengine.renderer.GPrimitiveBuffer;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Base class of the 3D objects : the orientation is a quaternion and the
+ * inertia a 3x3 matrix, diagonal when it is expressed along the principal
+ * axes of the object (the integration is then cheaper). The objects are
+ * drawn with an orthographic projection on the (x, y) plane.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public abstract class G3DObject
+        extends GObject
+{
+    /**
+     * This is the default constructor for a
+     * 3D object. It initializes all vectors
+     * and matrix objects contained in a
+     * 3D rigid body, with the identity
+     * orientation.
+     */
+    public G3DObject()
+    {
+        _inertia = new GMatrix(3, 3);
+        _inverseInertia = new GMatrix(3, 3);
+        _l = new GVector(3);
+        _q = new GQuaternion(new double[] {1, 0, 0, 0});
+        _r = new GMatrix(3, 3);
+        _p = new GVector(3);
+        _v = new GVector(3);
+        _x = new GVector(3);
+        _w = new GVector(3);
+        for (int index = 0; index < 3; index++)
+        {
+            _r.setValue(index, index, 1.0);
+        }
+    }
+
+    /**
+     * Define the moments of inertia of the object along its
+     * principal axes (diagonal inertia matrix).
+     * @param ix double Moment around the x axis of the body
+     * @param iy double Moment around the y axis of the body
+     * @param iz double Moment around the z axis of the body
+     */
+    public void setPrincipalMomentsOfInertia(double ix, double iy, double iz)
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                _inertia.setValue(i, j, i != j ? 0.0 :
+                                  (i == 0 ? ix : (i == 1 ? iy : iz)));
+            }
+        }
+    }
+
+    /**
+     * Return true if an inertia has been defined.
+     * @return boolean
+     */
+    protected boolean hasInertia()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                if (_inertia.getValue(i, j) != 0)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Project a point of the body referential on the screen.
+     * @param state GDrawState State drawn
+     * @param x double Coordinates relative to the center of the object
+     * @param y double
+     * @param z double
+     * @param point double[] Receives the (x, y) coordinates of the
+     * projection in the referential of the object
+     */
+    protected void project(GDrawState state, double x, double y, double z,
+                           double[] point)
+    {
+        double[] r = state.getMatrix();
+        double cx = state.getX() + 0.5 * _width;
+        double cy = state.getY() + 0.5 * _height;
+        point[0] = cx + r[0] * x + r[1] * y + r[2] * z;
+        point[1] = cy + r[3] * x + r[4] * y + r[5] * z;
+    }
+
+	/**
+	 * This method has to be overloaded to specify
+	 * how the object must be draw on the screen, at
+	 * the position and with the orientation of the
+	 * state drawn (see project()).
+	 * @param g Graphics graphic object
+	 * @param state GDrawState State drawn
+	 */
+    public abstract void drawObject(Graphics g, GDrawState state);
+
+	/**
+	 * This method can be overloaded to specify the
+	 * primitives drawing the object at the position and
+	 * with the orientation of the state drawn, as
+	 * drawObject() draws it. By default, the object is
+	 * a black rectangle.
+	 * @param out GPrimitiveBuffer Primitives of the frame
+	 * @param state GDrawState State drawn
+	 */
+    public void rasterizeObject(GPrimitiveBuffer out, GDrawState state)
+    {
+        out.setColor(Color.black);
+        out.fillRect(state.getX(), state.getY(), Math.max(1, _width),
+                     Math.max(1, _height));
+    }
+
+	/**
+	 * This method can't be overloaded. It translates
+	 * the object to the inertial referential and then
+	 * calls the drawObject method in order to draw the
+	 * projection of the 3D object.
+	 * @param g Graphics The graphic object.
+	 */
+    public final void draw(Graphics g)
+    {
+        GDrawState state = new GDrawState();
+        state.setPosition(_x.getValue(0), _x.getValue(1));
+        state.setOrientation(_q.getValues(), 0);
+        draw(g, state);
+    }
+
+	/**
+	 * Draw the object at the position and orientation it
+	 * had in a snapshot (interpolated between two steps).
+	 * @param g Graphics The graphic object.
+	 * @param snapshot GInterpolatedSnapshot
+	 * @param index int Index of the object in the snapshot
+	 */
+    public final void draw(Graphics g, GInterpolatedSnapshot snapshot,
+                           int index)
+    {
+        draw(g, setDrawState(snapshot, index));
+    }
+
+	/**
+	 * Add the primitives of the object at the position and
+	 * orientation it had in a snapshot.
+	 * @param out GPrimitiveBuffer Primitives of the frame
+	 * @param snapshot GInterpolatedSnapshot
+	 * @param index int Index of the object in the snapshot
+	 */
+    public final void rasterize(GPrimitiveBuffer out,
+                                GInterpolatedSnapshot snapshot, int index)
+    {
+        GDrawState state = setDrawState(snapshot, index);
+        out.setTransform((int)_iX.getValue(0), (int)_iX.getValue(1), 0, 0, 0);
+        rasterizeObject(out, state);
+    }
+
+	/**
+	 * Define the state with which the object is drawn from
+	 * a snapshot.
+	 * @param snapshot GInterpolatedSnapshot
+	 * @param index int Index of the object in the snapshot
+	 * @return GDrawState State of the snapshot
+	 */
+    private GDrawState setDrawState(GInterpolatedSnapshot snapshot, int index)
+    {
+        double[] positions = snapshot.getPositions();
+        GDrawState state = snapshot.getDrawState();
+        state.setPosition(positions[3 * index], positions[3 * index + 1]);
+        state.setOrientation(snapshot.getOrientations(), 4 * index);
+        return state;
+    }
+
+	/**
+	 * Draw the object with a state.
+	 * @param g Graphics The graphic object.
+	 * @param state GDrawState State drawn
+	 */
+    private void draw(Graphics g, GDrawState state)
+    {
+        Graphics2D g2d = (Graphics2D)g;
+        Color oldColor = g.getColor();
+        // transformation of the view (camera...)
+        AffineTransform view = g2d.getTransform();
+        AffineTransform transform = new AffineTransform(view);
+        transform.translate((int)_iX.getValue(0), (int)_iX.getValue(1));
+        g2d.setTransform(transform);
+        drawObject(g2d, state);
+        g2d.setTransform(view);
+        g.setColor(oldColor);
+    }
+}
@@ -0,0 +1,89 @@
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.physics.*;
+import java.awt.*;
+import com.jslabs.gophysicengine.renderer.GPrimitiveBuffer;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class represents a solid ball whose diameter is the width of the
+ * object. Unless it is defined, the inertia is the one of a uniform ball,
+ * 2 m r^2 / 5 around every axis.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class G3DSphere
+        extends G3DObject
+{
+    public G3DSphere()
+    {
+        super();
+    }
+
+    /**
+     * Draw the ball and a mark of its rotation on the
+     * offscreen graphics.
+     * @param g Graphics The offscreen graphic object.
+     * @param state GDrawState State drawn
+     */
+    public void drawObject(Graphics g, GDrawState state)
+    {
+        int x = (int) state.getX();
+        int y = (int) state.getY();
+        g.setColor(Color.gray);
+        g.fillOval(x, y, _width, _width);
+        // projection of a point of the equator, showing the rotation
+        double[] mark = state.getPoint(0);
+        project(state, 0.5 * _width, 0, 0, mark);
+        g.setColor(Color.black);
+        g.drawLine(x + _width / 2, y + _width / 2, (int) mark[0],
+                   (int) mark[1]);
+    }
+
+    /**
+     * Add the primitives of the ball and of the mark of
+     * its rotation (see drawObject()).
+     * @param out GPrimitiveBuffer Primitives of the frame
+     * @param state GDrawState State drawn
+     */
+    public void rasterizeObject(GPrimitiveBuffer out, GDrawState state)
+    {
+        int x = (int) state.getX();
+        int y = (int) state.getY();
+        out.setColor(Color.gray);
+        out.fillOval(x, y, _width, _width);
+        // projection of a point of the equator, showing the rotation
+        double[] mark = state.getPoint(0);
+        project(state, 0.5 * _width, 0, 0, mark);
+        out.setColor(Color.black);
+        out.drawLine(x + _width / 2, y + _width / 2, (int) mark[0],
+                     (int) mark[1]);
+    }
+
+    /**
+     * This overloaded function checks that the ball
+     * has a mass and computes its inertia if it has
+     * not been defined.
+     * @throws InitializationException If the mass
+     * is equal to zero.
+     */
+    public void initializeParameters()
+            throws InitializationException
+    {
+        if (_mass == 0 && _bodyType == BODY_DYNAMIC)
+        {
+            throw new InitializationException(
+                    "G3DSphere : Mass must be defined.");
+        }
+        if (!hasInertia())
+        {
+            double radius = 0.5 * _width;
+            double inertia = 0.4 * _mass * radius * radius;
+            setPrincipalMomentsOfInertia(inertia, inertia, inertia);
+        }
+    }
+}
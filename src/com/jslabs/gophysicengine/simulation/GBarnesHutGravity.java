@@ -0,0 +1,560 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class applies the gravitational attraction between all objects of a
+ * scene with the Barnes-Hut approximation. A quadtree (2D scenes) or an octree
+ * (3D scenes) is rebuilt at each step; each cell holds the total mass and the
+ * center of mass of its objects. When a cell seen from an object is smaller
+ * than theta times its distance, the whole cell is treated as a single mass,
+ * which brings the cost from O(N^2) down to O(N log N). The tree is built in
+ * parallel (sub-trees are independent) and the forces of the objects are
+ * evaluated in parallel.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GBarnesHutGravity
+        implements IGForceGenerator
+{
+    /**
+     * Maximum number of objects in a leaf, and maximum depth
+     * of the tree (objects at the same position).
+     */
+    private final static int LEAF_CAPACITY = 8;
+    private final static int MAX_DEPTH = 48;
+
+    /**
+     * Cell of the tree.
+     */
+    static class Cell
+    {
+        // geometric center and half size
+        double _cx, _cy, _cz, _half;
+        // mass and center of mass
+        double _mass, _mx, _my, _mz;
+        // children (null for a leaf)
+        Cell[] _children;
+        // range of the objects of a leaf in _order
+        int _first, _last;
+    }
+
+    /**
+     * Gravitational constant.
+     */
+    private double _g = 6.674e-11;
+
+    /**
+     * Opening angle.
+     */
+    private double _theta = 0.5;
+
+    /**
+     * Softening length (avoids infinite forces between
+     * close objects).
+     */
+    private double _softening = 0.0;
+
+    /**
+     * Minimum number of objects handled by a task.
+     */
+    private int _parallelGrain = 2048;
+
+    /**
+     * State of the objects copied when the forces are computed.
+     */
+    private int _count;
+    private double[] _x = new double[0], _y = new double[0],
+                     _z = new double[0];
+    private double[] _mass = new double[0];
+    private double[] _force = new double[0];
+    private int _dimension;
+
+    /**
+     * Objects sorted by cell (and scratch for the partition).
+     */
+    private int[] _order = new int[0];
+    private int[] _scratch = new int[0];
+
+    /**
+     * Field of the objects computed sequentially (each ForceTask
+     * has its own).
+     */
+    private double[] _field = new double[3];
+
+    /**
+     * Root of the tree.
+     */
+    private Cell _root;
+
+    /**
+     * Task building a sub-tree.
+     */
+    class BuildTask
+            extends RecursiveAction
+    {
+        private Cell _cell;
+        private int _depth;
+
+        BuildTask(Cell cell, int depth)
+        {
+            _cell = cell;
+            _depth = depth;
+        }
+
+        protected void compute()
+        {
+            build(_cell, _depth, true);
+        }
+    }
+
+    /**
+     * Task computing the forces of a range of objects.
+     */
+    class ForceTask
+            extends RecursiveAction
+    {
+        private int _first, _last;
+
+        ForceTask(int first, int last)
+        {
+            _first = first;
+            _last = last;
+        }
+
+        protected void compute()
+        {
+            if (_last - _first <= _parallelGrain)
+            {
+                // field accumulated by the task
+                double[] field = new double[3];
+                for (int index = _first; index < _last; index++)
+                {
+                    computeForce(index, field);
+                }
+            }
+            else
+            {
+                int middle = (_first + _last) >>> 1;
+                invokeAll(new ForceTask(_first, middle),
+                          new ForceTask(middle, _last));
+            }
+        }
+    }
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Define the gravitational constant.
+     * @param g double (N.m^2/kg^2)
+     */
+    public void setGravitationalConstant(double g)
+    {
+        _g = g;
+    }
+
+    /**
+     * Define the opening angle : 0 computes the exact forces,
+     * larger values are faster and less accurate.
+     * @param theta double
+     */
+    public void setTheta(double theta)
+    {
+        _theta = Math.max(0.0, theta);
+    }
+
+    /**
+     * Return the opening angle.
+     * @return double
+     */
+    public double getTheta()
+    {
+        return _theta;
+    }
+
+    /**
+     * Define the softening length.
+     * @param softening double
+     */
+    public void setSoftening(double softening)
+    {
+        _softening = softening;
+    }
+
+    /**
+     * Apply the gravitational forces to the objects.
+     * @param scene GScene
+     * @param t double Time
+     * @param pool ForkJoinPool Threads, or null
+     */
+    public void applyForces(GScene scene, double t, ForkJoinPool pool)
+    {
+        computeForces(scene, pool, null);
+        for (int index = 0; index < _count; index++)
+        {
+            GObject object = scene.getNode(index);
+            if (!object.isDynamic())
+            {
+                continue;
+            }
+            int dimension = object.getLinearMomentum().getSize();
+            for (int axis = 0; axis < dimension; axis++)
+            {
+                object.addExternalForce(axis, _force[index * 3 + axis]);
+            }
+        }
+    }
+
+    /**
+     * Compute the gravitational forces with the tree.
+     * @param scene GScene
+     * @param pool ForkJoinPool Threads, or null
+     * @param force double[] Receives the forces (3 values per object),
+     * or null.
+     */
+    public void computeForces(GScene scene, ForkJoinPool pool, double[] force)
+    {
+        load(scene);
+        if (_count > 0)
+        {
+            buildTree(pool);
+            if (pool == null || _count <= _parallelGrain)
+            {
+                for (int index = 0; index < _count; index++)
+                {
+                    computeForce(index, _field);
+                }
+            }
+            else
+            {
+                pool.invoke(new ForceTask(0, _count));
+            }
+        }
+        if (force != null)
+        {
+            System.arraycopy(_force, 0, force, 0, _count * 3);
+        }
+    }
+
+    /**
+     * Compute the exact gravitational forces by direct summation
+     * (reference for the accuracy of the approximation).
+     * @param scene GScene
+     * @param force double[] Receives the forces (3 values per object)
+     */
+    public void computeDirectForces(GScene scene, double[] force)
+    {
+        load(scene);
+        double softening = _softening * _softening;
+        for (int i = 0; i < _count * 3; i++)
+        {
+            force[i] = 0;
+        }
+        for (int i = 0; i < _count; i++)
+        {
+            for (int j = i + 1; j < _count; j++)
+            {
+                double dx = _x[j] - _x[i];
+                double dy = _y[j] - _y[i];
+                double dz = _z[j] - _z[i];
+                double r2 = dx * dx + dy * dy + dz * dz + softening;
+                if (r2 == 0)
+                {
+                    continue;
+                }
+                double f = _g * _mass[i] * _mass[j] / (r2 * Math.sqrt(r2));
+                force[i * 3] += f * dx;
+                force[i * 3 + 1] += f * dy;
+                force[i * 3 + 2] += f * dz;
+                force[j * 3] -= f * dx;
+                force[j * 3 + 1] -= f * dy;
+                force[j * 3 + 2] -= f * dz;
+            }
+        }
+    }
+
+    /**
+     * Copy the positions and masses of the objects.
+     * @param scene GScene
+     */
+    private void load(GScene scene)
+    {
+        _count = scene.getNodeCount();
+        if (_x.length < _count)
+        {
+            _x = new double[_count];
+            _y = new double[_count];
+            _z = new double[_count];
+            _mass = new double[_count];
+            _force = new double[_count * 3];
+            _order = new int[_count];
+            _scratch = new int[_count];
+        }
+        _dimension = 2;
+        for (int index = 0; index < _count; index++)
+        {
+            GObject object = scene.getNode(index);
+            _x[index] = object.getWorldPosition(0);
+            _y[index] = object.getWorldPosition(1);
+            _z[index] = object.getWorldPosition(2);
+            _mass[index] = object.getMass();
+            if (object.getPosition().getSize() > 2)
+            {
+                _dimension = 3;
+            }
+        }
+    }
+
+    /**
+     * Build the tree of the objects.
+     * @param pool ForkJoinPool Threads, or null
+     */
+    private void buildTree(ForkJoinPool pool)
+    {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE,
+                minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE,
+                maxZ = -Double.MAX_VALUE;
+        for (int index = 0; index < _count; index++)
+        {
+            _order[index] = index;
+            minX = Math.min(minX, _x[index]);
+            minY = Math.min(minY, _y[index]);
+            minZ = Math.min(minZ, _z[index]);
+            maxX = Math.max(maxX, _x[index]);
+            maxY = Math.max(maxY, _y[index]);
+            maxZ = Math.max(maxZ, _z[index]);
+        }
+        _root = new Cell();
+        _root._cx = 0.5 * (minX + maxX);
+        _root._cy = 0.5 * (minY + maxY);
+        _root._cz = 0.5 * (minZ + maxZ);
+        _root._half = 0.5 * Math.max(maxX - minX,
+                                     Math.max(maxY - minY, maxZ - minZ)) +
+                      1e-9;
+        _root._first = 0;
+        _root._last = _count;
+        if (pool == null || _count <= _parallelGrain)
+        {
+            build(_root, 0, false);
+        }
+        else
+        {
+            pool.invoke(new BuildTask(_root, 0));
+        }
+    }
+
+    /**
+     * Build a cell : split its objects between its children and
+     * compute its mass and center of mass.
+     * @param cell Cell The cell (range of objects defined)
+     * @param depth int Depth of the cell
+     * @param parallel boolean True if called from a task
+     */
+    private void build(Cell cell, int depth, boolean parallel)
+    {
+        int first = cell._first;
+        int last = cell._last;
+        if (last - first <= LEAF_CAPACITY || depth >= MAX_DEPTH)
+        {
+            // leaf
+            for (int index = first; index < last; index++)
+            {
+                int object = _order[index];
+                cell._mass += _mass[object];
+                cell._mx += _mass[object] * _x[object];
+                cell._my += _mass[object] * _y[object];
+                cell._mz += _mass[object] * _z[object];
+            }
+            finishCenterOfMass(cell);
+            return;
+        }
+
+        // partition the objects by child (stable counting sort)
+        int childCount = 1 << _dimension;
+        int[] start = new int[childCount + 1];
+        for (int index = first; index < last; index++)
+        {
+            start[childIndex(cell, _order[index]) + 1]++;
+        }
+        for (int child = 0; child < childCount; child++)
+        {
+            start[child + 1] += start[child];
+        }
+        int[] cursor = new int[childCount];
+        System.arraycopy(start, 0, cursor, 0, childCount);
+        for (int index = first; index < last; index++)
+        {
+            int object = _order[index];
+            _scratch[first + cursor[childIndex(cell, object)]++] = object;
+        }
+        System.arraycopy(_scratch, first, _order, first, last - first);
+
+        cell._children = new Cell[childCount];
+        double half = 0.5 * cell._half;
+        BuildTask[] tasks = parallel ? new BuildTask[childCount] : null;
+        int taskCount = 0;
+        for (int child = 0; child < childCount; child++)
+        {
+            if (start[child] == start[child + 1])
+            {
+                continue;
+            }
+            Cell c = new Cell();
+            c._half = half;
+            c._cx = cell._cx + ((child & 1) != 0 ? half : -half);
+            c._cy = cell._cy + ((child & 2) != 0 ? half : -half);
+            c._cz = _dimension == 3 ?
+                    cell._cz + ((child & 4) != 0 ? half : -half) : cell._cz;
+            c._first = first + start[child];
+            c._last = first + start[child + 1];
+            cell._children[child] = c;
+            if (parallel && c._last - c._first > _parallelGrain)
+            {
+                tasks[taskCount++] = new BuildTask(c, depth + 1);
+            }
+            else
+            {
+                build(c, depth + 1, false);
+            }
+        }
+        if (taskCount > 0)
+        {
+            BuildTask[] subTasks = new BuildTask[taskCount];
+            System.arraycopy(tasks, 0, subTasks, 0, taskCount);
+            RecursiveAction.invokeAll(subTasks);
+        }
+        for (int child = 0; child < childCount; child++)
+        {
+            Cell c = cell._children[child];
+            if (c != null)
+            {
+                cell._mass += c._mass;
+                cell._mx += c._mass * c._mx;
+                cell._my += c._mass * c._my;
+                cell._mz += c._mass * c._mz;
+            }
+        }
+        finishCenterOfMass(cell);
+    }
+
+    /**
+     * Divide the weighted sum of positions of a cell by its mass.
+     */
+    private static void finishCenterOfMass(Cell cell)
+    {
+        if (cell._mass > 0)
+        {
+            cell._mx /= cell._mass;
+            cell._my /= cell._mass;
+            cell._mz /= cell._mass;
+        }
+        else
+        {
+            cell._mx = cell._cx;
+            cell._my = cell._cy;
+            cell._mz = cell._cz;
+        }
+    }
+
+    /**
+     * Return the child of a cell containing an object.
+     */
+    private int childIndex(Cell cell, int object)
+    {
+        int child = 0;
+        if (_x[object] >= cell._cx)
+        {
+            child |= 1;
+        }
+        if (_y[object] >= cell._cy)
+        {
+            child |= 2;
+        }
+        if (_dimension == 3 && _z[object] >= cell._cz)
+        {
+            child |= 4;
+        }
+        return child;
+    }
+
+    /**
+     * Compute the force applied to an object by walking the tree.
+     * The objects are computed in parallel : the field is
+     * accumulated in a buffer of the task.
+     * @param object int Index of the object
+     * @param f double[] Temporary field (3 values)
+     */
+    private void computeForce(int object, double[] f)
+    {
+        f[0] = f[1] = f[2] = 0.0;
+        accumulate(_root, object, f);
+        _force[object * 3] = _g * _mass[object] * f[0];
+        _force[object * 3 + 1] = _g * _mass[object] * f[1];
+        _force[object * 3 + 2] = _g * _mass[object] * f[2];
+    }
+
+    /**
+     * Accumulate the field (sum of m r / |r|^3) of a cell at the
+     * position of an object.
+     */
+    private void accumulate(Cell cell, int object, double[] f)
+    {
+        double softening = _softening * _softening;
+        double x = _x[object], y = _y[object], z = _z[object];
+        if (cell._children == null)
+        {
+            for (int index = cell._first; index < cell._last; index++)
+            {
+                int other = _order[index];
+                if (other == object)
+                {
+                    continue;
+                }
+                addField(_x[other] - x, _y[other] - y, _z[other] - z,
+                         _mass[other], softening, f);
+            }
+            return;
+        }
+        double dx = cell._mx - x, dy = cell._my - y, dz = cell._mz - z;
+        double d2 = dx * dx + dy * dy + dz * dz;
+        double size = 2 * cell._half;
+        // the object must be outside the cell to use its mass
+        boolean outside = Math.abs(x - cell._cx) > cell._half ||
+                          Math.abs(y - cell._cy) > cell._half ||
+                          (_dimension == 3 &&
+                           Math.abs(z - cell._cz) > cell._half);
+        if (outside && size * size < _theta * _theta * d2)
+        {
+            addField(dx, dy, dz, cell._mass, softening, f);
+            return;
+        }
+        for (int child = 0; child < cell._children.length; child++)
+        {
+            if (cell._children[child] != null)
+            {
+                accumulate(cell._children[child], object, f);
+            }
+        }
+    }
+
+    private static void addField(double dx, double dy, double dz, double mass,
+                                 double softening, double[] f)
+    {
+        double r2 = dx * dx + dy * dy + dz * dz + softening;
+        if (r2 == 0)
+        {
+            return;
+        }
+        double scale = mass / (r2 * Math.sqrt(r2));
+        f[0] += scale * dx;
+        f[1] += scale * dy;
+        f[2] += scale * dz;
+    }
+}
@@ -0,0 +1,626 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class holds the joints of a scene and solves them. Joints link two
+ * objects (or an object and a fixed point of the inertial referential) :</p>
+ * <ul>
+ * <li>distance : the anchors stay at a fixed distance,</li>
+ * <li>pin : the anchors stay at the same point,</li>
+ * <li>slider : the second anchor moves along an axis going through the
+ * first one,</li>
+ * <li>rope : the anchors can not be farther than a maximum distance.</li>
+ * </ul>
+ * <p>Joints are stored in contiguous arrays. After the objects of an island
+ * have been integrated, the joints of the island are solved iteratively :
+ * impulses are first applied at the anchors to remove the relative velocities
+ * violating the joints, then the positions are projected to remove the
+ * remaining error. Anchors are offsets from the position of the objects in
+ * their body referential : they turn with the objects around their center,
+ * and the impulses applied at the anchors turn the objects too (the
+ * effective mass of a joint includes the inertia of its objects). The axis
+ * of a slider is expressed in the inertial referential.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GConstraintSolver
+{
+    /**
+     * Joint types
+     */
+    public final static int JOINT_DISTANCE = 0;
+    public final static int JOINT_PIN = 1;
+    public final static int JOINT_SLIDER = 2;
+    public final static int JOINT_ROPE = 3;
+
+    /**
+     * Scene containing the joints.
+     */
+    private GScene _scene;
+
+    /**
+     * Joints. _offsetA, _offsetB and _axis contain 3 values per
+     * joint. For a joint to the inertial referential, _objectB[i]
+     * is null and _offsetB holds the fixed point.
+     */
+    private int _count;
+    private int[] _type = new int[8];
+    private GObject[] _objectA = new GObject[8];
+    private GObject[] _objectB = new GObject[8];
+    private double[] _offsetA = new double[24];
+    private double[] _offsetB = new double[24];
+    private double[] _axis = new double[24];
+    private double[] _length = new double[8];
+
+    /**
+     * Joints grouped by island : joints of island i are
+     * _islandJoints[_islandStart[i]] to _islandJoints[_islandStart[i+1]-1].
+     */
+    private int[] _islandStart = new int[1];
+    private int[] _islandJoints = new int[8];
+    private int[] _cursor = new int[0];
+
+    /**
+     * Number of iterations of the solver.
+     */
+    private int _velocityIterations = 8;
+    private int _positionIterations = 3;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build the solver of a scene.
+     * @param scene GScene
+     */
+    public GConstraintSolver(GScene scene)
+    {
+        _scene = scene;
+    }
+
+    /**
+     * Define the number of iterations of the solver.
+     * @param velocity int Iterations on the momenta
+     * @param position int Iterations on the positions
+     */
+    public void setIterations(int velocity, int position)
+    {
+        _velocityIterations = Math.max(0, velocity);
+        _positionIterations = Math.max(0, position);
+    }
+
+    /**
+     * Return the number of joints.
+     * @return int
+     */
+    public int getJointCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Add a joint keeping two objects at a fixed distance.
+     * @param a GObject First object
+     * @param b GObject Second object, or null for a fixed point
+     * @param anchorA double[] Anchor on the first object
+     * @param anchorB double[] Anchor on the second object, or fixed point
+     * @param length double Distance between the anchors
+     * @return int Index of the joint
+     */
+    public int addDistanceJoint(GObject a, GObject b, double[] anchorA,
+                                double[] anchorB, double length)
+    {
+        return addJoint(JOINT_DISTANCE, a, b, anchorA, anchorB, null, length);
+    }
+
+    /**
+     * Add a joint pinning two objects together. The objects
+     * revolve freely around the pin.
+     * @param a GObject First object
+     * @param b GObject Second object, or null for a fixed point
+     * @param anchorA double[] Anchor on the first object
+     * @param anchorB double[] Anchor on the second object, or fixed point
+     * @return int Index of the joint
+     */
+    public int addPinJoint(GObject a, GObject b, double[] anchorA,
+                           double[] anchorB)
+    {
+        return addJoint(JOINT_PIN, a, b, anchorA, anchorB, null, 0.0);
+    }
+
+    /**
+     * Add a joint letting the second object slide along an axis
+     * going through the anchor of the first object.
+     * @param a GObject First object
+     * @param b GObject Second object, or null for a fixed point
+     * @param anchorA double[] Anchor on the first object
+     * @param anchorB double[] Anchor on the second object, or fixed point
+     * @param axis double[] Direction of the slide (normalized)
+     * @return int Index of the joint
+     */
+    public int addSliderJoint(GObject a, GObject b, double[] anchorA,
+                              double[] anchorB, double[] axis)
+    {
+        return addJoint(JOINT_SLIDER, a, b, anchorA, anchorB, axis, 0.0);
+    }
+
+    /**
+     * Add a rope between two objects : the anchors can not be
+     * farther than the length of the rope.
+     * @param a GObject First object
+     * @param b GObject Second object, or null for a fixed point
+     * @param anchorA double[] Anchor on the first object
+     * @param anchorB double[] Anchor on the second object, or fixed point
+     * @param length double Length of the rope
+     * @return int Index of the joint
+     */
+    public int addRopeJoint(GObject a, GObject b, double[] anchorA,
+                            double[] anchorB, double length)
+    {
+        return addJoint(JOINT_ROPE, a, b, anchorA, anchorB, null, length);
+    }
+
+    /**
+     * Store a joint and link its objects in the scene.
+     * @return int Index of the joint
+     * @throws IllegalArgumentException If the first object is null.
+     */
+    private int addJoint(int type, GObject a, GObject b, double[] anchorA,
+                         double[] anchorB, double[] axis, double length)
+            throws IllegalArgumentException
+    {
+        if (a == null)
+        {
+            throw new IllegalArgumentException(
+                    "The first object of a joint must be defined.");
+        }
+        if (b != null)
+        {
+            _scene.addLink(a, b);
+        }
+        if (_count == _type.length)
+        {
+            int capacity = _count * 2;
+            _type = grow(_type, capacity);
+            _objectA = grow(_objectA, capacity);
+            _objectB = grow(_objectB, capacity);
+            _offsetA = grow(_offsetA, capacity * 3);
+            _offsetB = grow(_offsetB, capacity * 3);
+            _axis = grow(_axis, capacity * 3);
+            _length = grow(_length, capacity);
+        }
+        _type[_count] = type;
+        _objectA[_count] = a;
+        _objectB[_count] = b;
+        for (int axisIndex = 0; axisIndex < 3; axisIndex++)
+        {
+            _offsetA[_count * 3 + axisIndex] = value(anchorA, axisIndex);
+            _offsetB[_count * 3 + axisIndex] = value(anchorB, axisIndex);
+            _axis[_count * 3 + axisIndex] = value(axis, axisIndex);
+        }
+        _length[_count] = length;
+        return _count++;
+    }
+
+    private static double value(double[] values, int index)
+    {
+        return values != null && index < values.length ? values[index] : 0.0;
+    }
+
+    private static int[] grow(int[] array, int capacity)
+    {
+        int[] result = new int[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static double[] grow(double[] array, int capacity)
+    {
+        double[] result = new double[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static GObject[] grow(GObject[] array, int capacity)
+    {
+        GObject[] result = new GObject[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /**
+     * Group the joints by island. Must be called once the
+     * islands of the step have been built.
+     * @param islands GIslandBuilder
+     */
+    public void prepare(GIslandBuilder islands)
+    {
+        int islandCount = islands.getIslandCount();
+        if (_islandStart.length < islandCount + 1)
+        {
+            _islandStart = new int[islandCount + 1];
+        }
+        if (_islandJoints.length < _count)
+        {
+            _islandJoints = new int[_type.length];
+        }
+        for (int index = 0; index <= islandCount; index++)
+        {
+            _islandStart[index] = 0;
+        }
+        for (int joint = 0; joint < _count; joint++)
+        {
+            _islandStart[islandOf(islands, joint) + 1]++;
+        }
+        for (int index = 0; index < islandCount; index++)
+        {
+            _islandStart[index + 1] += _islandStart[index];
+        }
+        if (_cursor.length < islandCount)
+        {
+            _cursor = new int[islandCount];
+        }
+        System.arraycopy(_islandStart, 0, _cursor, 0, islandCount);
+        for (int joint = 0; joint < _count; joint++)
+        {
+            _islandJoints[_cursor[islandOf(islands, joint)]++] = joint;
+        }
+    }
+
+    /**
+     * Return the island solving a joint : the island of the
+     * first object unless it is static.
+     */
+    private int islandOf(GIslandBuilder islands, int joint)
+    {
+        GObject a = _objectA[joint];
+        GObject b = _objectB[joint];
+        if (a.getBodyType() == GObject.BODY_STATIC && b != null)
+        {
+            return islands.getIsland(b._sceneIndex);
+        }
+        return islands.getIsland(a._sceneIndex);
+    }
+
+    /**
+     * Solve the joints of an island after its objects have
+     * been integrated. The islands are solved in parallel : the
+     * temporary vectors are given by the task solving the island.
+     * @param island int Index of the island
+     * @param dt double Time step
+     * @param vectors double[][] Temporary vectors (4 vectors of 3
+     * values)
+     */
+    public void solveIsland(int island, double dt, double[][] vectors)
+    {
+        int start = _islandStart[island];
+        int end = _islandStart[island + 1];
+        if (start == end)
+        {
+            return;
+        }
+        double[] direction = vectors[0];
+        double[] delta = vectors[1];
+        double[] armA = vectors[2];
+        double[] armB = vectors[3];
+        for (int iteration = 0; iteration < _velocityIterations; iteration++)
+        {
+            for (int index = start; index < end; index++)
+            {
+                solveVelocity(_islandJoints[index], direction, delta, armA,
+                              armB);
+            }
+        }
+        for (int iteration = 0; iteration < _positionIterations; iteration++)
+        {
+            for (int index = start; index < end; index++)
+            {
+                solvePosition(_islandJoints[index], direction, delta, armA,
+                              armB);
+            }
+        }
+    }
+
+    /**
+     * Compute the vector going from the anchor of the first object
+     * to the anchor of the second one, and the anchors relative to
+     * the centers of the objects in the inertial referential.
+     * @param joint int
+     * @param delta double[] Receives the vector
+     * @param armA double[] Receives the anchor of the first object
+     * @param armB double[] Receives the anchor of the second object
+     * (zero for a fixed point)
+     */
+    private void separation(int joint, double[] delta, double[] armA,
+                            double[] armB)
+    {
+        GObject a = _objectA[joint];
+        GObject b = _objectB[joint];
+        int offset = joint * 3;
+        toArm(a, _offsetA, offset, armA);
+        if (b != null)
+        {
+            toArm(b, _offsetB, offset, armB);
+        }
+        else
+        {
+            armB[0] = armB[1] = armB[2] = 0;
+        }
+        for (int axis = 0; axis < 3; axis++)
+        {
+            double pa = a.getWorldPosition(axis) + 0.5 * a.getDimension(axis) +
+                        armA[axis];
+            double pb = b != null ? b.getWorldPosition(axis) +
+                        0.5 * b.getDimension(axis) + armB[axis] :
+                        _offsetB[offset + axis];
+            delta[axis] = pb - pa;
+        }
+    }
+
+    /**
+     * Compute an anchor relative to the center of its object, in
+     * the inertial referential.
+     * @param object GObject
+     * @param offsets double[] Anchors of the joints
+     * @param offset int Offset of the anchor in offsets
+     * @param arm double[] Receives the anchor
+     */
+    private static void toArm(GObject object, double[] offsets, int offset,
+                              double[] arm)
+    {
+        object.toInertialReferential(
+                offsets[offset] - 0.5 * object.getDimension(0),
+                offsets[offset + 1] - 0.5 * object.getDimension(1),
+                offsets[offset + 2] - 0.5 * object.getDimension(2), arm);
+    }
+
+    /**
+     * Return the velocity of the anchor of the second object
+     * relative to the anchor of the first one along a direction.
+     */
+    private double relativeVelocity(int joint, double[] direction,
+                                    double[] armA, double[] armB)
+    {
+        double result = -velocity(_objectA[joint], direction, armA);
+        if (_objectB[joint] != null)
+        {
+            result += velocity(_objectB[joint], direction, armB);
+        }
+        return result;
+    }
+
+    /**
+     * Return the velocity of a point of an object along a
+     * direction : (v + w x r) . n.
+     */
+    private static double velocity(GObject object, double[] direction,
+                                   double[] arm)
+    {
+        double[] v = object.getLinearVelocity().getValues();
+        double[] w = object.getAngularVelocity().getValues();
+        double result = 0.0;
+        for (int axis = 0; axis < v.length; axis++)
+        {
+            result += v[axis] * direction[axis];
+        }
+        if (w.length == 1)
+        {
+            // planar object : w along the z axis
+            result += w[0] * (arm[0] * direction[1] - arm[1] * direction[0]);
+        }
+        else if (w.length == 3)
+        {
+            // (w x r) . n = w . (r x n)
+            result += w[0] * (arm[1] * direction[2] - arm[2] * direction[1]) +
+                      w[1] * (arm[2] * direction[0] - arm[0] * direction[2]) +
+                      w[2] * (arm[0] * direction[1] - arm[1] * direction[0]);
+        }
+        return result;
+    }
+
+    private double inverseMass(int joint)
+    {
+        return _objectA[joint].getInverseMass() +
+                (_objectB[joint] != null ? _objectB[joint].getInverseMass() : 0.0);
+    }
+
+    /**
+     * Return the inverse of the effective mass of a joint along a
+     * direction : inverse masses of the objects and their rotation
+     * around the anchors.
+     */
+    private double inverseMass(int joint, double[] direction, double[] armA,
+                               double[] armB)
+    {
+        double result = inverseMass(joint) +
+                        _objectA[joint].getAngularInverseMass(armA, direction);
+        if (_objectB[joint] != null)
+        {
+            result += _objectB[joint].getAngularInverseMass(armB, direction);
+        }
+        return result;
+    }
+
+    /**
+     * Apply an impulse at the anchors of a joint : +magnitude on
+     * the second object, -magnitude on the first one.
+     */
+    private void applyImpulse(int joint, double[] direction, double magnitude,
+                              double[] armA, double[] armB)
+    {
+        _objectA[joint].applyImpulse(direction, -magnitude, armA);
+        if (_objectB[joint] != null)
+        {
+            _objectB[joint].applyImpulse(direction, magnitude, armB);
+        }
+    }
+
+    /**
+     * Move and turn both objects of a joint along a direction
+     * weighted by their inverse masses and inertias.
+     */
+    private void applyCorrection(int joint, double[] direction,
+                                 double magnitude, double[] armA,
+                                 double[] armB)
+    {
+        _objectA[joint].applyCorrection(direction, -magnitude, armA);
+        if (_objectB[joint] != null)
+        {
+            _objectB[joint].applyCorrection(direction, magnitude, armB);
+        }
+    }
+
+    /**
+     * Normalize a vector in place.
+     * @return double Length of the vector before normalization.
+     */
+    private static double normalize(double[] vector)
+    {
+        double length = Math.sqrt(vector[0] * vector[0] +
+                                  vector[1] * vector[1] +
+                                  vector[2] * vector[2]);
+        if (length > 0)
+        {
+            vector[0] /= length;
+            vector[1] /= length;
+            vector[2] /= length;
+        }
+        return length;
+    }
+
+    /**
+     * Remove the relative velocity violating a joint.
+     */
+    private void solveVelocity(int joint, double[] direction, double[] delta,
+                               double[] armA, double[] armB)
+    {
+        if (inverseMass(joint) == 0)
+        {
+            return;
+        }
+        separation(joint, delta, armA, armB);
+        switch (_type[joint])
+        {
+            case JOINT_ROPE:
+                if (normalize(delta) < _length[joint])
+                {
+                    // slack rope
+                    return;
+                }
+                System.arraycopy(delta, 0, direction, 0, 3);
+                double stretch = relativeVelocity(joint, direction, armA, armB);
+                if (stretch > 0)
+                {
+                    // the rope can only pull
+                    applyImpulse(joint, direction, -stretch /
+                                 inverseMass(joint, direction, armA, armB),
+                                 armA, armB);
+                }
+                break;
+            case JOINT_DISTANCE:
+                if (normalize(delta) == 0)
+                {
+                    return;
+                }
+                System.arraycopy(delta, 0, direction, 0, 3);
+                applyImpulse(joint, direction,
+                             -relativeVelocity(joint, direction, armA, armB) /
+                             inverseMass(joint, direction, armA, armB),
+                             armA, armB);
+                break;
+            default:
+                // pin and slider : remove the relative velocity on
+                // each constrained axis
+                for (int axis = 0; axis < 3; axis++)
+                {
+                    constrainedAxis(joint, axis, direction);
+                    if (direction[0] != 0 || direction[1] != 0 ||
+                        direction[2] != 0)
+                    {
+                        applyImpulse(joint, direction,
+                                     -relativeVelocity(joint, direction,
+                                                       armA, armB) /
+                                     inverseMass(joint, direction, armA, armB),
+                                     armA, armB);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Project the positions of the objects of a joint.
+     */
+    private void solvePosition(int joint, double[] direction, double[] delta,
+                               double[] armA, double[] armB)
+    {
+        if (inverseMass(joint) == 0)
+        {
+            return;
+        }
+        separation(joint, delta, armA, armB);
+        switch (_type[joint])
+        {
+            case JOINT_ROPE:
+            case JOINT_DISTANCE:
+                double length = normalize(delta);
+                double error = length - _length[joint];
+                if (length == 0 || (_type[joint] == JOINT_ROPE && error <= 0))
+                {
+                    return;
+                }
+                applyCorrection(joint, delta, -error /
+                                inverseMass(joint, delta, armA, armB),
+                                armA, armB);
+                break;
+            default:
+                for (int axis = 0; axis < 3; axis++)
+                {
+                    constrainedAxis(joint, axis, direction);
+                    double projected = delta[0] * direction[0] +
+                                       delta[1] * direction[1] +
+                                       delta[2] * direction[2];
+                    if (projected != 0)
+                    {
+                        applyCorrection(joint, direction, -projected /
+                                        inverseMass(joint, direction, armA,
+                                                    armB), armA, armB);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Compute a constrained direction of a pin or slider joint.
+     * For a pin, all three axes are constrained; for a slider the
+     * axes are projected on the plane perpendicular to the slide
+     * (the projection of the axis parallel to the slide is null).
+     * @param joint int
+     * @param axis int Index of the axis (0 to 2)
+     * @param direction double[] Receives the direction
+     */
+    private void constrainedAxis(int joint, int axis, double[] direction)
+    {
+        direction[0] = direction[1] = direction[2] = 0;
+        direction[axis] = 1;
+        if (_type[joint] == JOINT_SLIDER)
+        {
+            int offset = joint * 3;
+            double dot = _axis[offset + axis];
+            for (int index = 0; index < 3; index++)
+            {
+                direction[index] -= dot * _axis[offset + index];
+            }
+            // the projected axes are not orthogonal : their
+            // coupling is resolved by the iterations.
+            if (normalize(direction) < 1e-9)
+            {
+                direction[0] = direction[1] = direction[2] = 0;
+            }
+        }
+    }
+}
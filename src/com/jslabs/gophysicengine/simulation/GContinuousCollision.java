@@ -0,0 +1,367 @@
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.maths.linear.GVector;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class implements the continuous collision detection of the objects
+ * flagged as bullets. After a regular step, the bounding box of each bullet is
+ * swept from its previous position to its new one against the bounding boxes
+ * of the other objects (see GObject.getBounds() : the boxes hold the rotated
+ * objects, and the sphere around the objects which spin). When an impact is
+ * found, the bullet is rewinded, advanced up to the time of impact, bounced
+ * and advanced for the rest of the step. Only the bullets are sub-stepped; the
+ * rest of the scene keeps its time step.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GContinuousCollision
+{
+    /**
+     * Fraction of the motion kept between the bullet and
+     * the surface it hits.
+     */
+    private final static double SEPARATION = 1e-6;
+
+    /**
+     * Maximum number of impacts resolved per bullet and per step.
+     */
+    private int _maxSubSteps = 8;
+
+    /**
+     * States of the bullets saved before the step.
+     */
+    private GObject[] _bullets = new GObject[0];
+    private double[][] _states = new double[0][];
+    private int _bulletCount;
+
+    // temporary values (avoid allocation during the step)
+    private double[] _aMin = new double[3], _aMax = new double[3];
+    private double[] _bMin = new double[3], _bMax = new double[3];
+    private double[] _start = new double[3], _end = new double[3];
+    private double[] _motion = new double[3];
+    private double[] _normal = new double[3], _bestNormal = new double[3];
+    private double[] _stepState = new double[0];
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Define the maximum number of impacts resolved for a
+     * bullet during a single step.
+     * @param count int Number of sub-steps.
+     */
+    public void setMaxSubSteps(int count)
+    {
+        _maxSubSteps = Math.max(1, count);
+    }
+
+    /**
+     * Compute the time of impact of a box moving linearly against
+     * a fixed box (slab method).
+     * @param aMin double[] Lower corner of the moving box at t = 0
+     * @param aMax double[] Upper corner of the moving box at t = 0
+     * @param motion double[] Displacement of the moving box for t = 1
+     * @param bMin double[] Lower corner of the fixed box
+     * @param bMax double[] Upper corner of the fixed box
+     * @param normal double[] Receives the normal of the hit face of
+     * the fixed box.
+     * @return double Time of impact between 0 and 1, or
+     * Double.POSITIVE_INFINITY if the boxes do not meet during
+     * the motion or are already overlapping.
+     */
+    public static double computeTimeOfImpact(double[] aMin, double[] aMax,
+                                             double[] motion, double[] bMin,
+                                             double[] bMax, double[] normal)
+    {
+        return computeTimeOfImpact(aMin, aMax, motion, bMin, bMax, 1.0,
+                                   normal);
+    }
+
+    /**
+     * Compute the time of impact of a box moving linearly against
+     * a fixed box, up to a given time.
+     * @param aMin double[] Lower corner of the moving box at t = 0
+     * @param aMax double[] Upper corner of the moving box at t = 0
+     * @param motion double[] Displacement of the moving box for t = 1
+     * @param bMin double[] Lower corner of the fixed box
+     * @param bMax double[] Upper corner of the fixed box
+     * @param limit double Maximum time of impact (may be infinite)
+     * @param normal double[] Receives the normal of the hit face of
+     * the fixed box.
+     * @return double Time of impact between 0 and the limit, or
+     * Double.POSITIVE_INFINITY if the boxes do not meet before the
+     * limit or are already overlapping.
+     */
+    public static double computeTimeOfImpact(double[] aMin, double[] aMax,
+                                             double[] motion, double[] bMin,
+                                             double[] bMax, double limit,
+                                             double[] normal)
+    {
+        double enter = Double.NEGATIVE_INFINITY;
+        double exit = Double.POSITIVE_INFINITY;
+        int enterAxis = -1;
+        for (int axis = 0; axis < 3; axis++)
+        {
+            double d = motion[axis];
+            if (d == 0)
+            {
+                // no motion : must already overlap on this axis.
+                if (aMax[axis] < bMin[axis] || aMin[axis] > bMax[axis])
+                {
+                    return Double.POSITIVE_INFINITY;
+                }
+                continue;
+            }
+            double t0 = ((d > 0 ? bMin[axis] : bMax[axis]) -
+                         (d > 0 ? aMax[axis] : aMin[axis])) / d;
+            double t1 = ((d > 0 ? bMax[axis] : bMin[axis]) -
+                         (d > 0 ? aMin[axis] : aMax[axis])) / d;
+            if (t0 > enter)
+            {
+                enter = t0;
+                enterAxis = axis;
+            }
+            exit = Math.min(exit, t1);
+        }
+        if (enterAxis < 0 || enter > exit || enter < 0 || enter > limit)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        normal[0] = normal[1] = normal[2] = 0;
+        normal[enterAxis] = motion[enterAxis] > 0 ? -1 : 1;
+        return enter;
+    }
+
+    /**
+     * Save the state of the awake bullets of the scene
+     * before the step.
+     * @param scene GScene
+     */
+    public void beginStep(GScene scene)
+    {
+        _bulletCount = 0;
+        for (int index = 0; index < scene.getNodeCount(); index++)
+        {
+            GObject node = scene.getNode(index);
+            if (node.isBullet() && node.isDynamic() && node.isAwake())
+            {
+                if (_bulletCount == _bullets.length)
+                {
+                    GObject[] bullets = new GObject[_bulletCount * 2 + 1];
+                    double[][] states = new double[bullets.length][];
+                    System.arraycopy(_bullets, 0, bullets, 0, _bulletCount);
+                    System.arraycopy(_states, 0, states, 0, _bulletCount);
+                    _bullets = bullets;
+                    _states = states;
+                }
+                if (_states[_bulletCount] == null ||
+                    _states[_bulletCount].length < node.getStateSize())
+                {
+                    _states[_bulletCount] = new double[node.getStateSize()];
+                }
+                node.saveState(_states[_bulletCount]);
+                _bullets[_bulletCount++] = node;
+            }
+        }
+    }
+
+    /**
+     * Detect and resolve the impacts of the bullets saved by
+     * beginStep() once the scene has been stepped.
+     * @param scene GScene
+     * @param t double Time at the beginning of the step
+     * @param dt double Time step
+     */
+    public void endStep(GScene scene, double t, double dt)
+    {
+        for (int index = 0; index < _bulletCount; index++)
+        {
+            GObject bullet = _bullets[index];
+            if (_stepState.length < bullet.getStateSize())
+            {
+                _stepState = new double[bullet.getStateSize()];
+            }
+            // position at the end of the step
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _end[axis] = bullet.getWorldPosition(axis);
+            }
+            // rewind to the beginning of the step
+            bullet.saveState(_stepState);
+            bullet.restoreState(_states[index]);
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _start[axis] = bullet.getWorldPosition(axis);
+            }
+            GObject target = findImpact(scene, bullet, dt);
+            if (target == null)
+            {
+                // no impact : keep the regular step
+                bullet.restoreState(_stepState);
+                continue;
+            }
+            subStep(scene, bullet, target, t, dt);
+        }
+    }
+
+    /**
+     * Advance a bullet up to its impacts until the end of the step.
+     * The bullet is at the beginning of the step and its first impact
+     * has been found with findImpact().
+     * @param scene GScene
+     * @param bullet GObject
+     * @param target GObject First object hit
+     * @param t double Time at the beginning of the step
+     * @param dt double Time step
+     */
+    private void subStep(GScene scene, GObject bullet, GObject target,
+                         double t, double dt)
+    {
+        double remaining = dt;
+        int subSteps = 0;
+        while (target != null && remaining > 0)
+        {
+            double toi = computeTimeOfImpact(_aMin, _aMax, _motion, _bMin,
+                                             _bMax, _bestNormal);
+            double fraction = Math.max(0.0, toi - SEPARATION);
+            if (fraction > 0)
+            {
+                bullet.update(t, fraction * remaining);
+            }
+            // place the bullet at the impact point
+            for (int axis = 0; axis < bullet.getPosition().getSize(); axis++)
+            {
+                bullet.getPosition().setValue(axis,
+                        bullet.getPosition().getValue(axis) -
+                        bullet.getWorldPosition(axis) +
+                        _start[axis] + fraction * (_end[axis] - _start[axis]));
+            }
+            bounce(bullet, target, _bestNormal);
+            scene.addContact(bullet, target);
+
+            t += fraction * remaining;
+            remaining -= fraction * remaining;
+            if (++subSteps >= _maxSubSteps || remaining <= 0)
+            {
+                break;
+            }
+            // advance for the rest of the step and look for
+            // another impact.
+            bullet.saveState(_stepState);
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _start[axis] = bullet.getWorldPosition(axis);
+            }
+            bullet.update(t, remaining);
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _end[axis] = bullet.getWorldPosition(axis);
+            }
+            bullet.restoreState(_stepState);
+            target = findImpact(scene, bullet, remaining);
+            if (target == null)
+            {
+                bullet.update(t, remaining);
+            }
+        }
+    }
+
+    /**
+     * Find the first object hit by the bullet moving from
+     * _start to _end. The bounding boxes and motion of the impact
+     * are left in _aMin, _aMax, _bMin, _bMax and _motion.
+     * @param scene GScene
+     * @param bullet GObject
+     * @param dt double Duration of the motion
+     * @return GObject The first object hit, or null.
+     */
+    private GObject findImpact(GScene scene, GObject bullet, double dt)
+    {
+        GObject first = null;
+        double firstToi = Double.POSITIVE_INFINITY;
+        for (int index = 0; index < scene.getNodeCount(); index++)
+        {
+            GObject other = scene.getNode(index);
+            if (other == bullet)
+            {
+                continue;
+            }
+            bullet.getBounds(_aMin, _aMax);
+            other.getBounds(_bMin, _bMax);
+            GVector v = other.getLinearVelocity();
+            for (int axis = 0; axis < 3; axis++)
+            {
+                // the other object is moved back to the beginning of
+                // the step; the motion is relative to it.
+                double otherMotion = other.isAwake() && axis < v.getSize() ?
+                                     v.getValue(axis) * dt : 0.0;
+                _bMin[axis] -= otherMotion;
+                _bMax[axis] -= otherMotion;
+                _motion[axis] = _end[axis] - _start[axis] - otherMotion;
+            }
+            double toi = computeTimeOfImpact(_aMin, _aMax, _motion, _bMin,
+                                             _bMax, _normal);
+            if (toi < firstToi)
+            {
+                firstToi = toi;
+                first = other;
+                System.arraycopy(_normal, 0, _bestNormal, 0, 3);
+            }
+        }
+        if (first != null)
+        {
+            // restore the boxes of the first impact
+            bullet.getBounds(_aMin, _aMax);
+            first.getBounds(_bMin, _bMax);
+            GVector v = first.getLinearVelocity();
+            for (int axis = 0; axis < 3; axis++)
+            {
+                double otherMotion = first.isAwake() && axis < v.getSize() ?
+                                     v.getValue(axis) * dt : 0.0;
+                _bMin[axis] -= otherMotion;
+                _bMax[axis] -= otherMotion;
+                _motion[axis] = _end[axis] - _start[axis] - otherMotion;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Apply the impulse of the impact to both objects along
+     * the normal (3 values).
+     * @param bullet GObject
+     * @param target GObject
+     * @param normal double[] Normal of the hit face of the target.
+     */
+    static void bounce(GObject bullet, GObject target, double[] normal)
+    {
+        GVector va = bullet.getLinearVelocity();
+        GVector vb = target.getLinearVelocity();
+        double relative = 0.0;
+        for (int axis = 0; axis < va.getSize(); axis++)
+        {
+            relative += (va.getValue(axis) -
+                         (axis < vb.getSize() ? vb.getValue(axis) : 0.0)) *
+                    normal[axis];
+        }
+        double inverseMass = bullet.getInverseMass() + target.getInverseMass();
+        if (relative >= 0 || inverseMass == 0)
+        {
+            // objects are separating
+            return;
+        }
+        double restitution = Math.min(bullet.getRestitution(),
+                                      target.getRestitution());
+        double j = -(1.0 + restitution) * relative / inverseMass;
+        // the impulses along the normal do not allocate
+        bullet.applyImpulse(normal, j);
+        if (target.isDynamic())
+        {
+            target.applyImpulse(normal, -j);
+        }
+    }
+}
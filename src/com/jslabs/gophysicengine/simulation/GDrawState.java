@@ -0,0 +1,104 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>State with which an object is drawn : its position in the body
+ * referential, the orientation matrix of a 3D object (a planar object is
+ * rotated by the transformation of the Graphics) and points in which the
+ * object projects its shape. It is handed to drawObject() and
+ * rasterizeObject() instead of being kept in the object, so that several
+ * threads can draw the same object at once, each with its own state.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GDrawState
+{
+    /**
+     * Number of points of the state.
+     */
+    public final static int POINTS = 8;
+
+    private double _x, _y;
+    // row major
+    private double[] _matrix = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+    private double[][] _points = new double[POINTS][2];
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Define the position of the object drawn.
+     * @param x double Position in the body referential
+     * @param y double
+     */
+    void setPosition(double x, double y)
+    {
+        _x = x;
+        _y = y;
+    }
+
+    /**
+     * Define the orientation of the object drawn.
+     * @param q double[] Orientation quaternion [w,x,y,z]
+     * @param offset int Offset of the quaternion in q
+     */
+    void setOrientation(double[] q, int offset)
+    {
+        double w = q[offset], qx = q[offset + 1], qy = q[offset + 2],
+                qz = q[offset + 3];
+        double norm = w * w + qx * qx + qy * qy + qz * qz;
+        double s = norm == 0 ? 0.0 : 2.0 / norm;
+        double[] r = _matrix;
+        r[0] = 1 - s * (qy * qy + qz * qz);
+        r[1] = s * (qx * qy - w * qz);
+        r[2] = s * (qx * qz + w * qy);
+        r[3] = s * (qx * qy + w * qz);
+        r[4] = 1 - s * (qx * qx + qz * qz);
+        r[5] = s * (qy * qz - w * qx);
+        r[6] = s * (qx * qz - w * qy);
+        r[7] = s * (qy * qz + w * qx);
+        r[8] = 1 - s * (qx * qx + qy * qy);
+    }
+
+    /**
+     * Return the position of the object drawn along x.
+     * @return double
+     */
+    public double getX()
+    {
+        return _x;
+    }
+
+    /**
+     * Return the position of the object drawn along y.
+     * @return double
+     */
+    public double getY()
+    {
+        return _y;
+    }
+
+    /**
+     * Return the orientation matrix of the object drawn (row
+     * major, 9 values).
+     * @return double[]
+     */
+    public double[] getMatrix()
+    {
+        return _matrix;
+    }
+
+    /**
+     * Return a point in which the object can project a point
+     * of its shape.
+     * @param index int Index of the point (0 to POINTS - 1)
+     * @return double[] Coordinates (x, y)
+     */
+    public double[] getPoint(int index)
+    {
+        return _points[index];
+    }
+}
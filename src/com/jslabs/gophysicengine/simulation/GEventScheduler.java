@@ -0,0 +1,774 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class simulates a scene from event to event instead of stepping all
+ * objects at a fixed time step. Each object has its own local time and is
+ * only advanced with its own integrator when one of its events is processed,
+ * or when a reader synchronizes it (see synchronize()). The snapshots of the
+ * scene do not advance the objects : they move the positions read along the
+ * trajectories (see extrapolate()). Events (collisions,
+ * user defined events, cell crossings and prediction horizons) are held in a
+ * priority queue. When the trajectory of an object changes, its version is
+ * incremented : the events predicted with the previous trajectory stay in the
+ * queue and are discarded when popped (lazy invalidation).</p>
+ * <p>The trajectories are taken from the integrator : an object which keeps
+ * its velocity during a local step (and does not spin) moves at constant
+ * velocity until its next event, and is advanced in one update. The other
+ * objects move along the chord of their next local step, and are predicted
+ * again at its end (prediction horizon). The objects are held in a uniform
+ * grid of cells larger than the moving objects : the collisions are only
+ * predicted against the objects of the neighbouring cells, and the static
+ * objects larger than a cell, and an object is predicted again when it
+ * crosses a cell.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GEventScheduler
+{
+    /**
+     * Event types
+     */
+    // collision between two objects
+    public final static int EVENT_COLLISION = 0;
+    // user defined event (IGEventPredictor)
+    public final static int EVENT_USER = 1;
+    // end of the validity of the predictions of an object
+    public final static int EVENT_HORIZON = 2;
+    // object leaving its cell of the grid
+    public final static int EVENT_CELL = 3;
+
+    /**
+     * Ratio between the size of the cells and the size of the
+     * largest moving object.
+     */
+    private final static double CELL_MARGIN = 1.1;
+
+    /**
+     * Event of the queue.
+     */
+    class Event
+            implements Comparable
+    {
+        double _time;
+        int _type;
+        int _a, _b;
+        int _versionA, _versionB;
+        // predictor of a user event, side of the cell left
+        int _predictor;
+        double[] _normal;
+
+        public int compareTo(Object o)
+        {
+            return Double.compare(_time, ((Event) o)._time);
+        }
+    }
+
+    /**
+     * Scene simulated.
+     */
+    private GScene _scene;
+
+    /**
+     * Queue of the predicted events.
+     */
+    private PriorityQueue _queue = new PriorityQueue();
+
+    /**
+     * Local time and trajectory version of each object.
+     */
+    private double[] _localTime = new double[0];
+    private int[] _version = new int[0];
+
+    /**
+     * Trajectory of each object from its local time : velocity
+     * of its center (3 values per object), end of validity, and
+     * true if the object moves at constant velocity.
+     */
+    private double[] _velocity = new double[0];
+    private double[] _validUntil = new double[0];
+    private boolean[] _ballistic = new boolean[0];
+
+    /**
+     * Uniform grid : cell of each object (3 values per object),
+     * chained lists of the objects of the cells hashed in the
+     * buckets, and static objects larger than a cell.
+     */
+    private double _cellSize = 1.0;
+    private int[] _cell = new int[0];
+    private int[] _head = new int[0];
+    private int[] _next = new int[0];
+    private boolean[] _large = new boolean[0];
+    private int[] _largeObjects = new int[0];
+    private int _largeCount;
+
+    /**
+     * User defined event predictors.
+     */
+    private Vector _predictors = new Vector();
+
+    /**
+     * Current time of the scene.
+     */
+    private double _time;
+
+    /**
+     * Time step of the local integrator.
+     */
+    private double _maxLocalStep = 0.05;
+
+    /**
+     * Number of events processed and discarded.
+     */
+    private long _processedCount, _discardedCount;
+
+    // temporary values
+    private double[] _aMin = new double[3], _aMax = new double[3];
+    private double[] _bMin = new double[3], _bMax = new double[3];
+    private double[] _motion = new double[3], _normal = new double[3];
+    private double[] _start = new double[3];
+    private double[] _state = new double[0];
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build a scheduler for a compiled scene.
+     * @param scene GScene
+     */
+    public GEventScheduler(GScene scene)
+    {
+        _scene = scene;
+    }
+
+    /**
+     * Add a user defined event predictor.
+     * @param predictor IGEventPredictor
+     */
+    public void addPredictor(IGEventPredictor predictor)
+    {
+        _predictors.add(predictor);
+    }
+
+    /**
+     * Define the time step used to advance an object accelerated
+     * by its forces between two events. It is also the duration
+     * of validity of its predictions.
+     * @param dt double
+     */
+    public void setMaxLocalStep(double dt)
+    {
+        _maxLocalStep = dt;
+    }
+
+    /**
+     * Return the current time of the scheduler.
+     * @return double
+     */
+    public double getTime()
+    {
+        return _time;
+    }
+
+    /**
+     * Return the number of valid events processed.
+     * @return long
+     */
+    public long getProcessedEventCount()
+    {
+        return _processedCount;
+    }
+
+    /**
+     * Return the number of invalidated events discarded.
+     * @return long
+     */
+    public long getDiscardedEventCount()
+    {
+        return _discardedCount;
+    }
+
+    /**
+     * Start the simulation at a given time : all objects are
+     * synchronized at this time, placed in the grid and their
+     * events predicted.
+     * @param t double Initial time
+     */
+    public void initialize(double t)
+    {
+        int count = _scene.getNodeCount();
+        _localTime = new double[count];
+        _version = new int[count];
+        _velocity = new double[3 * count];
+        _validUntil = new double[count];
+        _ballistic = new boolean[count];
+        _cell = new int[3 * count];
+        _next = new int[count];
+        _large = new boolean[count];
+        _largeObjects = new int[count];
+        _largeCount = 0;
+        _queue.clear();
+        _time = t;
+        // the cells hold the largest moving object
+        double size = 0;
+        int stateSize = 0;
+        for (int index = 0; index < count; index++)
+        {
+            GObject object = _scene.getNode(index);
+            if (object.getBodyType() != GObject.BODY_STATIC)
+            {
+                size = Math.max(size, getDiameter(object));
+            }
+            stateSize = Math.max(stateSize, object.getStateSize());
+        }
+        _cellSize = size > 0 ? CELL_MARGIN * size : 1.0;
+        _state = new double[stateSize];
+        int buckets = 1;
+        while (buckets < 2 * count)
+        {
+            buckets <<= 1;
+        }
+        _head = new int[buckets];
+        Arrays.fill(_head, -1);
+        for (int index = 0; index < count; index++)
+        {
+            _localTime[index] = t;
+            if (getDiameter(_scene.getNode(index)) > _cellSize)
+            {
+                _large[index] = true;
+                _largeObjects[_largeCount++] = index;
+            }
+            else
+            {
+                insert(index);
+            }
+            computeTrajectory(index);
+        }
+        for (int index = 0; index < count; index++)
+        {
+            predict(index, index + 1);
+        }
+    }
+
+    /**
+     * Process all events up to a time. The objects are not
+     * advanced to this time : they stay at the time of their last
+     * event until an event or a reader (see synchronize()) needs
+     * them.
+     * @param t double Time to reach
+     */
+    public void advanceTo(double t)
+    {
+        if (_localTime.length != _scene.getNodeCount())
+        {
+            initialize(_time);
+        }
+        while (!_queue.isEmpty() && ((Event) _queue.peek())._time <= t)
+        {
+            Event event = (Event) _queue.poll();
+            if (_version[event._a] != event._versionA ||
+                (event._b >= 0 && _version[event._b] != event._versionB))
+            {
+                _discardedCount++;
+                continue;
+            }
+            process(event);
+            _processedCount++;
+        }
+        _time = t;
+    }
+
+    /**
+     * Advance all objects to the current time, before reading
+     * their state (snapshot of the scene...). Their trajectories
+     * and events are not changed.
+     */
+    public void synchronize()
+    {
+        for (int index = 0; index < _localTime.length; index++)
+        {
+            advance(index, _time);
+        }
+    }
+
+    /**
+     * Advance an object to the current time before reading its
+     * state.
+     * @param object GObject
+     */
+    public void synchronize(GObject object)
+    {
+        for (int index = 0; index < _localTime.length; index++)
+        {
+            if (_scene.getNode(index) == object)
+            {
+                advance(index, _time);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Move a position read from an object along its trajectory,
+     * from the local time of the object to the current time. The
+     * object is not advanced, so that a snapshot of the scene
+     * costs no integration; the orientation read is the one of
+     * the local time, at most one local step late.
+     * @param index int Index of the object
+     * @param position double[] Position read from the object
+     * @param offset int Offset of the position in the array (3
+     * values)
+     */
+    void extrapolate(int index, double[] position, int offset)
+    {
+        if (index >= _localTime.length)
+        {
+            return;
+        }
+        double dt = _time - _localTime[index];
+        if (dt <= 0 || !_scene.getNode(index).isAwake())
+        {
+            return;
+        }
+        for (int axis = 0; axis < 3; axis++)
+        {
+            position[offset + axis] += _velocity[3 * index + axis] * dt;
+        }
+    }
+
+    /**
+     * Process a valid event and predict again the events of
+     * the objects involved.
+     * @param event Event
+     */
+    private void process(Event event)
+    {
+        GObject a = _scene.getNode(event._a);
+        advance(event._a, event._time);
+        if (event._type == EVENT_COLLISION)
+        {
+            GObject b = _scene.getNode(event._b);
+            advance(event._b, event._time);
+            GContinuousCollision.bounce(a, b, event._normal);
+            _version[event._b]++;
+            computeTrajectory(event._b);
+            move(event._b);
+        }
+        else if (event._type == EVENT_USER)
+        {
+            ((IGEventPredictor) _predictors.get(event._predictor)).handle(
+                    a, event._time);
+        }
+        _version[event._a]++;
+        computeTrajectory(event._a);
+        if (event._type == EVENT_CELL)
+        {
+            // the center is on the side of the cell : the next cell
+            // is not computed from the position
+            int offset = 3 * event._a + event._predictor / 2;
+            remove(event._a);
+            _cell[offset] += event._predictor % 2 == 1 ? 1 : -1;
+            insert(event._a, _cell[3 * event._a], _cell[3 * event._a + 1],
+                   _cell[3 * event._a + 2]);
+        }
+        else
+        {
+            move(event._a);
+        }
+        predict(event._a, 0);
+        if (event._type == EVENT_COLLISION)
+        {
+            predict(event._b, 0);
+        }
+    }
+
+    /**
+     * Advance an object from its local time to a given time
+     * with its own integrator : in one update if it moves at
+     * constant velocity, in local steps otherwise.
+     * @param index int Index of the object
+     * @param t double Time to reach
+     */
+    private void advance(int index, double t)
+    {
+        GObject object = _scene.getNode(index);
+        double time = _localTime[index];
+        if (!object.isAwake() || time >= t)
+        {
+            _localTime[index] = Math.max(time, t);
+            return;
+        }
+        if (!object.isDynamic())
+        {
+            object.advanceKinematic(t - time);
+        }
+        else if (_ballistic[index])
+        {
+            object.update(time, t - time);
+        }
+        else
+        {
+            while (time < t)
+            {
+                double dt = Math.min(_maxLocalStep, t - time);
+                object.update(time, dt);
+                time += dt;
+            }
+        }
+        _localTime[index] = t;
+    }
+
+    /**
+     * Compute the trajectory of an object from its local time.
+     * A dynamic object is moved by a local step of its integrator
+     * and brought back : if its velocity did not change, it moves
+     * at constant velocity until its next event; otherwise it
+     * moves along the chord of the step until the end of the step.
+     * @param index int Index of the object
+     */
+    private void computeTrajectory(int index)
+    {
+        GObject object = _scene.getNode(index);
+        int offset = 3 * index;
+        _ballistic[index] = true;
+        _validUntil[index] = Double.POSITIVE_INFINITY;
+        if (!object.isDynamic() || !object.isAwake())
+        {
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _velocity[offset + axis] = velocity(object, axis);
+            }
+            return;
+        }
+        boolean accelerated = false;
+        for (int axis = 0; axis < object.getAngularVelocity().getSize();
+                           axis++)
+        {
+            accelerated |= object.getAngularVelocity().getValue(axis) != 0;
+        }
+        for (int axis = 0; axis < 3; axis++)
+        {
+            _start[axis] = getCenter(object, axis);
+            _velocity[offset + axis] = velocity(object, axis);
+        }
+        object.saveState(_state);
+        object.update(_localTime[index], _maxLocalStep);
+        for (int axis = 0; axis < 3; axis++)
+        {
+            accelerated |= velocity(object, axis) != _velocity[offset + axis];
+            _motion[axis] = getCenter(object, axis) - _start[axis];
+        }
+        object.restoreState(_state);
+        if (accelerated)
+        {
+            _ballistic[index] = false;
+            _validUntil[index] = _localTime[index] + _maxLocalStep;
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _velocity[offset + axis] = _motion[axis] / _maxLocalStep;
+            }
+        }
+    }
+
+    /**
+     * Predict the events of an object : collisions against the
+     * objects of the neighbouring cells and the large objects,
+     * user defined events, crossing of its cell and prediction
+     * horizon.
+     * @param index int Index of the object
+     * @param first int Collisions are only predicted with the
+     * static objects and the objects from this index (to predict
+     * each pair once during the initialization).
+     */
+    private void predict(int index, int first)
+    {
+        GObject a = _scene.getNode(index);
+        double t = _localTime[index];
+        if (a.getBodyType() == GObject.BODY_STATIC)
+        {
+            return;
+        }
+        int offset = 3 * index;
+        for (int x = _cell[offset] - 1; x <= _cell[offset] + 1; x++)
+        {
+            for (int y = _cell[offset + 1] - 1; y <= _cell[offset + 1] + 1;
+                         y++)
+            {
+                for (int z = _cell[offset + 2] - 1;
+                             z <= _cell[offset + 2] + 1; z++)
+                {
+                    for (int other = _head[hash(x, y, z)]; other >= 0;
+                                     other = _next[other])
+                    {
+                        // the buckets are shared by several cells
+                        if (_cell[3 * other] == x &&
+                            _cell[3 * other + 1] == y &&
+                            _cell[3 * other + 2] == z)
+                        {
+                            predictCollision(index, other, first);
+                        }
+                    }
+                }
+            }
+        }
+        for (int large = 0; large < _largeCount; large++)
+        {
+            predictCollision(index, _largeObjects[large], first);
+        }
+        for (int p = 0; p < _predictors.size(); p++)
+        {
+            double time = ((IGEventPredictor) _predictors.get(p)).predict(a, t);
+            if (time >= t && time < Double.POSITIVE_INFINITY)
+            {
+                schedule(time, EVENT_USER, index, -1, p, null);
+            }
+        }
+        predictCellCrossing(index);
+        if (!_ballistic[index])
+        {
+            schedule(_validUntil[index], EVENT_HORIZON, index, -1, -1, null);
+        }
+    }
+
+    /**
+     * Predict the time at which the center of an object leaves
+     * its cell, if it is before the end of its trajectory.
+     * @param index int Index of the object
+     */
+    private void predictCellCrossing(int index)
+    {
+        if (_large[index])
+        {
+            return;
+        }
+        GObject object = _scene.getNode(index);
+        int offset = 3 * index;
+        double exit = Double.POSITIVE_INFINITY;
+        int side = -1;
+        for (int axis = 0; axis < 3; axis++)
+        {
+            double v = _velocity[offset + axis];
+            if (v == 0)
+            {
+                continue;
+            }
+            double bound = (_cell[offset + axis] + (v > 0 ? 1 : 0)) *
+                           _cellSize;
+            double dt = (bound - getCenter(object, axis)) / v;
+            if (dt < exit)
+            {
+                exit = dt;
+                side = 2 * axis + (v > 0 ? 1 : 0);
+            }
+        }
+        double time = _localTime[index] + Math.max(exit, 0.0);
+        if (side >= 0 && time <= _validUntil[index])
+        {
+            schedule(time, EVENT_CELL, index, -1, side, null);
+        }
+    }
+
+    /**
+     * Predict the collision of two objects moving along their
+     * trajectories, until the end of the first one to end.
+     * @param a int Index of the first object
+     * @param b int Index of the second object
+     * @param first int Collisions are only predicted with the
+     * static objects and the objects from this index
+     */
+    private void predictCollision(int a, int b, int first)
+    {
+        GObject objectA = _scene.getNode(a);
+        GObject objectB = _scene.getNode(b);
+        if (b == a || (b < first &&
+                       objectB.getBodyType() != GObject.BODY_STATIC))
+        {
+            return;
+        }
+        double t = _localTime[a];
+        objectA.getBounds(_aMin, _aMax);
+        objectB.getBounds(_bMin, _bMax);
+        // extrapolate the second object to the time of the first
+        double lag = t - _localTime[b];
+        for (int axis = 0; axis < 3; axis++)
+        {
+            double vB = _velocity[3 * b + axis];
+            _bMin[axis] += vB * lag;
+            _bMax[axis] += vB * lag;
+            _motion[axis] = _velocity[3 * a + axis] - vB;
+        }
+        double duration = Math.min(_validUntil[a], _validUntil[b]) - t;
+        double toi = GContinuousCollision.computeTimeOfImpact(_aMin, _aMax,
+                _motion, _bMin, _bMax, duration, _normal);
+        if (toi < Double.POSITIVE_INFINITY)
+        {
+            schedule(t + toi, EVENT_COLLISION, a, b, -1, _normal.clone());
+        }
+    }
+
+    /**
+     * Return the velocity of an awake object along an axis.
+     * @param object GObject
+     * @param axis int
+     * @return double
+     */
+    private static double velocity(GObject object, int axis)
+    {
+        return object.isAwake() && axis < object.getLinearVelocity().getSize() ?
+               object.getLinearVelocity().getValue(axis) : 0.0;
+    }
+
+    /**
+     * Return the center of an object along an axis, whatever
+     * its orientation.
+     * @param object GObject
+     * @param axis int
+     * @return double
+     */
+    private static double getCenter(GObject object, int axis)
+    {
+        return object.getWorldPosition(axis) + 0.5 * object.getDimension(axis);
+    }
+
+    /**
+     * Return the diameter of the sphere around an object.
+     * @param object GObject
+     * @return double
+     */
+    private static double getDiameter(GObject object)
+    {
+        double sum = 0;
+        for (int axis = 0; axis < 3; axis++)
+        {
+            sum += object.getDimension(axis) * object.getDimension(axis);
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Return the bucket of a cell.
+     * @param x int Cell
+     * @param y int
+     * @param z int
+     * @return int
+     */
+    private int hash(int x, int y, int z)
+    {
+        return (x * 73856093 ^ y * 19349663 ^ z * 83492791) &
+                (_head.length - 1);
+    }
+
+    /**
+     * Insert an object in the cell of its center.
+     * @param index int Index of the object
+     */
+    private void insert(int index)
+    {
+        GObject object = _scene.getNode(index);
+        insert(index, cell(object, 0), cell(object, 1), cell(object, 2));
+    }
+
+    /**
+     * Insert an object in a cell.
+     * @param index int Index of the object
+     * @param x int Cell
+     * @param y int
+     * @param z int
+     */
+    private void insert(int index, int x, int y, int z)
+    {
+        _cell[3 * index] = x;
+        _cell[3 * index + 1] = y;
+        _cell[3 * index + 2] = z;
+        int bucket = hash(x, y, z);
+        _next[index] = _head[bucket];
+        _head[bucket] = index;
+    }
+
+    /**
+     * Remove an object from its cell.
+     * @param index int Index of the object
+     */
+    private void remove(int index)
+    {
+        int bucket = hash(_cell[3 * index], _cell[3 * index + 1],
+                          _cell[3 * index + 2]);
+        if (_head[bucket] == index)
+        {
+            _head[bucket] = _next[index];
+            return;
+        }
+        for (int other = _head[bucket]; other >= 0; other = _next[other])
+        {
+            if (_next[other] == index)
+            {
+                _next[other] = _next[index];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Move an object to the cell of its center.
+     * @param index int Index of the object
+     */
+    private void move(int index)
+    {
+        if (_large[index])
+        {
+            return;
+        }
+        GObject object = _scene.getNode(index);
+        int x = cell(object, 0), y = cell(object, 1), z = cell(object, 2);
+        int offset = 3 * index;
+        if (x != _cell[offset] || y != _cell[offset + 1] ||
+            z != _cell[offset + 2])
+        {
+            remove(index);
+            insert(index, x, y, z);
+        }
+    }
+
+    /**
+     * Return the cell of the center of an object along an axis.
+     * @param object GObject
+     * @param axis int
+     * @return int
+     */
+    private int cell(GObject object, int axis)
+    {
+        return (int) Math.floor(getCenter(object, axis) / _cellSize);
+    }
+
+    /**
+     * Insert an event in the queue.
+     * @param time double Time of the event
+     * @param type int Type of the event
+     * @param a int Index of the object
+     * @param b int Index of the second object of a collision (-1
+     * otherwise)
+     * @param predictor int Index of the predictor of a user event,
+     * side of the cell left by a cell crossing (2 * axis, + 1 for
+     * the upper side), -1 otherwise
+     * @param normal double[] Normal of the collision
+     */
+    private void schedule(double time, int type, int a, int b, int predictor,
+                          double[] normal)
+    {
+        Event event = new Event();
+        event._time = time;
+        event._type = type;
+        event._a = a;
+        event._b = b;
+        event._versionA = _version[a];
+        event._versionB = b >= 0 ? _version[b] : 0;
+        event._predictor = predictor;
+        event._normal = normal;
+        _queue.add(event);
+    }
+}
@@ -0,0 +1,208 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class holds the uniform force fields of a scene : gravity, linear
+ * drag and wind. Every field is linear in the mass and the velocity of the
+ * objects, so the fields are combined once into an acceleration g, a force
+ * c w and a damping c, and each object receives m g + c w - c v. The
+ * fields are applied by the scene to all its dynamic objects in the loop
+ * clearing the external forces, in addition to the force function of each
+ * object; the damping is evaluated with the velocity of each integration
+ * stage.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GForceField
+{
+    /**
+     * Field types
+     */
+    // acceleration applied to all objects (m g)
+    public final static int FIELD_GRAVITY = 0;
+    // linear drag (-c v)
+    public final static int FIELD_DRAG = 1;
+    // linear drag relative to the wind (c (w - v))
+    public final static int FIELD_WIND = 2;
+
+    /**
+     * Fields : type, vector (3 values per field, acceleration or
+     * wind velocity) and coefficient.
+     */
+    private int _count;
+    private int[] _type = new int[4];
+    private double[] _vector = new double[12];
+    private double[] _coefficient = new double[4];
+
+    /**
+     * Combined fields.
+     */
+    private double[] _gravity = new double[3];
+    private double[] _wind = new double[3];
+    private double _damping;
+    private boolean _combined = true;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Add a uniform gravity field.
+     * @param gx double Acceleration (m/s^2)
+     * @param gy double
+     * @param gz double
+     * @return int Index of the field
+     */
+    public int addGravity(double gx, double gy, double gz)
+    {
+        return addField(FIELD_GRAVITY, gx, gy, gz, 0.0);
+    }
+
+    /**
+     * Add a linear drag.
+     * @param c double Drag coefficient (kg/s)
+     * @return int Index of the field
+     */
+    public int addDrag(double c)
+    {
+        return addField(FIELD_DRAG, 0.0, 0.0, 0.0, c);
+    }
+
+    /**
+     * Add a uniform wind : the objects are dragged toward the
+     * velocity of the wind.
+     * @param wx double Velocity of the wind (m/s)
+     * @param wy double
+     * @param wz double
+     * @param c double Drag coefficient (kg/s)
+     * @return int Index of the field
+     */
+    public int addWind(double wx, double wy, double wz, double c)
+    {
+        return addField(FIELD_WIND, wx, wy, wz, c);
+    }
+
+    private int addField(int type, double x, double y, double z,
+                         double coefficient)
+    {
+        if (_count == _type.length)
+        {
+            int[] type2 = new int[_count * 2];
+            double[] vector2 = new double[_count * 6];
+            double[] coefficient2 = new double[_count * 2];
+            System.arraycopy(_type, 0, type2, 0, _count);
+            System.arraycopy(_vector, 0, vector2, 0, _count * 3);
+            System.arraycopy(_coefficient, 0, coefficient2, 0, _count);
+            _type = type2;
+            _vector = vector2;
+            _coefficient = coefficient2;
+        }
+        _type[_count] = type;
+        _coefficient[_count] = coefficient;
+        _count++;
+        setVector(_count - 1, x, y, z);
+        return _count - 1;
+    }
+
+    /**
+     * Change the acceleration of a gravity field or the velocity
+     * of a wind.
+     * @param field int Index of the field
+     * @param x double
+     * @param y double
+     * @param z double
+     */
+    public void setVector(int field, double x, double y, double z)
+    {
+        _vector[field * 3] = x;
+        _vector[field * 3 + 1] = y;
+        _vector[field * 3 + 2] = z;
+        _combined = false;
+    }
+
+    /**
+     * Change the coefficient of a drag or of a wind.
+     * @param field int Index of the field
+     * @param c double
+     */
+    public void setCoefficient(int field, double c)
+    {
+        _coefficient[field] = c;
+        _combined = false;
+    }
+
+    /**
+     * Return the number of fields.
+     * @return int
+     */
+    public int getFieldCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Remove all the fields.
+     */
+    public void clear()
+    {
+        _count = 0;
+        _combined = false;
+    }
+
+    /**
+     * Combine the fields.
+     */
+    private void combine()
+    {
+        for (int axis = 0; axis < 3; axis++)
+        {
+            _gravity[axis] = 0;
+            _wind[axis] = 0;
+        }
+        _damping = 0;
+        for (int field = 0; field < _count; field++)
+        {
+            double c = _coefficient[field];
+            for (int axis = 0; axis < 3; axis++)
+            {
+                double value = _vector[field * 3 + axis];
+                if (_type[field] == FIELD_GRAVITY)
+                {
+                    _gravity[axis] += value;
+                }
+                else if (_type[field] == FIELD_WIND)
+                {
+                    _wind[axis] += c * value;
+                }
+            }
+            if (_type[field] != FIELD_GRAVITY)
+            {
+                _damping += c;
+            }
+        }
+        _combined = true;
+    }
+
+    /**
+     * Apply the fields to an object. Called by the scene after
+     * the external forces of the object have been cleared.
+     * @param object GObject
+     */
+    void applyTo(GObject object)
+    {
+        if (!_combined)
+        {
+            combine();
+        }
+        double mass = object.getMass();
+        int dimension = object.getLinearMomentum().getSize();
+        for (int axis = 0; axis < dimension && axis < 3; axis++)
+        {
+            object.addExternalForce(axis,
+                                    mass * _gravity[axis] + _wind[axis]);
+        }
+        object.addExternalDamping(_damping);
+    }
+}
@@ -0,0 +1,184 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Paces a loop (steps of a scene, frames of a renderer) at a fixed rate
+ * with System.nanoTime. The thread is parked until shortly before each tick
+ * and then spins up to the tick, since parking alone wakes up late by a
+ * variable amount. The lateness of each wake up (jitter) is recorded in a
+ * histogram.</p>
+ * <p>When the loop is late by more than a period, the ticks missed are either
+ * all returned so that the loop catches up (POLICY_CATCH_UP, for the steps of
+ * a simulation, up to a maximum) or dropped (POLICY_SKIP, for the frames of a
+ * renderer).</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GFrameScheduler
+{
+    /**
+     * Policies for the ticks missed.
+     */
+    // the ticks missed are dropped, the phase is kept.
+    public final static int POLICY_SKIP = 0;
+    // the ticks missed are returned, up to the maximum catch up.
+    public final static int POLICY_CATCH_UP = 1;
+
+    // time between two ticks (ns)
+    private long _period;
+    private int _policy;
+    private int _maxCatchUp = 5;
+    // time spun before a tick instead of parking (ns)
+    private long _spinThreshold = 500000L;
+    // next tick (ns), 0 before start()
+    private long _next;
+    private long _droppedTicks;
+    // lateness of the wake ups
+    private GLatencyHistogram _latency = new GLatencyHistogram();
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build a scheduler.
+     * @param ticksPerSecond double Rate of the ticks
+     * @param policy int POLICY_SKIP or POLICY_CATCH_UP
+     */
+    public GFrameScheduler(double ticksPerSecond, int policy)
+    {
+        setRate(ticksPerSecond);
+        setPolicy(policy);
+    }
+
+    /**
+     * Define the rate of the ticks.
+     * @param ticksPerSecond double
+     * @throws IllegalArgumentException If the rate is not positive.
+     */
+    public void setRate(double ticksPerSecond)
+            throws IllegalArgumentException
+    {
+        if (ticksPerSecond <= 0)
+        {
+            throw new IllegalArgumentException("Rate must be positive.");
+        }
+        _period = Math.max(1, (long) (1e9 / ticksPerSecond));
+    }
+
+    /**
+     * Return the time between two ticks.
+     * @return long Period (ns)
+     */
+    public long getPeriod()
+    {
+        return _period;
+    }
+
+    /**
+     * Define the policy for the ticks missed.
+     * @param policy int POLICY_SKIP or POLICY_CATCH_UP
+     * @throws IllegalArgumentException If the policy is unknown.
+     */
+    public void setPolicy(int policy)
+            throws IllegalArgumentException
+    {
+        if (policy != POLICY_SKIP && policy != POLICY_CATCH_UP)
+        {
+            throw new IllegalArgumentException("Unknown policy.");
+        }
+        _policy = policy;
+    }
+
+    /**
+     * Define the maximum number of ticks returned at once with
+     * POLICY_CATCH_UP; older ticks are dropped.
+     * @param ticks int
+     */
+    public void setMaxCatchUp(int ticks)
+    {
+        _maxCatchUp = Math.max(1, ticks);
+    }
+
+    /**
+     * Define the time spun before a tick : longer wastes more
+     * processor time, shorter wakes up later when the system is
+     * loaded. 0 parks the thread up to the tick.
+     * @param nanos long Time (ns)
+     */
+    public void setSpinThreshold(long nanos)
+    {
+        _spinThreshold = Math.max(0, nanos);
+    }
+
+    /**
+     * Start the ticks : the first tick is one period from now.
+     */
+    public void start()
+    {
+        _next = System.nanoTime() + _period;
+    }
+
+    /**
+     * Wait for the next tick.
+     * @return int Number of ticks due (more than 1 when catching up),
+     * 0 if the thread has been interrupted
+     */
+    public int waitForNextTick()
+    {
+        if (_next == 0)
+        {
+            start();
+        }
+        long now = System.nanoTime();
+        while (_next - now > _spinThreshold)
+        {
+            LockSupport.parkNanos(_next - now - _spinThreshold);
+            if (Thread.interrupted())
+            {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+            now = System.nanoTime();
+        }
+        while (_next - now > 0)
+        {
+            Thread.onSpinWait();
+            now = System.nanoTime();
+        }
+        long late = now - _next;
+        _latency.record(late);
+        // ticks missed since the tick waited for
+        long missed = late / _period;
+        int ticks = 1;
+        if (_policy == POLICY_CATCH_UP)
+        {
+            ticks = (int) Math.min(_maxCatchUp, missed + 1);
+        }
+        _droppedTicks += missed + 1 - ticks;
+        _next += (missed + 1) * _period;
+        return ticks;
+    }
+
+    /**
+     * Return the number of ticks dropped.
+     * @return long
+     */
+    public long getDroppedTickCount()
+    {
+        return _droppedTicks;
+    }
+
+    /**
+     * Return the histogram of the lateness of the wake ups.
+     * @return GLatencyHistogram
+     */
+    public GLatencyHistogram getLatencyHistogram()
+    {
+        return _latency;
+    }
+}
@@ -0,0 +1,138 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.awt.Graphics;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>State of the nodes of a snapshot as they are drawn in a frame : the
+ * positions and orientations interpolated between the previous step and the
+ * step of the snapshot. A snapshot is only read, so that it can be drawn by
+ * several threads at once (the renderer showing the scene and the step
+ * listeners of the scene); each of them interpolates it in its own object,
+ * whose arrays are reused from a frame to another.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GInterpolatedSnapshot
+{
+    private GSceneSnapshot _snapshot;
+    // state drawn (interpolated, or the arrays of the snapshot)
+    private double[] _drawPositions;
+    private double[] _drawOrientations;
+    private double[] _positions = new double[0];
+    private double[] _orientations = new double[0];
+    // state handed to the nodes drawn
+    private GDrawState _drawState = new GDrawState();
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Compute the state of the nodes of a snapshot between the
+     * previous step and the step of the snapshot. Positions and
+     * angles are interpolated linearly; quaternions are
+     * interpolated linearly along the shortest arc and normalized.
+     * @param snapshot GSceneSnapshot
+     * @param alpha double 0 for the previous step, 1 for the step
+     * of the snapshot
+     */
+    public void interpolate(GSceneSnapshot snapshot, double alpha)
+    {
+        _snapshot = snapshot;
+        if (alpha >= 1.0)
+        {
+            _drawPositions = snapshot.getPositions();
+            _drawOrientations = snapshot.getOrientations();
+            return;
+        }
+        if (_positions.length < snapshot.getPositions().length)
+        {
+            _positions = new double[snapshot.getPositions().length];
+            _orientations = new double[snapshot.getOrientations().length];
+        }
+        snapshot.interpolate(alpha, _positions, _orientations);
+        _drawPositions = _positions;
+        _drawOrientations = _orientations;
+    }
+
+    /**
+     * Draw the nodes of the snapshot interpolated.
+     * @param g Graphics
+     */
+    public void draw(Graphics g)
+    {
+        for (int index = 0; index < getCount(); index++)
+        {
+            getNode(index).draw(g, this, index);
+        }
+    }
+
+    /**
+     * Return the snapshot interpolated.
+     * @return GSceneSnapshot
+     */
+    public GSceneSnapshot getSnapshot()
+    {
+        return _snapshot;
+    }
+
+    /**
+     * Return the number of nodes (0 before the first call to
+     * interpolate()).
+     * @return int
+     */
+    public int getCount()
+    {
+        return _snapshot == null ? 0 : _snapshot.getCount();
+    }
+
+    /**
+     * Return a node of the snapshot.
+     * @param index int
+     * @return GObject
+     */
+    public GObject getNode(int index)
+    {
+        return _snapshot.getNode(index);
+    }
+
+    /**
+     * Return the positions to draw, 3 values per node.
+     * @return double[]
+     */
+    public double[] getPositions()
+    {
+        return _drawPositions;
+    }
+
+    /**
+     * Return the orientations to draw, 4 values per node.
+     * @return double[]
+     */
+    public double[] getOrientations()
+    {
+        return _drawOrientations;
+    }
+
+    /**
+     * Return the dimensions of the nodes, 3 values per node.
+     * @return int[]
+     */
+    public int[] getDimensions()
+    {
+        return _snapshot.getDimensions();
+    }
+
+    /**
+     * Return the state with which the nodes are drawn, one at a
+     * time.
+     * @return GDrawState
+     */
+    public GDrawState getDrawState()
+    {
+        return _drawState;
+    }
+}
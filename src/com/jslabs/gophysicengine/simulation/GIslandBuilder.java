@@ -0,0 +1,223 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class partitions the nodes of a scene into simulation islands. Two
+ * nodes belong to the same island when they are connected, directly or not,
+ * by a link (joint, contact, spring...). The partition is computed with a
+ * union-find structure stored in flat arrays so it can be rebuilt each step
+ * without allocation once the scene size is stable.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GIslandBuilder
+{
+    /**
+     * Parent of each node in the union-find forest.
+     */
+    private int[] _parent = new int[0];
+
+    /**
+     * Rank (upper bound of the tree height) of each root.
+     */
+    private int[] _rank = new int[0];
+
+    /**
+     * Number of nodes currently partitioned.
+     */
+    private int _count;
+
+    /**
+     * Island index of each root node (temporary).
+     */
+    private int[] _islandOfRoot = new int[0];
+
+    /**
+     * Island index of each node.
+     */
+    private int[] _islandOfNode = new int[0];
+
+    /**
+     * Start offset of each island in the _islandNodes array.
+     * Island i contains nodes _islandNodes[_islandStart[i]] to
+     * _islandNodes[_islandStart[i + 1] - 1].
+     */
+    private int[] _islandStart = new int[1];
+
+    /**
+     * Node indices grouped by island.
+     */
+    private int[] _islandNodes = new int[0];
+
+    /**
+     * Number of islands found by the last call to build().
+     */
+    private int _islandCount;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reset the structure so that each node is
+     * its own island.
+     * @param count int Number of nodes in the scene.
+     */
+    public void reset(int count)
+    {
+        if (_parent.length < count)
+        {
+            _parent = new int[count];
+            _rank = new int[count];
+            _islandOfRoot = new int[count];
+            _islandOfNode = new int[count];
+            _islandStart = new int[count + 1];
+            _islandNodes = new int[count];
+        }
+        for (int index = 0; index < count; index++)
+        {
+            _parent[index] = index;
+            _rank[index] = 0;
+        }
+        _count = count;
+        _islandCount = 0;
+    }
+
+    /**
+     * Return the root of the set containing the node.
+     * Paths are halved during the search.
+     * @param node int Index of the node.
+     * @return int Index of the root node.
+     */
+    public int find(int node)
+    {
+        while (_parent[node] != node)
+        {
+            _parent[node] = _parent[_parent[node]];
+            node = _parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * Merge the sets containing both nodes.
+     * @param a int Index of the first node.
+     * @param b int Index of the second node.
+     */
+    public void union(int a, int b)
+    {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB)
+        {
+            return;
+        }
+        if (_rank[rootA] < _rank[rootB])
+        {
+            _parent[rootA] = rootB;
+        }
+        else if (_rank[rootA] > _rank[rootB])
+        {
+            _parent[rootB] = rootA;
+        }
+        else
+        {
+            _parent[rootB] = rootA;
+            _rank[rootA]++;
+        }
+    }
+
+    /**
+     * Group the nodes by island. Nodes keep their relative
+     * order inside an island.
+     * @return int Number of islands.
+     */
+    public int build()
+    {
+        _islandCount = 0;
+        for (int index = 0; index < _count; index++)
+        {
+            if (find(index) == index)
+            {
+                _islandOfRoot[index] = _islandCount++;
+            }
+        }
+        // count nodes per island
+        for (int index = 0; index <= _islandCount; index++)
+        {
+            _islandStart[index] = 0;
+        }
+        for (int index = 0; index < _count; index++)
+        {
+            _islandStart[_islandOfRoot[find(index)] + 1]++;
+        }
+        // prefix sum
+        for (int index = 0; index < _islandCount; index++)
+        {
+            _islandStart[index + 1] += _islandStart[index];
+        }
+        // scatter nodes (use the rank array as insertion cursor)
+        for (int index = 0; index < _islandCount; index++)
+        {
+            _rank[index] = _islandStart[index];
+        }
+        for (int index = 0; index < _count; index++)
+        {
+            int island = _islandOfRoot[find(index)];
+            _islandOfNode[index] = island;
+            _islandNodes[_rank[island]++] = index;
+        }
+        return _islandCount;
+    }
+
+    /**
+     * Return the number of islands found by
+     * the last build.
+     * @return int Number of islands.
+     */
+    public int getIslandCount()
+    {
+        return _islandCount;
+    }
+
+    /**
+     * Return the island of a node.
+     * @param node int Index of the node.
+     * @return int Index of the island.
+     */
+    public int getIsland(int node)
+    {
+        return _islandOfNode[node];
+    }
+
+    /**
+     * Return the offset of the first node of an island.
+     * @param island int Index of the island.
+     * @return int Offset in the array returned by getIslandNodes().
+     */
+    public int getIslandStart(int island)
+    {
+        return _islandStart[island];
+    }
+
+    /**
+     * Return the offset following the last node of an island.
+     * @param island int Index of the island.
+     * @return int Offset in the array returned by getIslandNodes().
+     */
+    public int getIslandEnd(int island)
+    {
+        return _islandStart[island + 1];
+    }
+
+    /**
+     * Return the node indices grouped by island.
+     * @return int[] Node indices.
+     */
+    public int[] getIslandNodes()
+    {
+        return _islandNodes;
+    }
+}
@@ -0,0 +1,151 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Histogram of durations (ns) with a bounded relative error : the values
+ * are counted in 16 buckets per power of two, so that the percentiles are
+ * known within about 6% from a microsecond to several minutes, with a fixed
+ * memory and without allocation. Written by one thread, it may be read by
+ * any thread.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GLatencyHistogram
+{
+    // buckets per power of two (2^SUB_BITS)
+    private final static int SUB_BITS = 4;
+    private final static int SUB_COUNT = 1 << SUB_BITS;
+
+    private long[] _counts = new long[(64 - SUB_BITS) * SUB_COUNT];
+    private long _count;
+    private long _sum;
+    private long _max;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return the bucket of a value : values under SUB_COUNT have their
+     * own bucket, greater values share a bucket with the values having
+     * the same SUB_BITS + 1 most significant bits.
+     * @param value long
+     * @return int
+     */
+    private static int getBucket(long value)
+    {
+        if (value < SUB_COUNT)
+        {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    /**
+     * Return the middle of the values of a bucket.
+     * @param bucket int
+     * @return long
+     */
+    private static long getBucketValue(int bucket)
+    {
+        if (bucket < SUB_COUNT)
+        {
+            return bucket;
+        }
+        int shift = bucket / SUB_COUNT - 1;
+        long lowest = ((long) (SUB_COUNT + bucket % SUB_COUNT)) << shift;
+        return lowest + ((1L << shift) >> 1);
+    }
+
+    /**
+     * Record a duration.
+     * @param nanos long Duration (ns), negative durations count as 0
+     */
+    public synchronized void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        _counts[getBucket(value)]++;
+        _count++;
+        _sum += value;
+        _max = Math.max(_max, value);
+    }
+
+    /**
+     * Return the number of durations recorded.
+     * @return long
+     */
+    public synchronized long getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Return a percentile of the durations recorded.
+     * @param percentile double Between 0 and 100
+     * @return double Duration in ms (0 if nothing has been recorded)
+     */
+    public synchronized double getPercentile(double percentile)
+    {
+        if (_count == 0)
+        {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * _count);
+        rank = Math.max(1, Math.min(_count, rank));
+        long seen = 0;
+        for (int bucket = 0; bucket < _counts.length; bucket++)
+        {
+            seen += _counts[bucket];
+            if (seen >= rank)
+            {
+                return Math.min(getBucketValue(bucket), _max) / 1e6;
+            }
+        }
+        return _max / 1e6;
+    }
+
+    /**
+     * Return the longest duration recorded.
+     * @return double Duration in ms
+     */
+    public synchronized double getMax()
+    {
+        return _max / 1e6;
+    }
+
+    /**
+     * Return the average duration.
+     * @return double Duration in ms
+     */
+    public synchronized double getMean()
+    {
+        return _count == 0 ? 0.0 : _sum / 1e6 / _count;
+    }
+
+    /**
+     * Forget the durations recorded.
+     */
+    public synchronized void reset()
+    {
+        for (int bucket = 0; bucket < _counts.length; bucket++)
+        {
+            _counts[bucket] = 0;
+        }
+        _count = 0;
+        _sum = 0;
+        _max = 0;
+    }
+
+    /**
+     * Return the median, 99th percentile and maximum as a text.
+     * @return String
+     */
+    public synchronized String toString()
+    {
+        return "n=" + _count + " p50=" + getPercentile(50) + " ms p99=" +
+                getPercentile(99) + " ms max=" + getMax() + " ms";
+    }
+}
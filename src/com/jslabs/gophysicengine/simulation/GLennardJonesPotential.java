@@ -0,0 +1,80 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Lennard-Jones potential 4 e ((s/r)^12 - (s/r)^6) truncated at the cutoff
+ * radius and shifted so that the energy is continuous at the cutoff.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GLennardJonesPotential
+        implements IGPairPotential
+{
+    /**
+     * Depth of the well, square of the distance where the
+     * potential is null, cutoff and energy at the cutoff.
+     */
+    private double _epsilon;
+    private double _sigma2;
+    private double _cutoff;
+    private double _shift;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build a Lennard-Jones potential with the usual cutoff
+     * of 2.5 sigma.
+     * @param epsilon double Depth of the well
+     * @param sigma double Distance where the potential is null
+     */
+    public GLennardJonesPotential(double epsilon, double sigma)
+    {
+        this(epsilon, sigma, 2.5 * sigma);
+    }
+
+    /**
+     * Build a Lennard-Jones potential.
+     * @param epsilon double Depth of the well
+     * @param sigma double Distance where the potential is null
+     * @param cutoff double Cutoff radius
+     * @throws IllegalArgumentException If sigma or the cutoff is not
+     * positive.
+     */
+    public GLennardJonesPotential(double epsilon, double sigma, double cutoff)
+            throws IllegalArgumentException
+    {
+        if (sigma <= 0 || cutoff <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "Sigma and cutoff must be positive.");
+        }
+        _epsilon = epsilon;
+        _sigma2 = sigma * sigma;
+        _cutoff = cutoff;
+        _shift = 0;
+        _shift = energy(cutoff * cutoff);
+    }
+
+    public double getCutoff()
+    {
+        return _cutoff;
+    }
+
+    public double force(double r2)
+    {
+        double s2 = _sigma2 / r2;
+        double s6 = s2 * s2 * s2;
+        return 24 * _epsilon * s6 * (2 * s6 - 1) / r2;
+    }
+
+    public double energy(double r2)
+    {
+        double s2 = _sigma2 / r2;
+        double s6 = s2 * s2 * s2;
+        return 4 * _epsilon * s6 * (s6 - 1) - _shift;
+    }
+}
@@ -1,96 +1,305 @@
-package com.jslabs.gophysicengine.simulation;
-
-import com.jslabs.gophysicengine.physics.*;
-import java.awt.Graphics;
-import com.jslabs.gophysicengine.maths.linear.GVector;
-
-/**
- * <p>Title: Go! PhysicEngine</p>
- *
- * <p>Description: Moteur physique permettant la simulation de la dynamique des
- * corps rigides.</p>
- *
- * @author Jerome Schmaltz
- * @version 1.0
- */
-public abstract class GObject
-        extends GRigidBody
-{
-    /**
-     * Position of the object in the inertial referential.
-     */
-    protected GVector _iX = new GVector(3);
-
-    /**
-     * Dimensions of the object.
-     */
-    protected int _width, _height, _depth;
-
-////////////////////////////////////////////////////////////////////////////////
-
-    /**
-     * Draw method that will be implemented by each
-     * object in order to display the rigid body.
-     * @param hdc Object
-     */
-    public abstract void draw(Graphics g);
-
-    /**
-     * Define the position of the object relative
-     * to the origin.
-     * @param x int
-     * @param y int
-     * @param z int
-     */
-    public void setInertialReferentialPosition(double x, double y, double z)
-    {
-        _iX.setValue(0, x);
-        _iX.setValue(1, y);
-        _iX.setValue(2, z);
-    }
-
-    /**
-     * Define the dimension of the object in 3 dimensions.
-     * @param width int The width of the object
-     * @param height int It's height
-     * @param depth int And its depth
-     */
-    public void setDimensions(int width, int height, int depth)
-    {
-        _width = width;
-        _height = height;
-        _depth = depth;
-    }
-
-    /**
-     * Initialize all parameters of the object.
-     * @throws InitializationException
-     */
-    public abstract void initializeParameters()
-            throws InitializationException;
-
-    /**
-     * Initialize method implements the
-     * template-hook pattern.
-     * @throws InitializationException
-     */
-    public final void initialize()
-            throws InitializationException
-    {
-        if (getForceFunction() == null)
-        {
-            throw new InitializationException("Force function must be defined.");
-        }
-        if (getTorqueFunction() == null)
-        {
-            throw new InitializationException(
-                    "Torque function must be defined.");
-        }
-        // call the hook
-        initializeParameters();
-        // initialize final rigid body.
-        initializeRigidBody();
-    }
-
-
-}
+package com.jslabs.gophysicengine.simulation;
+
+import com.jslabs.gophysicengine.physics.*;
+import java.awt.Graphics;
+import com.jslabs.gophysicengine.maths.linear.GVector;
+import com.jslabs.gophysicengine.renderer.GPrimitiveBuffer;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public abstract class GObject
+        extends GRigidBody
+{
+    /**
+     * Position of the object in the inertial referential.
+     */
+    protected GVector _iX = new GVector(3);
+
+    /**
+     * Dimensions of the object.
+     */
+    protected int _width, _height, _depth;
+
+    /**
+     * Index of the object in the scene it belongs to.
+     */
+    int _sceneIndex = -1;
+
+    /**
+     * Fast moving object whose collisions are detected
+     * continuously (no tunneling).
+     */
+    protected boolean _bullet;
+
+    /**
+     * Coefficient of restitution used when the object
+     * collides (0 : inelastic, 1 : elastic).
+     */
+    protected double _restitution = 0.5;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Draw method that will be implemented by each
+     * object in order to display the rigid body.
+     * @param hdc Object
+     */
+    public abstract void draw(Graphics g);
+
+    /**
+     * Draw the object with the state it had in a snapshot of
+     * the scene, interpolated between two steps.
+     * @param g Graphics
+     * @param snapshot GInterpolatedSnapshot
+     * @param index int Index of the object in the snapshot
+     */
+    public abstract void draw(Graphics g, GInterpolatedSnapshot snapshot,
+                              int index);
+
+    /**
+     * Add the primitives drawing the object with the state it had
+     * in a snapshot of the scene, for a GTileRasterizer.
+     * @param out GPrimitiveBuffer
+     * @param snapshot GInterpolatedSnapshot
+     * @param index int Index of the object in the snapshot
+     */
+    public abstract void rasterize(GPrimitiveBuffer out,
+                                   GInterpolatedSnapshot snapshot, int index);
+
+    /**
+     * Compute the rectangle of the inertial referential in which
+     * the object is drawn with the state it had in a snapshot
+     * (see GInterpolatedSnapshot.getPositions()). By default, the
+     * object is drawn inside the sphere around its dimensions,
+     * whatever its orientation.
+     * @param snapshot GInterpolatedSnapshot
+     * @param index int Index of the object in the snapshot
+     * @param bounds double[] Receives the minimum x and y and the
+     * maximum x and y
+     */
+    public void getDrawBounds(GInterpolatedSnapshot snapshot, int index,
+                              double[] bounds)
+    {
+        double[] positions = snapshot.getPositions();
+        double x = _iX.getValue(0) + positions[3 * index] + 0.5 * _width;
+        double y = _iX.getValue(1) + positions[3 * index + 1] + 0.5 * _height;
+        double radius = 0.5 * Math.sqrt(_width * _width + _height * _height +
+                                         _depth * _depth);
+        bounds[0] = x - radius;
+        bounds[1] = y - radius;
+        bounds[2] = x + radius;
+        bounds[3] = y + radius;
+    }
+
+    /**
+     * Define the position of the object relative
+     * to the origin.
+     * @param x int
+     * @param y int
+     * @param z int
+     */
+    public void setInertialReferentialPosition(double x, double y, double z)
+    {
+        _iX.setValue(0, x);
+        _iX.setValue(1, y);
+        _iX.setValue(2, z);
+    }
+
+    /**
+     * Define the dimension of the object in 3 dimensions.
+     * @param width int The width of the object
+     * @param height int It's height
+     * @param depth int And its depth
+     */
+    public void setDimensions(int width, int height, int depth)
+    {
+        _width = width;
+        _height = height;
+        _depth = depth;
+    }
+
+    /**
+     * Return the position of the object relative to the origin
+     * along an axis.
+     * @param axis int Index of the axis (0 to 2)
+     * @return double Position
+     */
+    public double getInertialReferentialPosition(int axis)
+    {
+        return _iX.getValue(axis);
+    }
+
+    /**
+     * Return the dimension of the object along an axis.
+     * @param axis int 0 (width), 1 (height) or 2 (depth)
+     * @return int The dimension
+     */
+    public int getDimension(int axis)
+    {
+        return axis == 0 ? _width : axis == 1 ? _height : _depth;
+    }
+
+    /**
+     * Return the position of the object in the inertial
+     * referential along an axis.
+     * @param axis int Index of the axis (0 to 2)
+     * @return double Position
+     */
+    public double getWorldPosition(int axis)
+    {
+        return _iX.getValue(axis) +
+                (axis < _x.getSize() ? _x.getValue(axis) : 0.0);
+    }
+
+    /**
+     * Compute the axis aligned bounding box of the object
+     * in the inertial referential. The box holds the object
+     * rotated around its center; for an object which spins
+     * (angular velocity not null), it holds the sphere around
+     * the object, whatever its rotation during the step.
+     * @param min double[] Receives the lower corner (3 values)
+     * @param max double[] Receives the upper corner (3 values)
+     */
+    public void getBounds(double[] min, double[] max)
+    {
+        double halfWidth = 0.5 * _width;
+        double halfHeight = 0.5 * _height;
+        double halfDepth = 0.5 * _depth;
+        boolean spinning = false;
+        for (int index = 0; index < _w.getSize(); index++)
+        {
+            spinning |= _w.getValue(index) != 0;
+        }
+        for (int axis = 0; axis < 3; axis++)
+        {
+            double extent;
+            if (spinning)
+            {
+                extent = Math.sqrt(halfWidth * halfWidth +
+                                   halfHeight * halfHeight +
+                                   halfDepth * halfDepth);
+            }
+            else if (isPlanar())
+            {
+                double cos = Math.abs(Math.cos(getAngle()));
+                double sin = Math.abs(Math.sin(getAngle()));
+                extent = axis == 0 ? cos * halfWidth + sin * halfHeight :
+                         axis == 1 ? sin * halfWidth + cos * halfHeight :
+                         halfDepth;
+            }
+            else
+            {
+                extent = Math.abs(getRotation(axis, 0)) * halfWidth +
+                         Math.abs(getRotation(axis, 1)) * halfHeight +
+                         Math.abs(getRotation(axis, 2)) * halfDepth;
+            }
+            double center = getWorldPosition(axis) + 0.5 * getDimension(axis);
+            min[axis] = center - extent;
+            max[axis] = center + extent;
+        }
+    }
+
+    /**
+     * Return a value of the rotation matrix of the orientation
+     * quaternion of a body which is not planar.
+     * @param row int
+     * @param column int
+     * @return double
+     */
+    private double getRotation(int row, int column)
+    {
+        double w = _q.getValue(0), x = _q.getValue(1), y = _q.getValue(2),
+                z = _q.getValue(3);
+        double norm = w * w + x * x + y * y + z * z;
+        double s = norm == 0 ? 0.0 : 2.0 / norm;
+        switch (3 * row + column)
+        {
+            case 0: return 1 - s * (y * y + z * z);
+            case 1: return s * (x * y - w * z);
+            case 2: return s * (x * z + w * y);
+            case 3: return s * (x * y + w * z);
+            case 4: return 1 - s * (x * x + z * z);
+            case 5: return s * (y * z - w * x);
+            case 6: return s * (x * z - w * y);
+            case 7: return s * (y * z + w * x);
+            default: return 1 - s * (x * x + y * y);
+        }
+    }
+
+    /**
+     * Flag the object as a fast moving object. The collisions
+     * of a bullet are detected continuously and the object is
+     * sub-stepped up to the time of impact.
+     * @param bullet boolean
+     */
+    public void setBullet(boolean bullet)
+    {
+        _bullet = bullet;
+    }
+
+    /**
+     * Return true if the object is a bullet.
+     * @return boolean
+     */
+    public boolean isBullet()
+    {
+        return _bullet;
+    }
+
+    /**
+     * Define the coefficient of restitution of the object.
+     * @param restitution double Between 0 and 1.
+     */
+    public void setRestitution(double restitution)
+    {
+        _restitution = Math.max(0.0, Math.min(1.0, restitution));
+    }
+
+    /**
+     * Return the coefficient of restitution of the object.
+     * @return double
+     */
+    public double getRestitution()
+    {
+        return _restitution;
+    }
+
+    /**
+     * Initialize all parameters of the object.
+     * @throws InitializationException
+     */
+    public abstract void initializeParameters()
+            throws InitializationException;
+
+    /**
+     * Initialize method implements the
+     * template-hook pattern.
+     * @throws InitializationException
+     */
+    public final void initialize()
+            throws InitializationException
+    {
+        if (getForce() == null)
+        {
+            throw new InitializationException("Force function must be defined.");
+        }
+        if (getTorque() == null)
+        {
+            throw new InitializationException(
+                    "Torque function must be defined.");
+        }
+        // call the hook
+        initializeParameters();
+        // initialize final rigid body.
+        initializeRigidBody();
+    }
+
+
+}
@@ -1,75 +1,104 @@
-package com.jslabs.gophysicengine.simulation;
-
-import java.util.*;
-
-/**
- * <p>Title: Go! PhysicEngine</p>
- *
- * <p>Description: Moteur physique permettant la simulation de la dynamique des
- * corps rigides.</p>
- *
- * <p>Copyright: Copyright (c) 2006</p>
- *
- * <p>Company: </p>
- *
- * @author Jerome Schmaltz
- * @version 1.0
- */
-public class GObjectBuilder
-{
-    /**
-     * Object Constants
-     */
-    public final static Integer OBJECT_SPRING = new Integer(1);
-
-////////////////////////////////////////////////////////////////////////////////
-
-    // collection of builders for objects
-    // 2D
-    private HashMap _object2DBuilders = new HashMap();
-    // 3D
-    private HashMap _object3DBuilders = new HashMap();
-    // implements the singleton pattern
-    private static GObjectBuilder _instance = new GObjectBuilder();
-
-////////////////////////////////////////////////////////////////////////////////
-
-    /**
-     * Register a builder for a specific object type.
-     * @param objectType Integer Object type
-     * @param builder IG2DObjectBuilder The class builder
-     */
-    public void register2DBuilder(Integer objectType, Class builder)
-    {
-        _object2DBuilders.put(objectType, builder);
-    }
-
-    /**
-     * Return a builder for a specific object type.
-     * @param objectType Integer
-     * @return IG2DObjectBuilder
-     */
-    public IG2DObjectBuilder getBuilder(Integer objectType) throws Exception
-    {
-        return (IG2DObjectBuilder) ((Class)_object2DBuilders.
-                                    get(objectType)).newInstance();
-    }
-
-    /**
-     * Return the current instance.
-     * @return GObjectBuilder
-     */
-    public static GObjectBuilder getInstance()
-    {
-        return _instance;
-    }
-
-    /**
-     * Private : for implementation of the
-     * singleton pattern.
-     */
-    private GObjectBuilder()
-    {
-        register2DBuilder(OBJECT_SPRING, G2DSpringBuilder.class);
-    }
-}
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ *
+ * <p>Copyright: Copyright (c) 2006</p>
+ *
+ * <p>Company: </p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GObjectBuilder
+{
+    /**
+     * Object Constants
+     */
+    public final static Integer OBJECT_SPRING = Integer.valueOf(1);
+    public final static Integer OBJECT_PARTICLE = Integer.valueOf(2);
+    public final static Integer OBJECT_BOX = Integer.valueOf(3);
+    public final static Integer OBJECT_SPHERE = Integer.valueOf(4);
+
+////////////////////////////////////////////////////////////////////////////////
+
+    // collection of builders for objects
+    // 2D
+    private HashMap _object2DBuilders = new HashMap();
+    // 3D
+    private HashMap _object3DBuilders = new HashMap();
+    // implements the singleton pattern
+    private static GObjectBuilder _instance = new GObjectBuilder();
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Register a builder for a specific object type.
+     * @param objectType Integer Object type
+     * @param builder IG2DObjectBuilder The class builder
+     */
+    public void register2DBuilder(Integer objectType, Class builder)
+    {
+        _object2DBuilders.put(objectType, builder);
+    }
+
+    /**
+     * Return a builder for a specific object type.
+     * @param objectType Integer
+     * @return IG2DObjectBuilder
+     */
+    public IG2DObjectBuilder getBuilder(Integer objectType) throws Exception
+    {
+        return (IG2DObjectBuilder) ((Class)_object2DBuilders.
+                                    get(objectType)).getDeclaredConstructor().
+                                    newInstance();
+    }
+
+    /**
+     * Register a builder for a specific 3D object type.
+     * @param objectType Integer Object type
+     * @param builder IG3DObjectBuilder The class builder
+     */
+    public void register3DBuilder(Integer objectType, Class builder)
+    {
+        _object3DBuilders.put(objectType, builder);
+    }
+
+    /**
+     * Return a builder for a specific 3D object type.
+     * @param objectType Integer
+     * @return IG3DObjectBuilder
+     */
+    public IG3DObjectBuilder get3DBuilder(Integer objectType) throws Exception
+    {
+        return (IG3DObjectBuilder) ((Class)_object3DBuilders.
+                                    get(objectType)).getDeclaredConstructor().
+                                    newInstance();
+    }
+
+    /**
+     * Return the current instance.
+     * @return GObjectBuilder
+     */
+    public static GObjectBuilder getInstance()
+    {
+        return _instance;
+    }
+
+    /**
+     * Private : for implementation of the
+     * singleton pattern.
+     */
+    private GObjectBuilder()
+    {
+        register2DBuilder(OBJECT_SPRING, G2DSpringBuilder.class);
+        register2DBuilder(OBJECT_PARTICLE, G2DParticleBuilder.class);
+        register3DBuilder(OBJECT_BOX, G3DBoxBuilder.class);
+        register3DBuilder(OBJECT_SPHERE, G3DSphereBuilder.class);
+    }
+}
@@ -0,0 +1,490 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class applies a short range pair potential between all the objects
+ * of a scene. The objects are sorted in a grid of cells of the size of the
+ * cutoff radius plus a skin distance; the neighbors of each object (objects
+ * closer than cutoff + skin) are then listed in compressed sparse row form.
+ * The lists stay valid until an object has moved more than half the skin
+ * since they were built, so most steps only evaluate the forces on the
+ * lists. Each object lists all its neighbors, so that the forces of the
+ * objects are evaluated in parallel without any shared write. The forces
+ * are evaluated once per step at the new positions of the objects and
+ * integrated by the scene with the velocity Verlet scheme (see
+ * IGForceGenerator), as in molecular dynamics : a stiff potential does not
+ * pump energy into the objects.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GPairInteraction
+        implements IGForceGenerator
+{
+    /**
+     * Potential applied between the objects.
+     */
+    private IGPairPotential _potential;
+
+    /**
+     * Skin distance added to the cutoff radius.
+     */
+    private double _skin;
+
+    /**
+     * Positions of the objects (3 values per object) and
+     * positions at the last build of the lists.
+     */
+    private int _count;
+    private double[] _position = new double[0];
+    private double[] _reference = new double[0];
+
+    /**
+     * Grid of cells : the objects of cell c are
+     * _cellObjects[_cellStart[c]] to _cellObjects[_cellStart[c+1]-1].
+     */
+    private int[] _cell = new int[0];
+    private int[] _cellStart = new int[1];
+    private int[] _cellObjects = new int[0];
+    private int[] _size = new int[3];
+    private double[] _origin = new double[3];
+    private double _cellSize;
+
+    /**
+     * Neighbor lists : the neighbors of object i are
+     * _neighbors[_neighborStart[i]] to _neighbors[_neighborStart[i+1]-1].
+     */
+    private int[] _neighborStart = new int[1];
+    private int[] _neighbors = new int[0];
+    private boolean _built;
+    private int _buildCount;
+
+    /**
+     * Forces computed (3 values per object).
+     */
+    private double[] _force = new double[0];
+
+    /**
+     * Minimum number of objects handled by a task.
+     */
+    private int _parallelGrain = 1024;
+
+    /**
+     * Passes of the parallel tasks.
+     */
+    private final static int PASS_COUNT_NEIGHBORS = 0;
+    private final static int PASS_FILL_NEIGHBORS = 1;
+    private final static int PASS_FORCES = 2;
+
+    /**
+     * Task running a pass on a range of objects.
+     */
+    class ObjectTask
+            extends RecursiveAction
+    {
+        private int _pass, _first, _last;
+
+        ObjectTask(int pass, int first, int last)
+        {
+            _pass = pass;
+            _first = first;
+            _last = last;
+        }
+
+        protected void compute()
+        {
+            if (_last - _first <= _parallelGrain)
+            {
+                run(_pass, _first, _last);
+            }
+            else
+            {
+                int middle = (_first + _last) >>> 1;
+                invokeAll(new ObjectTask(_pass, _first, middle),
+                          new ObjectTask(_pass, middle, _last));
+            }
+        }
+    }
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build an interaction with a skin of 20% of the cutoff.
+     * @param potential IGPairPotential
+     */
+    public GPairInteraction(IGPairPotential potential)
+    {
+        this(potential, 0.2 * potential.getCutoff());
+    }
+
+    /**
+     * Build an interaction.
+     * @param potential IGPairPotential
+     * @param skin double Skin distance
+     * @throws IllegalArgumentException If the skin is negative.
+     */
+    public GPairInteraction(IGPairPotential potential, double skin)
+            throws IllegalArgumentException
+    {
+        if (skin < 0)
+        {
+            throw new IllegalArgumentException("Skin must not be negative.");
+        }
+        _potential = potential;
+        _skin = skin;
+    }
+
+    /**
+     * Return the number of times the neighbor lists were built.
+     * @return int
+     */
+    public int getBuildCount()
+    {
+        return _buildCount;
+    }
+
+    /**
+     * Return the number of pairs in the neighbor lists.
+     * @return int
+     */
+    public int getPairCount()
+    {
+        return _neighborStart[_count] / 2;
+    }
+
+    /**
+     * Apply the forces of the potential to the objects at their
+     * current positions.
+     * @param scene GScene
+     * @param t double Time of the positions
+     * @param pool ForkJoinPool Threads, or null
+     */
+    public void applyForces(GScene scene, double t, ForkJoinPool pool)
+    {
+        int count = scene.getNodeCount();
+        if (count != _count || _position.length < count * 3)
+        {
+            _built = false;
+        }
+        _count = count;
+        if (_position.length < count * 3)
+        {
+            _position = new double[count * 3];
+            _reference = new double[count * 3];
+            _force = new double[count * 3];
+            _cell = new int[count];
+            _cellObjects = new int[count];
+            _neighborStart = new int[count + 1];
+        }
+        for (int index = 0; index < count; index++)
+        {
+            GObject object = scene.getNode(index);
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _position[index * 3 + axis] = object.getWorldPosition(axis);
+            }
+        }
+        if (!_built || hasMoved())
+        {
+            buildLists(pool);
+        }
+        runPass(pool, PASS_FORCES);
+
+        for (int index = 0; index < count; index++)
+        {
+            GObject object = scene.getNode(index);
+            if (!object.isDynamic())
+            {
+                continue;
+            }
+            int dimension = object.getLinearMomentum().getSize();
+            boolean interacting = false;
+            for (int axis = 0; axis < dimension; axis++)
+            {
+                double force = _force[index * 3 + axis];
+                object.addExternalForce(axis, force);
+                interacting |= force != 0;
+            }
+            // a sleeping object pushed by an awake neighbor is woken up
+            if (interacting && !object.isAwake() &&
+                hasAwakeNeighbor(scene, index))
+            {
+                object.setAwake(true);
+            }
+        }
+    }
+
+    /**
+     * Return true if an object has moved more than half the skin
+     * since the last build of the lists.
+     */
+    private boolean hasMoved()
+    {
+        double limit = 0.25 * _skin * _skin;
+        for (int index = 0; index < _count; index++)
+        {
+            double d2 = 0;
+            for (int axis = 0; axis < 3; axis++)
+            {
+                double d = _position[index * 3 + axis] -
+                           _reference[index * 3 + axis];
+                d2 += d * d;
+            }
+            if (d2 > limit)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasAwakeNeighbor(GScene scene, int index)
+    {
+        for (int n = _neighborStart[index]; n < _neighborStart[index + 1]; n++)
+        {
+            if (scene.getNode(_neighbors[n]).isAwake())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sort the objects in the grid and build the neighbor lists.
+     * @param pool ForkJoinPool Threads, or null
+     */
+    private void buildLists(ForkJoinPool pool)
+    {
+        System.arraycopy(_position, 0, _reference, 0, _count * 3);
+        _buildCount++;
+        _built = true;
+
+        // bounds of the objects
+        double[] max = new double[3];
+        for (int axis = 0; axis < 3; axis++)
+        {
+            _origin[axis] = Double.MAX_VALUE;
+            max[axis] = -Double.MAX_VALUE;
+        }
+        for (int index = 0; index < _count; index++)
+        {
+            for (int axis = 0; axis < 3; axis++)
+            {
+                double x = _position[index * 3 + axis];
+                _origin[axis] = Math.min(_origin[axis], x);
+                max[axis] = Math.max(max[axis], x);
+            }
+        }
+
+        // the cells are at least cutoff + skin wide; sparse scenes
+        // use larger cells to keep about one cell per object.
+        _cellSize = _potential.getCutoff() + _skin;
+        long cells;
+        while (true)
+        {
+            cells = 1;
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _size[axis] = _count == 0 ? 1 :
+                        (int) ((max[axis] - _origin[axis]) / _cellSize) + 1;
+                cells *= _size[axis];
+            }
+            if (cells <= Math.max(64, 2L * _count))
+            {
+                break;
+            }
+            _cellSize *= 2;
+        }
+
+        // counting sort of the objects by cell
+        if (_cellStart.length < cells + 1)
+        {
+            _cellStart = new int[(int) cells + 1];
+        }
+        for (int c = 0; c <= cells; c++)
+        {
+            _cellStart[c] = 0;
+        }
+        for (int index = 0; index < _count; index++)
+        {
+            int c = cellIndex(cellCoordinate(index, 0),
+                              cellCoordinate(index, 1),
+                              cellCoordinate(index, 2));
+            _cell[index] = c;
+            _cellStart[c + 1]++;
+        }
+        for (int c = 0; c < cells; c++)
+        {
+            _cellStart[c + 1] += _cellStart[c];
+        }
+        int[] cursor = new int[(int) cells];
+        System.arraycopy(_cellStart, 0, cursor, 0, (int) cells);
+        for (int index = 0; index < _count; index++)
+        {
+            _cellObjects[cursor[_cell[index]]++] = index;
+        }
+
+        // count the neighbors, then fill the lists
+        runPass(pool, PASS_COUNT_NEIGHBORS);
+        int total = 0;
+        for (int index = 0; index < _count; index++)
+        {
+            int neighbors = _neighborStart[index + 1];
+            _neighborStart[index] = total;
+            total += neighbors;
+        }
+        _neighborStart[_count] = total;
+        if (_neighbors.length < total)
+        {
+            _neighbors = new int[total + total / 4];
+        }
+        runPass(pool, PASS_FILL_NEIGHBORS);
+    }
+
+    private int cellCoordinate(int index, int axis)
+    {
+        return (int) ((_position[index * 3 + axis] - _origin[axis]) /
+                      _cellSize);
+    }
+
+    private int cellIndex(int cx, int cy, int cz)
+    {
+        return (cz * _size[1] + cy) * _size[0] + cx;
+    }
+
+    /**
+     * Run a pass on all the objects.
+     * @param pool ForkJoinPool Threads, or null
+     * @param pass int
+     */
+    private void runPass(ForkJoinPool pool, int pass)
+    {
+        if (pool == null || _count <= _parallelGrain)
+        {
+            run(pass, 0, _count);
+        }
+        else
+        {
+            pool.invoke(new ObjectTask(pass, 0, _count));
+        }
+    }
+
+    /**
+     * Run a pass on a range of objects.
+     * @param pass int
+     * @param first int
+     * @param last int
+     */
+    private void run(int pass, int first, int last)
+    {
+        for (int index = first; index < last; index++)
+        {
+            if (pass == PASS_COUNT_NEIGHBORS)
+            {
+                // stored one slot ahead, turned into offsets
+                // by buildLists().
+                _neighborStart[index + 1] = searchNeighbors(index, -1);
+            }
+            else if (pass == PASS_FILL_NEIGHBORS)
+            {
+                searchNeighbors(index, _neighborStart[index]);
+            }
+            else
+            {
+                computeForce(index);
+            }
+        }
+    }
+
+    /**
+     * Search the neighbors of an object in its cell and the
+     * adjacent cells.
+     * @param index int Object
+     * @param offset int Position where the neighbors are written,
+     * or -1 to count them only.
+     * @return int Number of neighbors
+     */
+    private int searchNeighbors(int index, int offset)
+    {
+        double range = _potential.getCutoff() + _skin;
+        double range2 = range * range;
+        double x = _position[index * 3];
+        double y = _position[index * 3 + 1];
+        double z = _position[index * 3 + 2];
+        int cx = cellCoordinate(index, 0);
+        int cy = cellCoordinate(index, 1);
+        int cz = cellCoordinate(index, 2);
+        int found = 0;
+        for (int k = Math.max(0, cz - 1); k <= Math.min(_size[2] - 1, cz + 1);
+             k++)
+        {
+            for (int j = Math.max(0, cy - 1);
+                 j <= Math.min(_size[1] - 1, cy + 1); j++)
+            {
+                for (int i = Math.max(0, cx - 1);
+                     i <= Math.min(_size[0] - 1, cx + 1); i++)
+                {
+                    int c = cellIndex(i, j, k);
+                    for (int n = _cellStart[c]; n < _cellStart[c + 1]; n++)
+                    {
+                        int other = _cellObjects[n];
+                        if (other == index)
+                        {
+                            continue;
+                        }
+                        double dx = _position[other * 3] - x;
+                        double dy = _position[other * 3 + 1] - y;
+                        double dz = _position[other * 3 + 2] - z;
+                        if (dx * dx + dy * dy + dz * dz <= range2)
+                        {
+                            if (offset >= 0)
+                            {
+                                _neighbors[offset + found] = other;
+                            }
+                            found++;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Compute the force applied to an object by its neighbors.
+     * @param index int
+     */
+    private void computeForce(int index)
+    {
+        double cutoff2 = _potential.getCutoff() * _potential.getCutoff();
+        double x = _position[index * 3];
+        double y = _position[index * 3 + 1];
+        double z = _position[index * 3 + 2];
+        double fx = 0, fy = 0, fz = 0;
+        for (int n = _neighborStart[index]; n < _neighborStart[index + 1]; n++)
+        {
+            int other = _neighbors[n];
+            double dx = x - _position[other * 3];
+            double dy = y - _position[other * 3 + 1];
+            double dz = z - _position[other * 3 + 2];
+            double r2 = dx * dx + dy * dy + dz * dz;
+            if (r2 < cutoff2 && r2 > 0)
+            {
+                double f = _potential.force(r2);
+                fx += f * dx;
+                fy += f * dy;
+                fz += f * dz;
+            }
+        }
+        _force[index * 3] = fx;
+        _force[index * 3 + 1] = fy;
+        _force[index * 3 + 2] = fz;
+    }
+}
@@ -0,0 +1,435 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class implements the extended position based dynamics (XPBD)
+ * stepping mode of a scene. Instead of integrating the forces with the Runge
+ * Kutta solver, each sub-step predicts the positions of the objects from their
+ * velocities and forces, projects the distance and bending constraints on the
+ * predicted positions, then derives the velocities and linear momenta from
+ * the displacement. Each constraint has a compliance (inverse stiffness, 0
+ * for a rigid constraint) so that soft and stiff constraints converge with
+ * the same time step.</p>
+ * <p>The constraints link the positions of the objects and never turn them.
+ * The rotation of each object is integrated during the prediction : its
+ * torque changes its angular momentum, then its orientation turns at its
+ * angular velocity (semi-implicit Euler).</p>
+ * <p>Constraints are colored so that no two constraints of the same color
+ * share an object : the constraints of a color are projected in parallel.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GPositionBasedSolver
+{
+    /**
+     * Scene simulated.
+     */
+    private GScene _scene;
+
+    /**
+     * Constraints : indices of the objects (scene indices), rest
+     * length, compliance and Lagrange multiplier. A bending
+     * constraint is a distance constraint between the two ends
+     * of a pair of consecutive links.
+     */
+    private int _count;
+    private int[] _a = new int[16];
+    private int[] _b = new int[16];
+    private double[] _rest = new double[16];
+    private double[] _compliance = new double[16];
+    private double[] _lambda = new double[16];
+
+    /**
+     * Constraints sorted by color : the constraints of color c
+     * are _order[_colorStart[c]] to _order[_colorStart[c+1]-1].
+     */
+    private int[] _order = new int[0];
+    private int[] _colorStart = new int[1];
+    private int _colorCount;
+    private boolean _colored;
+
+    /**
+     * Positions (inertial referential), predicted positions and
+     * inverse masses of the objects. 3 values per object.
+     */
+    private double[] _position = new double[0];
+    private double[] _predicted = new double[0];
+    private double[] _inverseMass = new double[0];
+    // force of the object predicted
+    private double[] _force = new double[3];
+
+    /**
+     * Solver parameters.
+     */
+    private int _subSteps = 4;
+    private int _iterations = 2;
+    private int _parallelGrain = 512;
+
+    /**
+     * Task projecting a range of constraints of the same color.
+     */
+    class ProjectionTask
+            extends RecursiveAction
+    {
+        private int _first, _last;
+        private double _alpha;
+
+        ProjectionTask(int first, int last, double alpha)
+        {
+            _first = first;
+            _last = last;
+            _alpha = alpha;
+        }
+
+        protected void compute()
+        {
+            if (_last - _first <= _parallelGrain)
+            {
+                for (int index = _first; index < _last; index++)
+                {
+                    project(_order[index], _alpha);
+                }
+            }
+            else
+            {
+                int middle = (_first + _last) >>> 1;
+                invokeAll(new ProjectionTask(_first, middle, _alpha),
+                          new ProjectionTask(middle, _last, _alpha));
+            }
+        }
+    }
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build the solver of a scene.
+     * @param scene GScene
+     */
+    public GPositionBasedSolver(GScene scene)
+    {
+        _scene = scene;
+    }
+
+    /**
+     * Define the number of sub-steps per step and of
+     * projection iterations per sub-step.
+     * @param subSteps int
+     * @param iterations int
+     */
+    public void setIterations(int subSteps, int iterations)
+    {
+        _subSteps = Math.max(1, subSteps);
+        _iterations = Math.max(1, iterations);
+    }
+
+    /**
+     * Return the number of constraints.
+     * @return int
+     */
+    public int getConstraintCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Return the number of colors used to project the
+     * constraints in parallel.
+     * @return int
+     */
+    public int getColorCount()
+    {
+        return _colorCount;
+    }
+
+    /**
+     * Add a distance constraint between two objects.
+     * @param a GObject
+     * @param b GObject
+     * @param rest double Rest length
+     * @param compliance double Inverse of the stiffness (0 : rigid)
+     * @return int Index of the constraint
+     * @throws IllegalArgumentException If an object does not belong
+     * to the scene.
+     */
+    public int addDistanceConstraint(GObject a, GObject b, double rest,
+                                     double compliance)
+            throws IllegalArgumentException
+    {
+        if (!_scene.contains(a) || !_scene.contains(b))
+        {
+            throw new IllegalArgumentException(
+                    "Constrained objects must belong to the scene.");
+        }
+        if (_count == _a.length)
+        {
+            int capacity = _count * 2;
+            _a = grow(_a, capacity);
+            _b = grow(_b, capacity);
+            _rest = grow(_rest, capacity);
+            _compliance = grow(_compliance, capacity);
+            _lambda = grow(_lambda, capacity);
+        }
+        _a[_count] = a._sceneIndex;
+        _b[_count] = b._sceneIndex;
+        _rest[_count] = rest;
+        _compliance[_count] = compliance;
+        _colored = false;
+        return _count++;
+    }
+
+    /**
+     * Add a bending constraint on two consecutive links a-b and
+     * b-c : the distance between a and c is kept at its current
+     * value.
+     * @param a GObject First end
+     * @param b GObject Middle object (not moved by the constraint)
+     * @param c GObject Second end
+     * @param compliance double Inverse of the bending stiffness
+     * @return int Index of the constraint
+     */
+    public int addBendingConstraint(GObject a, GObject b, GObject c,
+                                    double compliance)
+    {
+        double rest = 0.0;
+        for (int axis = 0; axis < 3; axis++)
+        {
+            double d = c.getWorldPosition(axis) - a.getWorldPosition(axis);
+            rest += d * d;
+        }
+        return addDistanceConstraint(a, c, Math.sqrt(rest), compliance);
+    }
+
+    private static int[] grow(int[] array, int capacity)
+    {
+        int[] result = new int[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static double[] grow(double[] array, int capacity)
+    {
+        double[] result = new double[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /**
+     * Color the constraints greedily : each constraint takes the
+     * first color not used by a constraint sharing one of its
+     * objects. Objects keep a mask of the 63 first colors used;
+     * constraints that do not fit go to a last color which is
+     * projected sequentially.
+     */
+    private void color()
+    {
+        int nodeCount = _scene.getNodeCount();
+        long[] used = new long[nodeCount];
+        int[] colors = new int[_count];
+        int colorCount = 0;
+        for (int index = 0; index < _count; index++)
+        {
+            long mask = used[_a[index]] | used[_b[index]];
+            int color = Long.numberOfTrailingZeros(~mask);
+            if (color >= 63)
+            {
+                color = 63;
+            }
+            else
+            {
+                used[_a[index]] |= 1L << color;
+                used[_b[index]] |= 1L << color;
+            }
+            colors[index] = color;
+            colorCount = Math.max(colorCount, color + 1);
+        }
+        _colorStart = new int[colorCount + 1];
+        for (int index = 0; index < _count; index++)
+        {
+            _colorStart[colors[index] + 1]++;
+        }
+        for (int color = 0; color < colorCount; color++)
+        {
+            _colorStart[color + 1] += _colorStart[color];
+        }
+        int[] cursor = new int[colorCount];
+        System.arraycopy(_colorStart, 0, cursor, 0, colorCount);
+        _order = new int[_count];
+        for (int index = 0; index < _count; index++)
+        {
+            _order[cursor[colors[index]]++] = index;
+        }
+        _colorCount = colorCount;
+        _colored = true;
+    }
+
+    /**
+     * Advance the scene of a time step.
+     * @param pool ForkJoinPool Threads projecting the constraints, or
+     * null for a sequential projection.
+     * @param t double Time
+     * @param dt double Time step
+     */
+    public void step(ForkJoinPool pool, double t, double dt)
+    {
+        if (!_colored)
+        {
+            color();
+        }
+        int nodeCount = _scene.getNodeCount();
+        if (_position.length < nodeCount * 3)
+        {
+            _position = new double[nodeCount * 3];
+            _predicted = new double[nodeCount * 3];
+            _inverseMass = new double[nodeCount];
+        }
+        double h = dt / _subSteps;
+        for (int subStep = 0; subStep < _subSteps; subStep++)
+        {
+            predict(t + subStep * h, h);
+            for (int index = 0; index < _count; index++)
+            {
+                _lambda[index] = 0;
+            }
+            double alpha = 1.0 / (h * h);
+            for (int iteration = 0; iteration < _iterations; iteration++)
+            {
+                for (int color = 0; color < _colorCount; color++)
+                {
+                    int first = _colorStart[color];
+                    int last = _colorStart[color + 1];
+                    // the last color may contain constraints sharing
+                    // objects (more than 63 colors needed).
+                    if (pool == null || last - first <= _parallelGrain ||
+                        color == 63)
+                    {
+                        for (int index = first; index < last; index++)
+                        {
+                            project(_order[index], alpha);
+                        }
+                    }
+                    else
+                    {
+                        pool.invoke(new ProjectionTask(first, last, alpha));
+                    }
+                }
+            }
+            finish(h);
+        }
+    }
+
+    /**
+     * Predict the positions of the objects from their velocities
+     * and forces, and turn the objects.
+     * @param t double Time of the sub-step
+     * @param h double Duration of the sub-step
+     */
+    private void predict(double t, double h)
+    {
+        for (int node = 0; node < _scene.getNodeCount(); node++)
+        {
+            GObject object = _scene.getNode(node);
+            int offset = node * 3;
+            boolean moving = object.isDynamic() && object.isAwake();
+            _inverseMass[node] = moving ? object.getInverseMass() : 0.0;
+            double[] v = object.getLinearVelocity().getValues();
+            if (moving)
+            {
+                _force[0] = _force[1] = _force[2] = 0.0;
+                object.accumulateForce(t, _force);
+                object.advanceRotation(t, h);
+            }
+            for (int axis = 0; axis < 3; axis++)
+            {
+                double x = object.getWorldPosition(axis);
+                _position[offset + axis] = x;
+                if (axis < v.length && (moving ||
+                    object.getBodyType() == GObject.BODY_KINEMATIC))
+                {
+                    if (moving)
+                    {
+                        double[] external = object.getExternalForce();
+                        v[axis] += h * _inverseMass[node] *
+                                (_force[axis] +
+                                 (external != null ? external[axis] : 0.0) -
+                                 object.getExternalDamping() * v[axis]);
+                    }
+                    x += h * v[axis];
+                }
+                _predicted[offset + axis] = x;
+            }
+        }
+    }
+
+    /**
+     * Project a distance constraint on the predicted positions.
+     * @param index int Index of the constraint
+     * @param alpha double 1 / h^2
+     */
+    private void project(int index, double alpha)
+    {
+        int a = _a[index] * 3;
+        int b = _b[index] * 3;
+        double wa = _inverseMass[_a[index]];
+        double wb = _inverseMass[_b[index]];
+        double dx = _predicted[a] - _predicted[b];
+        double dy = _predicted[a + 1] - _predicted[b + 1];
+        double dz = _predicted[a + 2] - _predicted[b + 2];
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double compliance = _compliance[index] * alpha;
+        double w = wa + wb + compliance;
+        if (length == 0 || w == 0)
+        {
+            return;
+        }
+        double c = length - _rest[index];
+        double dLambda = (-c - compliance * _lambda[index]) / w;
+        _lambda[index] += dLambda;
+        double scale = dLambda / length;
+        _predicted[a] += wa * scale * dx;
+        _predicted[a + 1] += wa * scale * dy;
+        _predicted[a + 2] += wa * scale * dz;
+        _predicted[b] -= wb * scale * dx;
+        _predicted[b + 1] -= wb * scale * dy;
+        _predicted[b + 2] -= wb * scale * dz;
+    }
+
+    /**
+     * Derive the velocities and momenta from the displacement
+     * and move the objects to their projected positions.
+     * @param h double Duration of the sub-step
+     */
+    private void finish(double h)
+    {
+        for (int node = 0; node < _scene.getNodeCount(); node++)
+        {
+            GObject object = _scene.getNode(node);
+            if (object.getBodyType() == GObject.BODY_STATIC ||
+                !object.isAwake())
+            {
+                continue;
+            }
+            int offset = node * 3;
+            double[] x = object.getPosition().getValues();
+            double[] v = object.getLinearVelocity().getValues();
+            double[] p = object.getLinearMomentum().getValues();
+            for (int axis = 0; axis < x.length; axis++)
+            {
+                double displacement = _predicted[offset + axis] -
+                                      _position[offset + axis];
+                x[axis] += displacement;
+                if (object.isDynamic())
+                {
+                    v[axis] = displacement / h;
+                    p[axis] = object.getMass() * v[axis];
+                }
+            }
+        }
+    }
+}
@@ -1,138 +1,1130 @@
-package com.jslabs.gophysicengine.simulation;
-
-import java.util.*;
-
-import com.jslabs.gophysicengine.physics.*;
-import java.io.*;
-import com.jslabs.gophysicengine.renderer.GRenderer;
-
-/**
- * <p>Title: Go! PhysicEngine</p>
- *
- * <p>Description: This class contains all object (rigid bodies)</p>
- *
- * @author Jerome Schmaltz
- * @version 1.0
- */
-public class GScene
-        implements Runnable
-{
-    /**
-     * Collection of nodes in the current scene.
-     */
-    private Vector _nodes = new Vector();
-    private long cycleTime = System.currentTimeMillis();
-    private GRenderer _renderer;
-
-////////////////////////////////////////////////////////////////////////////////
-
-    /**
-     * Add a node to the current collection.
-     * @param object GObject
-     */
-    public void addNode(GObject object)
-    {
-        _nodes.add(object);
-    }
-
-    public void setRenderer(GRenderer renderer)
-    {
-        _renderer = renderer;
-    }
-
-    /**
-     * Return the number of nodes in the
-     * current collection.
-     * @return int Number of nodes.
-     */
-    public int getNodeCount()
-    {
-        return _nodes.isEmpty() ? 0 : _nodes.size();
-    }
-
-    /**
-     * Return the node at current position
-     * defined in parameter.
-     * @param index int
-     * @return GObject
-     */
-    public GObject getNode(int index)
-    {
-        return (GObject) _nodes.get(index);
-    }
-
-    /**
-     * Compile the scene; it initializes all
-     * rigid body values.
-     * @throws CompilationException
-     */
-    public void compile()
-            throws CompilationException
-    {
-        // initialize all objects (compute forces, torques, initial values)
-        for (int index = 0; index < getNodeCount(); index++)
-        {
-            try
-            {
-                getNode(index).initialize();
-            }
-            catch (InitializationException ex)
-            {
-                throw new CompilationException("Scene Compilation exception.\n" +
-                                               "Object : " +
-                                               getNode(index).toString() + "\n" +
-                                               ex.getMessage());
-            }
-        }
-    }
-
-	/**
-	 * This method is called to wait a little bit between
-	 * each calculations.
-	 */
-    private void synchFramerate()
-    {
-		// make a cycle time to display
-		// 50 FPS
-        cycleTime = cycleTime + 20; // 1000 ms / 20 ms = 50 FPS...
-        long difference = cycleTime - System.currentTimeMillis();
-        try
-        {
-			// wait a little bit
-            Thread.sleep(Math.max(0, difference));
-        }
-        catch (InterruptedException e)
-        {
-            e.printStackTrace();
-        }
-    }
-
-
-    /**
-     * Method must be implemented in order to treat
-     * this class as a thread.
-     */
-    public void run()
-    {
-        double counter = 0;
-        double timer = 0;
-        double dt = 0.2;
-
-        while (true)
-        {
-            timer = 0.2 * counter;
-            for (int index = 0; index < getNodeCount(); index++)
-            {
-                getNode(index).update(timer, dt);
-                System.out.println( timer + ";" + getNode(index).getPosition().getValue(0) );
-            }
-            // call the renderer to renderer the
-            // new object's coordinates.
-            _renderer.setObjects(_nodes);
-            // wait a little bit.
-            synchFramerate();
-            ++counter;
-        }
-    }
-
-}
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.jslabs.gophysicengine.physics.*;
+import java.io.*;
+import com.jslabs.gophysicengine.renderer.GRenderer;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This class contains all object (rigid bodies)</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GScene
+        implements Runnable
+{
+    /**
+     * Simulation modes
+     */
+    // forces integrated by the Runge Kutta solver of each object
+    public final static int MODE_FORCE = 0;
+    // extended position based dynamics
+    public final static int MODE_XPBD = 1;
+
+    /**
+     * Collection of nodes in the current scene.
+     */
+    private Vector _nodes = new Vector();
+    private GRenderer _renderer;
+
+    /**
+     * Fixed step of run() : simulated time of a step, scheduler of
+     * the steps in real time, and time spent computing each step.
+     * The default runs 50 steps of 0.2 s per second.
+     */
+    private double _timeStep = 0.2;
+    private GFrameScheduler _stepScheduler =
+            new GFrameScheduler(50, GFrameScheduler.POLICY_CATCH_UP);
+    private GLatencyHistogram _stepTimes = new GLatencyHistogram();
+    private volatile boolean _running;
+
+    /**
+     * Snapshots of the nodes handed to the renderer, and number
+     * of the last snapshot published.
+     */
+    private GSnapshotBuffer _snapshots = new GSnapshotBuffer();
+    private long _snapshotCount;
+
+    /**
+     * Listeners notified of each snapshot published.
+     */
+    private Vector _stepListeners = new Vector();
+
+    /**
+     * Links between nodes (joints, contacts...). Linked nodes
+     * are solved in the same island. _linkA[i] and _linkB[i]
+     * are the scene indices of the nodes of link i.
+     */
+    private int[] _linkA = new int[8];
+    private int[] _linkB = new int[8];
+    private int _linkCount;
+
+    /**
+     * Contacts found during the last step. Contacts are merged
+     * in the islands of the next step only.
+     */
+    private int[] _contactA = new int[8];
+    private int[] _contactB = new int[8];
+    private int _contactCount;
+
+    /**
+     * Continuous collision detection of the bullets.
+     */
+    private GContinuousCollision _continuousCollision =
+            new GContinuousCollision();
+
+    /**
+     * Joints between the nodes.
+     */
+    private GConstraintSolver _constraints = new GConstraintSolver(this);
+
+    /**
+     * Position based constraints (XPBD mode).
+     */
+    private GPositionBasedSolver _positionSolver =
+            new GPositionBasedSolver(this);
+
+    /**
+     * Generators applying forces to several objects.
+     */
+    private Vector _forceGenerators = new Vector();
+
+    /**
+     * Uniform force fields (gravity, drag, wind) applied to all
+     * the objects, and true if external forces were applied
+     * during the last step.
+     */
+    private GForceField _forceField = new GForceField();
+    private boolean _externalForces;
+
+    /**
+     * Time of the positions at which the forces of the generators
+     * held by the objects were computed (end of the last step).
+     */
+    private double _forceTime = Double.NaN;
+
+    /**
+     * Simulation mode of the scene.
+     */
+    private int _mode = MODE_FORCE;
+
+    /**
+     * Event driven simulation (replaces the fixed
+     * time step when defined).
+     */
+    private GEventScheduler _scheduler;
+
+    /**
+     * Partition of the nodes in simulation islands.
+     */
+    private GIslandBuilder _islands = new GIslandBuilder();
+    // true for the islands containing an awake body
+    private boolean[] _islandAwake = new boolean[0];
+
+    /**
+     * Batches of nodes of the same class with the same force and
+     * torque classes, integrated by their own stepper.
+     */
+    private Vector _batches = new Vector();
+    private boolean _typeGrouping = true;
+    private int _groupedNodeCount = -1;
+
+    /**
+     * Pool of threads solving the islands (null for a sequential
+     * simulation).
+     */
+    private ForkJoinPool _pool;
+
+    /**
+     * Minimum number of nodes handled by a single task. Smaller
+     * groups of islands are solved sequentially.
+     */
+    private int _parallelGrain = 64;
+
+    /**
+     * Kinetic energy (J) under which a body is considered at rest.
+     */
+    private double _sleepEnergyThreshold = 0.01;
+
+    /**
+     * Time (s) an island must stay at rest before falling asleep.
+     */
+    private double _sleepTimeThreshold = 1.0;
+
+    /**
+     * Temporary vectors of the joints of the islands solved
+     * sequentially (each IslandTask has its own).
+     */
+    private double[][] _jointVectors = new double[4][3];
+
+    /**
+     * Task solving a range of islands. The range is split
+     * until it contains less than _parallelGrain nodes or a
+     * single island.
+     */
+    class IslandTask
+            extends RecursiveAction
+    {
+        private int _first, _last;
+        private double _t, _dt;
+
+        IslandTask(int first, int last, double t, double dt)
+        {
+            _first = first;
+            _last = last;
+            _t = t;
+            _dt = dt;
+        }
+
+        protected void compute()
+        {
+            int nodes = _islands.getIslandEnd(_last - 1) -
+                        _islands.getIslandStart(_first);
+            if (_last - _first == 1 || nodes <= _parallelGrain)
+            {
+                // temporary vectors of the joints of the task
+                double[][] vectors = new double[4][3];
+                for (int island = _first; island < _last; island++)
+                {
+                    solveIsland(island, _t, _dt, vectors);
+                }
+            }
+            else
+            {
+                int middle = (_first + _last) >>> 1;
+                invokeAll(new IslandTask(_first, middle, _t, _dt),
+                          new IslandTask(middle, _last, _t, _dt));
+            }
+        }
+    }
+
+    /**
+     * Nodes integrated by the same stepper.
+     */
+    class Batch
+    {
+        private IGBatchStepper _stepper;
+        private GRigidBody[] _bodies = new GRigidBody[16];
+        private int _count;
+
+        // adapters of the functions of the batch (null if the
+        // nodes are not grouped)
+        private IGFunctionAdapter _force, _torque;
+
+        Batch(IGBatchStepper stepper)
+        {
+            _stepper = stepper;
+            if (stepper != null)
+            {
+                _force = GFunctionForce.newCopy();
+                _torque = GFunctionForce.newCopy();
+            }
+        }
+
+        void add(GRigidBody body)
+        {
+            if (_force != null)
+            {
+                body.setFunctionAdapters(_force, _torque);
+            }
+            if (_count == _bodies.length)
+            {
+                GRigidBody[] bodies = new GRigidBody[_count * 2];
+                System.arraycopy(_bodies, 0, bodies, 0, _count);
+                _bodies = bodies;
+            }
+            _bodies[_count++] = body;
+        }
+
+        /**
+         * Integrate the awake dynamic bodies of a range.
+         */
+        void step(int first, int last, double t, double dt)
+        {
+            if (_stepper != null)
+            {
+                _stepper.step(_bodies, first, last, t, dt);
+                return;
+            }
+            for (int index = first; index < last; index++)
+            {
+                if (_bodies[index].isDynamic() && _bodies[index].isAwake())
+                {
+                    _bodies[index].update(t, dt);
+                }
+            }
+        }
+    }
+
+    /**
+     * Task integrating a range of the bodies of a batch.
+     */
+    class BatchTask
+            extends RecursiveAction
+    {
+        private Batch _batch;
+        private int _first, _last;
+        private double _t, _dt;
+
+        BatchTask(Batch batch, int first, int last, double t, double dt)
+        {
+            _batch = batch;
+            _first = first;
+            _last = last;
+            _t = t;
+            _dt = dt;
+        }
+
+        protected void compute()
+        {
+            if (_last - _first <= _parallelGrain)
+            {
+                _batch.step(_first, _last, _t, _dt);
+            }
+            else
+            {
+                int middle = (_first + _last) >>> 1;
+                invokeAll(new BatchTask(_batch, _first, middle, _t, _dt),
+                          new BatchTask(_batch, middle, _last, _t, _dt));
+            }
+        }
+    }
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Add a node to the current collection.
+     * @param object GObject
+     */
+    public void addNode(GObject object)
+    {
+        object._sceneIndex = _nodes.size();
+        _nodes.add(object);
+    }
+
+    /**
+     * Link two nodes of the scene. Linked nodes interact with
+     * each other and are solved in the same simulation island.
+     * @param a GObject First node
+     * @param b GObject Second node
+     * @throws IllegalArgumentException If a node does not belong
+     * to this scene.
+     */
+    public void addLink(GObject a, GObject b)
+            throws IllegalArgumentException
+    {
+        if (!contains(a) || !contains(b))
+        {
+            throw new IllegalArgumentException(
+                    "Linked objects must belong to the scene.");
+        }
+        if (_linkCount == _linkA.length)
+        {
+            int[] linkA = new int[_linkCount * 2];
+            int[] linkB = new int[_linkCount * 2];
+            System.arraycopy(_linkA, 0, linkA, 0, _linkCount);
+            System.arraycopy(_linkB, 0, linkB, 0, _linkCount);
+            _linkA = linkA;
+            _linkB = linkB;
+        }
+        _linkA[_linkCount] = a._sceneIndex;
+        _linkB[_linkCount] = b._sceneIndex;
+        _linkCount++;
+    }
+
+    /**
+     * Record a contact between two nodes. Both nodes are
+     * woken up and solved in the same island at the next step.
+     * @param a GObject First node
+     * @param b GObject Second node
+     */
+    public synchronized void addContact(GObject a, GObject b)
+    {
+        if (!contains(a) || !contains(b))
+        {
+            return;
+        }
+        if (_contactCount == _contactA.length)
+        {
+            int[] contactA = new int[_contactCount * 2];
+            int[] contactB = new int[_contactCount * 2];
+            System.arraycopy(_contactA, 0, contactA, 0, _contactCount);
+            System.arraycopy(_contactB, 0, contactB, 0, _contactCount);
+            _contactA = contactA;
+            _contactB = contactB;
+        }
+        _contactA[_contactCount] = a._sceneIndex;
+        _contactB[_contactCount] = b._sceneIndex;
+        _contactCount++;
+        if (a.getBodyType() != GObject.BODY_STATIC)
+        {
+            a.setAwake(true);
+        }
+        if (b.getBodyType() != GObject.BODY_STATIC)
+        {
+            b.setAwake(true);
+        }
+    }
+
+    /**
+     * Simulate the scene from event to event instead of
+     * stepping all objects at each frame.
+     * @param scheduler GEventScheduler The scheduler, or null
+     * to go back to the fixed time step.
+     */
+    public void setEventScheduler(GEventScheduler scheduler)
+    {
+        _scheduler = scheduler;
+    }
+
+    /**
+     * Return the solver of the joints of the scene.
+     * @return GConstraintSolver
+     */
+    public GConstraintSolver getConstraintSolver()
+    {
+        return _constraints;
+    }
+
+    /**
+     * Add a generator applying forces to the objects of the
+     * scene at each step (see step()).
+     * @param generator IGForceGenerator
+     */
+    public void addForceGenerator(IGForceGenerator generator)
+    {
+        _forceGenerators.add(generator);
+    }
+
+    /**
+     * Remove a force generator from the scene.
+     * @param generator IGForceGenerator
+     */
+    public void removeForceGenerator(IGForceGenerator generator)
+    {
+        _forceGenerators.remove(generator);
+    }
+
+    /**
+     * Clear the forces of the previous step, apply the force
+     * fields and the forces of the generators.
+     * @param t double Time of the positions of the objects
+     */
+    private void applyForceGenerators(double t)
+    {
+        boolean fields = _forceField.getFieldCount() > 0;
+        if (_forceGenerators.isEmpty() && !fields && !_externalForces)
+        {
+            return;
+        }
+        for (int index = 0; index < getNodeCount(); index++)
+        {
+            GObject object = getNode(index);
+            object.clearExternalForce();
+            if (fields && object.isDynamic())
+            {
+                _forceField.applyTo(object);
+            }
+        }
+        _externalForces = fields || !_forceGenerators.isEmpty();
+        for (int index = 0; index < _forceGenerators.size(); index++)
+        {
+            ((IGForceGenerator) _forceGenerators.get(index)).applyForces(
+                    this, t, _pool);
+        }
+    }
+
+    /**
+     * Return the uniform force fields applied to all the objects
+     * of the scene.
+     * @return GForceField
+     */
+    public GForceField getForceField()
+    {
+        return _forceField;
+    }
+
+    /**
+     * Return the solver of the position based constraints
+     * used in the XPBD mode.
+     * @return GPositionBasedSolver
+     */
+    public GPositionBasedSolver getPositionSolver()
+    {
+        return _positionSolver;
+    }
+
+    /**
+     * Define the simulation mode of the scene. In the XPBD mode,
+     * the objects are stepped by the position based solver : joints
+     * and bullets are ignored and sleeping objects are held fixed.
+     * The constraints of the solver act on the positions only; the
+     * objects turn with their torques and angular momenta.
+     * @param mode int MODE_FORCE or MODE_XPBD
+     * @throws IllegalArgumentException If the mode is unknown.
+     */
+    public void setSimulationMode(int mode)
+            throws IllegalArgumentException
+    {
+        if (mode != MODE_FORCE && mode != MODE_XPBD)
+        {
+            throw new IllegalArgumentException("Unknown simulation mode.");
+        }
+        _mode = mode;
+    }
+
+    /**
+     * Return the simulation mode of the scene.
+     * @return int MODE_FORCE or MODE_XPBD
+     */
+    public int getSimulationMode()
+    {
+        return _mode;
+    }
+
+    /**
+     * Return the continuous collision detector of the bullets.
+     * @return GContinuousCollision
+     */
+    public GContinuousCollision getContinuousCollision()
+    {
+        return _continuousCollision;
+    }
+
+    /**
+     * Return true if the object is a node of this scene.
+     * @param object GObject
+     * @return boolean
+     */
+    public boolean contains(GObject object)
+    {
+        return object != null && object._sceneIndex >= 0 &&
+                object._sceneIndex < getNodeCount() &&
+                _nodes.get(object._sceneIndex) == object;
+    }
+
+    /**
+     * Define the number of threads used to solve the islands. The
+     * simulation is sequential unless it is defined. With several
+     * threads, the nodes are integrated at the same time : a force
+     * or a function (IGForce, IGFunction) shared by several nodes
+     * is then called by several threads at once and must not keep
+     * any state between two calls (see IGForce). A GFunctionForce
+     * is never shared : give each node its own.
+     * @param threads int Number of threads (1 for a sequential
+     * simulation).
+     */
+    public void setParallelism(int threads)
+    {
+        if (_pool != null)
+        {
+            _pool.shutdown();
+        }
+        _pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Define the minimum number of nodes solved by a single task.
+     * @param grain int Number of nodes.
+     */
+    public void setParallelGrain(int grain)
+    {
+        _parallelGrain = Math.max(1, grain);
+    }
+
+    /**
+     * Define the sleeping criteria of the bodies. An island falls
+     * asleep when the kinetic energy of all its bodies stays under
+     * the threshold during the time window.
+     * @param energy double Kinetic energy threshold (J)
+     * @param time double Time window (s)
+     */
+    public void setSleepThresholds(double energy, double time)
+    {
+        _sleepEnergyThreshold = energy;
+        _sleepTimeThreshold = time;
+    }
+
+    /**
+     * Wake up a node and the island it belongs to.
+     * @param object GObject
+     */
+    public void wakeUp(GObject object)
+    {
+        object.setAwake(true);
+    }
+
+    /**
+     * Return the number of awake dynamic and kinematic nodes.
+     * @return int Number of awake nodes.
+     */
+    public int getAwakeNodeCount()
+    {
+        int count = 0;
+        for (int index = 0; index < getNodeCount(); index++)
+        {
+            if (getNode(index).isAwake())
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of islands found during the last step.
+     * @return int Number of islands.
+     */
+    public int getIslandCount()
+    {
+        return _islands.getIslandCount();
+    }
+
+    public void setRenderer(GRenderer renderer)
+    {
+        _renderer = renderer;
+    }
+
+    /**
+     * Return the buffer of the snapshots published by the scene.
+     * @return GSnapshotBuffer
+     */
+    public GSnapshotBuffer getSnapshotBuffer()
+    {
+        return _snapshots;
+    }
+
+    /**
+     * Add a listener notified of each snapshot published.
+     * @param listener IGStepListener
+     */
+    public void addStepListener(IGStepListener listener)
+    {
+        _stepListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     * @param listener IGStepListener
+     */
+    public void removeStepListener(IGStepListener listener)
+    {
+        _stepListeners.remove(listener);
+    }
+
+    /**
+     * Copy the state of the nodes needed to draw them, notify the
+     * step listeners and publish the copy to the renderer. The
+     * listeners are notified before the snapshot is published, so
+     * that the renderer never reads it while they do. Must be
+     * called by the thread stepping the scene, between two steps; it
+     * never waits for the renderer.
+     * @param t double Time of the scene
+     */
+    public void publishSnapshot(double t)
+    {
+        GSceneSnapshot snapshot = _snapshots.getBackSnapshot();
+        snapshot.capture(_nodes, t, ++_snapshotCount,
+                         _running ? _stepScheduler.getPeriod() : 0,
+                         _snapshots.getLastSnapshot(), _scheduler);
+        for (int index = 0; index < _stepListeners.size(); index++)
+        {
+            ((IGStepListener) _stepListeners.get(index)).stepCompleted(
+                    this, snapshot);
+        }
+        _snapshots.publish();
+    }
+
+    /**
+     * Return the number of nodes in the
+     * current collection.
+     * @return int Number of nodes.
+     */
+    public int getNodeCount()
+    {
+        return _nodes.isEmpty() ? 0 : _nodes.size();
+    }
+
+    /**
+     * Return the node at current position
+     * defined in parameter.
+     * @param index int
+     * @return GObject
+     */
+    public GObject getNode(int index)
+    {
+        return (GObject) _nodes.get(index);
+    }
+
+    /**
+     * Compile the scene; it initializes all
+     * rigid body values.
+     * @throws CompilationException
+     */
+    public void compile()
+            throws CompilationException
+    {
+        // initialize all objects (compute forces, torques, initial values)
+        for (int index = 0; index < getNodeCount(); index++)
+        {
+            try
+            {
+                getNode(index).initialize();
+            }
+            catch (InitializationException ex)
+            {
+                throw new CompilationException("Scene Compilation exception.\n" +
+                                               "Object : " +
+                                               getNode(index).toString() + "\n" +
+                                               ex.getMessage());
+            }
+        }
+        groupNodes();
+    }
+
+    /**
+     * Define if the nodes are integrated by batches of the same
+     * class and force classes (default), each batch having its
+     * own copy of the solver code so that the JIT compiler can
+     * inline its forces, or all by the same code.
+     * @param grouping boolean
+     */
+    public void setTypeGrouping(boolean grouping)
+    {
+        _typeGrouping = grouping;
+        _groupedNodeCount = -1;
+    }
+
+    /**
+     * Return the number of batches of nodes integrated
+     * separately.
+     * @return int
+     */
+    public int getBatchCount()
+    {
+        return _batches.size();
+    }
+
+    /**
+     * Group the nodes in batches of the same class and of the
+     * same force and torque classes. The nodes whose forces are
+     * functions are grouped by function classes, and their
+     * functions are adapted by a copy of GFunctionForce of their
+     * batch.
+     */
+    private void groupNodes()
+    {
+        _batches.clear();
+        HashMap batches = new HashMap();
+        for (int index = 0; index < getNodeCount(); index++)
+        {
+            GObject node = getNode(index);
+            String key = !_typeGrouping ? "" :
+                         node.getClass().getName() + " " +
+                         className(node.getForceFunction(), node.getForce()) +
+                         " " +
+                         className(node.getTorqueFunction(), node.getTorque());
+            Batch batch = (Batch) batches.get(key);
+            if (batch == null)
+            {
+                batch = new Batch(_typeGrouping ?
+                                  GBatchStepper.newInstance() : null);
+                batches.put(key, batch);
+                _batches.add(batch);
+            }
+            batch.add(node);
+        }
+        _groupedNodeCount = getNodeCount();
+    }
+
+    private static String className(IGFunction function, IGForce force)
+    {
+        if (function != null)
+        {
+            return "function " + function.getClass().getName();
+        }
+        return force == null ? "null" : force.getClass().getName();
+    }
+
+    /**
+     * Integrate the awake dynamic nodes, batch by batch.
+     * @param t double Time
+     * @param dt double Time step
+     */
+    private void stepBatches(double t, double dt)
+    {
+        if (_groupedNodeCount != getNodeCount())
+        {
+            groupNodes();
+        }
+        for (int index = 0; index < _batches.size(); index++)
+        {
+            Batch batch = (Batch) _batches.get(index);
+            if (_pool == null || batch._count <= _parallelGrain)
+            {
+                batch.step(0, batch._count, t, dt);
+            }
+            else
+            {
+                _pool.invoke(new BatchTask(batch, 0, batch._count, t, dt));
+            }
+        }
+    }
+
+    /**
+     * Partition the nodes in islands from the links
+     * between them.
+     */
+    private void buildIslands()
+    {
+        _islands.reset(getNodeCount());
+        for (int index = 0; index < _linkCount; index++)
+        {
+            // static bodies do not propagate interactions.
+            if (getNode(_linkA[index]).getBodyType() != GObject.BODY_STATIC &&
+                getNode(_linkB[index]).getBodyType() != GObject.BODY_STATIC)
+            {
+                _islands.union(_linkA[index], _linkB[index]);
+            }
+        }
+        for (int index = 0; index < _contactCount; index++)
+        {
+            if (getNode(_contactA[index]).getBodyType() != GObject.BODY_STATIC &&
+                getNode(_contactB[index]).getBodyType() != GObject.BODY_STATIC)
+            {
+                _islands.union(_contactA[index], _contactB[index]);
+            }
+        }
+        _contactCount = 0;
+        _islands.build();
+    }
+
+    /**
+     * Solve the joints of an island once its nodes have been
+     * integrated, and put the island to sleep if it is at rest.
+     * @param island int Index of the island
+     * @param t double Time
+     * @param dt double Time step
+     * @param vectors double[][] Temporary vectors of the joints
+     */
+    private void solveIsland(int island, double t, double dt,
+                             double[][] vectors)
+    {
+        int[] nodes = _islands.getIslandNodes();
+        int start = _islands.getIslandStart(island);
+        int end = _islands.getIslandEnd(island);
+
+        if (!_islandAwake[island])
+        {
+            return;
+        }
+
+        // the dynamic bodies have been integrated by stepBatches().
+        double minSleepTime = Double.MAX_VALUE;
+        for (int index = start; index < end; index++)
+        {
+            GObject node = getNode(nodes[index]);
+            switch (node.getBodyType())
+            {
+                case GObject.BODY_DYNAMIC:
+                    minSleepTime = Math.min(minSleepTime,
+                            node.updateSleepTime(dt, _sleepEnergyThreshold));
+                    break;
+                case GObject.BODY_KINEMATIC:
+                    // a moving kinematic body keeps its island awake.
+                    node.setAwake(true);
+                    node.advanceKinematic(dt);
+                    if (node.getLinearVelocity().getSquaredLength() > 0)
+                    {
+                        minSleepTime = 0;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        _constraints.solveIsland(island, dt, vectors);
+
+        if (minSleepTime >= _sleepTimeThreshold)
+        {
+            for (int index = start; index < end; index++)
+            {
+                getNode(nodes[index]).setAwake(false);
+            }
+        }
+    }
+
+    /**
+     * Find the islands to simulate : an island is simulated as a
+     * whole, if one of its bodies has been woken up, all of its
+     * dynamic bodies are.
+     */
+    private void wakeIslands()
+    {
+        int islandCount = _islands.getIslandCount();
+        if (_islandAwake.length < islandCount)
+        {
+            _islandAwake = new boolean[islandCount];
+        }
+        int[] nodes = _islands.getIslandNodes();
+        for (int island = 0; island < islandCount; island++)
+        {
+            int start = _islands.getIslandStart(island);
+            int end = _islands.getIslandEnd(island);
+            boolean awake = false;
+            for (int index = start; index < end && !awake; index++)
+            {
+                awake = getNode(nodes[index]).isAwake();
+            }
+            _islandAwake[island] = awake;
+            for (int index = start; index < end && awake; index++)
+            {
+                GObject node = getNode(nodes[index]);
+                if (node.isDynamic() && !node.isAwake())
+                {
+                    node.setAwake(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Advance the whole scene of a time step. Independent
+     * islands are solved in parallel. The forces of the generators
+     * depend on the positions of all the objects : they are
+     * integrated with the velocity Verlet scheme (half of their
+     * impulse before the integration of the objects, half after it
+     * with the forces of the new positions, which are kept for the
+     * next step) instead of being held constant during the step.
+     * @param t double Time
+     * @param dt double Time step
+     */
+    public void step(double t, double dt)
+    {
+        boolean verlet = _mode != MODE_XPBD && !_forceGenerators.isEmpty();
+        if (!verlet || t != _forceTime)
+        {
+            applyForceGenerators(t);
+        }
+        _forceTime = Double.NaN;
+        if (_mode == MODE_XPBD)
+        {
+            _positionSolver.step(_pool, t, dt);
+            return;
+        }
+        buildIslands();
+        int islandCount = _islands.getIslandCount();
+        if (islandCount == 0)
+        {
+            return;
+        }
+        _constraints.prepare(_islands);
+        wakeIslands();
+        if (verlet)
+        {
+            applyExternalForces(0.5 * dt, true);
+        }
+        _continuousCollision.beginStep(this);
+        stepBatches(t, dt);
+        if (_pool == null || getNodeCount() <= _parallelGrain)
+        {
+            for (int island = 0; island < islandCount; island++)
+            {
+                solveIsland(island, t, dt, _jointVectors);
+            }
+        }
+        else
+        {
+            _pool.invoke(new IslandTask(0, islandCount, t, dt));
+        }
+        // bullets are sub-stepped up to their impacts.
+        _continuousCollision.endStep(this, t, dt);
+        if (verlet)
+        {
+            applyForceGenerators(t + dt);
+            applyExternalForces(0.5 * dt, false);
+            _forceTime = t + dt;
+        }
+    }
+
+    /**
+     * Add the impulse of the external forces during a time to the
+     * awake objects (velocity Verlet).
+     * @param dt double Time (s)
+     * @param clear boolean True to clear the external forces of all
+     * the objects once applied.
+     */
+    private void applyExternalForces(double dt, boolean clear)
+    {
+        for (int index = 0; index < getNodeCount(); index++)
+        {
+            GObject object = getNode(index);
+            object.applyExternalForce(object.isAwake() ? dt : 0.0, clear);
+        }
+    }
+
+    /**
+     * Define the simulated time of a step of run().
+     * @param dt double Time step (s)
+     */
+    public void setTimeStep(double dt)
+    {
+        _timeStep = dt;
+    }
+
+    /**
+     * Define the number of steps computed by run() per second of
+     * real time : run() simulates getTimeStep() * rate seconds per
+     * second, whatever the time spent drawing.
+     * @param stepsPerSecond double
+     * @throws IllegalArgumentException If the rate is not positive.
+     */
+    public void setStepRate(double stepsPerSecond)
+            throws IllegalArgumentException
+    {
+        _stepScheduler.setRate(stepsPerSecond);
+    }
+
+    /**
+     * Define what run() does with the steps it is late for :
+     * GFrameScheduler.POLICY_CATCH_UP (default) computes them in a
+     * row, up to setMaxCatchUpSteps(); GFrameScheduler.POLICY_SKIP
+     * drops them, the simulation then slows down.
+     * @param policy int
+     * @throws IllegalArgumentException If the policy is unknown.
+     */
+    public void setOverrunPolicy(int policy)
+            throws IllegalArgumentException
+    {
+        _stepScheduler.setPolicy(policy);
+    }
+
+    /**
+     * Define the maximum number of steps computed in a row by run()
+     * to catch up with the real time. When the steps take longer than
+     * the real time they simulate, the time left behind is dropped
+     * (the simulation slows down instead of falling further behind).
+     * @param steps int
+     */
+    public void setMaxCatchUpSteps(int steps)
+    {
+        _stepScheduler.setMaxCatchUp(steps);
+    }
+
+    /**
+     * Return the simulated time of a step of run().
+     * @return double
+     */
+    public double getTimeStep()
+    {
+        return _timeStep;
+    }
+
+    /**
+     * Return the number of steps of real time dropped by run()
+     * because the simulation could not catch up.
+     * @return long
+     */
+    public long getDroppedStepCount()
+    {
+        return _stepScheduler.getDroppedTickCount();
+    }
+
+    /**
+     * Return the scheduler of the steps of run(), whose histogram
+     * gives the lateness of the steps (jitter).
+     * @return GFrameScheduler
+     */
+    public GFrameScheduler getStepScheduler()
+    {
+        return _stepScheduler;
+    }
+
+    /**
+     * Return the histogram of the time spent computing the steps
+     * of run() (step, snapshot).
+     * @return GLatencyHistogram
+     */
+    public GLatencyHistogram getStepTimeHistogram()
+    {
+        return _stepTimes;
+    }
+
+    /**
+     * Compute a step of run() and publish its snapshot.
+     * @param t double Time at the beginning of the step
+     */
+    private void advance(double t)
+    {
+        if (_scheduler != null)
+        {
+            // the objects are not synchronized : the snapshot moves
+            // them along their trajectories
+            _scheduler.advanceTo(t + _timeStep);
+        }
+        else
+        {
+            step(t, _timeStep);
+        }
+        publishSnapshot(t + _timeStep);
+    }
+
+    /**
+     * Method must be implemented in order to treat
+     * this class as a thread. The physics runs at a fixed
+     * rate (see setStepRate()) : the steps are paced by a
+     * GFrameScheduler on System.nanoTime, and the steps the
+     * thread is late for are computed in a row (or dropped,
+     * see setOverrunPolicy()), so that slow frames do not
+     * slow the simulated time down.
+     * The snapshots published tell the renderer when they were
+     * taken, so that it can draw at its own rate by
+     * interpolating between the last two steps.
+     */
+    public void run()
+    {
+        double timer = 0;
+        _running = true;
+        _stepScheduler.start();
+
+        while (_running)
+        {
+            // wait a little bit.
+            int steps = _stepScheduler.waitForNextTick();
+            if (steps == 0)
+            {
+                // interrupted
+                _running = false;
+                break;
+            }
+            for (int index = 0; index < steps; index++)
+            {
+                long start = System.nanoTime();
+                advance(timer);
+                timer += _timeStep;
+                _stepTimes.record(System.nanoTime() - start);
+            }
+            if (_renderer != null)
+            {
+                // call the renderer to renderer the
+                // new object's coordinates.
+                _renderer.setSnapshots(_snapshots);
+            }
+        }
+    }
+
+    /**
+     * Stop run() after its current step.
+     */
+    public void stop()
+    {
+        _running = false;
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.awt.Graphics;
+import java.util.Vector;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Copy of the state of the nodes of a scene needed to draw them, taken
+ * between two steps : position of each body, its orientation (quaternion
+ * [w,x,y,z], or [angle,0,0,0] for a planar body) and its dimensions. The
+ * renderer draws the snapshot while the scene computes the next steps, so
+ * it never sees a half updated body. The snapshots are exchanged by a
+ * GSnapshotBuffer and their arrays are reused from a step to another.</p>
+ * <p>A snapshot also keeps the state of the previous step and the real time
+ * at which it was taken : a renderer drawing faster than the steps are
+ * computed draws the state interpolated between both steps (the display is
+ * then one step late, but moves smoothly). The snapshot is not changed by
+ * the drawing : each renderer interpolates it in its own
+ * GInterpolatedSnapshot.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GSceneSnapshot
+{
+    // nodes captured (drawn with the values of the snapshot)
+    private GObject[] _nodes = new GObject[0];
+    private int _count;
+    // 3 values per node
+    private double[] _positions = new double[0];
+    // 4 values per node
+    private double[] _orientations = new double[0];
+    // 3 values per node
+    private int[] _dimensions = new int[0];
+    // true for the planar nodes (orientation is an angle)
+    private boolean[] _planar = new boolean[0];
+    // state of the previous step
+    private double[] _previousPositions = new double[0];
+    private double[] _previousOrientations = new double[0];
+    // real time of the capture and between two steps (ns, 0 if the
+    // steps are not computed at a fixed rate)
+    private long _captureTime;
+    private long _stepPeriod;
+    // time of the scene and number of the snapshot
+    private double _time;
+    private long _sequence;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Copy the state of the nodes.
+     * @param nodes Vector Nodes of the scene
+     * @param time double Time of the scene
+     * @param sequence long Number of the snapshot
+     * @param stepPeriod long Real time between two steps (ns), 0 if
+     * the steps are not computed at a fixed rate
+     * @param previous GSceneSnapshot Snapshot of the previous step
+     * (null if none)
+     * @param scheduler GEventScheduler Scheduler of the scene, which
+     * moves the positions of the nodes behind its time along their
+     * trajectories (null if the scene is stepped at a fixed time step)
+     */
+    void capture(Vector nodes, double time, long sequence, long stepPeriod,
+                 GSceneSnapshot previous, GEventScheduler scheduler)
+    {
+        int count = nodes.size();
+        if (_nodes.length < count)
+        {
+            int capacity = Math.max(count, 2 * _nodes.length);
+            _nodes = new GObject[capacity];
+            _positions = new double[3 * capacity];
+            _orientations = new double[4 * capacity];
+            _dimensions = new int[3 * capacity];
+            _planar = new boolean[capacity];
+            _previousPositions = new double[3 * capacity];
+            _previousOrientations = new double[4 * capacity];
+        }
+        for (int index = 0; index < count; index++)
+        {
+            GObject node = (GObject) nodes.get(index);
+            _nodes[index] = node;
+            double[] x = node.getPosition().getValues();
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _positions[3 * index + axis] = axis < x.length ? x[axis] : 0.0;
+                _dimensions[3 * index + axis] = node.getDimension(axis);
+            }
+            if (scheduler != null)
+            {
+                scheduler.extrapolate(index, _positions, 3 * index);
+            }
+            int offset = 4 * index;
+            _planar[index] = node.isPlanar();
+            if (node.isPlanar())
+            {
+                _orientations[offset] = node.getAngle();
+                _orientations[offset + 1] = 0.0;
+                _orientations[offset + 2] = 0.0;
+                _orientations[offset + 3] = 0.0;
+            }
+            else
+            {
+                for (int component = 0; component < 4; component++)
+                {
+                    _orientations[offset + component] =
+                            node.getOrientation().getValue(component);
+                }
+            }
+            // state of the previous step (the state of this step for
+            // the nodes which were not in the previous snapshot)
+            boolean known = previous != null && index < previous._count &&
+                            previous._nodes[index] == node;
+            System.arraycopy(known ? previous._positions : _positions,
+                             3 * index, _previousPositions, 3 * index, 3);
+            System.arraycopy(known ? previous._orientations : _orientations,
+                             offset, _previousOrientations, offset, 4);
+        }
+        // forget the nodes removed from the scene
+        for (int index = count; index < _count; index++)
+        {
+            _nodes[index] = null;
+        }
+        _count = count;
+        _time = time;
+        _sequence = sequence;
+        _stepPeriod = stepPeriod;
+        _captureTime = System.nanoTime();
+    }
+
+    /**
+     * Return the fraction of the step elapsed since the snapshot was
+     * taken, used to interpolate between the previous step and this
+     * one.
+     * @param now long Current time (System.nanoTime)
+     * @return double Between 0 and 1 (1 if the steps are not
+     * computed at a fixed rate)
+     */
+    public double getInterpolationFactor(long now)
+    {
+        if (_stepPeriod <= 0)
+        {
+            return 1.0;
+        }
+        double alpha = (double) (now - _captureTime) / _stepPeriod;
+        return Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    /**
+     * Draw the nodes of the snapshot.
+     * @param g Graphics
+     */
+    public void draw(Graphics g)
+    {
+        GInterpolatedSnapshot interpolated = new GInterpolatedSnapshot();
+        interpolated.interpolate(this, 1.0);
+        interpolated.draw(g);
+    }
+
+    /**
+     * Compute the state of the nodes between the previous step and
+     * this one (see GInterpolatedSnapshot.interpolate()).
+     * @param alpha double 0 for the previous step, 1 for this one
+     * @param positions double[] Receives the positions, 3 values
+     * per node
+     * @param orientations double[] Receives the orientations, 4
+     * values per node
+     */
+    void interpolate(double alpha, double[] positions, double[] orientations)
+    {
+        for (int index = 0; index < 3 * _count; index++)
+        {
+            positions[index] = _previousPositions[index] +
+                    alpha * (_positions[index] - _previousPositions[index]);
+        }
+        for (int index = 0; index < _count; index++)
+        {
+            int offset = 4 * index;
+            if (_planar[index])
+            {
+                orientations[offset] = _previousOrientations[offset] + alpha *
+                        (_orientations[offset] - _previousOrientations[offset]);
+                continue;
+            }
+            double dot = 0.0;
+            for (int component = 0; component < 4; component++)
+            {
+                dot += _previousOrientations[offset + component] *
+                        _orientations[offset + component];
+            }
+            // q and -q are the same orientation
+            double sign = dot < 0 ? -1.0 : 1.0;
+            double norm = 0.0;
+            for (int component = 0; component < 4; component++)
+            {
+                double a = _previousOrientations[offset + component];
+                double value = a + alpha *
+                               (sign * _orientations[offset + component] - a);
+                orientations[offset + component] = value;
+                norm += value * value;
+            }
+            norm = norm == 0 ? 1.0 : Math.sqrt(norm);
+            for (int component = 0; component < 4; component++)
+            {
+                orientations[offset + component] /= norm;
+            }
+        }
+    }
+
+    /**
+     * Return the number of nodes.
+     * @return int
+     */
+    public int getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Return a node of the snapshot.
+     * @param index int
+     * @return GObject
+     */
+    public GObject getNode(int index)
+    {
+        return _nodes[index];
+    }
+
+    /**
+     * Return the positions of the nodes in their body referential,
+     * 3 values per node.
+     * @return double[]
+     */
+    public double[] getPositions()
+    {
+        return _positions;
+    }
+
+    /**
+     * Return the positions of the nodes at the previous step,
+     * 3 values per node.
+     * @return double[]
+     */
+    public double[] getPreviousPositions()
+    {
+        return _previousPositions;
+    }
+
+    /**
+     * Return the orientations of the nodes, 4 values per node.
+     * @return double[]
+     */
+    public double[] getOrientations()
+    {
+        return _orientations;
+    }
+
+    /**
+     * Return the dimensions of the nodes, 3 values per node.
+     * @return int[]
+     */
+    public int[] getDimensions()
+    {
+        return _dimensions;
+    }
+
+    /**
+     * Return the time of the scene when the snapshot was taken.
+     * @return double
+     */
+    public double getTime()
+    {
+        return _time;
+    }
+
+    /**
+     * Return the number of the snapshot (0 if it has never been
+     * taken).
+     * @return long
+     */
+    public long getSequence()
+    {
+        return _sequence;
+    }
+}
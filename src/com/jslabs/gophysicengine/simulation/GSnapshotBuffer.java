@@ -0,0 +1,93 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Triple buffer of snapshots exchanged without lock between the thread of
+ * the scene (the writer) and the renderer (the reader). The writer fills
+ * the back snapshot and publishes it by swapping it with the ready one; the
+ * reader takes the ready snapshot, if a newer one has been published, by
+ * swapping it with the one it has drawn. Each swap is a single atomic
+ * exchange : the writer never waits for the reader, the reader always gets
+ * a complete snapshot, and intermediate snapshots are dropped when the
+ * renderer is slower than the scene.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GSnapshotBuffer
+{
+    // bit of _ready set when the ready snapshot has not been read
+    private final static int FRESH = 4;
+    private final static int INDEX = 3;
+
+    private GSceneSnapshot[] _snapshots = {
+            new GSceneSnapshot(), new GSceneSnapshot(), new GSceneSnapshot()};
+    // index of the ready snapshot and FRESH bit
+    private AtomicInteger _ready = new AtomicInteger(1);
+    // snapshot owned by the writer
+    private int _back = 0;
+    // snapshot owned by the reader
+    private int _front = 2;
+    // last snapshot published (read by the writer only)
+    private GSceneSnapshot _last;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Return the snapshot to fill (writer only).
+     * @return GSceneSnapshot
+     */
+    GSceneSnapshot getBackSnapshot()
+    {
+        return _snapshots[_back];
+    }
+
+    /**
+     * Publish the back snapshot (writer only).
+     */
+    void publish()
+    {
+        _last = _snapshots[_back];
+        _back = _ready.getAndSet(_back | FRESH) & INDEX;
+    }
+
+    /**
+     * Return the last snapshot published, or null (writer only). It
+     * may be read by the reader at the same time, but is not changed
+     * until the writer fills it again.
+     * @return GSceneSnapshot
+     */
+    GSceneSnapshot getLastSnapshot()
+    {
+        return _last;
+    }
+
+    /**
+     * Return true if a snapshot has been published since the last
+     * call to acquire().
+     * @return boolean
+     */
+    public boolean hasNewSnapshot()
+    {
+        return (_ready.get() & FRESH) != 0;
+    }
+
+    /**
+     * Return the last snapshot published (reader only). The snapshot
+     * is not changed until the next call.
+     * @return GSceneSnapshot
+     */
+    public GSceneSnapshot acquire()
+    {
+        if ((_ready.get() & FRESH) != 0)
+        {
+            _front = _ready.getAndSet(_front) & INDEX;
+        }
+        return _snapshots[_front];
+    }
+}
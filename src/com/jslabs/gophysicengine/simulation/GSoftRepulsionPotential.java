@@ -0,0 +1,63 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Soft repulsion k/2 (1 - r/d)^2 between objects closer than the diameter
+ * d. The force stays finite when two objects overlap, which makes it suitable
+ * for granular or crowd simulations with large time steps.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GSoftRepulsionPotential
+        implements IGPairPotential
+{
+    /**
+     * Stiffness and diameter.
+     */
+    private double _stiffness;
+    private double _diameter;
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Build a soft repulsion.
+     * @param stiffness double
+     * @param diameter double Distance beyond which the repulsion is null
+     * @throws IllegalArgumentException If the diameter is not positive.
+     */
+    public GSoftRepulsionPotential(double stiffness, double diameter)
+            throws IllegalArgumentException
+    {
+        if (diameter <= 0)
+        {
+            throw new IllegalArgumentException("Diameter must be positive.");
+        }
+        _stiffness = stiffness;
+        _diameter = diameter;
+    }
+
+    public double getCutoff()
+    {
+        return _diameter;
+    }
+
+    public double force(double r2)
+    {
+        double r = Math.sqrt(r2);
+        if (r == 0)
+        {
+            return 0;
+        }
+        return _stiffness * (1 - r / _diameter) / (_diameter * r);
+    }
+
+    public double energy(double r2)
+    {
+        double overlap = 1 - Math.sqrt(r2) / _diameter;
+        return 0.5 * _stiffness * overlap * overlap;
+    }
+}
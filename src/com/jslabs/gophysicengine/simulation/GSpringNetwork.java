@@ -0,0 +1,445 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>This class is a network of damped springs between the objects of a
+ * scene. Springs are stored as edge arrays (i, j, k, rest, damping) sorted by
+ * their first object in compressed sparse row form : the springs starting at
+ * object i are the edges _rowStart[i] to _rowStart[i+1]-1. The forces are
+ * accumulated in parallel : each task evaluates a range of rows into its own
+ * accumulation buffer, then the buffers are summed per object and applied to
+ * the objects.</p>
+ * <p>The damping of a spring depends on the relative velocity of the objects
+ * it links, which the integration of each object alone cannot evaluate at its
+ * stages : it is applied with the other forces of the network, from the
+ * velocities read before each half impulse of the scene (see
+ * IGForceGenerator). It is thus only integrated to the first order.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GSpringNetwork
+        implements IGForceGenerator
+{
+    /**
+     * Springs added since the last build (unsorted).
+     */
+    private int _count;
+    private int[] _addedI = new int[16];
+    private int[] _addedJ = new int[16];
+    private double[] _addedK = new double[16];
+    private double[] _addedRest = new double[16];
+    private double[] _addedDamping = new double[16];
+
+    /**
+     * Springs in compressed sparse row form.
+     */
+    private int[] _rowStart = new int[1];
+    private int[] _j = new int[0];
+    private double[] _k = new double[0];
+    private double[] _rest = new double[0];
+    private double[] _damping = new double[0];
+    private boolean _built;
+
+    /**
+     * Transposed adjacency : the springs ending at object j start
+     * at the objects _columnI[_columnStart[j]] to
+     * _columnI[_columnStart[j+1]-1].
+     */
+    private int[] _columnStart = new int[1];
+    private int[] _columnI = new int[0];
+
+    /**
+     * State of the objects (3 values per object) copied when
+     * the forces are applied.
+     */
+    private double[] _position = new double[0];
+    private double[] _velocity = new double[0];
+
+    /**
+     * Accumulation buffers (one per task, 3 values per object).
+     */
+    private double[][] _buffers = new double[0][];
+
+    /**
+     * Minimum number of springs evaluated by a task.
+     */
+    private int _parallelGrain = 4096;
+
+    /**
+     * Task evaluating the springs of a range of rows.
+     */
+    class AccumulationTask
+            extends RecursiveAction
+    {
+        private int _firstRow, _lastRow;
+        private double[] _buffer;
+
+        AccumulationTask(int firstRow, int lastRow, double[] buffer)
+        {
+            _firstRow = firstRow;
+            _lastRow = lastRow;
+            _buffer = buffer;
+        }
+
+        protected void compute()
+        {
+            accumulate(_firstRow, _lastRow, _buffer);
+        }
+    }
+
+    /**
+     * Task summing the buffers of a range of objects and
+     * applying the forces.
+     */
+    class ReductionTask
+            extends RecursiveAction
+    {
+        private GScene _scene;
+        private int _first, _last, _bufferCount;
+
+        ReductionTask(GScene scene, int first, int last, int bufferCount)
+        {
+            _scene = scene;
+            _first = first;
+            _last = last;
+            _bufferCount = bufferCount;
+        }
+
+        protected void compute()
+        {
+            if (_last - _first <= _parallelGrain)
+            {
+                reduce(_scene, _first, _last, _bufferCount);
+            }
+            else
+            {
+                int middle = (_first + _last) >>> 1;
+                invokeAll(new ReductionTask(_scene, _first, middle,
+                                            _bufferCount),
+                          new ReductionTask(_scene, middle, _last,
+                                            _bufferCount));
+            }
+        }
+    }
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Add a damped spring between two objects.
+     * @param a GObject First object
+     * @param b GObject Second object
+     * @param k double Stiffness (N/m)
+     * @param rest double Length at rest
+     * @param damping double Damping along the spring (N.s/m), stable
+     * while damping * dt stays well below the smallest mass linked
+     * (see IGForceGenerator)
+     * @return int Number of springs in the network
+     */
+    public int addSpring(GObject a, GObject b, double k, double rest,
+                         double damping)
+    {
+        return addSpring(a._sceneIndex, b._sceneIndex, k, rest, damping);
+    }
+
+    /**
+     * Add a damped spring between two objects given by their
+     * index in the scene.
+     * @param i int Index of the first object
+     * @param j int Index of the second object
+     * @param k double Stiffness (N/m)
+     * @param rest double Length at rest
+     * @param damping double Damping along the spring (N.s/m), stable
+     * while damping * dt stays well below the smallest mass linked
+     * (see IGForceGenerator)
+     * @return int Number of springs in the network
+     * @throws IllegalArgumentException If an index is negative.
+     */
+    public int addSpring(int i, int j, double k, double rest, double damping)
+            throws IllegalArgumentException
+    {
+        if (i < 0 || j < 0)
+        {
+            throw new IllegalArgumentException(
+                    "Springs must link objects of the scene.");
+        }
+        if (_count == _addedI.length)
+        {
+            int capacity = _count * 2;
+            _addedI = grow(_addedI, capacity);
+            _addedJ = grow(_addedJ, capacity);
+            _addedK = grow(_addedK, capacity);
+            _addedRest = grow(_addedRest, capacity);
+            _addedDamping = grow(_addedDamping, capacity);
+        }
+        _addedI[_count] = i;
+        _addedJ[_count] = j;
+        _addedK[_count] = k;
+        _addedRest[_count] = rest;
+        _addedDamping[_count] = damping;
+        _built = false;
+        return ++_count;
+    }
+
+    private static int[] grow(int[] array, int capacity)
+    {
+        int[] result = new int[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static double[] grow(double[] array, int capacity)
+    {
+        double[] result = new double[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /**
+     * Return the number of springs.
+     * @return int
+     */
+    public int getSpringCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Sort the springs by first object (counting sort) and build
+     * the transposed adjacency.
+     * @param nodeCount int Number of objects of the scene
+     * @throws IllegalArgumentException If a spring is linked to an
+     * object outside the scene.
+     */
+    private void build(int nodeCount)
+            throws IllegalArgumentException
+    {
+        _rowStart = new int[nodeCount + 1];
+        _columnStart = new int[nodeCount + 1];
+        for (int index = 0; index < _count; index++)
+        {
+            if (_addedI[index] >= nodeCount || _addedJ[index] >= nodeCount)
+            {
+                throw new IllegalArgumentException(
+                        "Spring linked to an object outside the scene.");
+            }
+            _rowStart[_addedI[index] + 1]++;
+            _columnStart[_addedJ[index] + 1]++;
+        }
+        for (int row = 0; row < nodeCount; row++)
+        {
+            _rowStart[row + 1] += _rowStart[row];
+            _columnStart[row + 1] += _columnStart[row];
+        }
+        int[] cursor = new int[nodeCount];
+        int[] columnCursor = new int[nodeCount];
+        System.arraycopy(_rowStart, 0, cursor, 0, nodeCount);
+        System.arraycopy(_columnStart, 0, columnCursor, 0, nodeCount);
+        _j = new int[_count];
+        _k = new double[_count];
+        _rest = new double[_count];
+        _damping = new double[_count];
+        _columnI = new int[_count];
+        for (int index = 0; index < _count; index++)
+        {
+            int edge = cursor[_addedI[index]]++;
+            _j[edge] = _addedJ[index];
+            _k[edge] = _addedK[index];
+            _rest[edge] = _addedRest[index];
+            _damping[edge] = _addedDamping[index];
+            _columnI[columnCursor[_addedJ[index]]++] = _addedI[index];
+        }
+        _built = true;
+    }
+
+    /**
+     * Apply the forces of the springs to the objects.
+     * @param scene GScene
+     * @param t double Time
+     * @param pool ForkJoinPool Threads, or null
+     */
+    public void applyForces(GScene scene, double t, ForkJoinPool pool)
+    {
+        int nodeCount = scene.getNodeCount();
+        if (!_built || _rowStart.length != nodeCount + 1)
+        {
+            build(nodeCount);
+        }
+        if (_count == 0)
+        {
+            return;
+        }
+        if (_position.length < nodeCount * 3)
+        {
+            _position = new double[nodeCount * 3];
+            _velocity = new double[nodeCount * 3];
+        }
+        for (int node = 0; node < nodeCount; node++)
+        {
+            GObject object = scene.getNode(node);
+            double[] v = object.getLinearVelocity().getValues();
+            for (int axis = 0; axis < 3; axis++)
+            {
+                _position[node * 3 + axis] = object.getWorldPosition(axis);
+                _velocity[node * 3 + axis] = axis < v.length &&
+                                             object.isAwake() ? v[axis] : 0.0;
+            }
+        }
+
+        // split the rows in tasks of about _parallelGrain springs
+        int tasks = pool == null ? 1 :
+                    Math.max(1, Math.min(pool.getParallelism(),
+                                         _count / _parallelGrain));
+        if (_buffers.length < tasks)
+        {
+            _buffers = new double[tasks][];
+        }
+        for (int task = 0; task < tasks; task++)
+        {
+            if (_buffers[task] == null ||
+                _buffers[task].length < nodeCount * 3)
+            {
+                _buffers[task] = new double[nodeCount * 3];
+            }
+        }
+        if (tasks == 1)
+        {
+            accumulate(0, nodeCount, _buffers[0]);
+            reduce(scene, 0, nodeCount, 1);
+            return;
+        }
+        AccumulationTask[] accumulation = new AccumulationTask[tasks];
+        int row = 0;
+        for (int task = 0; task < tasks; task++)
+        {
+            // rows are balanced on the number of springs
+            int target = (int) ((long) _count * (task + 1) / tasks);
+            int first = row;
+            while (row < nodeCount && (task == tasks - 1 ||
+                                       _rowStart[row] < target))
+            {
+                row++;
+            }
+            accumulation[task] = new AccumulationTask(first, row,
+                    _buffers[task]);
+        }
+        pool.invoke(new RecursiveAction()
+        {
+            protected void compute()
+            {
+                invokeAll(accumulation);
+            }
+        });
+        pool.invoke(new ReductionTask(scene, 0, nodeCount, tasks));
+    }
+
+    /**
+     * Evaluate the springs of a range of rows in a buffer.
+     * @param firstRow int
+     * @param lastRow int
+     * @param buffer double[]
+     */
+    private void accumulate(int firstRow, int lastRow, double[] buffer)
+    {
+        for (int i = firstRow; i < lastRow; i++)
+        {
+            int a = i * 3;
+            for (int edge = _rowStart[i]; edge < _rowStart[i + 1]; edge++)
+            {
+                int b = _j[edge] * 3;
+                double dx = _position[b] - _position[a];
+                double dy = _position[b + 1] - _position[a + 1];
+                double dz = _position[b + 2] - _position[a + 2];
+                double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                if (length == 0)
+                {
+                    continue;
+                }
+                double inverseLength = 1.0 / length;
+                dx *= inverseLength;
+                dy *= inverseLength;
+                dz *= inverseLength;
+                double speed = (_velocity[b] - _velocity[a]) * dx +
+                               (_velocity[b + 1] - _velocity[a + 1]) * dy +
+                               (_velocity[b + 2] - _velocity[a + 2]) * dz;
+                // positive when the spring pulls the objects together;
+                // the damping uses the velocities read before the half
+                // impulse (first order)
+                double f = _k[edge] * (length - _rest[edge]) +
+                           _damping[edge] * speed;
+                buffer[a] += f * dx;
+                buffer[a + 1] += f * dy;
+                buffer[a + 2] += f * dz;
+                buffer[b] -= f * dx;
+                buffer[b + 1] -= f * dy;
+                buffer[b + 2] -= f * dz;
+            }
+        }
+    }
+
+    /**
+     * Sum the buffers of a range of objects, apply the forces and
+     * clear the buffers. A sleeping object linked to an awake one
+     * is woken up.
+     * @param scene GScene
+     * @param first int
+     * @param last int
+     * @param bufferCount int
+     */
+    private void reduce(GScene scene, int first, int last, int bufferCount)
+    {
+        for (int node = first; node < last; node++)
+        {
+            GObject object = scene.getNode(node);
+            int offset = node * 3;
+            int dimension = object.getLinearMomentum().getSize();
+            for (int axis = 0; axis < 3; axis++)
+            {
+                double force = 0.0;
+                for (int buffer = 0; buffer < bufferCount; buffer++)
+                {
+                    force += _buffers[buffer][offset + axis];
+                    _buffers[buffer][offset + axis] = 0;
+                }
+                if (axis < dimension && force != 0)
+                {
+                    object.addExternalForce(axis, force);
+                }
+            }
+            if (!object.isAwake() && object.isDynamic() &&
+                hasAwakeNeighbour(scene, node))
+            {
+                object.setAwake(true);
+            }
+        }
+    }
+
+    /**
+     * Return true if an object is linked to an awake object.
+     */
+    private boolean hasAwakeNeighbour(GScene scene, int node)
+    {
+        for (int edge = _rowStart[node]; edge < _rowStart[node + 1]; edge++)
+        {
+            if (scene.getNode(_j[edge]).isAwake())
+            {
+                return true;
+            }
+        }
+        for (int edge = _columnStart[node]; edge < _columnStart[node + 1];
+                        edge++)
+        {
+            if (scene.getNode(_columnI[edge]).isAwake())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,30 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Default builder for a 3D object.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IG3DObjectBuilder
+{
+    /**
+     * Build a 3D object from the folowing initialization
+     * parameters.
+     * @param x0 double x initial position
+     * @param y0 double y initial position
+     * @param z0 double z initial position
+     * @param px0 double x initial linear momentum
+     * @param py0 double y initial linear momentum
+     * @param pz0 double z initial linear momentum
+     * @param lx0 double x initial angular momentum
+     * @param ly0 double y initial angular momentum
+     * @param lz0 double z initial angular momentum
+     * @return GObject
+     */
+    public GObject build(double x0, double y0, double z0, double px0,
+                         double py0, double pz0, double lx0, double ly0,
+                         double lz0);
+}
@@ -0,0 +1,34 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This interface must be implemented by a class to define
+ * the events of an object simulated by a GEventScheduler (threshold
+ * crossings, state changes...). Collisions between objects are predicted
+ * by the scheduler itself.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGEventPredictor
+{
+    /**
+     * Predict the time of the next event of an object. The object
+     * is synchronized at time t when the method is called.
+     * @param object GObject
+     * @param t double Current time of the object
+     * @return double Time of the next event, or Double.POSITIVE_INFINITY
+     * if no event is expected.
+     */
+    public double predict(GObject object, double t);
+
+    /**
+     * Handle the event of an object. The object has been advanced
+     * to the time of the event. Changing the state of the object
+     * is allowed; its events are predicted again afterwards.
+     * @param object GObject
+     * @param t double Time of the event
+     */
+    public void handle(GObject object, double t);
+}
@@ -0,0 +1,40 @@
+package com.jslabs.gophysicengine.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This interface must be implemented by a class applying
+ * forces to several objects of a scene (networks of springs, force fields,
+ * interactions between objects...). Generators are called once per step,
+ * with the objects at their positions at the end of the step. The scene
+ * integrates their forces with the velocity Verlet scheme : half of the
+ * impulse of the forces of the previous positions before the step, half of
+ * the impulse of the forces of the new positions after it. The forces must
+ * therefore only depend on the positions of the objects (and the time), not
+ * be held constant over the step.</p>
+ * <p>A force depending on the velocities (the damping of GSpringNetwork) is
+ * the exception : the scheme evaluates it with the velocities of the objects
+ * at the end of the step, before the second half of the impulse, so that it
+ * is only integrated to the first order and is stable as long as the damping
+ * of an object over a step stays small (c dt / m well below 1). A damping
+ * applied to a single object should rather be added with
+ * GObject.addExternalDamping(), which is evaluated at each stage of the
+ * integration.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGForceGenerator
+{
+    /**
+     * Apply the forces of the generator to the objects of the
+     * scene with GObject.addExternalForce().
+     * @param scene GScene
+     * @param t double Time of the positions of the objects
+     * @param pool ForkJoinPool Threads of the scene, or null if the
+     * scene is simulated sequentially.
+     */
+    public void applyForces(GScene scene, double t, ForkJoinPool pool);
+}
@@ -0,0 +1,38 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This interface must be implemented by a class defining a
+ * short range interaction between two objects which only depends on their
+ * distance (Lennard-Jones, soft repulsion...). The interaction is null beyond
+ * the cutoff radius.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGPairPotential
+{
+    /**
+     * Return the distance beyond which the interaction is null.
+     * @return double
+     */
+    public double getCutoff();
+
+    /**
+     * Return the force between two objects divided by their
+     * distance : the force applied to the first object is
+     * f * (x1 - x2). A positive value is a repulsion.
+     * @param r2 double Square of the distance (lower than
+     * the square of the cutoff).
+     * @return double
+     */
+    public double force(double r2);
+
+    /**
+     * Return the potential energy of two objects.
+     * @param r2 double Square of the distance
+     * @return double
+     */
+    public double energy(double r2);
+}
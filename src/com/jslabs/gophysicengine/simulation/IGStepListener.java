@@ -0,0 +1,27 @@
+package com.jslabs.gophysicengine.simulation;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: This interface must be implemented by a class notified
+ * of each step of a scene (offscreen renderers, recorders...). Listeners
+ * are called by the thread stepping the scene, each time a snapshot is
+ * taken : they delay the next step, so they should only copy what they
+ * need and hand the rest of their work to other threads.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public interface IGStepListener
+{
+    /**
+     * Called after a step, with the snapshot of the nodes just
+     * taken, before it is published to the renderer : the snapshot
+     * is only valid during the call (it is reused by the following
+     * steps), and must not be handed to other threads. A listener
+     * drawing it interpolates it in its own GInterpolatedSnapshot.
+     * @param scene GScene
+     * @param snapshot GSceneSnapshot
+     */
+    public void stepCompleted(GScene scene, GSceneSnapshot snapshot);
+}
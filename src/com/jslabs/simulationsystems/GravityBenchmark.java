@@ -0,0 +1,107 @@
+package com.jslabs.simulationsystems;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Compares the Barnes-Hut gravity with the direct summation on a disc of
+ * particles : relative error of the forces and time of a force evaluation
+ * for several opening angles.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GravityBenchmark
+{
+    /**
+     * Create a scene containing a disc of particles.
+     * @param count int Number of particles
+     * @return GScene
+     * @throws CompilationException If the scene could not be compiled.
+     */
+    public static GScene createParticleDisc(int count)
+            throws CompilationException, Exception
+    {
+        GScene scene = new GScene();
+        Random random = new Random(1);
+        IG2DObjectBuilder builder = GObjectBuilder.getInstance().getBuilder(
+                GObjectBuilder.OBJECT_PARTICLE);
+        for (int index = 0; index < count; index++)
+        {
+            double r = 200 * Math.sqrt(random.nextDouble());
+            double a = 2 * Math.PI * random.nextDouble();
+            GObject particle = builder.build(r * Math.cos(a), r * Math.sin(a),
+                                             0, 0, 0, 0);
+            particle.setMass(1 + random.nextDouble());
+            particle.setInertialReferentialPosition(300, 300, 0);
+            scene.addNode(particle);
+        }
+        scene.compile();
+        return scene;
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args String[] Number of particles (default 20000)
+     */
+    public static void main(String[] args)
+            throws Exception
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        GScene scene = createParticleDisc(count);
+        ForkJoinPool pool = new ForkJoinPool(
+                Runtime.getRuntime().availableProcessors());
+        GBarnesHutGravity gravity = new GBarnesHutGravity();
+        gravity.setGravitationalConstant(1.0);
+        gravity.setSoftening(1.0);
+
+        double[] exact = new double[count * 3];
+        long start = System.nanoTime();
+        gravity.computeDirectForces(scene, exact);
+        double direct = (System.nanoTime() - start) / 1e6;
+        System.out.println("particles;" + count);
+        System.out.println("direct;" + direct + " ms");
+
+        double[] force = new double[count * 3];
+        double[] thetas = {0.3, 0.5, 0.7, 1.0};
+        System.out.println("theta;time (ms);speedup;mean error;max error");
+        for (int t = 0; t < thetas.length; t++)
+        {
+            gravity.setTheta(thetas[t]);
+            // warm up
+            gravity.computeForces(scene, pool, force);
+            int runs = 5;
+            start = System.nanoTime();
+            for (int run = 0; run < runs; run++)
+            {
+                gravity.computeForces(scene, pool, force);
+            }
+            double time = (System.nanoTime() - start) / 1e6 / runs;
+
+            double mean = 0, max = 0;
+            for (int index = 0; index < count; index++)
+            {
+                double error = 0, norm = 0;
+                for (int axis = 0; axis < 3; axis++)
+                {
+                    double d = force[index * 3 + axis] -
+                               exact[index * 3 + axis];
+                    error += d * d;
+                    norm += exact[index * 3 + axis] * exact[index * 3 + axis];
+                }
+                double relative = norm > 0 ? Math.sqrt(error / norm) : 0;
+                mean += relative;
+                max = Math.max(max, relative);
+            }
+            System.out.println(thetas[t] + ";" + time + ";" + (direct / time) +
+                               ";" + (mean / count) + ";" + max);
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,178 @@
+package com.jslabs.simulationsystems;
+
+import com.jslabs.gophysicengine.maths.linear.*;
+import com.jslabs.gophysicengine.physics.*;
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Steps a scene mixing springs and particles with six kinds of forces
+ * (hand written, compiled, sampled, legacy functions...) with and without
+ * the grouping of the nodes by type. Without grouping, the force call site of
+ * the solver sees all the force classes and is not inlined; with grouping,
+ * each batch has its own copy of the solver. Run with
+ * -XX:+UnlockDiagnosticVMOptions -XX:+PrintInlining to see the force calls
+ * reported as "virtual call" in the first case and inlined in the second
+ * one. The nodes of each kind are created in a row, as scenes are usually
+ * built, so that the batches walk the memory in order.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class MixedSceneBenchmark
+{
+    /**
+     * Legacy force function : constant force toward the origin.
+     */
+    static class AttractionFunction
+            implements IGFunction
+    {
+        public GVector apply(double t, GVector position,
+                             GQuaternion qOrientation,
+                             GVector linearMomentum,
+                             GVector angularMomentum,
+                             GMatrix mOrientation,
+                             GVector linearVelocity,
+                             GVector angularVelocity)
+        {
+            GVector force = new GVector(2);
+            force.setValue(0, -position.getValue(0) * 0.1);
+            force.setValue(1, -position.getValue(1) * 0.1);
+            return force;
+        }
+    }
+
+    /**
+     * Field sampled by the benchmark.
+     */
+    static class VortexField
+            implements IGField
+    {
+        public void evaluate(double[] position, double[] out)
+        {
+            out[0] = -Math.sin(position[1] / 50.0);
+            out[1] = Math.sin(position[0] / 50.0);
+        }
+    }
+
+    /**
+     * Create the mixed scene.
+     * @param count int Number of nodes
+     * @param grouping boolean True to group the nodes by type
+     * @return GScene
+     * @throws CompilationException If the scene could not be compiled.
+     */
+    public static GScene createMixedScene(int count, boolean grouping)
+            throws CompilationException, Exception
+    {
+        GScene scene = new GScene();
+        scene.setTypeGrouping(grouping);
+        GObjectBuilder builders = GObjectBuilder.getInstance();
+        GForceCompiler compiler = new GForceCompiler(new String[] {"k", "c"},
+                                                     2);
+        double[] parameters = {0.5, 0.2};
+        IGForce well = compiler.compile(new String[] {"-k * x0", "-k * x1"},
+                                        parameters);
+        IGForce drag = compiler.compile(new String[] {"-c * v0", "-c * v1"},
+                                        parameters);
+        GSampledField vortex = new GSampledField(new VortexField(), 2,
+                new double[] {-500, -500}, new double[] {500, 500},
+                new int[] {101, 101}, null);
+        for (int index = 0; index < count; index++)
+        {
+            double x = (index % 100) * 5.0;
+            double y = (index / 100 % 100) * 5.0;
+            GObject object;
+            int kind = index * 6 / count;
+            if (kind == 0)
+            {
+                G2DSpring spring = (G2DSpring) builders.getBuilder(
+                        GObjectBuilder.OBJECT_SPRING).build(x, y, 0, 0, 0, 0);
+                spring.setSpringForce(50);
+                spring.setSpringRestLength(50);
+                object = spring;
+            }
+            else
+            {
+                object = builders.getBuilder(GObjectBuilder.OBJECT_PARTICLE).
+                         build(x, y, 1, 0, 0, 0);
+                switch (kind)
+                {
+                    case 1:
+                        break;
+                    case 2:
+                        object.setForce(well);
+                        break;
+                    case 3:
+                        object.setForce(drag);
+                        break;
+                    case 4:
+                        object.setForce(vortex);
+                        break;
+                    default:
+                        object.setForceFunction(new AttractionFunction());
+                        break;
+                }
+            }
+            object.setMass(1);
+            object.setDimensions(2, 2, 0);
+            object.setSleepingAllowed(false);
+            scene.addNode(object);
+        }
+        scene.setParallelism(1);
+        scene.compile();
+        return scene;
+    }
+
+    /**
+     * Time the steps of a scene.
+     * @param count int Number of nodes
+     * @param grouping boolean
+     * @param steps int Number of steps timed
+     * @return double Time per step (ms)
+     */
+    public static double run(int count, boolean grouping, int steps)
+            throws Exception
+    {
+        GScene scene = createMixedScene(count, grouping);
+        double dt = 0.001;
+        // warm up
+        for (int step = 0; step < steps; step++)
+        {
+            scene.step(step * dt, dt);
+        }
+        long start = System.nanoTime();
+        for (int step = 0; step < steps; step++)
+        {
+            scene.step(step * dt, dt);
+        }
+        double time = (System.nanoTime() - start) / 1e6 / steps;
+        System.out.println((grouping ? "grouped" : "shared") + ";batches=" +
+                           scene.getBatchCount() + ";" + time + " ms/step");
+        return time;
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args String[] Number of nodes (default 60000), then
+     * "grouped" or "shared" to run only one mode, then the number of steps
+     * (default 1000).
+     */
+    public static void main(String[] args)
+            throws Exception
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 60000;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        if (args.length > 1)
+        {
+            run(count, args[1].equals("grouped"), steps);
+            return;
+        }
+        double shared = run(count, false, steps);
+        double grouped = run(count, true, steps);
+        System.out.println("speedup;" + shared / grouped);
+    }
+}
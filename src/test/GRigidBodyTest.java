@@ -0,0 +1,211 @@
+package test;
+
+import com.jslabs.gophysicengine.maths.linear.*;
+import com.jslabs.gophysicengine.physics.*;
+import com.jslabs.gophysicengine.simulation.*;
+
+/**
+ * <p>Title: Go! PhysicEngine</p>
+ *
+ * <p>Description: Moteur physique permettant la simulation de la dynamique des
+ * corps rigides.</p>
+ * <p>Regression tests of the integration of the rigid bodies : each test
+ * steps a body with update() and compares it to an analytic solution or to
+ * the quantities the motion conserves. The first failure is thrown.</p>
+ *
+ * @author Jerome Schmaltz
+ * @version 1.0
+ */
+public class GRigidBodyTest
+{
+    /**
+     * Force of a spring of stiffness k attached to the origin
+     * along x.
+     */
+    static class SpringForce
+            implements IGForce
+    {
+        private double _k;
+
+        SpringForce(double k)
+        {
+            _k = k;
+        }
+
+        public void accumulate(double t, GBodyState state, double[] out)
+        {
+            out[0] -= _k * state.getPosition()[0];
+        }
+    }
+
+    /**
+     * Constant force or torque along the last axis of the buffer.
+     */
+    static class ConstantForce
+            implements IGForce
+    {
+        private double _value;
+
+        ConstantForce(double value)
+        {
+            _value = value;
+        }
+
+        public void accumulate(double t, GBodyState state, double[] out)
+        {
+            out[out.length - 1] += _value;
+        }
+    }
+
+////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Harmonic oscillator : x(t) = x0 cos(w t) with w = sqrt(k/m).
+     * @throws Exception
+     */
+    public static void testHarmonicOscillator()
+            throws Exception
+    {
+        double mass = 2.0, k = 8.0, dt = 0.01;
+        double omega = Math.sqrt(k / mass);
+        G2DParticle body = new G2DParticle();
+        body.setMass(mass);
+        body.setState(vector(1.0, 0.0), new GQuaternion(), vector(0.0, 0.0),
+                      vector(0.0));
+        body.setForce(new SpringForce(k));
+        body.setTorque(new ConstantForce(0.0));
+        body.initialize();
+        for (int step = 0; step < 1000; step++)
+        {
+            body.update(step * dt, dt);
+        }
+        double t = 1000 * dt;
+        check("harmonic oscillator position",
+              body.getPosition().getValue(0), Math.cos(omega * t), 1e-6);
+        check("harmonic oscillator velocity",
+              body.getLinearVelocity().getValue(0),
+              -omega * Math.sin(omega * t), 1e-6);
+    }
+
+    /**
+     * Constant torque on a planar body : angle(t) = torque t^2 / 2I,
+     * which the Runge Kutta solver integrates exactly.
+     * @throws Exception
+     */
+    public static void testConstantTorque()
+            throws Exception
+    {
+        double inertia = 4.0, torque = 2.0, dt = 0.01;
+        G2DParticle body = new G2DParticle();
+        body.setMass(1.0);
+        body.setMomentOfInertia(inertia);
+        body.setState(vector(0.0, 0.0), new GQuaternion(), vector(0.0, 0.0),
+                      vector(0.0));
+        body.setForce(new ConstantForce(0.0));
+        body.setTorque(new ConstantForce(torque));
+        body.initialize();
+        for (int step = 0; step < 100; step++)
+        {
+            body.update(step * dt, dt);
+        }
+        double t = 100 * dt;
+        check("constant torque angle", body.getAngle(),
+              0.5 * torque / inertia * t * t, 1e-12);
+        check("constant torque angular velocity",
+              body.getAngularVelocity().getValue(0), torque / inertia * t,
+              1e-12);
+    }
+
+    /**
+     * Free 3D body spinning around no principal axis : its
+     * angular momentum is constant, its kinetic energy and the
+     * norm of its quaternion are conserved.
+     * @throws Exception
+     */
+    public static void testFreeBody()
+            throws Exception
+    {
+        double dt = 0.001;
+        G3DBox body = new G3DBox();
+        body.setMass(1.0);
+        body.setDimensions(10, 6, 4);
+        body.setState(vector(0.0, 0.0, 0.0),
+                      new GQuaternion(new double[] {1, 0, 0, 0}),
+                      vector(0.0, 0.0, 0.0), vector(1.0, 2.0, 3.0));
+        body.setForce(new ConstantForce(0.0));
+        body.setTorque(new ConstantForce(0.0));
+        body.initialize();
+        double energy = body.getKineticEnergy();
+        for (int step = 0; step < 5000; step++)
+        {
+            body.update(step * dt, dt);
+        }
+        check("free body angular momentum",
+              body.getAngularMomentum().getValue(2), 3.0, 1e-12);
+        check("free body energy", body.getKineticEnergy(), energy,
+              1e-6 * energy);
+        double norm = 0.0;
+        for (int index = 0; index < 4; index++)
+        {
+            norm += body.getOrientation().getValue(index) *
+                    body.getOrientation().getValue(index);
+        }
+        check("free body quaternion norm", Math.sqrt(norm), 1.0, 1e-9);
+    }
+
+    private static GVector vector(double x)
+    {
+        GVector vector = new GVector(1);
+        vector.setValue(0, x);
+        return vector;
+    }
+
+    private static GVector vector(double x, double y)
+    {
+        GVector vector = new GVector(2);
+        vector.setValue(0, x);
+        vector.setValue(1, y);
+        return vector;
+    }
+
+    private static GVector vector(double x, double y, double z)
+    {
+        GVector vector = new GVector(3);
+        vector.setValue(0, x);
+        vector.setValue(1, y);
+        vector.setValue(2, z);
+        return vector;
+    }
+
+    /**
+     * Compare a value to the expected one.
+     * @param name String Name of the value
+     * @param value double
+     * @param expected double
+     * @param tolerance double
+     * @throws IllegalStateException If the value is not within the
+     * tolerance.
+     */
+    private static void check(String name, double value, double expected,
+                              double tolerance)
+            throws IllegalStateException
+    {
+        if (!(Math.abs(value - expected) <= tolerance))
+        {
+            throw new IllegalStateException(name + " : " + value +
+                                            " instead of " + expected +
+                                            " (tolerance " + tolerance + ")");
+        }
+        System.out.println(name + " : " + value + " (expected " + expected +
+                           ")");
+    }
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        testHarmonicOscillator();
+        testConstantTorque();
+        testFreeBody();
+        System.out.println("All tests passed.");
+    }
+}